@@ -14,6 +14,7 @@ package org.jacoco.maven;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.maven.plugin.MojoExecutionException;
@@ -24,6 +25,7 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.shared.model.fileset.FileSet;
 import org.apache.maven.shared.model.fileset.util.FileSetManager;
 import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.tools.ExecFileMerger;
 
 /**
  * Mojo for merging a set of execution data files (*.exec) into a single file
@@ -60,6 +62,12 @@ public class MergeMojo extends AbstractJacocoMojo {
 	@Parameter(required = true)
 	private List<FileSet> fileSets;
 
+	/**
+	 * Number of threads used to read and merge the execution data files.
+	 */
+	@Parameter(property = "jacoco.threads", defaultValue = "1")
+	private int threads;
+
 	@Override
 	protected void executeMojo()
 			throws MojoExecutionException, MojoFailureException {
@@ -78,14 +86,11 @@ public class MergeMojo extends AbstractJacocoMojo {
 	}
 
 	private void executeMerge() throws MojoExecutionException {
-		final ExecFileLoader loader = new ExecFileLoader();
-
-		load(loader);
-		save(loader);
+		save(load());
 	}
 
-	private void load(final ExecFileLoader loader)
-			throws MojoExecutionException {
+	private ExecFileLoader load() throws MojoExecutionException {
+		final List<ExecFileMerger.Input> inputs = new ArrayList<ExecFileMerger.Input>();
 		final FileSetManager fileSetManager = new FileSetManager(getLog());
 		for (final FileSet fileSet : fileSets) {
 			for (final String includedFilename : fileSetManager
@@ -95,21 +100,30 @@ public class MergeMojo extends AbstractJacocoMojo {
 				if (inputFile.isDirectory()) {
 					continue;
 				}
-				try {
-					getLog().info("Loading execution data file "
-							+ inputFile.getAbsolutePath());
-					loader.load(inputFile);
-				} catch (final IOException e) {
-					throw new MojoExecutionException(
-							"Unable to read " + inputFile.getAbsolutePath(), e);
-				}
+				getLog().info("Loading execution data file "
+						+ inputFile.getAbsolutePath());
+				inputs.add(ExecFileMerger.fileInput(inputFile));
 			}
 		}
+		final ExecFileMerger merger = new ExecFileMerger(threads);
+		final ExecFileLoader loader;
+		try {
+			loader = merger.merge(inputs);
+		} catch (final IOException e) {
+			throw new MojoExecutionException(e.getMessage(), e);
+		}
+		getLog().info(String.format(
+				"Merged %s files with %s bytes (%.1f files/s, %.0f bytes/s)",
+				Integer.valueOf(merger.getFileCount()),
+				Long.valueOf(merger.getByteCount()),
+				Double.valueOf(merger.getFilesPerSecond()),
+				Double.valueOf(merger.getBytesPerSecond())));
+		return loader;
 	}
 
 	private void save(final ExecFileLoader loader)
 			throws MojoExecutionException {
-		if (loader.getExecutionDataStore().getContents().isEmpty()) {
+		if (loader.getPackedExecutionDataStore().isEmpty()) {
 			getLog().info(MSG_SKIPPING);
 			return;
 		}
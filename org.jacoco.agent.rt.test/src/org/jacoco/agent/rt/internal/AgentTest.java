@@ -32,6 +32,7 @@ import org.jacoco.agent.rt.internal.output.NoneOutput;
 import org.jacoco.agent.rt.internal.output.TcpClientOutput;
 import org.jacoco.agent.rt.internal.output.TcpServerOutput;
 import org.jacoco.core.JaCoCo;
+import org.jacoco.core.data.ExecutionDataWriter;
 import org.jacoco.core.runtime.AgentOptions;
 import org.jacoco.core.runtime.AgentOptions.OutputMode;
 import org.jacoco.core.runtime.RuntimeData;
@@ -46,7 +47,7 @@ public class AgentTest implements IExceptionLogger, IAgentOutput {
 
 	private AgentOptions options;
 
-	private Boolean writeExecutionDataReset;
+	private volatile Boolean writeExecutionDataReset;
 
 	private Exception loggedException;
 
@@ -193,6 +194,55 @@ public class AgentTest implements IExceptionLogger, IAgentOutput {
 		assertNull(loggedException);
 	}
 
+	@Test
+	public void shutdown_should_stop_class_restorer_before_output()
+			throws Exception {
+		final StringBuilder calls = new StringBuilder();
+		Agent agent = new Agent(options, this) {
+			@Override
+			IAgentOutput createAgentOutput() {
+				return new NoneOutput() {
+					@Override
+					public void shutdown() {
+						calls.append("output ");
+					}
+				};
+			}
+		};
+		agent.startup();
+		agent.setClassRestorer(
+				new ClassRestorer(null, agent.getData(), null, this, 1000) {
+					@Override
+					void stop() {
+						calls.append("restorer ");
+					}
+				});
+
+		agent.shutdown();
+
+		assertEquals("restorer output ", calls.toString());
+		assertNull(loggedException);
+	}
+
+	@Test
+	public void startup_should_schedule_periodic_dumps_when_enabled()
+			throws Exception {
+		options.setDumpInterval(1);
+		options.setDumpOnExit(false);
+		Agent agent = createAgent();
+		agent.startup();
+
+		final long deadline = System.currentTimeMillis() + 5000;
+		while (writeExecutionDataReset == null
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		agent.shutdown();
+
+		assertEquals(Boolean.FALSE, writeExecutionDataReset);
+		assertNull(loggedException);
+	}
+
 	@Test
 	public void shutdown_should_log_exception() throws Exception {
 		final Exception expected = new Exception();
@@ -294,6 +344,22 @@ public class AgentTest implements IExceptionLogger, IAgentOutput {
 				loader.getSessionInfoStore().getInfos().get(0).getId());
 	}
 
+	@Test
+	public void getExecutionData_should_write_sparse_blocks_when_enabled()
+			throws Exception {
+		options.setSparseBlocks(true);
+		Agent agent = createAgent();
+		agent.startup();
+		agent.getData().getExecutionData(Long.valueOf(0x12345678), "Foo", 64)
+				.getProbes()[3] = true;
+
+		byte[] data = agent.getExecutionData(false);
+
+		// header and session info block with id "test" precede the class:
+		assertEquals(ExecutionDataWriter.BLOCK_EXECUTIONDATA_SPARSE,
+				data[5 + 1 + 6 + 16]);
+	}
+
 	@Test
 	public void getExecutionData_should_reset_probes_when_enabled()
 			throws Exception {
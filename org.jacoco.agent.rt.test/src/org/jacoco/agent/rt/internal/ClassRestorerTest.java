@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jacoco.core.runtime.AgentOptions;
+import org.jacoco.core.runtime.LoggerRuntime;
+import org.jacoco.core.runtime.RuntimeData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ClassRestorer}.
+ */
+public class ClassRestorerTest implements InvocationHandler {
+
+	private static final String NAME = "org/jacoco/agent/rt/internal/ClassRestorerTest";
+
+	private ExceptionRecorder logger;
+
+	private RuntimeData data;
+
+	private CoverageTransformer transformer;
+
+	private List<Long> restoredIds;
+
+	private List<Long> reinstrumentedIds;
+
+	private List<Class<?>> retransformed;
+
+	private List<Object> addTransformerArgs;
+
+	private CountDownLatch retransformations;
+
+	private boolean retransformFailure;
+
+	private ClassRestorer restorer;
+
+	@Before
+	public void setup() {
+		logger = new ExceptionRecorder();
+		data = new RuntimeData();
+		restoredIds = Collections.synchronizedList(new ArrayList<Long>());
+		reinstrumentedIds = Collections.synchronizedList(new ArrayList<Long>());
+		retransformed = Collections.synchronizedList(new ArrayList<Class<?>>());
+		retransformations = new CountDownLatch(1);
+		final AgentOptions options = new AgentOptions();
+		options.setRestoreInterval(1);
+		transformer = new CoverageTransformer(new LoggerRuntime(), options,
+				logger) {
+			@Override
+			void restore(final long classId) {
+				restoredIds.add(Long.valueOf(classId));
+				super.restore(classId);
+			}
+
+			@Override
+			void reinstrument(final long classId) {
+				reinstrumentedIds.add(Long.valueOf(classId));
+				super.reinstrument(classId);
+			}
+		};
+		final Instrumentation inst = (Instrumentation) Proxy.newProxyInstance(
+				getClass().getClassLoader(),
+				new Class<?>[] { Instrumentation.class }, this);
+		restorer = new ClassRestorer(inst, data, transformer, logger, 10);
+	}
+
+	@After
+	public void teardown() {
+		logger.assertNoException();
+	}
+
+	@Test
+	public void restoreCoveredClasses_should_retransform_covered_classes()
+			throws Exception {
+		cover(data.getExecutionData(Long.valueOf(1), NAME, 2).getProbes(), 2);
+		cover(data
+				.getExecutionData(Long.valueOf(2),
+						"org/jacoco/agent/rt/internal/ExceptionRecorder", 2)
+				.getProbes(), 1);
+
+		assertEquals(1, restorer.restoreCoveredClasses());
+
+		assertEquals(Arrays.asList(Long.valueOf(1)), restoredIds);
+		assertEquals(Arrays.asList(ClassRestorerTest.class), retransformed);
+	}
+
+	@Test
+	public void restoreCoveredClasses_should_restore_classes_only_once()
+			throws Exception {
+		cover(data.getExecutionData(Long.valueOf(1), NAME, 2).getProbes(), 2);
+		restorer.restoreCoveredClasses();
+
+		assertEquals(0, restorer.restoreCoveredClasses());
+
+		assertEquals(1, restoredIds.size());
+		assertEquals(1, retransformed.size());
+	}
+
+	@Test
+	public void restoreCoveredClasses_should_skip_unmodifiable_classes()
+			throws Exception {
+		cover(data.getExecutionData(Long.valueOf(1), "java/lang/String", 1)
+				.getProbes(), 1);
+
+		assertEquals(0, restorer.restoreCoveredClasses());
+
+		assertEquals(Arrays.asList(Long.valueOf(1)), restoredIds);
+		assertTrue(retransformed.isEmpty());
+	}
+
+	@Test
+	public void restoreCoveredClasses_should_log_failed_retransformations()
+			throws Exception {
+		retransformFailure = true;
+		cover(data.getExecutionData(Long.valueOf(1), NAME, 2).getProbes(), 2);
+
+		assertEquals(0, restorer.restoreCoveredClasses());
+
+		logger.assertException(UnmodifiableClassException.class, "failed");
+		logger.clear();
+	}
+
+	@Test
+	public void reinstrumentRestoredClasses_should_retransform_restored_classes_after_reset()
+			throws Exception {
+		final boolean[] probes = data.getExecutionData(Long.valueOf(1), NAME, 2)
+				.getProbes();
+		cover(probes, 2);
+		restorer.restoreCoveredClasses();
+		retransformed.clear();
+
+		data.reset();
+
+		assertEquals(1, restorer.reinstrumentRestoredClasses());
+		assertEquals(Arrays.asList(ClassRestorerTest.class), retransformed);
+		assertEquals(Arrays.asList(Long.valueOf(1)), reinstrumentedIds);
+
+		// covered again after the reset:
+		cover(probes, 2);
+		assertEquals(1, restorer.restoreCoveredClasses());
+	}
+
+	@Test
+	public void reinstrumentRestoredClasses_should_do_nothing_without_reset()
+			throws Exception {
+		cover(data.getExecutionData(Long.valueOf(1), NAME, 2).getProbes(), 2);
+		restorer.restoreCoveredClasses();
+
+		assertEquals(0, restorer.reinstrumentRestoredClasses());
+		assertTrue(reinstrumentedIds.isEmpty());
+	}
+
+	@Test
+	public void start_should_register_transformer_and_restore_periodically()
+			throws Exception {
+		cover(data.getExecutionData(Long.valueOf(1), NAME, 2).getProbes(), 2);
+
+		restorer.start();
+		assertTrue(retransformations.await(5, TimeUnit.SECONDS));
+		restorer.stop();
+
+		assertSame(transformer, addTransformerArgs.get(0));
+		assertEquals(Boolean.TRUE, addTransformerArgs.get(1));
+		assertEquals(Arrays.asList(ClassRestorerTest.class), retransformed);
+	}
+
+	private static void cover(final boolean[] probes, final int count) {
+		for (int i = 0; i < count; i++) {
+			probes[i] = true;
+		}
+	}
+
+	// === Instrumentation ===
+
+	public Object invoke(final Object proxy, final Method method,
+			final Object[] args) throws Throwable {
+		final String name = method.getName();
+		if ("addTransformer".equals(name)) {
+			addTransformerArgs = Arrays.asList(args);
+			return null;
+		}
+		if ("getAllLoadedClasses".equals(name)) {
+			return new Class<?>[] { String.class, ClassRestorerTest.class,
+					ExceptionRecorder.class };
+		}
+		if ("isModifiableClass".equals(name)) {
+			return Boolean.valueOf(args[0] != String.class);
+		}
+		if ("retransformClasses".equals(name)) {
+			if (retransformFailure) {
+				throw new UnmodifiableClassException("failed");
+			}
+			retransformed.addAll(Arrays.asList((Class<?>[]) args[0]));
+			retransformations.countDown();
+			return null;
+		}
+		throw new UnsupportedOperationException(name);
+	}
+
+}
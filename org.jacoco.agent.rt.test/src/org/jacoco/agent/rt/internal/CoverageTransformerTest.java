@@ -12,6 +12,7 @@
  *******************************************************************************/
 package org.jacoco.agent.rt.internal;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
@@ -19,19 +20,27 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.instrument.IllegalClassFormatException;
 import java.security.CodeSource;
 import java.security.ProtectionDomain;
 import java.security.cert.Certificate;
 
 import org.jacoco.core.JaCoCo;
+import org.jacoco.core.instr.Instrumenter;
+import org.jacoco.core.internal.data.CRC64;
 import org.jacoco.core.runtime.AbstractRuntime;
 import org.jacoco.core.runtime.AgentOptions;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.objectweb.asm.MethodVisitor;
 
 /**
@@ -39,6 +48,9 @@ import org.objectweb.asm.MethodVisitor;
  */
 public class CoverageTransformerTest {
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	private ExceptionRecorder recorder;
 
 	private AgentOptions options;
@@ -165,6 +177,43 @@ public class CoverageTransformerTest {
 				t.filter(classLoader, "org/jacoco/core/Foo", protectionDomain));
 	}
 
+	@Test
+	public void testFilterDiffCodeFile() throws IOException {
+		final File diff = folder.newFile("diff.json");
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(diff),
+				"UTF-8");
+		writer.write("[{\"classFile\":\"org/example/Foo\","
+				+ "\"type\":\"MODIFY\",\"methodInfos\":[]}]");
+		writer.close();
+		options.setDiffCodeFile(diff.getPath());
+		CoverageTransformer t = createTransformer();
+		assertTrue(t.filter(classLoader, "org/example/Foo", protectionDomain));
+		assertTrue(
+				t.filter(classLoader, "org/example/Foo$1", protectionDomain));
+		assertFalse(t.filter(classLoader, "org/example/Bar", protectionDomain));
+	}
+
+	@Test
+	public void testFilterEmptyDiffCodeFile() throws IOException {
+		final File diff = folder.newFile("diff.json");
+		options.setDiffCodeFile(diff.getPath());
+		CoverageTransformer t = createTransformer();
+		assertTrue(t.filter(classLoader, "org/example/Bar", protectionDomain));
+	}
+
+	@Test
+	public void testInvalidDiffCodeFile() {
+		final File diff = new File(folder.getRoot(), "missing.json");
+		options.setDiffCodeFile(diff.getPath());
+		try {
+			createTransformer();
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage()
+					.startsWith("Can't load code diff " + diff.getPath()));
+		}
+	}
+
 	@Test
 	public void testFilterSourceLocationPositive1() {
 		CoverageTransformer t = createTransformer();
@@ -233,6 +282,37 @@ public class CoverageTransformerTest {
 				protectionDomain, getClassData(target)));
 	}
 
+	@Test
+	public void transform_should_instrument_retransformed_class_when_restoring_enabled()
+			throws Exception {
+		options.setRestoreInterval(60);
+		CoverageTransformer t = createTransformer();
+		final Class<?> target = JaCoCo.class;
+		final byte[] original = getClassData(target);
+
+		final byte[] bytes = t.transform(classLoader, target.getName(), target,
+				protectionDomain, original);
+
+		assertArrayEquals(new Instrumenter(runtime).instrument(original, ""),
+				bytes);
+	}
+
+	@Test
+	public void transform_should_restore_retransformed_class_when_marked()
+			throws Exception {
+		options.setRestoreInterval(60);
+		CoverageTransformer t = createTransformer();
+		final Class<?> target = JaCoCo.class;
+		final byte[] original = getClassData(target);
+
+		t.restore(CRC64.classId(original));
+		final byte[] bytes = t.transform(classLoader, target.getName(), target,
+				protectionDomain, original);
+
+		assertArrayEquals(new Instrumenter(runtime).restore(original, ""),
+				bytes);
+	}
+
 	private CoverageTransformer createTransformer() {
 		return new CoverageTransformer(runtime, options, recorder);
 	}
@@ -261,6 +341,11 @@ public class CoverageTransformerTest {
 			return 0;
 		}
 
+		public int generateCountsAccessor(long classid, String classname,
+				int probecount, MethodVisitor mv) {
+			return 0;
+		}
+
 		public void shutdown() {
 		}
 
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jacoco.agent.rt.internal.output.IAgentOutput;
+import org.jacoco.core.runtime.AgentOptions;
+import org.jacoco.core.runtime.RuntimeData;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link DumpScheduler}.
+ */
+public class DumpSchedulerTest implements IAgentOutput {
+
+	private ExceptionRecorder logger;
+
+	private CountDownLatch dumps;
+
+	private volatile Boolean writeExecutionDataReset;
+
+	private volatile IOException writeException;
+
+	@Before
+	public void setup() {
+		logger = new ExceptionRecorder();
+		dumps = new CountDownLatch(3);
+	}
+
+	@Test
+	public void nextDelay_should_spread_first_dump_over_interval() {
+		final DumpScheduler scheduler = new DumpScheduler(this, logger, 1000,
+				new Random(42));
+		long min = Long.MAX_VALUE;
+		long max = 0;
+		for (int i = 0; i < 1000; i++) {
+			final long delay = scheduler.nextDelay(true);
+			min = Math.min(min, delay);
+			max = Math.max(max, delay);
+		}
+		assertTrue(min >= 1 && min < 100);
+		assertTrue(max < 1000 && max >= 900);
+	}
+
+	@Test
+	public void nextDelay_should_vary_interval_by_10_percent() {
+		final DumpScheduler scheduler = new DumpScheduler(this, logger, 1000,
+				new Random(42));
+		long min = Long.MAX_VALUE;
+		long max = 0;
+		for (int i = 0; i < 1000; i++) {
+			final long delay = scheduler.nextDelay(false);
+			min = Math.min(min, delay);
+			max = Math.max(max, delay);
+		}
+		assertTrue(min >= 900 && min < 920);
+		assertTrue(max < 1100 && max >= 1080);
+	}
+
+	@Test
+	public void should_dump_periodically_until_stopped() throws Exception {
+		final DumpScheduler scheduler = new DumpScheduler(this, logger, 10,
+				new Random());
+		scheduler.start();
+
+		assertTrue(dumps.await(5, TimeUnit.SECONDS));
+		scheduler.stop();
+
+		assertEquals(Boolean.FALSE, writeExecutionDataReset);
+		writeExecutionDataReset = null;
+		Thread.sleep(50);
+		assertEquals(null, writeExecutionDataReset);
+		logger.assertNoException();
+	}
+
+	@Test
+	public void should_log_exceptions_and_continue() throws Exception {
+		writeException = new IOException("Dump failed.");
+		final DumpScheduler scheduler = new DumpScheduler(this, logger, 10,
+				new Random());
+		scheduler.start();
+
+		assertTrue(dumps.await(5, TimeUnit.SECONDS));
+		scheduler.stop();
+
+		logger.assertException(IOException.class, "Dump failed.");
+	}
+
+	@Test
+	public void stop_should_not_wait_for_next_interval() throws Exception {
+		final DumpScheduler scheduler = new DumpScheduler(this, logger, 3600000,
+				new Random());
+		scheduler.start();
+
+		final long start = System.currentTimeMillis();
+		scheduler.stop();
+
+		assertFalse(System.currentTimeMillis() - start > 1000);
+		assertEquals(null, writeExecutionDataReset);
+	}
+
+	// === IAgentOutput ===
+
+	public void startup(AgentOptions options, RuntimeData data) {
+	}
+
+	public void shutdown() {
+	}
+
+	public void writeExecutionData(boolean reset) throws IOException {
+		writeExecutionDataReset = Boolean.valueOf(reset);
+		dumps.countDown();
+		if (writeException != null) {
+			final IOException e = writeException;
+			writeException = null;
+			throw e;
+		}
+	}
+
+}
@@ -13,13 +13,29 @@
 package org.jacoco.agent.rt.internal.output;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.data.SessionInfoStore;
 import org.jacoco.core.runtime.AgentOptions;
 import org.jacoco.core.runtime.RuntimeData;
+import org.jacoco.core.tools.ExecFileLoader;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -62,6 +78,194 @@ public class FileOutputTest {
 				destFile.length() > 0);
 	}
 
+	@Test
+	public void testAppendOnlyNewlyExecutedClasses() throws Exception {
+		File destFile = folder.newFile("jacoco.exec");
+		AgentOptions options = new AgentOptions();
+		options.setDestfile(destFile.getAbsolutePath());
+		RuntimeData data = new RuntimeData();
+		data.getExecutionData(Long.valueOf(1), "Foo", 1).getProbes()[0] = true;
+		boolean[] bar = data.getExecutionData(Long.valueOf(2), "Bar", 1)
+				.getProbes();
+
+		FileOutput controller = new FileOutput();
+		controller.startup(options, data);
+		controller.writeExecutionData(false);
+		controller.writeExecutionData(false);
+		bar[0] = true;
+		controller.writeExecutionData(false);
+		controller.shutdown();
+
+		assertEquals("[Foo, Bar]", readClassNames(destFile).toString());
+	}
+
+	@Test
+	public void testAppendCountIncrements() throws Exception {
+		File destFile = folder.newFile("jacoco.exec");
+		AgentOptions options = new AgentOptions();
+		options.setDestfile(destFile.getAbsolutePath());
+		options.setCountProbes(true);
+		RuntimeData data = new RuntimeData();
+		int[] counts = data.getExecutionData(Long.valueOf(1), "Foo", 2, true)
+				.getCounts();
+
+		FileOutput controller = new FileOutput();
+		controller.startup(options, data);
+		counts[0] = 3;
+		controller.writeExecutionData(false);
+		counts[0] = 5;
+		counts[1] = 1;
+		controller.writeExecutionData(false);
+		controller.shutdown();
+
+		ExecFileLoader loader = new ExecFileLoader();
+		loader.load(destFile);
+		int[] merged = loader.getExecutionDataStore().get(1).getCounts();
+		assertEquals(5, merged[0]);
+		assertEquals(1, merged[1]);
+	}
+
+	@Test
+	public void testAppendAllClassesAfterTruncation() throws Exception {
+		File destFile = folder.newFile("jacoco.exec");
+		AgentOptions options = new AgentOptions();
+		options.setDestfile(destFile.getAbsolutePath());
+		RuntimeData data = new RuntimeData();
+		data.getExecutionData(Long.valueOf(1), "Foo", 1).getProbes()[0] = true;
+		boolean[] bar = data.getExecutionData(Long.valueOf(2), "Bar", 1)
+				.getProbes();
+
+		FileOutput controller = new FileOutput();
+		controller.startup(options, data);
+		controller.writeExecutionData(false);
+		new FileOutputStream(destFile).close();
+		bar[0] = true;
+		controller.writeExecutionData(false);
+		controller.shutdown();
+
+		assertEquals("[Foo, Bar]", readClassNames(destFile).toString());
+	}
+
+	@Test
+	public void testAppendAllClassesAfterTruncationWithReset()
+			throws Exception {
+		File destFile = folder.newFile("jacoco.exec");
+		AgentOptions options = new AgentOptions();
+		options.setDestfile(destFile.getAbsolutePath());
+		RuntimeData data = new RuntimeData();
+		boolean[] foo = data.getExecutionData(Long.valueOf(1), "Foo", 1)
+				.getProbes();
+		foo[0] = true;
+		boolean[] bar = data.getExecutionData(Long.valueOf(2), "Bar", 1)
+				.getProbes();
+
+		FileOutput controller = new FileOutput();
+		controller.startup(options, data);
+		controller.writeExecutionData(false);
+		new FileOutputStream(destFile).close();
+		bar[0] = true;
+		controller.writeExecutionData(true);
+		controller.shutdown();
+
+		assertEquals("[Foo, Bar]", readClassNames(destFile).toString());
+		assertFalse(foo[0]);
+		assertFalse(bar[0]);
+	}
+
+	@Test
+	public void testOverwriteWithAllClasses() throws Exception {
+		File destFile = folder.newFile("jacoco.exec");
+		AgentOptions options = new AgentOptions();
+		options.setDestfile(destFile.getAbsolutePath());
+		options.setAppend(false);
+		RuntimeData data = new RuntimeData();
+		data.getExecutionData(Long.valueOf(1), "Foo", 1).getProbes()[0] = true;
+
+		FileOutput controller = new FileOutput();
+		controller.startup(options, data);
+		controller.writeExecutionData(false);
+		controller.writeExecutionData(false);
+		controller.shutdown();
+
+		assertEquals("[Foo]", readClassNames(destFile).toString());
+	}
+
+	@Test
+	public void testWriteSparseBlocks() throws Exception {
+		File destFile = folder.newFile("jacoco.exec");
+		AgentOptions options = new AgentOptions();
+		options.setDestfile(destFile.getAbsolutePath());
+		options.setSparseBlocks(true);
+		RuntimeData data = new RuntimeData();
+		data.getExecutionData(Long.valueOf(1), "Foo", 64).getProbes()[3] = true;
+
+		FileOutput controller = new FileOutput();
+		controller.startup(options, data);
+		controller.writeExecutionData(false);
+		controller.shutdown();
+
+		assertEquals("[16, 19]", readBlockTypes(destFile));
+	}
+
+	@Test
+	public void testAsyncWriteData() throws Exception {
+		File destFile = folder.newFile("jacoco.exec");
+		AgentOptions options = new AgentOptions();
+		options.setDestfile(destFile.getAbsolutePath());
+		options.setAsyncWrite(true);
+		RuntimeData data = new RuntimeData();
+		data.getExecutionData(Long.valueOf(1), "Foo", 1).getProbes()[0] = true;
+
+		FileOutput controller = new FileOutput();
+		controller.startup(options, data);
+		controller.writeExecutionData(false);
+		controller.shutdown();
+
+		assertEquals("[Foo]", readClassNames(destFile).toString());
+	}
+
+	@Test
+	public void testReportWriteFailure() throws Exception {
+		File folder = this.folder.newFolder("folder");
+		File destFile = new File(folder, "jacoco.exec");
+		AgentOptions options = new AgentOptions();
+		options.setDestfile(destFile.getAbsolutePath());
+
+		FileOutput controller = new FileOutput();
+		controller.startup(options, new RuntimeData());
+		assertTrue(destFile.delete());
+		assertTrue(folder.delete());
+
+		try {
+			controller.writeExecutionData(false);
+			fail("IOException expected");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testReportAsyncWriteFailureOnShutdown() throws Exception {
+		File folder = this.folder.newFolder("folder");
+		File destFile = new File(folder, "jacoco.exec");
+		AgentOptions options = new AgentOptions();
+		options.setDestfile(destFile.getAbsolutePath());
+		options.setAsyncWrite(true);
+
+		FileOutput controller = new FileOutput();
+		controller.startup(options, new RuntimeData());
+		assertTrue(destFile.delete());
+		assertTrue(folder.delete());
+		controller.writeExecutionData(false);
+
+		try {
+			controller.shutdown();
+			fail("IOException expected");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
 	@Test(expected = IOException.class)
 	public void testInvalidDestFile() throws Exception {
 		AgentOptions options = new AgentOptions();
@@ -72,4 +276,49 @@ public class FileOutputTest {
 		controller.startup(options, new RuntimeData());
 	}
 
+	private static String readBlockTypes(final File file) throws IOException {
+		final List<Byte> types = new ArrayList<Byte>();
+		final InputStream in = new FileInputStream(file);
+		try {
+			final ExecutionDataReader reader = new ExecutionDataReader(in) {
+				@Override
+				protected boolean readBlock(final byte blocktype)
+						throws IOException {
+					if (blocktype != ExecutionDataWriter.BLOCK_HEADER) {
+						types.add(Byte.valueOf(blocktype));
+					}
+					return super.readBlock(blocktype);
+				}
+			};
+			reader.setSessionInfoVisitor(new SessionInfoStore());
+			reader.setExecutionDataVisitor(new ExecutionDataStore());
+			reader.read();
+		} finally {
+			in.close();
+		}
+		return types.toString();
+	}
+
+	private static List<String> readClassNames(final File file)
+			throws IOException {
+		final List<String> names = new ArrayList<String>();
+		final InputStream in = new FileInputStream(file);
+		try {
+			final ExecutionDataReader reader = new ExecutionDataReader(in);
+			reader.setSessionInfoVisitor(new ISessionInfoVisitor() {
+				public void visitSessionInfo(final SessionInfo info) {
+				}
+			});
+			reader.setExecutionDataVisitor(new IExecutionDataVisitor() {
+				public void visitClassExecution(final ExecutionData data) {
+					names.add(data.getName());
+				}
+			});
+			reader.read();
+		} finally {
+			in.close();
+		}
+		return names;
+	}
+
 }
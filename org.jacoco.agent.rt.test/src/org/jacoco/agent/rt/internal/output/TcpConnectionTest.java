@@ -158,6 +158,49 @@ public class TcpConnectionTest extends ExecutorTestBase {
 		f.get();
 	}
 
+	@Test
+	public void testRemoteDeltaDump() throws Exception {
+		data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
+				.getProbes()[0] = true;
+
+		final RemoteControlWriter remoteWriter = new RemoteControlWriter(
+				mockConnection.getSocketB().getOutputStream());
+
+		final TcpConnection con = new TcpConnection(mockConnection.getSocketA(),
+				data);
+		con.init();
+
+		final Future<Void> f = executor.submit(new Callable<Void>() {
+			public Void call() throws Exception {
+				con.run();
+				return null;
+			}
+		});
+
+		assertBlocks(f);
+
+		final RemoteControlReader remoteReader = new RemoteControlReader(
+				mockConnection.getSocketB().getInputStream());
+		remoteReader.setSessionInfoVisitor(new SessionInfoStore());
+
+		remoteWriter.visitDeltaDumpCommand(0, false);
+		ExecutionDataStore execStore = new ExecutionDataStore();
+		remoteReader.setExecutionDataVisitor(execStore);
+		assertTrue(remoteReader.read());
+		assertEquals("Foo", execStore.get(0x12345678).getName());
+		final long id = remoteReader.getDeltaDumpId();
+
+		remoteWriter.visitDeltaDumpCommand(id, false);
+		execStore = new ExecutionDataStore();
+		remoteReader.setExecutionDataVisitor(execStore);
+		assertTrue(remoteReader.read());
+		assertTrue(execStore.getContents().isEmpty());
+		assertTrue(id != remoteReader.getDeltaDumpId());
+
+		con.close();
+		f.get();
+	}
+
 	@Test
 	public void testLocalDump() throws Exception {
 		data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
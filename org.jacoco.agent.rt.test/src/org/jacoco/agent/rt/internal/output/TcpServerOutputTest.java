@@ -14,15 +14,17 @@
 package org.jacoco.agent.rt.internal.output;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetAddress;
-import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
 import java.util.List;
 
 import org.jacoco.agent.rt.internal.ExceptionRecorder;
@@ -34,6 +36,7 @@ import org.jacoco.core.runtime.AgentOptions;
 import org.jacoco.core.runtime.RemoteControlReader;
 import org.jacoco.core.runtime.RemoteControlWriter;
 import org.jacoco.core.runtime.RuntimeData;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -46,50 +49,68 @@ public class TcpServerOutputTest {
 
 	private AgentOptions options;
 
-	private MockServerSocket serverSocket;
+	private ServerSocketChannel serverChannel;
 
 	private TcpServerOutput controller;
 
 	private RuntimeData data;
 
+	private boolean shutdown;
+
 	@Before
 	public void setup() throws Exception {
 		options = new AgentOptions();
+		options.setPort(0);
 		logger = new ExceptionRecorder();
-		serverSocket = new MockServerSocket();
 		controller = new TcpServerOutput(logger) {
 			@Override
-			protected ServerSocket createServerSocket(AgentOptions options)
-					throws IOException {
-				return serverSocket;
+			protected ServerSocketChannel createServerChannel(
+					AgentOptions options) throws IOException {
+				serverChannel = super.createServerChannel(options);
+				return serverChannel;
 			}
 		};
 		data = new RuntimeData();
+		data.setSessionId("stubid");
 		controller.startup(options, data);
 	}
 
+	@After
+	public void teardown() throws Exception {
+		if (!shutdown) {
+			controller.shutdown();
+		}
+	}
+
 	@Test
 	public void testShutdownWithoutConnection() throws Exception {
-		serverSocket.waitForAccept();
-		controller.shutdown();
+		shutdown();
 		logger.assertNoException();
 	}
 
 	@Test
 	public void testShutdownWithConnection() throws Exception {
-		serverSocket.waitForAccept();
-		new ExecutionDataWriter(serverSocket.connect().getOutputStream());
-		controller.shutdown();
+		final Socket socket = connect();
+		new ExecutionDataWriter(socket.getOutputStream());
+		shutdown();
 		logger.assertNoException();
 	}
 
+	@Test
+	public void testWriteExecutionDataWithoutConnection() throws Exception {
+		data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
+				.getProbes()[0] = true;
+		controller.writeExecutionData(true);
+		assertTrue(data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
+				.getProbes()[0]);
+	}
+
 	@Test
 	public void testWriteExecutionData() throws Exception {
 		data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
 				.getProbes()[0] = true;
-		data.setSessionId("stubid");
 
-		final Socket socket = serverSocket.connect();
+		final Socket socket = connect();
 		final RemoteControlWriter remoteWriter = new RemoteControlWriter(
 				socket.getOutputStream());
 		final RemoteControlReader remoteReader = new RemoteControlReader(
@@ -102,34 +123,139 @@ public class TcpServerOutputTest {
 		// Now the actual test starts:
 		controller.writeExecutionData(false);
 
-		final ExecutionDataStore execStore = new ExecutionDataStore();
-		remoteReader.setExecutionDataVisitor(execStore);
-		final SessionInfoStore infoStore = new SessionInfoStore();
-		remoteReader.setSessionInfoVisitor(infoStore);
+		assertDump(remoteReader);
+		logger.assertNoException();
+	}
+
+	@Test
+	public void testWriteExecutionDataWithReset() throws Exception {
+		final boolean[] probes = data
+				.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
+				.getProbes();
+		probes[0] = true;
+
+		final Socket socket = connect();
+		final RemoteControlWriter remoteWriter = new RemoteControlWriter(
+				socket.getOutputStream());
+		final RemoteControlReader remoteReader = new RemoteControlReader(
+				socket.getInputStream());
+		remoteWriter.visitDumpCommand(false, false);
 		remoteReader.read();
 
-		assertEquals("Foo", execStore.get(0x12345678).getName());
+		controller.writeExecutionData(true);
 
-		final List<SessionInfo> infos = infoStore.getInfos();
-		assertEquals(1, infos.size());
-		assertEquals("stubid", infos.get(0).getId());
+		assertFalse(probes[0]);
+		assertDump(remoteReader);
+		logger.assertNoException();
+	}
+
+	@Test
+	public void testRemoteDumpWithMultipleClients() throws Exception {
+		data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
+				.getProbes()[0] = true;
+
+		final Socket socket1 = connect();
+		final Socket socket2 = connect();
+		final RemoteControlWriter remoteWriter1 = new RemoteControlWriter(
+				socket1.getOutputStream());
+		final RemoteControlWriter remoteWriter2 = new RemoteControlWriter(
+				socket2.getOutputStream());
+		final RemoteControlReader remoteReader1 = new RemoteControlReader(
+				socket1.getInputStream());
+		final RemoteControlReader remoteReader2 = new RemoteControlReader(
+				socket2.getInputStream());
+
+		remoteWriter1.visitDumpCommand(true, false);
+		remoteWriter2.visitDumpCommand(true, false);
+
+		assertDump(remoteReader2);
+		assertDump(remoteReader1);
+
+		remoteWriter1.visitDeltaDumpCommand(0, false);
+		assertDump(remoteReader1);
+		assertTrue(remoteReader1.getDeltaDumpId() != 0);
 
 		logger.assertNoException();
-		controller.shutdown();
+	}
+
+	@Test
+	public void testRemoteDumpWithFragmentedCommands() throws Exception {
+		data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
+				.getProbes()[0] = true;
+
+		final Socket socket = connect();
+		final OutputStream out = socket.getOutputStream();
+		new RemoteControlWriter(new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				out.write(b);
+				out.flush();
+				try {
+					Thread.sleep(1);
+				} catch (InterruptedException e) {
+					throw new IOException();
+				}
+			}
+		}).visitDeltaDumpCommand(0, false);
+
+		assertDump(new RemoteControlReader(socket.getInputStream()));
+		logger.assertNoException();
+	}
+
+	@Test
+	public void testRemoteDumpWithLargeData() throws Exception {
+		for (int i = 0; i < 20000; i++) {
+			final boolean[] probes = data
+					.getExecutionData(Long.valueOf(i), "Class" + i, 200)
+					.getProbes();
+			for (int p = 0; p < probes.length; p += 2) {
+				probes[p] = true;
+			}
+		}
+
+		final Socket socket = connect();
+		new RemoteControlWriter(socket.getOutputStream()).visitDumpCommand(true,
+				false);
+
+		final RemoteControlReader remoteReader = new RemoteControlReader(
+				socket.getInputStream());
+		final ExecutionDataStore execStore = new ExecutionDataStore();
+		remoteReader.setExecutionDataVisitor(execStore);
+		remoteReader.setSessionInfoVisitor(new SessionInfoStore());
+		assertTrue(remoteReader.read());
+		assertEquals(20000, execStore.getContents().size());
+		logger.assertNoException();
 	}
 
 	@Test
 	public void testInvalidHeader() throws Exception {
-		final Socket socket = serverSocket.connect();
+		final Socket socket = connect();
 		final OutputStream out = socket.getOutputStream();
 		out.write(0xca);
 		out.write(0xfe);
 		out.write(0xba);
 		out.write(0xbe);
-		serverSocket.waitForAccept();
+		assertClosed(socket);
 		logger.assertException(IOException.class,
 				"Invalid execution data file.");
-		controller.shutdown();
+	}
+
+	@Test
+	public void testRemoteClose() throws Exception {
+		data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
+				.getProbes()[0] = true;
+
+		final Socket socket = connect();
+		new ExecutionDataWriter(socket.getOutputStream());
+		socket.close();
+
+		// Server must still accept and serve other clients:
+		final Socket other = connect();
+		final RemoteControlWriter remoteWriter = new RemoteControlWriter(
+				other.getOutputStream());
+		remoteWriter.visitDumpCommand(true, false);
+		assertDump(new RemoteControlReader(other.getInputStream()));
+		logger.assertNoException();
 	}
 
 	@Test
@@ -144,4 +270,36 @@ public class TcpServerOutputTest {
 		assertNull(addr);
 	}
 
+	private Socket connect() throws IOException {
+		return new Socket(InetAddress.getByName(null),
+				serverChannel.socket().getLocalPort());
+	}
+
+	private void shutdown() throws Exception {
+		shutdown = true;
+		controller.shutdown();
+	}
+
+	private void assertClosed(final Socket socket) throws IOException {
+		final InputStream in = socket.getInputStream();
+		while (in.read() != -1) {
+			// skip header sent by the server
+		}
+	}
+
+	private void assertDump(final RemoteControlReader remoteReader)
+			throws IOException {
+		final ExecutionDataStore execStore = new ExecutionDataStore();
+		remoteReader.setExecutionDataVisitor(execStore);
+		final SessionInfoStore infoStore = new SessionInfoStore();
+		remoteReader.setSessionInfoVisitor(infoStore);
+
+		assertTrue(remoteReader.read());
+
+		assertEquals("Foo", execStore.get(0x12345678).getName());
+		final List<SessionInfo> infos = infoStore.getInfos();
+		assertEquals(1, infos.size());
+		assertEquals("stubid", infos.get(0).getId());
+	}
+
 }
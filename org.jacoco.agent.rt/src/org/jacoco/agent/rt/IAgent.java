@@ -58,7 +58,9 @@ public interface IAgent {
 
 	/**
 	 * Triggers a dump of the current execution data through the configured
-	 * output.
+	 * output. If the agent option <code>asyncwrite</code> is enabled in
+	 * <code>file</code> output mode this method returns before the data is
+	 * written and failures to write it are reported by the next call.
 	 *
 	 * @param reset
 	 *            if <code>true</code> the current execution data is cleared
@@ -15,6 +15,7 @@ package org.jacoco.agent.rt.internal;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.util.Random;
 import java.util.concurrent.Callable;
 
 import org.jacoco.agent.rt.IAgent;
@@ -89,6 +90,10 @@ public class Agent implements IAgent {
 
 	private Callable<Void> jmxRegistration;
 
+	private DumpScheduler dumpScheduler;
+
+	private ClassRestorer classRestorer;
+
 	/**
 	 * Creates a new agent with the given agent options.
 	 *
@@ -103,6 +108,17 @@ public class Agent implements IAgent {
 		this.data = new RuntimeData();
 	}
 
+	/**
+	 * Sets the started class restorer which is stopped when the agent is shut
+	 * down.
+	 *
+	 * @param classRestorer
+	 *            restorer running in the background
+	 */
+	void setClassRestorer(final ClassRestorer classRestorer) {
+		this.classRestorer = classRestorer;
+	}
+
 	/**
 	 * Returns the runtime data object created by this agent
 	 *
@@ -130,6 +146,11 @@ public class Agent implements IAgent {
 			if (options.getJmx()) {
 				jmxRegistration = new JmxRegistration(this);
 			}
+			if (options.getDumpInterval() > 0) {
+				dumpScheduler = new DumpScheduler(output, logger,
+						options.getDumpInterval() * 1000L, new Random());
+				dumpScheduler.start();
+			}
 		} catch (final Exception e) {
 			logger.logExeption(e);
 			throw e;
@@ -141,6 +162,12 @@ public class Agent implements IAgent {
 	 */
 	public void shutdown() {
 		try {
+			if (dumpScheduler != null) {
+				dumpScheduler.stop();
+			}
+			if (classRestorer != null) {
+				classRestorer.stop();
+			}
 			if (options.getDumpOnExit()) {
 				output.writeExecutionData(false);
 			}
@@ -207,7 +234,8 @@ public class Agent implements IAgent {
 	public byte[] getExecutionData(final boolean reset) {
 		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
 		try {
-			final ExecutionDataWriter writer = new ExecutionDataWriter(buffer);
+			final ExecutionDataWriter writer = new ExecutionDataWriter(buffer,
+					options.getExtendedBlocks());
 			data.collect(writer, writer, reset);
 		} catch (final IOException e) {
 			// Must not happen with ByteArrayOutputStream
@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.runtime.RuntimeData;
+
+/**
+ * Background thread which periodically looks for loaded classes whose probes
+ * have all been executed and retransforms them back to their original code, so
+ * that hot code does not pay for probes any more once it is fully covered. The
+ * execution data of restored classes is kept in the runtime data, but restored
+ * classes do not record further executions. Therefore restored classes are
+ * instrumented again when the execution data has been reset.
+ *
+ * Retransformation is only available since Java 6, therefore the corresponding
+ * methods of {@link Instrumentation} are called through reflection.
+ */
+class ClassRestorer {
+
+	private final Instrumentation inst;
+
+	private final RuntimeData data;
+
+	private final CoverageTransformer transformer;
+
+	private final IExceptionLogger logger;
+
+	private final long interval;
+
+	/** names of the restored classes by class id */
+	private final Map<Long, String> restored = new HashMap<Long, String>();
+
+	/** number of resets when the restored classes were checked */
+	private long resetCount;
+
+	private final Object lock = new Object();
+
+	private boolean stopped;
+
+	private Thread worker;
+
+	/**
+	 * Creates a new restorer which is not started yet.
+	 *
+	 * @param inst
+	 *            instrumentation callback provided by the JVM
+	 * @param data
+	 *            runtime data with the probes of all instrumented classes
+	 * @param transformer
+	 *            transformer which instrumented the classes
+	 * @param logger
+	 *            logger for exceptions of failed retransformations
+	 * @param interval
+	 *            interval between two checks for covered classes in
+	 *            milliseconds
+	 */
+	ClassRestorer(final Instrumentation inst, final RuntimeData data,
+			final CoverageTransformer transformer,
+			final IExceptionLogger logger, final long interval) {
+		this.inst = inst;
+		this.data = data;
+		this.transformer = transformer;
+		this.logger = logger;
+		this.interval = interval;
+		this.resetCount = data.getResetCount();
+	}
+
+	/**
+	 * Registers the transformer with retransformation capability and starts the
+	 * background thread.
+	 *
+	 * @throws Exception
+	 *             if the JVM does not support retransformation
+	 */
+	void start() throws Exception {
+		Instrumentation.class.getMethod("addTransformer",
+				ClassFileTransformer.class, boolean.class)
+				.invoke(inst, transformer, Boolean.TRUE);
+		worker = new Thread(new Runnable() {
+			public void run() {
+				restorePeriodically();
+			}
+		});
+		worker.setName(getClass().getName());
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Stops the background thread and waits until a retransformation which
+	 * might be in progress has been completed.
+	 *
+	 * @throws InterruptedException
+	 *             if the current thread has been interrupted while waiting
+	 */
+	void stop() throws InterruptedException {
+		synchronized (lock) {
+			stopped = true;
+			lock.notifyAll();
+		}
+		worker.join();
+	}
+
+	/**
+	 * Retransforms all loaded classes which have been fully covered since the
+	 * last call. Failures of single classes are logged.
+	 *
+	 * @return number of retransformed classes
+	 * @throws Exception
+	 *             if the JVM does not support retransformation
+	 */
+	int restoreCoveredClasses() throws Exception {
+		final Set<String> names = new HashSet<String>();
+		data.snapshot(false).accept(new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData executionData) {
+				final Long id = Long.valueOf(executionData.getId());
+				if (!restored.containsKey(id)
+						&& isCovered(executionData.getProbes())) {
+					restored.put(id, executionData.getName());
+					transformer.restore(executionData.getId());
+					names.add(executionData.getName());
+				}
+			}
+		}, new ISessionInfoVisitor() {
+			public void visitSessionInfo(final SessionInfo info) {
+				// nothing to do
+			}
+		});
+		return retransform(names);
+	}
+
+	/**
+	 * Retransforms all restored classes back to instrumented code if the
+	 * execution data has been reset since the last call, as restored classes
+	 * would not record executions after the reset. Failures of single classes
+	 * are logged.
+	 *
+	 * @return number of retransformed classes
+	 * @throws Exception
+	 *             if the JVM does not support retransformation
+	 */
+	int reinstrumentRestoredClasses() throws Exception {
+		final long count = data.getResetCount();
+		if (count == resetCount) {
+			return 0;
+		}
+		resetCount = count;
+		final Set<String> names = new HashSet<String>(restored.values());
+		for (final Long id : restored.keySet()) {
+			transformer.reinstrument(id.longValue());
+		}
+		restored.clear();
+		return retransform(names);
+	}
+
+	private int retransform(final Set<String> names) throws Exception {
+		if (names.isEmpty()) {
+			return 0;
+		}
+		final Method isModifiable = Instrumentation.class
+				.getMethod("isModifiableClass", Class.class);
+		final Method retransform = Instrumentation.class
+				.getMethod("retransformClasses", Class[].class);
+		final List<Class<?>> classes = new ArrayList<Class<?>>();
+		for (final Class<?> c : inst.getAllLoadedClasses()) {
+			if (names.contains(c.getName().replace('.', '/'))
+					&& Boolean.TRUE.equals(isModifiable.invoke(inst, c))) {
+				classes.add(c);
+			}
+		}
+		int count = 0;
+		// Retransform one by one, as a single failure would abort a batch:
+		for (final Class<?> c : classes) {
+			try {
+				retransform.invoke(inst, (Object) new Class<?>[] { c });
+				count++;
+			} catch (final InvocationTargetException e) {
+				final Throwable cause = e.getCause();
+				logger.logExeption(
+						cause instanceof Exception ? (Exception) cause : e);
+			}
+		}
+		return count;
+	}
+
+	private static boolean isCovered(final boolean[] probes) {
+		for (final boolean p : probes) {
+			if (!p) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void restorePeriodically() {
+		while (await()) {
+			try {
+				reinstrumentRestoredClasses();
+				restoreCoveredClasses();
+			} catch (final Exception e) {
+				logger.logExeption(e);
+			}
+		}
+	}
+
+	/**
+	 * Waits for the interval.
+	 *
+	 * @return <code>false</code> if the restorer has been stopped
+	 */
+	private boolean await() {
+		final long deadline = System.currentTimeMillis() + interval;
+		synchronized (lock) {
+			long remaining = interval;
+			while (!stopped && remaining > 0) {
+				try {
+					lock.wait(remaining);
+				} catch (final InterruptedException e) {
+					return false;
+				}
+				remaining = deadline - System.currentTimeMillis();
+			}
+			return !stopped;
+		}
+	}
+
+}
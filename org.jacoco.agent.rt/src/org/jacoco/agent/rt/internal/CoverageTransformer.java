@@ -12,12 +12,19 @@
  *******************************************************************************/
 package org.jacoco.agent.rt.internal;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.IllegalClassFormatException;
 import java.security.CodeSource;
 import java.security.ProtectionDomain;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.jacoco.core.instr.Instrumenter;
+import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.internal.diff.DiffScope;
 import org.jacoco.core.runtime.AgentOptions;
 import org.jacoco.core.runtime.IRuntime;
 import org.jacoco.core.runtime.WildcardMatcher;
@@ -50,6 +57,13 @@ public class CoverageTransformer implements ClassFileTransformer {
 
 	private final boolean inclNoLocationClasses;
 
+	private final DiffScope diffScope;
+
+	private final boolean retransform;
+
+	private final Set<Long> restoredClasses = Collections
+			.synchronizedSet(new HashSet<Long>());
+
 	/**
 	 * New transformer with the given delegates.
 	 *
@@ -59,6 +73,8 @@ public class CoverageTransformer implements ClassFileTransformer {
 	 *            configuration options for the generator
 	 * @param logger
 	 *            logger for exceptions during instrumentation
+	 * @throws IllegalArgumentException
+	 *             if the code diff specified in the options can't be loaded
 	 */
 	public CoverageTransformer(final IRuntime runtime,
 			final AgentOptions options, final IExceptionLogger logger) {
@@ -71,6 +87,27 @@ public class CoverageTransformer implements ClassFileTransformer {
 		classFileDumper = new ClassFileDumper(options.getClassDumpDir());
 		inclBootstrapClasses = options.getInclBootstrapClasses();
 		inclNoLocationClasses = options.getInclNoLocationClasses();
+		diffScope = loadDiffScope(options.getDiffCodeFile());
+		instrumenter.setDiffScope(diffScope);
+		instrumenter.setCheckProbes(options.getCheckProbes());
+		instrumenter.setCountProbes(options.getCountProbes());
+		instrumenter.setMethodCoverageOnly(
+				options.getGranularity() == AgentOptions.Granularity.method);
+		retransform = options.getRestoreInterval() > 0;
+	}
+
+	private static DiffScope loadDiffScope(final String file) {
+		if (file == null) {
+			return null;
+		}
+		final DiffScope scope;
+		try {
+			scope = DiffScope.load(new File(file));
+		} catch (final IOException e) {
+			throw new IllegalArgumentException(String.format(
+					"Can't load code diff %s: %s", file, e.getMessage()), e);
+		}
+		return scope.isEmpty() ? null : scope;
 	}
 
 	public byte[] transform(final ClassLoader loader, final String classname,
@@ -78,8 +115,8 @@ public class CoverageTransformer implements ClassFileTransformer {
 			final ProtectionDomain protectionDomain,
 			final byte[] classfileBuffer) throws IllegalClassFormatException {
 
-		// We do not support class retransformation:
-		if (classBeingRedefined != null) {
+		// Retransformation is only supported to restore covered classes:
+		if (classBeingRedefined != null && !retransform) {
 			return null;
 		}
 
@@ -88,7 +125,12 @@ public class CoverageTransformer implements ClassFileTransformer {
 		}
 
 		try {
-			classFileDumper.dump(classname, classfileBuffer);
+			if (classBeingRedefined == null) {
+				classFileDumper.dump(classname, classfileBuffer);
+			} else if (restoredClasses
+					.contains(Long.valueOf(CRC64.classId(classfileBuffer)))) {
+				return instrumenter.restore(classfileBuffer, classname);
+			}
 			return instrumenter.instrument(classfileBuffer, classname);
 		} catch (final Exception ex) {
 			final IllegalClassFormatException wrapper = new IllegalClassFormatException(
@@ -100,6 +142,30 @@ public class CoverageTransformer implements ClassFileTransformer {
 		}
 	}
 
+	/**
+	 * Marks the class with the given id to be restored to its original code
+	 * when it is retransformed. Other retransformed classes are instrumented
+	 * again. Retransformation is only supported if restoring classes is enabled
+	 * in the agent options.
+	 *
+	 * @param classId
+	 *            id of the class to restore
+	 */
+	void restore(final long classId) {
+		restoredClasses.add(Long.valueOf(classId));
+	}
+
+	/**
+	 * Marks the class with the given id to be instrumented again when it is
+	 * retransformed after it has been restored.
+	 *
+	 * @param classId
+	 *            id of the class to instrument again
+	 */
+	void reinstrument(final long classId) {
+		restoredClasses.remove(Long.valueOf(classId));
+	}
+
 	/**
 	 * Checks whether this class should be instrumented.
 	 *
@@ -131,7 +197,9 @@ public class CoverageTransformer implements ClassFileTransformer {
 
 				includes.matches(classname) &&
 
-				!excludes.matches(classname);
+				!excludes.matches(classname) &&
+
+				(diffScope == null || diffScope.containsClass(classname));
 	}
 
 	/**
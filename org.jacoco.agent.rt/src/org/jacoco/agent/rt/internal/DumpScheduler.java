@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import java.util.Random;
+
+import org.jacoco.agent.rt.internal.output.IAgentOutput;
+
+/**
+ * Background thread which periodically dumps execution data to an agent output.
+ * To avoid that many agents started at the same time also write at the same
+ * time the first dump happens after a random fraction of the interval and every
+ * following interval is randomly varied by up to 10%. As the next dump is only
+ * scheduled after the previous one has completed slow outputs never cause dumps
+ * to pile up.
+ */
+class DumpScheduler {
+
+	private final IAgentOutput output;
+
+	private final IExceptionLogger logger;
+
+	private final long interval;
+
+	private final Random random;
+
+	private final Object lock = new Object();
+
+	private boolean stopped;
+
+	private Thread worker;
+
+	/**
+	 * Creates a new scheduler which is not started yet.
+	 *
+	 * @param output
+	 *            output to dump execution data to
+	 * @param logger
+	 *            logger for exceptions of failed dumps
+	 * @param interval
+	 *            average interval between two dumps in milliseconds
+	 * @param random
+	 *            source for the random variation of the intervals
+	 */
+	DumpScheduler(final IAgentOutput output, final IExceptionLogger logger,
+			final long interval, final Random random) {
+		this.output = output;
+		this.logger = logger;
+		this.interval = interval;
+		this.random = random;
+	}
+
+	/**
+	 * Starts the background thread.
+	 */
+	void start() {
+		worker = new Thread(new Runnable() {
+			public void run() {
+				dumpPeriodically();
+			}
+		});
+		worker.setName(getClass().getName());
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Stops the background thread and waits until a dump which might be in
+	 * progress has been completed.
+	 *
+	 * @throws InterruptedException
+	 *             if the current thread has been interrupted while waiting
+	 */
+	void stop() throws InterruptedException {
+		synchronized (lock) {
+			stopped = true;
+			lock.notifyAll();
+		}
+		worker.join();
+	}
+
+	/**
+	 * Calculates the delay before the next dump.
+	 *
+	 * @param first
+	 *            whether this is the delay before the first dump
+	 * @return delay in milliseconds
+	 */
+	long nextDelay(final boolean first) {
+		final double factor;
+		if (first) {
+			factor = random.nextDouble();
+		} else {
+			factor = 0.9 + 0.2 * random.nextDouble();
+		}
+		return Math.max(1, (long) (interval * factor));
+	}
+
+	private void dumpPeriodically() {
+		long delay = nextDelay(true);
+		while (await(delay)) {
+			try {
+				output.writeExecutionData(false);
+			} catch (final Exception e) {
+				logger.logExeption(e);
+			}
+			delay = nextDelay(false);
+		}
+	}
+
+	/**
+	 * Waits for the given delay.
+	 *
+	 * @return <code>false</code> if the scheduler has been stopped
+	 */
+	private boolean await(final long delay) {
+		final long deadline = System.currentTimeMillis() + delay;
+		synchronized (lock) {
+			long remaining = delay;
+			while (!stopped && remaining > 0) {
+				try {
+					lock.wait(remaining);
+				} catch (final InterruptedException e) {
+					return false;
+				}
+				remaining = deadline - System.currentTimeMillis();
+			}
+			return !stopped;
+		}
+	}
+
+}
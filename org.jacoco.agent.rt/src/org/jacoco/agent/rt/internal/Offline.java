@@ -62,4 +62,21 @@ public final class Offline {
 				.getProbes();
 	}
 
+	/**
+	 * API for offline instrumented classes with counting probes.
+	 *
+	 * @param classid
+	 *            class identifier
+	 * @param classname
+	 *            VM class name
+	 * @param probecount
+	 *            probe count for this class
+	 * @return execution counts instance for this class
+	 */
+	public static int[] getCounts(final long classid, final String classname,
+			final int probecount) {
+		return getRuntimeData().getExecutionData(Long.valueOf(classid),
+				classname, probecount, true).getCounts();
+	}
+
 }
@@ -51,8 +51,17 @@ public final class PreMain {
 
 		final IRuntime runtime = createRuntime(inst);
 		runtime.startup(agent.getData());
-		inst.addTransformer(new CoverageTransformer(runtime, agentOptions,
-				IExceptionLogger.SYSTEM_ERR));
+		final CoverageTransformer transformer = new CoverageTransformer(runtime,
+				agentOptions, IExceptionLogger.SYSTEM_ERR);
+		if (agentOptions.getRestoreInterval() > 0) {
+			final ClassRestorer restorer = new ClassRestorer(inst,
+					agent.getData(), transformer, IExceptionLogger.SYSTEM_ERR,
+					agentOptions.getRestoreInterval() * 1000L);
+			restorer.start();
+			agent.setClassRestorer(restorer);
+		} else {
+			inst.addTransformer(transformer);
+		}
 	}
 
 	private static IRuntime createRuntime(final Instrumentation inst)
@@ -7,15 +7,17 @@
  * SPDX-License-Identifier: EPL-2.0
  *
  * Contributors:
- *    Brock Janiczak - initial API and implementation
+ *    Marc R. Hoffmann - initial API and implementation
  *
  *******************************************************************************/
 package org.jacoco.agent.rt.internal.output;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import org.jacoco.core.data.ExecutionDataWriter;
 import org.jacoco.core.runtime.AgentOptions;
@@ -27,7 +29,25 @@ import org.jacoco.core.runtime.RuntimeData;
  * <ul>
  * <li>destfile</li>
  * <li>append</li>
+ * <li>asyncwrite</li>
  * </ul>
+ *
+ * Dumps are serialized into a memory buffer and written to the file. With
+ * asyncwrite the buffer is written by a background thread, so callers never
+ * wait for disk I/O. While one buffer is written the next dump is collected
+ * into a second buffer. In append mode subsequent dumps are appended to this
+ * buffer, otherwise it is replaced as only the latest dump matters. A failure
+ * of the background thread is reported by the next call of
+ * {@link #writeExecutionData(boolean)} or {@link #shutdown()}, which waits
+ * until all dumps have been written. In append mode the dumps which could not
+ * be written are written again with the next dump.
+ *
+ * In append mode repeated dumps of the same agent, e.g. periodic dumps, only
+ * append classes with probes which have been executed since the previous dump
+ * to the file. If the file has been truncated or removed in the meantime the
+ * complete execution data is written again. This is not possible for data which
+ * has been collected before a reset but not written yet, such dumps are written
+ * as they are.
  */
 public class FileOutput implements IAgentOutput {
 
@@ -37,38 +57,242 @@ public class FileOutput implements IAgentOutput {
 
 	private boolean append;
 
+	/** Whether execution data is written with extended blocks. */
+	private boolean extended;
+
+	/** Background thread writing the dumps or <code>null</code>. */
+	private Thread worker;
+
+	/** Dumps not handed over to the background thread yet. */
+	private Dumps pending;
+
+	/** Whether the background thread is writing a dump right now. */
+	private boolean writing;
+
+	private boolean running;
+
+	private IOException failure;
+
+	/** Dumps which could not be written in append mode. */
+	private Dumps lost;
+
+	/** Identifier of the last delta dump collected for the file. */
+	private long deltaDumpId;
+
+	/** File length after the last delta dump, only used by the writer. */
+	private long deltaDumpLength;
+
 	public final void startup(final AgentOptions options,
 			final RuntimeData data) throws IOException {
 		this.data = data;
 		this.destFile = new File(options.getDestfile()).getAbsoluteFile();
 		this.append = options.getAppend();
+		this.extended = options.getExtendedBlocks();
 		final File folder = destFile.getParentFile();
 		if (folder != null) {
 			folder.mkdirs();
 		}
 		// Make sure we can write to the file:
 		openFile().close();
+		if (options.getAsyncWrite()) {
+			startWorker();
+		}
+	}
+
+	private void startWorker() {
+		running = true;
+		worker = new Thread(new Runnable() {
+			public void run() {
+				writePending();
+			}
+		});
+		worker.setName(getClass().getName());
+		worker.setDaemon(true);
+		worker.start();
 	}
 
-	public void writeExecutionData(final boolean reset) throws IOException {
-		final OutputStream output = openFile();
+	/**
+	 * Collects the current execution data into a memory buffer and writes it to
+	 * the file. With asyncwrite the buffer is written by the background thread.
+	 *
+	 * @throws IOException
+	 *             if writing this dump or, with asyncwrite, a previous dump has
+	 *             failed
+	 */
+	public synchronized void writeExecutionData(final boolean reset)
+			throws IOException {
+		checkFailure();
+		if (append && !writing && destFile.length() < deltaDumpLength) {
+			// Check before collecting as a reset can't be undone:
+			discardDeltas(null);
+		}
+		if (!append) {
+			pending = new Dumps();
+		} else if (pending == null) {
+			pending = lost == null ? new Dumps() : lost;
+			lost = null;
+		}
+		collect(pending, reset);
+		if (worker != null) {
+			notifyAll();
+			return;
+		}
+		final Dumps buffer = pending;
+		pending = null;
 		try {
-			final ExecutionDataWriter writer = new ExecutionDataWriter(output);
+			write(buffer);
+		} catch (final IOException e) {
+			if (append) {
+				lost = buffer;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Waits until all dumps have been written and stops the background thread.
+	 *
+	 * @throws Exception
+	 *             if writing a dump has failed
+	 */
+	public void shutdown() throws Exception {
+		if (worker == null) {
+			return;
+		}
+		synchronized (this) {
+			running = false;
+			notifyAll();
+		}
+		worker.join();
+		synchronized (this) {
+			checkFailure();
+		}
+	}
+
+	private void checkFailure() throws IOException {
+		if (failure != null) {
+			final IOException e = failure;
+			failure = null;
+			throw e;
+		}
+	}
+
+	/**
+	 * Discards the deltas collected for the file which has been truncated in
+	 * the meantime, so that the complete execution data is collected with the
+	 * next dump. Deltas collected before a reset are kept as their data can't
+	 * be collected again.
+	 *
+	 * @param buffer
+	 *            dumps taken by the background thread or <code>null</code>
+	 * @return <code>true</code> if the deltas have been discarded
+	 */
+	private boolean discardDeltas(final Dumps buffer) {
+		if (containsReset(buffer) || containsReset(pending)
+				|| containsReset(lost)) {
+			return false;
+		}
+		deltaDumpId = 0;
+		deltaDumpLength = 0;
+		pending = null;
+		lost = null;
+		return true;
+	}
+
+	private static boolean containsReset(final Dumps buffer) {
+		return buffer != null && buffer.containsReset;
+	}
+
+	private void collect(final Dumps buffer, final boolean reset)
+			throws IOException {
+		buffer.containsReset |= reset;
+		final ExecutionDataWriter writer = new ExecutionDataWriter(buffer,
+				extended);
+		if (append) {
+			deltaDumpId = data.collectDelta(writer, writer, deltaDumpId, reset);
+		} else {
 			data.collect(writer, writer, reset);
-		} finally {
-			output.close();
 		}
 	}
 
-	public void shutdown() throws IOException {
-		// Nothing to do
+	private void writePending() {
+		while (true) {
+			final Dumps buffer;
+			synchronized (this) {
+				while (running && pending == null) {
+					try {
+						wait();
+					} catch (final InterruptedException e) {
+						running = false;
+					}
+				}
+				if (pending == null) {
+					return;
+				}
+				buffer = pending;
+				pending = null;
+				writing = true;
+			}
+			try {
+				write(buffer);
+			} catch (final IOException e) {
+				synchronized (this) {
+					failure = e;
+					// Keep the lost deltas for the next dump, collecting the
+					// complete execution data again would add counts twice:
+					if (append) {
+						lost = buffer;
+					}
+				}
+			} finally {
+				synchronized (this) {
+					writing = false;
+				}
+			}
+		}
 	}
 
-	private OutputStream openFile() throws IOException {
+	private void write(final Dumps buffer) throws IOException {
+		final FileOutputStream file = openFile();
+		try {
+			final FileChannel channel = file.getChannel();
+			synchronized (this) {
+				// The file has been truncated after the dumps were collected,
+				// replace them with the complete execution data if possible:
+				if (append && channel.size() < deltaDumpLength
+						&& discardDeltas(buffer)) {
+					buffer.reset();
+					collect(buffer, false);
+				}
+			}
+			final ByteBuffer content = ByteBuffer.wrap(buffer.toByteArray());
+			final long length = channel.size() + content.remaining();
+			while (content.hasRemaining()) {
+				channel.write(content);
+			}
+			synchronized (this) {
+				deltaDumpLength = length;
+			}
+		} finally {
+			file.close();
+		}
+	}
+
+	private FileOutputStream openFile() throws IOException {
 		final FileOutputStream file = new FileOutputStream(destFile, append);
 		// Avoid concurrent writes from different agents running in parallel:
 		file.getChannel().lock();
 		return file;
 	}
 
+	/**
+	 * Buffer for serialized dumps.
+	 */
+	private static class Dumps extends ByteArrayOutputStream {
+
+		/** Whether the data has been reset with one of the dumps. */
+		boolean containsReset;
+
+	}
+
 }
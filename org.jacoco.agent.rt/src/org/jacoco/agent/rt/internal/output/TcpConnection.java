@@ -16,7 +16,7 @@ import java.io.IOException;
 import java.net.Socket;
 import java.net.SocketException;
 
-import org.jacoco.core.runtime.IRemoteCommandVisitor;
+import org.jacoco.core.runtime.IRemoteDeltaCommandVisitor;
 import org.jacoco.core.runtime.RemoteControlReader;
 import org.jacoco.core.runtime.RemoteControlWriter;
 import org.jacoco.core.runtime.RuntimeData;
@@ -24,12 +24,14 @@ import org.jacoco.core.runtime.RuntimeData;
 /**
  * Handler for a single socket based remote connection.
  */
-class TcpConnection implements IRemoteCommandVisitor {
+class TcpConnection implements IRemoteDeltaCommandVisitor {
 
 	private final RuntimeData data;
 
 	private final Socket socket;
 
+	private final boolean extended;
+
 	private RemoteControlWriter writer;
 
 	private RemoteControlReader reader;
@@ -37,13 +39,31 @@ class TcpConnection implements IRemoteCommandVisitor {
 	private boolean initialized;
 
 	public TcpConnection(final Socket socket, final RuntimeData data) {
+		this(socket, data, false);
+	}
+
+	/**
+	 * Creates a handler for the given socket.
+	 *
+	 * @param socket
+	 *            socket of the remote connection
+	 * @param data
+	 *            runtime data to dump
+	 * @param extended
+	 *            <code>true</code> if execution data is written with extended
+	 *            blocks, which is required to transfer execution counts
+	 */
+	public TcpConnection(final Socket socket, final RuntimeData data,
+			final boolean extended) {
 		this.socket = socket;
 		this.data = data;
+		this.extended = extended;
 		this.initialized = false;
 	}
 
 	public void init() throws IOException {
-		this.writer = new RemoteControlWriter(socket.getOutputStream());
+		this.writer = new RemoteControlWriter(socket.getOutputStream(),
+				extended);
 		this.reader = new RemoteControlReader(socket.getInputStream());
 		this.reader.setRemoteCommandVisitor(this);
 		this.initialized = true;
@@ -95,10 +115,10 @@ class TcpConnection implements IRemoteCommandVisitor {
 		}
 	}
 
-	// === IRemoteCommandVisitor ===
+	// === IRemoteDeltaCommandVisitor ===
 
-	public void visitDumpCommand(final boolean dump, final boolean reset)
-			throws IOException {
+	public synchronized void visitDumpCommand(final boolean dump,
+			final boolean reset) throws IOException {
 		if (dump) {
 			data.collect(writer, writer, reset);
 		} else {
@@ -109,4 +129,11 @@ class TcpConnection implements IRemoteCommandVisitor {
 		writer.sendCmdOk();
 	}
 
+	public synchronized void visitDeltaDumpCommand(final long acknowledged,
+			final boolean reset) throws IOException {
+		final long id = data.collectDelta(writer, writer, acknowledged, reset);
+		writer.sendDeltaDumpId(id);
+		writer.sendCmdOk();
+	}
+
 }
@@ -12,18 +12,39 @@
  *******************************************************************************/
 package org.jacoco.agent.rt.internal.output;
 
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.InetAddress;
-import java.net.ServerSocket;
+import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 
 import org.jacoco.agent.rt.internal.IExceptionLogger;
 import org.jacoco.core.runtime.AgentOptions;
+import org.jacoco.core.runtime.ExecutionDataSnapshot;
+import org.jacoco.core.runtime.IRemoteDeltaCommandVisitor;
+import org.jacoco.core.runtime.RemoteControlReader;
+import org.jacoco.core.runtime.RemoteControlWriter;
 import org.jacoco.core.runtime.RuntimeData;
 
 /**
- * Output that opens TCP server socket. This controller uses the following agent
- * options:
+ * Output that opens TCP server socket. Any number of clients can be connected
+ * at the same time and request dumps independently. All connections are served
+ * by a single thread with non-blocking I/O. Dumps are serialized by a second
+ * thread, so large dumps do not block the other connections. This controller
+ * uses the following agent options:
  * <ul>
  * <li>address</li>
  * <li>port</li>
@@ -31,14 +52,29 @@ import org.jacoco.core.runtime.RuntimeData;
  */
 public class TcpServerOutput implements IAgentOutput {
 
-	private TcpConnection connection;
-
 	private final IExceptionLogger logger;
 
-	private ServerSocket serverSocket;
+	/** open connections, also used as lock for all connection state */
+	private final List<Connection> connections = new ArrayList<Connection>();
+
+	/** requests in the order they have been received, guarded by connections */
+	private final List<Request> requests = new ArrayList<Request>();
+
+	private RuntimeData data;
+
+	/** whether execution data is written with extended blocks */
+	private boolean extended;
+
+	private ServerSocketChannel serverChannel;
+
+	private Selector selector;
+
+	private volatile boolean running;
 
 	private Thread worker;
 
+	private Thread dumper;
+
 	/**
 	 * New controller instance.
 	 *
@@ -51,60 +87,207 @@ public class TcpServerOutput implements IAgentOutput {
 
 	public void startup(final AgentOptions options, final RuntimeData data)
 			throws IOException {
-		serverSocket = createServerSocket(options);
+		this.data = data;
+		this.extended = options.getExtendedBlocks();
+		serverChannel = createServerChannel(options);
+		try {
+			serverChannel.configureBlocking(false);
+			selector = Selector.open();
+			serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		} catch (final IOException e) {
+			serverChannel.close();
+			throw e;
+		}
+		running = true;
 		worker = new Thread(new Runnable() {
 			public void run() {
-				while (!serverSocket.isClosed()) {
-					try {
-						synchronized (serverSocket) {
-							connection = new TcpConnection(
-									serverSocket.accept(), data);
-						}
-						connection.init();
-						connection.run();
-					} catch (final IOException e) {
-						// If the serverSocket is closed while accepting
-						// connections a SocketException is expected.
-						if (!serverSocket.isClosed()) {
-							logger.logExeption(e);
-						}
-					}
-				}
+				serve();
 			}
 		});
 		worker.setName(getClass().getName());
 		worker.setDaemon(true);
 		worker.start();
+		dumper = new Thread(new Runnable() {
+			public void run() {
+				dump();
+			}
+		});
+		dumper.setName(getClass().getName() + "-dump");
+		dumper.setDaemon(true);
+		dumper.start();
 	}
 
 	public void shutdown() throws Exception {
-		serverSocket.close();
-		synchronized (serverSocket) {
-			if (connection != null) {
-				connection.close();
-			}
-		}
+		running = false;
+		selector.wakeup();
 		worker.join();
+		dumper.join();
 	}
 
+	/**
+	 * Sends the current execution data to all connected clients and waits until
+	 * it has been written.
+	 */
 	public void writeExecutionData(final boolean reset) throws IOException {
-		if (connection != null) {
-			connection.writeExecutionData(reset);
+		final Request request = new Request(null, true, reset, false, 0);
+		synchronized (connections) {
+			if (connections.isEmpty()) {
+				return;
+			}
+			requests.add(request);
+			connections.notifyAll();
+			while (running
+					&& (requests.contains(request) || hasPendingOutput())) {
+				try {
+					connections.wait();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	private boolean hasPendingOutput() {
+		for (final Connection c : connections) {
+			if (c.hasPendingOutput()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void serve() {
+		try {
+			while (running) {
+				selector.select();
+				synchronized (connections) {
+					final Iterator<SelectionKey> keys = selector.selectedKeys()
+							.iterator();
+					while (keys.hasNext()) {
+						final SelectionKey key = keys.next();
+						keys.remove();
+						handle(key);
+					}
+					// Output might have been added by local dumps:
+					for (final Connection c : connections) {
+						c.updateInterest();
+					}
+					connections.notifyAll();
+				}
+			}
+		} catch (final IOException e) {
+			logger.logExeption(e);
+		} finally {
+			synchronized (connections) {
+				running = false;
+				for (final Connection c : new ArrayList<Connection>(
+						connections)) {
+					c.close();
+				}
+				requests.clear();
+				close(serverChannel);
+				try {
+					selector.close();
+				} catch (final IOException e) {
+					logger.logExeption(e);
+				}
+				connections.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Executes the requests one after the other. The responses are serialized
+	 * without holding the lock and then handed over to the selector thread.
+	 */
+	private void dump() {
+		while (true) {
+			final Request request;
+			final List<Connection> targets;
+			synchronized (connections) {
+				while (running && requests.isEmpty()) {
+					try {
+						connections.wait();
+					} catch (final InterruptedException e) {
+						return;
+					}
+				}
+				if (!running) {
+					return;
+				}
+				request = requests.get(0);
+				targets = request.connection == null
+						? new ArrayList<Connection>(connections)
+						: Collections.singletonList(request.connection);
+			}
+			try {
+				request.execute(targets);
+			} catch (final IOException e) {
+				logger.logExeption(e);
+			}
+			synchronized (connections) {
+				requests.remove(request);
+				for (final Connection c : targets) {
+					c.send();
+				}
+				connections.notifyAll();
+			}
+			selector.wakeup();
+		}
+	}
+
+	private void handle(final SelectionKey key) throws IOException {
+		if (key.isAcceptable()) {
+			final SocketChannel channel = serverChannel.accept();
+			if (channel != null) {
+				channel.configureBlocking(false);
+				connections.add(new Connection(channel));
+			}
+			return;
+		}
+		final Connection connection = (Connection) key.attachment();
+		try {
+			if (key.isReadable()) {
+				connection.read();
+			}
+			if (key.isValid()) {
+				connection.write();
+			}
+		} catch (final IOException e) {
+			logger.logExeption(e);
+			connection.close();
+		}
+	}
+
+	private void close(final Channel channel) {
+		try {
+			channel.close();
+		} catch (final IOException e) {
+			logger.logExeption(e);
 		}
 	}
 
 	/**
-	 * Open a server socket based on the given configuration.
+	 * Open a server socket channel based on the given configuration.
 	 *
 	 * @param options
 	 *            address and port configuration
-	 * @return opened server socket
+	 * @return opened server socket channel
 	 * @throws IOException
 	 */
-	protected ServerSocket createServerSocket(final AgentOptions options)
-			throws IOException {
+	protected ServerSocketChannel createServerChannel(
+			final AgentOptions options) throws IOException {
 		final InetAddress inetAddr = getInetAddress(options.getAddress());
-		return new ServerSocket(options.getPort(), 1, inetAddr);
+		final ServerSocketChannel channel = ServerSocketChannel.open();
+		try {
+			channel.socket()
+					.bind(new InetSocketAddress(inetAddr, options.getPort()));
+		} catch (final IOException e) {
+			channel.close();
+			throw e;
+		}
+		return channel;
 	}
 
 	/**
@@ -124,4 +307,202 @@ public class TcpServerOutput implements IAgentOutput {
 		}
 	}
 
+	/**
+	 * Command received from a client or local dump for all connections.
+	 */
+	private final class Request {
+
+		/** connection which sent the command or <code>null</code> */
+		final Connection connection;
+
+		private final boolean dump;
+
+		private final boolean reset;
+
+		private final boolean delta;
+
+		private final long acknowledged;
+
+		Request(final Connection connection, final boolean dump,
+				final boolean reset, final boolean delta,
+				final long acknowledged) {
+			this.connection = connection;
+			this.dump = dump;
+			this.reset = reset;
+			this.delta = delta;
+			this.acknowledged = acknowledged;
+		}
+
+		/**
+		 * Executes this request and serializes the responses, must only be
+		 * called by the dump thread.
+		 */
+		void execute(final List<Connection> targets) throws IOException {
+			if (delta) {
+				final RemoteControlWriter writer = connection.writer;
+				final long id = data.collectDelta(writer, writer, acknowledged,
+						reset);
+				writer.sendDeltaDumpId(id);
+			} else if (dump) {
+				final ExecutionDataSnapshot snapshot = data.snapshot(reset);
+				for (final Connection c : targets) {
+					snapshot.accept(c.writer, c.writer);
+				}
+			} else if (reset) {
+				data.reset();
+			}
+			for (final Connection c : targets) {
+				c.writer.sendCmdOk();
+			}
+		}
+
+	}
+
+	/**
+	 * State of a single client connection. Received commands are buffered until
+	 * they are complete, responses are buffered until the channel can take
+	 * them. Responses are serialized by the dump thread into a separate buffer.
+	 */
+	private final class Connection implements IRemoteDeltaCommandVisitor {
+
+		private static final int INITIAL_BUFFER_SIZE = 64;
+
+		private final SocketChannel channel;
+
+		private final SelectionKey key;
+
+		private final RemoteControlReader reader;
+
+		/** responses handed over by the dump thread */
+		private final LinkedList<ByteBuffer> pending;
+
+		/** buffer of the writer, only used by the dump thread */
+		private final ByteArrayOutputStream buffer;
+
+		final RemoteControlWriter writer;
+
+		private ByteBuffer input;
+
+		private ByteBuffer output;
+
+		/** position of the block currently read */
+		private int blockStart;
+
+		Connection(final SocketChannel channel) throws IOException {
+			this.channel = channel;
+			this.key = channel.register(selector, SelectionKey.OP_READ, this);
+			this.input = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+			this.output = ByteBuffer.allocate(0);
+			this.pending = new LinkedList<ByteBuffer>();
+			this.buffer = new ByteArrayOutputStream();
+			this.writer = new RemoteControlWriter(buffer, extended);
+			send();
+			this.reader = new RemoteControlReader(new InputStream() {
+				@Override
+				public int read() {
+					return input.hasRemaining() ? input.get() & 0xFF : -1;
+				}
+
+				@Override
+				public int read(final byte[] b, final int off, final int len) {
+					if (!input.hasRemaining()) {
+						return -1;
+					}
+					final int n = Math.min(len, input.remaining());
+					input.get(b, off, n);
+					return n;
+				}
+			}) {
+				@Override
+				protected boolean readBlock(final byte blockid)
+						throws IOException {
+					blockStart = input.position() - 1;
+					return super.readBlock(blockid);
+				}
+			};
+			reader.setRemoteCommandVisitor(this);
+		}
+
+		void read() throws IOException {
+			if (channel.read(input) == -1) {
+				close();
+				return;
+			}
+			input.flip();
+			try {
+				blockStart = input.position();
+				while (reader.read()) {
+				}
+			} catch (final EOFException e) {
+				// Incomplete block, wait for more data:
+				input.position(blockStart);
+			}
+			input.compact();
+			if (!input.hasRemaining()) {
+				final ByteBuffer larger = ByteBuffer
+						.allocate(input.capacity() * 2);
+				input.flip();
+				larger.put(input);
+				input = larger;
+			}
+		}
+
+		void write() throws IOException {
+			while (true) {
+				if (!output.hasRemaining()) {
+					if (pending.isEmpty()) {
+						break;
+					}
+					output = pending.removeFirst();
+				}
+				if (channel.write(output) == 0) {
+					break;
+				}
+			}
+			updateInterest();
+		}
+
+		boolean hasPendingOutput() {
+			return output.hasRemaining() || !pending.isEmpty();
+		}
+
+		/**
+		 * Hands the serialized responses over to the selector thread.
+		 */
+		void send() {
+			if (buffer.size() > 0) {
+				pending.add(ByteBuffer.wrap(buffer.toByteArray()));
+				buffer.reset();
+			}
+		}
+
+		void updateInterest() {
+			if (key.isValid()) {
+				key.interestOps(hasPendingOutput()
+						? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+						: SelectionKey.OP_READ);
+			}
+		}
+
+		void close() {
+			connections.remove(this);
+			key.cancel();
+			TcpServerOutput.this.close(channel);
+		}
+
+		// === IRemoteDeltaCommandVisitor ===
+
+		public void visitDumpCommand(final boolean dump, final boolean reset) {
+			requests.add(new Request(this, dump, reset, false, 0));
+			connections.notifyAll();
+		}
+
+		public void visitDeltaDumpCommand(final long acknowledged,
+				final boolean reset) {
+			requests.add(new Request(this, true, reset, true, acknowledged));
+			connections.notifyAll();
+		}
+
+	}
+
 }
@@ -157,6 +157,83 @@ public class AbstractCoverageTask extends Task {
 		agentOptions.setDumpOnExit(dumpOnExit);
 	}
 
+	/**
+	 * Sets the interval in seconds in which coverage data is periodically
+	 * dumped. Default is <code>0</code> (no periodic dumps).
+	 *
+	 * @param dumpInterval
+	 *            dump interval in seconds
+	 */
+	public void setDumpInterval(final int dumpInterval) {
+		agentOptions.setDumpInterval(dumpInterval);
+	}
+
+	/**
+	 * Sets whether dumps to a file are written from a background thread.
+	 * Default is <code>false</code>.
+	 *
+	 * @param asyncWrite
+	 *            <code>true</code> if dumps should be written asynchronously
+	 */
+	public void setAsyncWrite(final boolean asyncWrite) {
+		agentOptions.setAsyncWrite(asyncWrite);
+	}
+
+	/**
+	 * Sets whether execution data may be written as sparse blocks, which can't
+	 * be read by JaCoCo versions before 0.8.7. Default is <code>false</code>.
+	 *
+	 * @param sparseBlocks
+	 *            <code>true</code> if sparse blocks may be written
+	 */
+	public void setSparseBlocks(final boolean sparseBlocks) {
+		agentOptions.setSparseBlocks(sparseBlocks);
+	}
+
+	/**
+	 * Sets whether probes check the probe array before they write to it.
+	 * Default is <code>false</code>.
+	 *
+	 * @param checkProbes
+	 *            <code>true</code> if probes should check the probe array first
+	 */
+	public void setCheckProbes(final boolean checkProbes) {
+		agentOptions.setCheckProbes(checkProbes);
+	}
+
+	/**
+	 * Sets whether probes count how often they have been executed. Default is
+	 * <code>false</code>.
+	 *
+	 * @param countProbes
+	 *            <code>true</code> if probes should count executions
+	 */
+	public void setCountProbes(final boolean countProbes) {
+		agentOptions.setCountProbes(countProbes);
+	}
+
+	/**
+	 * Sets the interval in seconds in which fully covered classes are restored
+	 * to their original code. Default is <code>0</code> (classes are never
+	 * restored).
+	 *
+	 * @param restoreInterval
+	 *            restore interval in seconds
+	 */
+	public void setRestoreInterval(final int restoreInterval) {
+		agentOptions.setRestoreInterval(restoreInterval);
+	}
+
+	/**
+	 * Sets the coverage granularity. Default is <code>full</code>
+	 *
+	 * @param granularity
+	 *            coverage granularity
+	 */
+	public void setGranularity(final String granularity) {
+		agentOptions.setGranularity(granularity);
+	}
+
 	/**
 	 * Sets the output method. Default is <code>file</code>
 	 *
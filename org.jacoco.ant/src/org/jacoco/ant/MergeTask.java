@@ -17,15 +17,17 @@ import static java.lang.String.format;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Task;
 import org.apache.tools.ant.types.Resource;
 import org.apache.tools.ant.types.ResourceCollection;
 import org.apache.tools.ant.types.resources.Union;
-import org.apache.tools.ant.util.FileUtils;
 import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.tools.ExecFileMerger;
 
 /**
  * Task for merging a set of execution data files (*.exec) into a single file
@@ -34,6 +36,8 @@ public class MergeTask extends Task {
 
 	private File destfile;
 
+	private int threads = 1;
+
 	private final Union files = new Union();
 
 	/**
@@ -46,6 +50,17 @@ public class MergeTask extends Task {
 		this.destfile = destfile;
 	}
 
+	/**
+	 * Sets the number of threads used to read and merge the execution data
+	 * resources.
+	 *
+	 * @param threads
+	 *            number of threads, default is 1
+	 */
+	public void setThreads(final int threads) {
+		this.threads = threads;
+	}
+
 	/**
 	 * This task accepts any number of execution data resources.
 	 *
@@ -63,13 +78,11 @@ public class MergeTask extends Task {
 					getLocation());
 		}
 
-		final ExecFileLoader loader = new ExecFileLoader();
-
-		load(loader);
-		save(loader);
+		save(load());
 	}
 
-	private void load(final ExecFileLoader loader) {
+	private ExecFileLoader load() {
+		final List<ExecFileMerger.Input> inputs = new ArrayList<ExecFileMerger.Input>();
 		final Iterator<?> resourceIterator = files.iterator();
 		while (resourceIterator.hasNext()) {
 			final Resource resource = (Resource) resourceIterator.next();
@@ -79,18 +92,34 @@ public class MergeTask extends Task {
 			}
 
 			log(format("Loading execution data file %s", resource));
+			inputs.add(new ExecFileMerger.Input() {
+				public InputStream open() throws IOException {
+					return resource.getInputStream();
+				}
+
+				@Override
+				public String toString() {
+					return resource.toString();
+				}
+			});
+		}
 
-			InputStream resourceStream = null;
-			try {
-				resourceStream = resource.getInputStream();
-				loader.load(resourceStream);
-			} catch (final IOException e) {
-				throw new BuildException(format("Unable to read %s", resource),
-						e, getLocation());
-			} finally {
-				FileUtils.close(resourceStream);
-			}
+		final ExecFileMerger merger;
+		final ExecFileLoader loader;
+		try {
+			merger = new ExecFileMerger(threads);
+			loader = merger.merge(inputs);
+		} catch (final IOException e) {
+			throw new BuildException(e.getMessage(), e, getLocation());
+		} catch (final IllegalArgumentException e) {
+			throw new BuildException(e.getMessage(), e, getLocation());
 		}
+		log(format("Merged %s files with %s bytes (%.1f files/s, %.0f bytes/s)",
+				Integer.valueOf(merger.getFileCount()),
+				Long.valueOf(merger.getByteCount()),
+				Double.valueOf(merger.getFilesPerSecond()),
+				Double.valueOf(merger.getBytesPerSecond())));
+		return loader;
 	}
 
 	private void save(final ExecFileLoader loader) {
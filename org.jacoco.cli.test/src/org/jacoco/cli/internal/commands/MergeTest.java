@@ -13,8 +13,10 @@
 package org.jacoco.cli.internal.commands;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
@@ -75,6 +77,76 @@ public class MergeTest extends CommandTestBase {
 		assertEquals(new HashSet<String>(Arrays.asList("a", "b", "c")), names);
 	}
 
+	@Test
+	public void should_merge_exec_files_concurrently() throws Exception {
+		File a = createExecFile("a");
+		File b = createExecFile("b");
+		File c = createExecFile("c");
+		File dest = new File(tmp.getRoot(), "merged.exec");
+
+		execute("merge", "--destfile", dest.getAbsolutePath(), "--threads", "2",
+				a.getAbsolutePath(), b.getAbsolutePath(), c.getAbsolutePath());
+
+		assertOk();
+		assertContains("[INFO] Merged 3 files with ", out);
+		Set<String> names = loadExecFile(dest);
+		assertEquals(new HashSet<String>(Arrays.asList("a", "b", "c")), names);
+	}
+
+	@Test
+	public void should_merge_exec_files_with_bounded_memory() throws Exception {
+		File a = createExecFile("a");
+		File b = createExecFile("b");
+		File dest = new File(tmp.getRoot(), "merged.exec");
+
+		execute("merge", "--destfile", dest.getAbsolutePath(), "--maxmemory",
+				"1", a.getAbsolutePath(), b.getAbsolutePath());
+
+		assertOk();
+		assertContains("[INFO] Merged with 0 temporary files.", out);
+		Set<String> names = loadExecFile(dest);
+		assertEquals(new HashSet<String>(Arrays.asList("a", "b")), names);
+	}
+
+	@Test
+	public void should_reject_threads_with_bounded_memory() throws Exception {
+		File a = createExecFile("a");
+		File dest = new File(tmp.getRoot(), "merged.exec");
+
+		execute("merge", "--destfile", dest.getAbsolutePath(), "--maxmemory",
+				"1", "--threads", "2", a.getAbsolutePath());
+
+		assertFailure();
+		assertContains(
+				"[ERROR] Option --threads can't be combined with --maxmemory.",
+				err);
+		assertFalse(dest.exists());
+	}
+
+	@Test
+	public void should_merge_exec_files_with_sparse_blocks() throws Exception {
+		File a = new File(tmp.getRoot(), "a.exec");
+		final FileOutputStream execout = new FileOutputStream(a);
+		boolean[] probes = new boolean[64];
+		probes[3] = true;
+		new ExecutionDataWriter(execout)
+				.visitClassExecution(new ExecutionData(1, "a", probes));
+		execout.close();
+		File dest = new File(tmp.getRoot(), "merged.exec");
+
+		execute("merge", "--destfile", dest.getAbsolutePath(), "--sparseblocks",
+				a.getAbsolutePath());
+
+		assertOk();
+		byte[] content = new byte[6];
+		final FileInputStream in = new FileInputStream(dest);
+		in.read(content);
+		in.close();
+		assertEquals(ExecutionDataWriter.BLOCK_EXECUTIONDATA_SPARSE,
+				content[5]);
+		assertEquals(Collections.singleton("a"), loadExecFile(dest));
+	}
+
 	@Test
 	public void local_should_merge_exec_files() throws Exception {
 		File dest = new File("D:\\jacoco", "merged.exec");
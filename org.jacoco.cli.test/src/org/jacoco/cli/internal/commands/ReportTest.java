@@ -60,6 +60,15 @@ public class ReportTest extends CommandTestBase {
 		assertContains("[INFO] Analyzing 14 classes.", out);
 	}
 
+	@Test
+	public void should_analyze_classes_concurrently_when_threads_option_is_provided()
+			throws Exception {
+		execute("report", "--classfiles", getClassPath(), "--threads", "4");
+
+		assertOk();
+		assertContains("[INFO] Analyzing 14 classes.", out);
+	}
+
 	@Test
 	public void should_print_warning_when_exec_data_does_not_match()
 			throws Exception {
@@ -43,6 +43,9 @@ public class Dump extends Command {
 	@Option(name = "--retry", usage = "number of retries (default 10)", metaVar = "<count>")
 	int retrycount = 10;
 
+	@Option(name = "--sparseblocks", usage = "write sparse blocks which can't be read by JaCoCo versions before 0.8.7")
+	boolean sparseblocks = false;
+
 	@Override
 	public String description() {
 		return "Request execution data from a JaCoCo agent running in 'tcpserver' output mode.";
@@ -70,6 +73,7 @@ public class Dump extends Command {
 		final ExecFileLoader loader = client.dump(address, port);
 		out.printf("[INFO] Writing execution data to %s.%n",
 				destfile.getAbsolutePath());
+		loader.setSparseBlocks(sparseblocks);
 		loader.save(destfile, true);
 
 		return 0;
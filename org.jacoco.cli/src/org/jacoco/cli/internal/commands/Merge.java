@@ -20,6 +20,8 @@ import java.util.List;
 
 import org.jacoco.cli.internal.Command;
 import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.tools.ExecFileMerger;
+import org.jacoco.core.tools.StreamingExecFileMerger;
 import org.kohsuke.args4j.Argument;
 import org.kohsuke.args4j.Option;
 
@@ -34,6 +36,15 @@ public class Merge extends Command {
 	@Option(name = "--destfile", usage = "file to write merged execution data to", metaVar = "<path>", required = true)
 	File destfile;
 
+	@Option(name = "--threads", usage = "number of threads used to read exec files (default 1), can't be combined with --maxmemory", metaVar = "<n>")
+	int threads = 1;
+
+	@Option(name = "--maxmemory", usage = "merge with bounded memory, execution data exceeding the given number of megabytes is written to temporary files", metaVar = "<mb>")
+	int maxmemory = 0;
+
+	@Option(name = "--sparseblocks", usage = "write sparse blocks which can't be read by JaCoCo versions before 0.8.7")
+	boolean sparseblocks = false;
+
 	@Override
 	public String description() {
 		return "Merges multiple exec files into a new one.";
@@ -42,26 +53,59 @@ public class Merge extends Command {
 	@Override
 	public int execute(final PrintWriter out, final PrintWriter err)
 			throws IOException {
-		final ExecFileLoader loader = loadExecutionData(out);
+		if (maxmemory > 0 && threads != 1) {
+			err.println(
+					"[ERROR] Option --threads can't be combined with --maxmemory.");
+			return -1;
+		}
+		final List<ExecFileMerger.Input> inputs = getInputs(out);
+		if (maxmemory > 0) {
+			out.printf("[INFO] Writing execution data to %s.%n",
+					destfile.getAbsolutePath());
+			final StreamingExecFileMerger merger = new StreamingExecFileMerger(
+					null, maxmemory * 1024L * 1024L);
+			merger.setSparseBlocks(sparseblocks);
+			merger.merge(inputs, destfile, true);
+			out.printf("[INFO] Merged with %s temporary files.%n",
+					Integer.valueOf(merger.getRunCount()));
+			return 0;
+		}
+		final ExecFileLoader loader = loadExecutionData(inputs, out);
 		out.printf("[INFO] Writing execution data to %s.%n",
 				destfile.getAbsolutePath());
+		loader.setSparseBlocks(sparseblocks);
 		loader.save(destfile, true);
 		return 0;
 	}
 
-	private ExecFileLoader loadExecutionData(final PrintWriter out)
-			throws IOException {
-		final ExecFileLoader loader = new ExecFileLoader();
+	private List<ExecFileMerger.Input> getInputs(final PrintWriter out) {
+		final List<ExecFileMerger.Input> inputs = new ArrayList<ExecFileMerger.Input>();
 		if (execfiles.isEmpty()) {
 			out.println("[WARN] No execution data files provided.");
-		} else {
-			for (final File file : execfiles) {
-				out.printf("[INFO] Loading execution data file %s.%n",
-						file.getAbsolutePath());
-				// 开始加载exec文件，遍历多个文件加载
-				loader.load(file);
-			}
 		}
+		for (final File file : execfiles) {
+			out.printf("[INFO] Loading execution data file %s.%n",
+					file.getAbsolutePath());
+			inputs.add(ExecFileMerger.fileInput(file));
+		}
+		return inputs;
+	}
+
+	private ExecFileLoader loadExecutionData(
+			final List<ExecFileMerger.Input> inputs, final PrintWriter out)
+			throws IOException {
+		if (inputs.isEmpty()) {
+			return new ExecFileLoader(true);
+		}
+		// 开始加载exec文件，多个文件并行加载
+		final ExecFileMerger merger = new ExecFileMerger(threads);
+		final ExecFileLoader loader = merger.merge(inputs);
+		out.printf(
+				"[INFO] Merged %s files with %s bytes (%.1f files/s, %.0f bytes/s).%n",
+				Integer.valueOf(merger.getFileCount()),
+				Long.valueOf(merger.getByteCount()),
+				Double.valueOf(merger.getFilesPerSecond()),
+				Double.valueOf(merger.getBytesPerSecond()));
 		return loader;
 	}
 
@@ -20,6 +20,8 @@ import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.jacoco.cli.internal.Command;
 import org.jacoco.core.analysis.Analyzer;
@@ -27,7 +29,7 @@ import org.jacoco.core.analysis.CoverageBuilder;
 import org.jacoco.core.analysis.IBundleCoverage;
 import org.jacoco.core.analysis.IClassCoverage;
 import org.jacoco.core.data.ExecutionDataStore;
-import org.jacoco.core.internal.diff.JsonReadUtil;
+import org.jacoco.core.internal.diff.DiffScope;
 import org.jacoco.core.tools.ExecFileLoader;
 import org.jacoco.report.DirectorySourceFileLocator;
 import org.jacoco.report.FileMultiReportOutput;
@@ -73,6 +75,9 @@ public class Report extends Command {
 	@Option(name = "--tabwith", usage = "tab stop width for the source pages (default 4)", metaVar = "<n>")
 	int tabwidth = 4;
 
+	@Option(name = "--threads", usage = "number of threads used to analyze class files (default 1)", metaVar = "<n>")
+	int threads = 1;
+
 	@Option(name = "--name", usage = "name used for this report", metaVar = "<name>")
 	String name = "JaCoCo Coverage Report";
 
@@ -120,19 +125,29 @@ public class Report extends Command {
 
 	private IBundleCoverage analyze(final ExecutionDataStore data,
 			final PrintWriter out) throws IOException {
-		CoverageBuilder builder;
-		// 如果有增量参数将其设置进去
+		final CoverageBuilder builder = new CoverageBuilder();
+		// 如果有增量参数只分析差异代码
+		final DiffScope diffScope;
 		if (null != this.diffCodeFiles) {
-			builder = new CoverageBuilder(
-					JsonReadUtil.readJsonToString(this.diffCodeFiles));
+			diffScope = DiffScope.load(new File(this.diffCodeFiles));
 		} else if (null != this.diffCode) {
-			builder = new CoverageBuilder(this.diffCode);
+			diffScope = DiffScope.parse(this.diffCode);
 		} else {
-			builder = new CoverageBuilder();
+			diffScope = null;
 		}
-		final Analyzer analyzer = new Analyzer(data, builder);
-		for (final File f : classfiles) {
-			analyzer.analyzeAll(f);
+		final Analyzer analyzer = new Analyzer(data, builder, diffScope);
+		final ExecutorService executor = threads > 1
+				? Executors.newFixedThreadPool(threads)
+				: null;
+		try {
+			analyzer.setExecutor(executor);
+			for (final File f : classfiles) {
+				analyzer.analyzeAll(f);
+			}
+		} finally {
+			if (executor != null) {
+				executor.shutdown();
+			}
 		}
 		printNoMatchWarning(builder.getNoMatchClasses(), out);
 		return builder.getBundle(name);
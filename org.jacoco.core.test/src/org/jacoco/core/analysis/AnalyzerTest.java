@@ -26,11 +26,16 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -39,13 +44,16 @@ import java.util.zip.ZipOutputStream;
 import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.internal.Pack200Streams;
 import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.internal.diff.DiffScope;
 import org.jacoco.core.test.TargetLoader;
+import org.junit.After;
 import org.junit.AssumptionViolatedException;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 
 /**
@@ -62,6 +70,8 @@ public class AnalyzerTest {
 
 	private ExecutionDataStore executionData;
 
+	private ExecutorService executor;
+
 	private class EmptyStructureVisitor implements ICoverageVisitor {
 
 		public void visitCoverage(IClassCoverage coverage) {
@@ -78,6 +88,13 @@ public class AnalyzerTest {
 		analyzer = new Analyzer(executionData, new EmptyStructureVisitor());
 	}
 
+	@After
+	public void teardown() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
 	@Test
 	public void should_ignore_module_info() throws Exception {
 		final ClassWriter cw = new ClassWriter(0);
@@ -119,6 +136,80 @@ public class AnalyzerTest {
 		assertEquals(expectedClassId, classes.get("Foo").getId());
 	}
 
+	@Test
+	public void should_only_analyze_classes_and_methods_in_diff_scope()
+			throws Exception {
+		final DiffScope scope = DiffScope.parse("[{\"classFile\":\"Foo\","
+				+ "\"type\":\"MODIFY\",\"methodInfos\":[{"
+				+ "\"methodName\":\"b\",\"parameters\":\"String s\"}]}]");
+		analyzer = new Analyzer(executionData, new EmptyStructureVisitor(),
+				scope);
+
+		analyzer.analyzeClass(createClassWithMethods("Foo"), "Foo");
+		analyzer.analyzeClass(createClassWithMethods("Bar"), "Bar");
+
+		assertEquals(Collections.singleton("Foo"), classes.keySet());
+		final Collection<IMethodCoverage> methods = classes.get("Foo")
+				.getMethods();
+		assertEquals(1, methods.size());
+		final IMethodCoverage method = methods.iterator().next();
+		assertEquals("b", method.getName());
+		assertEquals("(Ljava/lang/String;)V", method.getDesc());
+	}
+
+	@Test
+	public void should_analyze_all_classes_for_empty_diff_scope()
+			throws Exception {
+		analyzer = new Analyzer(executionData, new EmptyStructureVisitor(),
+				DiffScope.parse("[]"));
+
+		analyzer.analyzeClass(createClassWithMethods("Foo"), "Foo");
+
+		assertEquals(2, classes.get("Foo").getMethods().size());
+	}
+
+	@Test
+	public void should_use_diff_scope_of_each_analyzer_independently()
+			throws Exception {
+		final List<IClassCoverage> fooClasses = new ArrayList<IClassCoverage>();
+		final Analyzer fooAnalyzer = new Analyzer(executionData,
+				new ListVisitor(fooClasses),
+				DiffScope.parse("[{\"classFile\":\"Foo\",\"type\":\"ADD\"}]"));
+		final List<IClassCoverage> barClasses = new ArrayList<IClassCoverage>();
+		final Analyzer barAnalyzer = new Analyzer(executionData,
+				new ListVisitor(barClasses),
+				DiffScope.parse("[{\"classFile\":\"Bar\",\"type\":\"ADD\"}]"));
+
+		for (final Analyzer a : Arrays.asList(fooAnalyzer, barAnalyzer,
+				analyzer)) {
+			a.analyzeClass(createClassWithMethods("Foo"), "Foo");
+			a.analyzeClass(createClassWithMethods("Bar"), "Bar");
+		}
+
+		assertEquals(1, fooClasses.size());
+		assertEquals("Foo", fooClasses.get(0).getName());
+		assertEquals(1, barClasses.size());
+		assertEquals("Bar", barClasses.get(0).getName());
+		assertEquals(new HashSet<String>(Arrays.asList("Foo", "Bar")),
+				classes.keySet());
+	}
+
+	private static byte[] createClassWithMethods(final String name) {
+		final ClassWriter cw = new ClassWriter(0);
+		cw.visit(Opcodes.V1_5, 0, name, null, "java/lang/Object", null);
+		for (final String desc : new String[] { "()V",
+				"(Ljava/lang/String;)V" }) {
+			final MethodVisitor mv = cw.visitMethod(0,
+					desc.length() == 3 ? "a" : "b", desc, null, null);
+			mv.visitCode();
+			mv.visitInsn(Opcodes.RETURN);
+			mv.visitMaxs(0, 2);
+			mv.visitEnd();
+		}
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
 	private static byte[] createClass(final int version) {
 		final ClassWriter cw = new ClassWriter(0);
 		cw.visit(version, 0, "Foo", null, "java/lang/Object", null);
@@ -164,7 +255,7 @@ public class AnalyzerTest {
 		final byte[] bytes = TargetLoader
 				.getClassDataAsBytes(AnalyzerTest.class);
 		executionData.get(Long.valueOf(CRC64.classId(bytes)),
-				"org/jacoco/core/analysis/AnalyzerTest", 200);
+				"org/jacoco/core/analysis/AnalyzerTest", 400);
 		analyzer.analyzeClass(bytes, "Test");
 		assertFalse(classes.get("org/jacoco/core/analysis/AnalyzerTest")
 				.isNoMatch());
@@ -437,6 +528,111 @@ public class AnalyzerTest {
 		}
 	}
 
+	@Test
+	public void analyzeAll_should_report_same_classes_in_same_order_when_executor_is_set()
+			throws IOException {
+		final byte[] zip = createZip(Analyzer.class, AnalyzerTest.class,
+				CoverageBuilder.class, CoverageNodeImpl.class,
+				NodeComparator.class, CounterComparator.class);
+		final List<IClassCoverage> expected = new ArrayList<IClassCoverage>();
+		final List<IClassCoverage> actual = new ArrayList<IClassCoverage>();
+
+		new Analyzer(executionData, new ListVisitor(expected))
+				.analyzeAll(new ByteArrayInputStream(zip), "Test");
+		final Analyzer parallel = new Analyzer(executionData,
+				new ListVisitor(actual));
+		executor = Executors.newFixedThreadPool(4);
+		parallel.setExecutor(executor);
+		final int count = parallel.analyzeAll(new ByteArrayInputStream(zip),
+				"Test");
+
+		assertEquals(6, count);
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			final IClassCoverage e = expected.get(i);
+			final IClassCoverage a = actual.get(i);
+			assertEquals(e.getName(), a.getName());
+			assertEquals(e.getId(), a.getId());
+			assertEquals(e.getInstructionCounter(), a.getInstructionCounter());
+			assertEquals(e.getBranchCounter(), a.getBranchCounter());
+			assertEquals(e.getLineCounter(), a.getLineCounter());
+			assertEquals(e.getMethodCounter(), a.getMethodCounter());
+		}
+	}
+
+	@Test
+	public void analyzeAll_should_report_all_classes_before_returning_when_executor_is_set()
+			throws IOException {
+		createClassfile("bin1", Analyzer.class);
+		createClassfile("bin2", AnalyzerTest.class);
+		executor = Executors.newFixedThreadPool(2);
+		analyzer.setExecutor(executor);
+
+		final int count = analyzer.analyzeAll(folder.getRoot());
+
+		assertEquals(2, count);
+		assertClasses("org/jacoco/core/analysis/Analyzer",
+				"org/jacoco/core/analysis/AnalyzerTest");
+	}
+
+	@Test
+	public void analyzeAll_should_throw_exception_with_location_when_executor_is_set()
+			throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final ZipOutputStream zip = new ZipOutputStream(buffer);
+		zip.putNextEntry(new ZipEntry("Analyzer.class"));
+		zip.write(TargetLoader.getClassDataAsBytes(Analyzer.class));
+		zip.putNextEntry(new ZipEntry("Broken.class"));
+		final byte[] brokenclass = TargetLoader
+				.getClassDataAsBytes(AnalyzerTest.class);
+		brokenclass[10] = 0x23;
+		zip.write(brokenclass);
+		zip.finish();
+		executor = Executors.newFixedThreadPool(2);
+		analyzer.setExecutor(executor);
+
+		try {
+			analyzer.analyzeAll(new ByteArrayInputStream(buffer.toByteArray()),
+					"test.zip");
+			fail("expected exception");
+		} catch (IOException e) {
+			assertEquals("Error while analyzing test.zip@Broken.class.",
+					e.getMessage());
+		}
+
+		// analyzer can be reused after failure:
+		classes.clear();
+		analyzer.analyzeClass(
+				TargetLoader.getClassDataAsBytes(AnalyzerTest.class), "Test");
+		assertClasses("org/jacoco/core/analysis/AnalyzerTest");
+	}
+
+	private static class ListVisitor implements ICoverageVisitor {
+
+		private final List<IClassCoverage> list;
+
+		ListVisitor(final List<IClassCoverage> list) {
+			this.list = list;
+		}
+
+		public void visitCoverage(final IClassCoverage coverage) {
+			list.add(coverage);
+		}
+	}
+
+	private static byte[] createZip(final Class<?>... classes)
+			throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final ZipOutputStream zip = new ZipOutputStream(buffer);
+		for (final Class<?> c : classes) {
+			zip.putNextEntry(
+					new ZipEntry(c.getName().replace('.', '/') + ".class"));
+			zip.write(TargetLoader.getClassDataAsBytes(c));
+		}
+		zip.finish();
+		return buffer.toByteArray();
+	}
+
 	private void createClassfile(final String dir, final Class<?> source)
 			throws IOException {
 		File file = new File(folder.getRoot(), dir);
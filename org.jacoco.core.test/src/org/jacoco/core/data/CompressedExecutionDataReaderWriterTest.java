@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ExecutionDataReader} and
+ * {@link CompressedExecutionDataWriter}. All tests of the plain format are
+ * repeated with compressed blocks.
+ */
+public class CompressedExecutionDataReaderWriterTest
+		extends ExecutionDataReaderWriterTest {
+
+	private final List<ExecutionDataWriter> writers = new ArrayList<ExecutionDataWriter>();
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidChunkSize() throws IOException {
+		new CompressedExecutionDataWriter(new ByteArrayOutputStream(), 0);
+	}
+
+	@Test
+	public void testMultipleChunks() throws IOException {
+		final ExecutionDataWriter writer = new CompressedExecutionDataWriter(
+				buffer, 100);
+		for (int i = 0; i < 1000; i++) {
+			writer.visitSessionInfo(new SessionInfo("s" + i, i, i + 1));
+			writer.visitClassExecution(new ExecutionData(i,
+					"org/example/Class" + i, new boolean[] { true, false }));
+		}
+		writer.flush();
+
+		final ExecutionDataStore store = new ExecutionDataStore();
+		final SessionInfoStore sessions = new SessionInfoStore();
+		final ExecutionDataReader reader = createReader();
+		reader.setExecutionDataVisitor(store);
+		reader.setSessionInfoVisitor(sessions);
+		assertFalse(reader.read());
+
+		assertEquals(1000, store.getContents().size());
+		assertEquals(1000, sessions.getInfos().size());
+		assertEquals("org/example/Class999", store.get(999).getName());
+		assertTrue(store.get(999).getProbes()[0]);
+		assertFalse(store.get(999).getProbes()[1]);
+	}
+
+	@Test
+	public void testCompressedAndPlainBlocks() throws IOException {
+		final ExecutionDataWriter compressed = new CompressedExecutionDataWriter(
+				buffer);
+		compressed.visitClassExecution(
+				new ExecutionData(1, "A", new boolean[] { true }));
+		compressed.flush();
+		final ExecutionDataWriter plain = new ExecutionDataWriter(buffer);
+		plain.visitClassExecution(
+				new ExecutionData(2, "B", new boolean[] { true }));
+
+		final ExecutionDataStore store = new ExecutionDataStore();
+		final ExecutionDataReader reader = createReader();
+		reader.setExecutionDataVisitor(store);
+		assertFalse(reader.read());
+
+		assertEquals("A", store.get(1).getName());
+		assertEquals("B", store.get(2).getName());
+	}
+
+	@Test
+	public void testFlushWithoutData() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final ExecutionDataWriter writer = new CompressedExecutionDataWriter(
+				out);
+		final int headerSize = out.size();
+		writer.flush();
+		assertEquals(headerSize, out.size());
+	}
+
+	@Test
+	public void testUnknownBlockInCompressedBlock() throws IOException {
+		writeCompressedBlock(new byte[] { 0x55 });
+		try {
+			createReader().read();
+			fail("IOException expected");
+		} catch (IOException e) {
+			assertEquals("Unknown block type 55.", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testHeaderInCompressedBlock() throws IOException {
+		writeCompressedBlock(new byte[] { ExecutionDataWriter.BLOCK_HEADER,
+				(byte) 0xC0, (byte) 0xC0, 0x10, 0x07 });
+		try {
+			createReader().read();
+			fail("IOException expected");
+		} catch (IOException e) {
+			assertEquals("Unknown block type 1.", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testInvalidCompressedBlock() throws IOException {
+		buffer.write(ExecutionDataWriter.BLOCK_COMPRESSED);
+		buffer.write(3);
+		buffer.write(new byte[] { 1, 2, 3 });
+		try {
+			createReader().read();
+			fail("IOException expected");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test(expected = EOFException.class)
+	@Override
+	public void testTruncatedFile() throws IOException {
+		final ExecutionDataWriter writer = createWriter(buffer);
+		writer.visitClassExecution(
+				new ExecutionData(3, "Sample", new boolean[] { true }));
+		writer.flush();
+		final byte[] content = buffer.toByteArray();
+		buffer.reset();
+		buffer.write(content, 0, content.length - 1);
+		final ExecutionDataReader reader = createReader();
+		reader.setExecutionDataVisitor(new ExecutionDataStore());
+		reader.read();
+	}
+
+	@Test(expected = IOException.class)
+	@Override
+	public void testSessionInfoIOException() throws IOException {
+		final ExecutionDataWriter writer = createWriter(new OutputStream() {
+			private int count;
+
+			@Override
+			public void write(int b) throws IOException {
+				if (++count > 5) {
+					throw new IOException();
+				}
+			}
+		});
+		writer.visitSessionInfo(new SessionInfo("X", 0, 0));
+		writer.flush();
+	}
+
+	@Test(expected = IOException.class)
+	@Override
+	public void testExecutionDataIOException() throws IOException {
+		final ExecutionDataWriter writer = createWriter(new OutputStream() {
+			private int count;
+
+			@Override
+			public void write(int b) throws IOException {
+				if (++count > 5) {
+					throw new IOException();
+				}
+			}
+		});
+		writer.visitClassExecution(
+				new ExecutionData(3, "Sample", new boolean[] { true }));
+		writer.flush();
+	}
+
+	private void writeCompressedBlock(final byte[] content) throws IOException {
+		final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		final DeflaterOutputStream out = new DeflaterOutputStream(compressed);
+		out.write(content);
+		out.close();
+		buffer.write(ExecutionDataWriter.BLOCK_COMPRESSED);
+		buffer.write(compressed.size());
+		compressed.writeTo(buffer);
+	}
+
+	@Override
+	protected ExecutionDataWriter createWriter(final OutputStream out,
+			final boolean extended) throws IOException {
+		final ExecutionDataWriter writer = new CompressedExecutionDataWriter(
+				out);
+		writers.add(writer);
+		return writer;
+	}
+
+	@Override
+	protected ExecutionDataReader createReader() throws IOException {
+		for (final ExecutionDataWriter writer : writers) {
+			writer.flush();
+		}
+		return new ExecutionDataReader(
+				new ByteArrayInputStream(buffer.toByteArray()));
+	}
+
+}
@@ -15,6 +15,7 @@ package org.jacoco.core.data;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -283,6 +284,83 @@ public class ExecutionDataReaderWriterTest {
 		assertArrayEquals(data, store.get(123).getProbes());
 	}
 
+	@Test
+	public void testSparseClass() throws IOException {
+		buffer.reset();
+		writer = createWriter(buffer, true);
+		final boolean[] data = new boolean[2000];
+		data[7] = true;
+		data[1500] = true;
+		writer.visitClassExecution(new ExecutionData(123, "Sample", data));
+		assertFalse(createReaderWithVisitors().read());
+		assertArrayEquals(data, store.get(123).getProbes());
+	}
+
+	@Test
+	public void testSparseAndDenseClasses() throws IOException {
+		buffer.reset();
+		writer = createWriter(buffer, true);
+		final boolean[] data1 = new boolean[300];
+		data1[299] = true;
+		final boolean[] data2 = createData(300);
+		writer.visitClassExecution(new ExecutionData(1, "Sparse", data1));
+		writer.visitClassExecution(new ExecutionData(2, "Dense", data2));
+		assertFalse(createReaderWithVisitors().read());
+		assertArrayEquals(data1, store.get(1).getProbes());
+		assertArrayEquals(data2, store.get(2).getProbes());
+	}
+
+	@Test
+	public void testSparseClassOnlyWithExtendedBlocks() throws IOException {
+		final boolean[] data = new boolean[2000];
+		data[7] = true;
+		final ByteArrayOutputStream plain = new ByteArrayOutputStream();
+		new ExecutionDataWriter(plain)
+				.visitClassExecution(new ExecutionData(123, "Sample", data));
+		final ByteArrayOutputStream extended = new ByteArrayOutputStream();
+		new ExecutionDataWriter(extended, true)
+				.visitClassExecution(new ExecutionData(123, "Sample", data));
+
+		// Block type follows the header of 5 bytes:
+		assertEquals(ExecutionDataWriter.BLOCK_EXECUTIONDATA,
+				plain.toByteArray()[5]);
+		assertEquals(ExecutionDataWriter.BLOCK_EXECUTIONDATA_SPARSE,
+				extended.toByteArray()[5]);
+	}
+
+	@Test
+	public void testCounts() throws IOException {
+		buffer.reset();
+		writer = createWriter(buffer, true);
+		final int[] counts = new int[] { 0, 1, 127, 128, 70000,
+				Integer.MAX_VALUE };
+		writer.visitClassExecution(new ExecutionData(7, "Counted", counts));
+		writer.visitClassExecution(
+				new ExecutionData(8, "Plain", createData(5)));
+		assertFalse(createReaderWithVisitors().read());
+		assertTrue(Arrays.equals(counts, store.get(7).getCounts()));
+		assertArrayEquals(new boolean[] { false, true, true, true, true, true },
+				store.get(7).getProbes());
+		assertNull(store.get(8).getCounts());
+	}
+
+	@Test
+	public void testCountsOnlyWithExtendedBlocks() throws IOException {
+		final int[] counts = new int[] { 0, 3, 1 };
+		final ByteArrayOutputStream plain = new ByteArrayOutputStream();
+		new ExecutionDataWriter(plain)
+				.visitClassExecution(new ExecutionData(7, "Counted", counts));
+		final ByteArrayOutputStream extended = new ByteArrayOutputStream();
+		new ExecutionDataWriter(extended, true)
+				.visitClassExecution(new ExecutionData(7, "Counted", counts));
+
+		// Block type follows the header of 5 bytes:
+		assertEquals(ExecutionDataWriter.BLOCK_EXECUTIONDATA,
+				plain.toByteArray()[5]);
+		assertEquals(ExecutionDataWriter.BLOCK_EXECUTIONCOUNTS,
+				extended.toByteArray()[5]);
+	}
+
 	@Test(expected = RuntimeException.class)
 	public void testExecutionDataIOException() throws IOException {
 		final boolean[] broken = new boolean[1];
@@ -325,7 +403,12 @@ public class ExecutionDataReaderWriterTest {
 
 	protected ExecutionDataWriter createWriter(OutputStream out)
 			throws IOException {
-		return new ExecutionDataWriter(out);
+		return createWriter(out, false);
+	}
+
+	protected ExecutionDataWriter createWriter(OutputStream out,
+			boolean extended) throws IOException {
+		return new ExecutionDataWriter(out, extended);
 	}
 
 	protected ExecutionDataReader createReader() throws IOException {
@@ -64,6 +64,14 @@ public class ExecutionDataStoreTest implements IExecutionDataVisitor {
 				dataOutput);
 	}
 
+	@Test
+	public void testHasCounts() {
+		store.put(new ExecutionData(1, "Plain", new boolean[] { true }));
+		assertFalse(store.hasCounts());
+		store.put(new ExecutionData(2, "Counted", new int[] { 3 }));
+		assertTrue(store.hasCounts());
+	}
+
 	@Test
 	public void testReentrantAccept() {
 		final boolean[] probes = new boolean[] { false, false, true };
@@ -14,6 +14,7 @@ package org.jacoco.core.data;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
@@ -140,6 +141,67 @@ public class ExecutionDataTest {
 		a.assertCompatibility(5, "Example", 3);
 	}
 
+	@Test
+	public void testCounts() {
+		final int[] counts = new int[] { 0, 3, 0 };
+		final ExecutionData e = new ExecutionData(5, "Example", counts);
+		assertSame(counts, e.getCounts());
+		assertFalse(e.getProbes()[0]);
+		assertTrue(e.getProbes()[1]);
+		assertFalse(e.getProbes()[2]);
+
+		counts[2] = 1;
+		assertTrue(e.getProbes()[2]);
+		assertTrue(e.hasHits());
+
+		e.reset();
+		assertEquals(0, counts[1]);
+		assertFalse(e.hasHits());
+	}
+
+	@Test
+	public void testNoCounts() {
+		assertNull(new ExecutionData(5, "Example", 3).getCounts());
+	}
+
+	@Test
+	public void testMergeCounts() {
+		final ExecutionData a = new ExecutionData(5, "Example",
+				new int[] { 0, 1, 0, Integer.MAX_VALUE - 1 });
+		final ExecutionData b = new ExecutionData(5, "Example",
+				new int[] { 0, 2, 3, 5 });
+		a.merge(b);
+
+		assertEquals(0, a.getCounts()[0]);
+		assertEquals(3, a.getCounts()[1]);
+		assertEquals(3, a.getCounts()[2]);
+		assertEquals(Integer.MAX_VALUE, a.getCounts()[3]);
+		assertEquals(2, b.getCounts()[1]);
+	}
+
+	@Test
+	public void testMergeCountsIntoProbes() {
+		final ExecutionData a = new ExecutionData(5, "Example",
+				new boolean[] { true, false });
+		a.merge(new ExecutionData(5, "Example", new int[] { 0, 4 }));
+
+		assertTrue(a.getProbes()[0]);
+		assertTrue(a.getProbes()[1]);
+		assertEquals(0, a.getCounts()[0]);
+		assertEquals(4, a.getCounts()[1]);
+	}
+
+	@Test
+	public void testMergeSubtractCounts() {
+		final ExecutionData a = new ExecutionData(5, "Example",
+				new int[] { 1, 2 });
+		a.merge(new ExecutionData(5, "Example", new int[] { 0, 7 }), false);
+
+		assertEquals(1, a.getCounts()[0]);
+		assertEquals(0, a.getCounts()[1]);
+		assertFalse(a.getProbes()[1]);
+	}
+
 	@Test
 	public void testToString() {
 		final ExecutionData a = new ExecutionData(Long.MAX_VALUE, "Example",
@@ -0,0 +1,281 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link MappedExecutionDataReader}.
+ */
+public class MappedExecutionDataReaderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File execFile;
+
+	private File indexFile;
+
+	private MappedExecutionDataReader reader;
+
+	@Before
+	public void setup() throws IOException {
+		execFile = folder.newFile("jacoco.exec");
+		indexFile = folder.newFile("jacoco.exec.idx");
+	}
+
+	@After
+	public void teardown() throws IOException {
+		if (reader != null) {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void should_lookup_execution_data_by_id() throws IOException {
+		write(new ExecutionData(3, "Foo", new boolean[] { true, false }),
+				new ExecutionData(-7, "Bar", new boolean[] { false, true }),
+				new ExecutionData(5, "Baz", new boolean[] { true }));
+
+		open(1 << 30);
+
+		assertData(3, "Foo", new boolean[] { true, false });
+		assertData(-7, "Bar", new boolean[] { false, true });
+		assertData(5, "Baz", new boolean[] { true });
+		assertNull(reader.get(4));
+	}
+
+	@Test
+	public void should_lookup_sparse_execution_data() throws IOException {
+		final boolean[] sparse = new boolean[1000];
+		sparse[999] = true;
+		write(new ExecutionData(3, "Foo", sparse),
+				new ExecutionData(5, "Bar", new boolean[] { true }));
+
+		open(1 << 30);
+
+		assertData(3, "Foo", sparse);
+		assertData(5, "Bar", new boolean[] { true });
+	}
+
+	@Test
+	public void should_lookup_execution_counts() throws IOException {
+		write(new ExecutionData(3, "Foo", new int[] { 0, 42 }),
+				new ExecutionData(5, "Bar", new boolean[] { true }));
+
+		open(1 << 30);
+
+		assertData(3, "Foo", new boolean[] { false, true });
+		assertArrayEquals(new int[] { 0, 42 }, reader.get(3).getCounts());
+		assertNull(reader.get(5).getCounts());
+	}
+
+	@Test
+	public void should_lookup_names() throws IOException {
+		write(new ExecutionData(3, "Foo", new boolean[] { true }),
+				new ExecutionData(4, "Bar", new boolean[] { true }));
+
+		open(1 << 30);
+
+		assertTrue(reader.contains("Foo"));
+		assertTrue(reader.contains("Bar"));
+		assertFalse(reader.contains("Baz"));
+	}
+
+	@Test
+	public void should_handle_colliding_name_hashes() throws IOException {
+		// "Aa" and "BB" have the same hash code:
+		write(new ExecutionData(1, "Aa", new boolean[] { true }));
+
+		open(1 << 30);
+
+		assertTrue(reader.contains("Aa"));
+		assertFalse(reader.contains("BB"));
+	}
+
+	@Test
+	public void should_merge_multiple_entries_for_same_class()
+			throws IOException {
+		write(new ExecutionData(3, "Foo", new boolean[] { true, false, false }),
+				new ExecutionData(4, "Bar", new boolean[] { true }),
+				new ExecutionData(3, "Foo",
+						new boolean[] { false, false, true }));
+
+		open(1 << 30);
+
+		assertData(3, "Foo", new boolean[] { true, false, true });
+	}
+
+	@Test
+	public void should_read_entries_across_segment_boundaries()
+			throws IOException {
+		final ExecutionData[] data = new ExecutionData[100];
+		for (int i = 0; i < data.length; i++) {
+			final boolean[] probes = new boolean[i + 1];
+			for (int p = 0; p <= i; p += 3) {
+				probes[p] = true;
+			}
+			data[i] = new ExecutionData(i, "Class" + i, probes);
+		}
+		write(data);
+
+		open(16);
+
+		for (final ExecutionData d : data) {
+			assertData(d.getId(), d.getName(), d.getProbes());
+			assertTrue(reader.contains(d.getName()));
+		}
+	}
+
+	@Test
+	public void should_support_concurrent_lookups() throws Exception {
+		final ExecutionData[] data = new ExecutionData[100];
+		for (int i = 0; i < data.length; i++) {
+			final boolean[] probes = new boolean[i + 1];
+			probes[i] = true;
+			data[i] = new ExecutionData(i, "Class" + i, probes);
+		}
+		write(data);
+		open(16);
+
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final List<Future<Void>> results = new ArrayList<Future<Void>>();
+			for (int t = 0; t < 4; t++) {
+				results.add(executor.submit(new Callable<Void>() {
+					public Void call() {
+						for (final ExecutionData d : data) {
+							assertData(d.getId(), d.getName(), d.getProbes());
+						}
+						return null;
+					}
+				}));
+			}
+			for (final Future<Void> result : results) {
+				result.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void should_handle_empty_file() throws IOException {
+		write();
+
+		open(1 << 30);
+
+		assertNull(reader.get(0));
+		assertFalse(reader.contains("Foo"));
+	}
+
+	@Test
+	public void should_fail_when_exec_file_was_modified() throws IOException {
+		write(new ExecutionData(3, "Foo", new boolean[] { true }));
+		MappedExecutionDataReader.writeIndex(execFile, indexFile);
+		final OutputStream out = new FileOutputStream(execFile, true);
+		new ExecutionDataWriter(out);
+		out.close();
+
+		try {
+			new MappedExecutionDataReader(execFile, indexFile);
+			fail("IOException expected");
+		} catch (IOException e) {
+			assertEquals(
+					String.format("Execution data index %s does not match %s.",
+							indexFile, execFile),
+					e.getMessage());
+		}
+	}
+
+	@Test
+	public void should_fail_for_invalid_index() throws IOException {
+		final OutputStream out = new FileOutputStream(indexFile);
+		out.write("invalid index".getBytes());
+		out.close();
+
+		try {
+			new MappedExecutionDataReader(execFile, indexFile);
+			fail("IOException expected");
+		} catch (IOException e) {
+			assertEquals(String.format("Invalid execution data index %s.",
+					indexFile), e.getMessage());
+		}
+	}
+
+	@Test
+	public void should_fail_for_compressed_exec_file() throws IOException {
+		final OutputStream out = new FileOutputStream(execFile);
+		final ExecutionDataWriter writer = new CompressedExecutionDataWriter(
+				out);
+		writer.visitClassExecution(
+				new ExecutionData(3, "Foo", new boolean[] { true }));
+		writer.flush();
+		out.close();
+
+		try {
+			MappedExecutionDataReader.writeIndex(execFile, indexFile);
+			fail("IOException expected");
+		} catch (IOException e) {
+			assertEquals("Compressed execution data can't be indexed.",
+					e.getMessage());
+		}
+	}
+
+	private void write(final ExecutionData... data) throws IOException {
+		final OutputStream out = new FileOutputStream(execFile);
+		final ExecutionDataWriter writer = new ExecutionDataWriter(out, true);
+		writer.visitSessionInfo(new SessionInfo("session", 1, 2));
+		for (final ExecutionData d : data) {
+			writer.visitClassExecution(d);
+		}
+		out.close();
+	}
+
+	private void open(final int segmentSize) throws IOException {
+		MappedExecutionDataReader.writeIndex(execFile, indexFile);
+		reader = new MappedExecutionDataReader(execFile, indexFile,
+				segmentSize);
+	}
+
+	private void assertData(final long id, final String name,
+			final boolean[] probes) {
+		final ExecutionData data = reader.get(id);
+		assertEquals(id, data.getId());
+		assertEquals(name, data.getName());
+		assertArrayEquals(probes, data.getProbes());
+	}
+
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link PackedExecutionDataStore}.
+ */
+public class PackedExecutionDataStoreTest implements IExecutionDataVisitor {
+
+	private PackedExecutionDataStore store;
+
+	private Map<Long, ExecutionData> dataOutput;
+
+	@Before
+	public void setup() {
+		store = new PackedExecutionDataStore();
+		dataOutput = new HashMap<Long, ExecutionData>();
+	}
+
+	@Test
+	public void testEmpty() {
+		assertTrue(store.isEmpty());
+		assertNull(store.get(123));
+		store.accept(this);
+		assertTrue(dataOutput.isEmpty());
+	}
+
+	@Test
+	public void testPut() {
+		final boolean[] probes = new boolean[] { false, false, true };
+		store.put(new ExecutionData(1000, "Sample", probes));
+
+		assertFalse(store.isEmpty());
+		final ExecutionData data = store.get(1000);
+		assertEquals(1000, data.getId());
+		assertEquals("Sample", data.getName());
+		assertArrayEquals(probes, data.getProbes());
+		assertNotSame(probes, data.getProbes());
+	}
+
+	@Test
+	public void testHasCounts() {
+		store.put(new ExecutionData(1, "Plain", new boolean[] { true }));
+		assertFalse(store.hasCounts());
+		store.put(new ExecutionData(2, "Counted", new int[] { 3 }));
+		assertTrue(store.hasCounts());
+	}
+
+	@Test
+	public void testPutNotReferenced() {
+		final boolean[] probes = new boolean[] { false, false, true };
+		store.put(new ExecutionData(1000, "Sample", probes));
+
+		probes[0] = true;
+
+		assertArrayEquals(new boolean[] { false, false, true },
+				store.get(1000).getProbes());
+	}
+
+	@Test
+	public void testMerge() {
+		final boolean[] data1 = createProbes(130, 0, 63, 64, 129);
+		final boolean[] data2 = createProbes(130, 1, 63, 65);
+		store.visitClassExecution(new ExecutionData(1000, "Sample", data1));
+		store.visitClassExecution(new ExecutionData(1000, "Sample", data2));
+
+		assertArrayEquals(createProbes(130, 0, 1, 63, 64, 65, 129),
+				store.get(1000).getProbes());
+	}
+
+	@Test
+	public void testSubtract() {
+		store.put(new ExecutionData(1000, "Sample",
+				createProbes(130, 0, 63, 64, 129)));
+
+		store.subtract(new ExecutionData(1000, "Sample",
+				createProbes(130, 1, 64, 129)));
+		store.subtract(new ExecutionData(2000, "Other", createProbes(1, 0)));
+
+		assertArrayEquals(createProbes(130, 0, 63),
+				store.get(1000).getProbes());
+		assertNull(store.get(2000));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testNegativeDifferentName() {
+		store.put(new ExecutionData(1000, "Sample1", new boolean[] { true }));
+		store.put(new ExecutionData(1000, "Sample2", new boolean[] { true }));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testNegativeDifferentProbeCount() {
+		store.put(new ExecutionData(1000, "Sample", new boolean[65]));
+		store.put(new ExecutionData(1000, "Sample", new boolean[64]));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testNegativeSubtractDifferentProbeCount() {
+		store.put(new ExecutionData(1000, "Sample", new boolean[1]));
+		store.subtract(new ExecutionData(1000, "Sample", new boolean[2]));
+	}
+
+	@Test
+	public void testAccept() {
+		final boolean[] data1 = createProbes(3, 1);
+		final boolean[] data2 = createProbes(0);
+		store.put(new ExecutionData(1000, "Sample1", data1));
+		store.put(new ExecutionData(1001, "Sample2", data2));
+
+		store.accept(this);
+
+		assertEquals(2, dataOutput.size());
+		assertEquals("Sample1", dataOutput.get(Long.valueOf(1000)).getName());
+		assertArrayEquals(data1,
+				dataOutput.get(Long.valueOf(1000)).getProbes());
+		assertEquals("Sample2", dataOutput.get(Long.valueOf(1001)).getName());
+		assertArrayEquals(data2,
+				dataOutput.get(Long.valueOf(1001)).getProbes());
+	}
+
+	private static boolean[] createProbes(final int count,
+			final int... executed) {
+		final boolean[] probes = new boolean[count];
+		for (final int i : executed) {
+			probes[i] = true;
+		}
+		return probes;
+	}
+
+	// === IExecutionDataVisitor ===
+
+	public void visitClassExecution(ExecutionData data) {
+		dataOutput.put(Long.valueOf(data.getId()), data);
+	}
+
+}
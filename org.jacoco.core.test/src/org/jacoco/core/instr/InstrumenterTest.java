@@ -14,7 +14,11 @@ package org.jacoco.core.instr;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
@@ -24,8 +28,13 @@ import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.io.PrintWriter;
 import java.io.Serializable;
+import java.io.StringWriter;
+import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.zip.CRC32;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -33,18 +42,35 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
+import org.jacoco.core.analysis.Analyzer;
 import org.jacoco.core.analysis.AnalyzerTest;
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfoStore;
 import org.jacoco.core.internal.Pack200Streams;
 import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.internal.diff.DiffScope;
 import org.jacoco.core.internal.instr.InstrSupport;
 import org.jacoco.core.runtime.IExecutionDataAccessorGenerator;
+import org.jacoco.core.runtime.IRuntime;
+import org.jacoco.core.runtime.RuntimeData;
+import org.jacoco.core.runtime.SystemPropertiesRuntime;
 import org.jacoco.core.test.TargetLoader;
 import org.junit.AssumptionViolatedException;
 import org.junit.Before;
 import org.junit.Test;
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.util.Textifier;
+import org.objectweb.asm.util.TraceMethodVisitor;
 
 /**
  * Unit tests for {@link Instrumenter}.
@@ -76,15 +102,28 @@ public class InstrumenterTest {
 
 		long classId;
 
+		int probeCount;
+
 		public int generateDataAccessor(final long classId,
 				final String classname, final int probeCount,
 				final MethodVisitor mv) {
 			this.classId = classId;
+			this.probeCount = probeCount;
 			InstrSupport.push(mv, probeCount);
 			mv.visitIntInsn(Opcodes.NEWARRAY, Opcodes.T_BOOLEAN);
 			return 1;
 		}
 
+		public int generateCountsAccessor(final long classId,
+				final String classname, final int probeCount,
+				final MethodVisitor mv) {
+			this.classId = classId;
+			this.probeCount = probeCount;
+			InstrSupport.push(mv, probeCount);
+			mv.visitIntInsn(Opcodes.NEWARRAY, Opcodes.T_INT);
+			return 1;
+		}
+
 	}
 
 	private AccessorGenerator accessorGenerator;
@@ -117,6 +156,325 @@ public class InstrumenterTest {
 		return cw.toByteArray();
 	}
 
+	@Test
+	public void should_only_instrument_methods_in_diff_scope()
+			throws Exception {
+		final byte[] original = createClassWithBranches();
+		instrumenter.instrument(original, "Foo");
+		final int probeCount = accessorGenerator.probeCount;
+
+		instrumenter.setDiffScope(DiffScope.parse("[{\"classFile\":\"Foo\","
+				+ "\"type\":\"MODIFY\",\"methodInfos\":[{"
+				+ "\"methodName\":\"b\",\"parameters\":\"int x\"}]}]"));
+		final byte[] bytes = instrumenter.instrument(original, "Foo");
+
+		assertEquals(probeCount, accessorGenerator.probeCount);
+		assertEquals(dumpMethod(original, "a"), dumpMethod(bytes, "a"));
+		assertNotEquals(dumpMethod(original, "b"), dumpMethod(bytes, "b"));
+		final Class<?> clazz = new TargetLoader().add("Foo", bytes);
+		for (final String name : Arrays.asList("a", "b")) {
+			final Method method = clazz.getMethod(name, int.class);
+			assertEquals(Integer.valueOf(1),
+					method.invoke(null, Integer.valueOf(1)));
+			assertEquals(Integer.valueOf(2),
+					method.invoke(null, Integer.valueOf(0)));
+		}
+	}
+
+	@Test
+	public void should_check_probes_when_enabled() throws Exception {
+		final byte[] original = createClassWithBranches();
+		instrumenter.setCheckProbes(true);
+
+		final byte[] bytes = instrumenter.instrument(original, "Foo");
+
+		assertTrue(dumpMethod(bytes, "a").contains("BALOAD"));
+		final Class<?> clazz = new TargetLoader().add("Foo", bytes);
+		final Method method = clazz.getMethod("a", int.class);
+		for (int i = 0; i < 2; i++) {
+			assertEquals(Integer.valueOf(1),
+					method.invoke(null, Integer.valueOf(1)));
+			assertEquals(Integer.valueOf(2),
+					method.invoke(null, Integer.valueOf(0)));
+		}
+	}
+
+	@Test
+	public void should_only_insert_entry_probes_for_method_coverage()
+			throws Exception {
+		final byte[] original = createClassWithBranches();
+		instrumenter.instrument(original, "Foo");
+		final int probeCount = accessorGenerator.probeCount;
+		instrumenter.setMethodCoverageOnly(true);
+
+		final byte[] bytes = instrumenter.instrument(original, "Foo");
+
+		assertEquals(probeCount, accessorGenerator.probeCount);
+		assertEquals(1, dumpMethod(bytes, "a").split("BASTORE").length - 1);
+		assertEquals(1, dumpMethod(bytes, "b").split("BASTORE").length - 1);
+		// first probe of b follows the two probes of a:
+		assertTrue(dumpMethod(bytes, "b")
+				.contains("ICONST_2\n    ICONST_1\n    BASTORE"));
+		final Class<?> clazz = new TargetLoader().add("Foo", bytes);
+		assertEquals(Integer.valueOf(2), clazz.getMethod("b", int.class)
+				.invoke(null, Integer.valueOf(0)));
+	}
+
+	@Test
+	public void method_coverage_should_report_executed_methods()
+			throws Exception {
+		final RuntimeData data = new RuntimeData();
+		final IRuntime runtime = new SystemPropertiesRuntime();
+		runtime.startup(data);
+		final Instrumenter instr = new Instrumenter(runtime);
+		instr.setMethodCoverageOnly(true);
+		final byte[] original = createClassWithBranches();
+		final Class<?> clazz = new TargetLoader().add("Foo",
+				instr.instrument(original, "Foo"));
+
+		clazz.getMethod("b", int.class).invoke(null, Integer.valueOf(0));
+
+		final ExecutionDataStore store = new ExecutionDataStore();
+		data.collect(store, new SessionInfoStore(), false);
+		runtime.shutdown();
+		final CoverageBuilder builder = new CoverageBuilder();
+		new Analyzer(store, builder).analyzeClass(original, "Foo");
+		final IClassCoverage coverage = builder.getClasses().iterator().next();
+		for (final IMethodCoverage method : coverage.getMethods()) {
+			assertEquals(method.getName(), "b".equals(method.getName()) ? 1 : 0,
+					method.getMethodCounter().getCoveredCount());
+		}
+	}
+
+	@Test
+	public void should_insert_counting_probes() throws Exception {
+		final byte[] original = createClassWithBranches();
+		instrumenter.setCheckProbes(true);
+		instrumenter.setCountProbes(true);
+
+		final byte[] bytes = instrumenter.instrument(original, "Foo");
+
+		final String a = dumpMethod(bytes, "a");
+		assertTrue(a.contains(
+				"DUP2\n    IALOAD\n    ICONST_1\n    IADD\n" + "    IASTORE"));
+		assertFalse(a.contains("BALOAD"));
+		final Class<?> clazz = new TargetLoader().add("Foo", bytes);
+		assertEquals(Integer.valueOf(2), clazz.getMethod("a", int.class)
+				.invoke(null, Integer.valueOf(0)));
+	}
+
+	@Test
+	public void counting_probes_should_report_execution_counts()
+			throws Exception {
+		final RuntimeData data = new RuntimeData();
+		final IRuntime runtime = new SystemPropertiesRuntime();
+		runtime.startup(data);
+		final Instrumenter instr = new Instrumenter(runtime);
+		instr.setCountProbes(true);
+		final byte[] original = createClassWithBranches();
+		final Class<?> clazz = new TargetLoader().add("Foo",
+				instr.instrument(original, "Foo"));
+
+		final Method b = clazz.getMethod("b", int.class);
+		for (int i = 0; i < 5; i++) {
+			b.invoke(null, Integer.valueOf(i % 2));
+		}
+
+		final ExecutionDataStore store = new ExecutionDataStore();
+		data.collect(store, new SessionInfoStore(), false);
+		runtime.shutdown();
+		final CoverageBuilder builder = new CoverageBuilder();
+		new Analyzer(store, builder).analyzeClass(original, "Foo");
+		final IClassCoverage coverage = builder.getClasses().iterator().next();
+		for (final IMethodCoverage method : coverage.getMethods()) {
+			assertEquals(method.getName(), "b".equals(method.getName()) ? 5 : 0,
+					method.getExecutionCount());
+		}
+	}
+
+	@Test
+	public void counting_probes_should_not_count_loop_iterations_as_method_entries()
+			throws Exception {
+		final RuntimeData data = new RuntimeData();
+		final IRuntime runtime = new SystemPropertiesRuntime();
+		runtime.startup(data);
+		final Instrumenter instr = new Instrumenter(runtime);
+		instr.setCountProbes(true);
+		final byte[] original = createClassWithLoop();
+		final Class<?> clazz = new TargetLoader().add("Foo",
+				instr.instrument(original, "Foo"));
+
+		final Method loop = clazz.getMethod("loop", int.class);
+		loop.invoke(null, Integer.valueOf(3));
+		loop.invoke(null, Integer.valueOf(3));
+
+		final ExecutionDataStore store = new ExecutionDataStore();
+		data.collect(store, new SessionInfoStore(), false);
+		runtime.shutdown();
+		final CoverageBuilder builder = new CoverageBuilder();
+		new Analyzer(store, builder).analyzeClass(original, "Foo");
+		final IClassCoverage coverage = builder.getClasses().iterator().next();
+		for (final IMethodCoverage method : coverage.getMethods()) {
+			assertEquals(method.getName(),
+					"loop".equals(method.getName()) ? 2 : 0,
+					method.getExecutionCount());
+		}
+	}
+
+	@Test
+	public void should_store_probe_array_in_final_field_when_class_has_static_initializer()
+			throws Exception {
+		final byte[] original = createClassWithStaticInitializer();
+
+		final byte[] bytes = instrumenter.instrument(original, "Foo");
+
+		final ClassNode node = new ClassNode();
+		new ClassReader(bytes).accept(node, 0);
+		int access = 0;
+		for (final FieldNode field : node.fields) {
+			if (InstrSupport.DATAFIELD_NAME.equals(field.name)) {
+				access = field.access;
+			}
+		}
+		assertEquals(InstrSupport.DATAFIELD_FINAL_ACC, access);
+		assertTrue(dumpMethod(bytes, "<clinit>")
+				.contains("PUTSTATIC Foo.$jacocoData : [Z"));
+		assertFalse(dumpMethod(bytes, "a").contains("$jacocoData"));
+		final Class<?> clazz = new TargetLoader().add("Foo", bytes);
+		assertEquals(Integer.valueOf(1), clazz.getMethod("a", int.class)
+				.invoke(null, Integer.valueOf(1)));
+	}
+
+	@Test
+	public void should_not_modify_classes_outside_diff_scope()
+			throws Exception {
+		final byte[] original = createClassWithBranches();
+		instrumenter.setDiffScope(
+				DiffScope.parse("[{\"classFile\":\"Bar\",\"type\":\"ADD\"}]"));
+
+		assertSame(original, instrumenter.instrument(original, "Foo"));
+	}
+
+	@Test
+	public void restore_should_keep_members_of_instrumented_class()
+			throws Exception {
+		final byte[] original = createClassWithBranches();
+		final byte[] instrumented = instrumenter.instrument(original, "Foo");
+		final int probeCount = accessorGenerator.probeCount;
+
+		final byte[] restored = instrumenter.restore(original, "Foo");
+
+		assertEquals(probeCount, accessorGenerator.probeCount);
+		assertEquals(members(instrumented), members(restored));
+		assertEquals(dumpMethod(original, "a"), dumpMethod(restored, "a"));
+		assertEquals(dumpMethod(original, "b"), dumpMethod(restored, "b"));
+		final Class<?> clazz = new TargetLoader().add("Foo", restored);
+		assertEquals(Integer.valueOf(1), clazz.getMethod("a", int.class)
+				.invoke(null, Integer.valueOf(1)));
+	}
+
+	@Test
+	public void restore_should_throw_exception_for_unsupported_class_file_version() {
+		final byte[] bytes = createClass(Opcodes.V16 + 2);
+		try {
+			instrumenter.restore(bytes, "UnsupportedVersion");
+			fail("exception expected");
+		} catch (final IOException e) {
+			assertEquals("Error while instrumenting UnsupportedVersion.",
+					e.getMessage());
+		}
+	}
+
+	private static byte[] createClassWithBranches() {
+		final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+		cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "Foo", null,
+				"java/lang/Object", null);
+		for (final String name : Arrays.asList("a", "b")) {
+			final MethodVisitor mv = cw.visitMethod(
+					Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, name, "(I)I", null,
+					null);
+			mv.visitCode();
+			mv.visitVarInsn(Opcodes.ILOAD, 0);
+			final Label zero = new Label();
+			mv.visitJumpInsn(Opcodes.IFEQ, zero);
+			mv.visitInsn(Opcodes.ICONST_1);
+			mv.visitInsn(Opcodes.IRETURN);
+			mv.visitLabel(zero);
+			mv.visitInsn(Opcodes.ICONST_2);
+			mv.visitInsn(Opcodes.IRETURN);
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+		}
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	private static byte[] createClassWithLoop() {
+		final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+		cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "Foo", null,
+				"java/lang/Object", null);
+		final MethodVisitor mv = cw.visitMethod(
+				Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "loop", "(I)I", null,
+				null);
+		mv.visitCode();
+		// do { n--; } while (n > 0);
+		final Label head = new Label();
+		mv.visitLabel(head);
+		mv.visitIincInsn(0, -1);
+		mv.visitVarInsn(Opcodes.ILOAD, 0);
+		mv.visitJumpInsn(Opcodes.IFGT, head);
+		mv.visitVarInsn(Opcodes.ILOAD, 0);
+		mv.visitInsn(Opcodes.IRETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	private static byte[] createClassWithStaticInitializer() {
+		final ClassReader reader = new ClassReader(createClassWithBranches());
+		final ClassWriter cw = new ClassWriter(reader, 0);
+		reader.accept(cw, 0);
+		final MethodVisitor mv = cw.visitMethod(Opcodes.ACC_STATIC, "<clinit>",
+				"()V", null, null);
+		mv.visitCode();
+		mv.visitInsn(Opcodes.ICONST_0);
+		mv.visitMethodInsn(Opcodes.INVOKESTATIC, "Foo", "a", "(I)I", false);
+		mv.visitInsn(Opcodes.POP);
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(1, 0);
+		mv.visitEnd();
+		return cw.toByteArray();
+	}
+
+	private static Set<String> members(final byte[] bytes) {
+		final ClassNode node = new ClassNode();
+		new ClassReader(bytes).accept(node, 0);
+		final Set<String> members = new HashSet<String>();
+		for (final FieldNode field : node.fields) {
+			members.add(field.name + ":" + field.desc);
+		}
+		for (final MethodNode method : node.methods) {
+			members.add(method.name + method.desc);
+		}
+		return members;
+	}
+
+	private static String dumpMethod(final byte[] bytes, final String name) {
+		final ClassNode node = new ClassNode();
+		new ClassReader(bytes).accept(node, 0);
+		for (final MethodNode method : node.methods) {
+			if (method.name.equals(name)) {
+				final Textifier textifier = new Textifier();
+				method.accept(new TraceMethodVisitor(textifier));
+				final StringWriter writer = new StringWriter();
+				textifier.print(new PrintWriter(writer));
+				return writer.toString();
+			}
+		}
+		throw new AssertionError(name);
+	}
+
 	/**
 	 * @see #instrumentAll_should_throw_exception_for_unsupported_class_file_version()
 	 */
@@ -171,4 +171,47 @@ public class InstructionTest {
 		assertEquals(CounterImpl.getInstance(2, 1),
 				instruction.getBranchCounter());
 	}
+
+	@Test
+	public void addExecutions_should_propagate_executions_to_predecessors() {
+		final Instruction next = new Instruction(124);
+		instruction.addBranch(next, 0);
+
+		next.addExecutions(3);
+		next.addExecutions(4);
+
+		assertEquals(7, next.getExecutions());
+		assertEquals(7, instruction.getExecutions());
+	}
+
+	@Test
+	public void addBranchWithInstruction_should_propagate_existing_executions() {
+		final Instruction target = new Instruction(122);
+		target.addExecutions(5);
+		instruction.addExecutions(2);
+
+		instruction.addBranch(target, 1);
+
+		assertEquals(7, instruction.getExecutions());
+	}
+
+	@Test
+	public void merge_should_add_executions() {
+		final Instruction i1 = new Instruction(124);
+		i1.addExecutions(2);
+		final Instruction i2 = new Instruction(124);
+		i2.addExecutions(3);
+
+		assertEquals(5, i1.merge(i2).getExecutions());
+	}
+
+	@Test
+	public void replaceBranches_should_keep_executions() {
+		instruction.addExecutions(9);
+
+		instruction = instruction.replaceBranches(
+				Arrays.asList(new Instruction(1), new Instruction(2)));
+
+		assertEquals(9, instruction.getExecutions());
+	}
 }
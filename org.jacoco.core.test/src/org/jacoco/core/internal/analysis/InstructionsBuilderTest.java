@@ -187,4 +187,53 @@ public class InstructionsBuilderTest {
 				map.get(i1).getInstructionCounter());
 	}
 
+	@Test
+	public void counts_should_propagate_executions() {
+		builder = new InstructionsBuilder(new boolean[] { false, true },
+				new int[] { 0, 42 });
+		InsnNode i1 = new InsnNode(Opcodes.NOP);
+		builder.addInstruction(i1);
+		Label l2 = new Label();
+		builder.addJump(l2, 0);
+
+		builder.addLabel(l2);
+		InsnNode i2 = new InsnNode(Opcodes.NOP);
+		builder.addInstruction(i2);
+		builder.addProbe(1, 0);
+
+		Map<AbstractInsnNode, Instruction> map = builder.getInstructions();
+		assertEquals(42, map.get(i1).getExecutions());
+		assertEquals(42, map.get(i2).getExecutions());
+		assertEquals(42, builder.getEntryExecutions());
+	}
+
+	@Test
+	public void entry_executions_should_not_count_jumps_to_first_instruction() {
+		builder = new InstructionsBuilder(new boolean[] { true, true },
+				new int[] { 5, 2 });
+		Label l1 = new Label();
+		builder.addLabel(l1);
+		InsnNode i1 = new InsnNode(Opcodes.NOP);
+		builder.addInstruction(i1);
+		InsnNode i2 = new InsnNode(Opcodes.NOP);
+		builder.addInstruction(i2);
+		builder.addJumpProbe(l1, 0, 1);
+		InsnNode i3 = new InsnNode(Opcodes.NOP);
+		builder.addInstruction(i3);
+		builder.addProbe(1, 0);
+
+		Map<AbstractInsnNode, Instruction> map = builder.getInstructions();
+		assertEquals(7, map.get(i1).getExecutions());
+		assertEquals(2, builder.getEntryExecutions());
+	}
+
+	@Test
+	public void entry_executions_should_be_zero_without_counts() {
+		InsnNode i1 = new InsnNode(Opcodes.NOP);
+		builder.addInstruction(i1);
+		builder.addProbe(1, 0);
+
+		builder.getInstructions();
+		assertEquals(0, builder.getEntryExecutions());
+	}
 }
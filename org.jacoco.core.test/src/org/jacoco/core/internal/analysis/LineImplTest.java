@@ -14,6 +14,7 @@ package org.jacoco.core.internal.analysis;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 
 import org.jacoco.core.analysis.ICounter;
 import org.junit.Before;
@@ -38,6 +39,23 @@ public class LineImplTest {
 		assertEquals(ICounter.EMPTY, line.getStatus());
 	}
 
+	@Test
+	public void testIncrementExecutionCount() {
+		final LineImpl l = line.incrementExecutionCount(5);
+		assertEquals(5, l.getExecutionCount());
+		assertEquals(0, line.getExecutionCount());
+		final LineImpl l2 = l
+				.increment(CounterImpl.COUNTER_0_1, CounterImpl.COUNTER_0_0)
+				.incrementExecutionCount(2);
+		assertEquals(7, l2.getExecutionCount());
+		assertEquals(CounterImpl.COUNTER_0_1, l2.getInstructionCounter());
+	}
+
+	@Test
+	public void testIncrementExecutionCountZero() {
+		assertSame(line, line.incrementExecutionCount(0));
+	}
+
 	@Test
 	public void testIncrement1() {
 		line = line.increment(CounterImpl.getInstance(1, 2),
@@ -175,4 +193,14 @@ public class LineImplTest {
 		assertFalse(line.equals(line2));
 	}
 
+	@Test
+	public void testEquals5() {
+		line = line.increment(CounterImpl.COUNTER_0_1, CounterImpl.COUNTER_0_0)
+				.incrementExecutionCount(3);
+		LineImpl line2 = LineImpl.EMPTY;
+		line2 = line2.increment(CounterImpl.COUNTER_0_1,
+				CounterImpl.COUNTER_0_0);
+		assertFalse(line.equals(line2));
+	}
+
 }
@@ -223,4 +223,23 @@ public class SourceNodeImplTest {
 		assertEquals(CounterImpl.getInstance(0, 1), node.getLineCounter());
 	}
 
+	@Test
+	public void testIncrementChildWithExecutionCounts() {
+		final SourceNodeImpl node = new SourceNodeImpl(ElementType.CLASS,
+				"Foo");
+
+		final SourceNodeImpl child = new SourceNodeImpl(ElementType.METHOD,
+				"m");
+		child.increment(CounterImpl.COUNTER_0_1, CounterImpl.COUNTER_0_0, 5);
+		child.incrementExecutionCount(3, 5);
+		child.incrementExecutionCount(0, 6);
+		child.incrementExecutionCount(7, ISourceNode.UNKNOWN_LINE);
+
+		node.increment(child);
+		node.increment(child);
+
+		assertEquals(3, child.getLine(5).getExecutionCount());
+		assertEquals(6, node.getLine(5).getExecutionCount());
+		assertEquals(0, node.getLine(6).getExecutionCount());
+	}
 }
@@ -12,8 +12,13 @@
  *******************************************************************************/
 package org.jacoco.core.internal.data;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
@@ -116,4 +121,88 @@ public class CompactDataInputOutputTest {
 		}
 	}
 
+	@Test
+	public void testVarIntSize() throws IOException {
+		final int[] values = new int[] { 0, 0x7F, 0x80, 0x3FFF, 0x4000,
+				0x12345678, -1, Integer.MAX_VALUE };
+		for (final int value : values) {
+			final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			new CompactDataOutput(buffer).writeVarInt(value);
+			assertEquals(buffer.size(), CompactDataOutput.getVarIntSize(value));
+		}
+	}
+
+	@Test
+	public void testSparseBooleanEmpty() throws IOException {
+		testSparseBoolean();
+	}
+
+	@Test
+	public void testSparseBooleanNoHits() throws IOException {
+		testSparseBoolean(false, false, false);
+	}
+
+	@Test
+	public void testSparseBooleanAllHits() throws IOException {
+		testSparseBoolean(true, true, true);
+	}
+
+	@Test
+	public void testSparseBoolean() throws IOException {
+		testSparseBoolean(true, false, false, true, false, false, false, true);
+	}
+
+	@Test
+	public void testSparseBooleanLarge() throws IOException {
+		final boolean[] values = new boolean[5000];
+		values[0] = true;
+		values[200] = true;
+		values[4999] = true;
+		testSparseBoolean(values);
+	}
+
+	@Test
+	public void testSparseBooleanArraySize() throws IOException {
+		final boolean[] values = new boolean[5000];
+		values[3] = true;
+		values[300] = true;
+		values[4000] = true;
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		new CompactDataOutput(buffer).writeSparseBooleanArray(values);
+		final int expected = buffer.size()
+				- CompactDataOutput.getVarIntSize(values.length);
+		assertEquals(expected,
+				CompactDataOutput.getSparseBooleanArraySize(values, 625));
+	}
+
+	@Test
+	public void testSparseBooleanArraySizeExceedsLimit() {
+		final boolean[] values = new boolean[] { true, true, true, true, true,
+				true, true, true, true, true };
+		assertTrue(CompactDataOutput.getSparseBooleanArraySize(values, 2) > 2);
+	}
+
+	@Test
+	public void testInvalidSparseBoolean() throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final CompactDataOutput data = new CompactDataOutput(buffer);
+		data.writeVarInt(3);
+		data.writeVarInt(1);
+		data.writeVarInt(3);
+		try {
+			new CompactDataInput(new ByteArrayInputStream(buffer.toByteArray()))
+					.readSparseBooleanArray();
+			fail("IOException expected");
+		} catch (IOException e) {
+			assertEquals("Invalid sparse boolean array.", e.getMessage());
+		}
+	}
+
+	private void testSparseBoolean(boolean... values) throws IOException {
+		out.writeSparseBooleanArray(values);
+		out.close();
+		assertArrayEquals(values, in.readSparseBooleanArray());
+		assertEquals(Integer.valueOf(-1), Integer.valueOf(in.read()));
+	}
+
 }
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link LongHashMap}.
+ */
+public class LongHashMapTest {
+
+	private LongHashMap<String> map;
+
+	@Before
+	public void setup() {
+		map = new LongHashMap<String>();
+	}
+
+	@Test
+	public void should_be_empty_initially() {
+		assertEquals(0, map.size());
+		assertNull(map.get(0));
+		assertEquals(Collections.emptyList(), map.values());
+	}
+
+	@Test
+	public void should_return_put_values() {
+		assertNull(map.put(42, "a"));
+		assertNull(map.put(0, "b"));
+		assertNull(map.put(-1, "c"));
+
+		assertEquals("a", map.get(42));
+		assertEquals("b", map.get(0));
+		assertEquals("c", map.get(-1));
+		assertNull(map.get(1));
+		assertEquals(3, map.size());
+	}
+
+	@Test
+	public void should_replace_existing_value() {
+		map.put(42, "a");
+
+		assertEquals("a", map.put(42, "b"));
+
+		assertEquals("b", map.get(42));
+		assertEquals(1, map.size());
+	}
+
+	@Test
+	public void should_keep_all_entries_when_growing() {
+		for (long i = 0; i < 10000; i++) {
+			map.put((i + 1) << 32, String.valueOf(i));
+			map.put(i, String.valueOf(-i));
+		}
+
+		assertEquals(20000, map.size());
+		for (long i = 0; i < 10000; i++) {
+			assertEquals(String.valueOf(i), map.get((i + 1) << 32));
+			assertEquals(String.valueOf(-i), map.get(i));
+		}
+		assertNull(map.get(10000));
+	}
+
+	@Test
+	public void values_should_return_new_list_of_all_values() {
+		map.put(1, "a");
+		map.put(2, "b");
+		map.put(3, "c");
+
+		final List<String> values = map.values();
+		values.clear();
+
+		final List<String> sorted = new ArrayList<String>(map.values());
+		Collections.sort(sorted);
+		assertEquals(3, sorted.size());
+		assertSame("a", sorted.get(0));
+		assertSame("b", sorted.get(1));
+		assertSame("c", sorted.get(2));
+	}
+
+}
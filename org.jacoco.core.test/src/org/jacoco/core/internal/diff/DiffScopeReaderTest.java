@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link DiffScopeReader}.
+ */
+public class DiffScopeReaderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void should_read_classes_and_methods() throws IOException {
+		final DiffScope scope = read("[" //
+				+ "{\"classFile\":\"com/example/Foo\",\"type\":\"MODIFY\","
+				+ "\"methodInfos\":[{\"methodName\":\"run\","
+				+ "\"parameters\":\"String a&int b\"},"
+				+ "{\"methodName\":\"stop\",\"parameters\":\"\"}]},"
+				+ "{\"classFile\":\"com/example/Bar\",\"type\":\"ADD\"}" //
+				+ "]");
+
+		assertTrue(scope.containsMethod("com/example/Foo", "run",
+				"(Ljava/lang/String;I)V"));
+		assertTrue(scope.containsMethod("com/example/Foo", "stop", "()V"));
+		assertFalse(scope.containsMethod("com/example/Foo", "other", "()V"));
+		assertTrue(scope.containsMethod("com/example/Bar", "any", "()V"));
+		assertFalse(scope.containsClass("com/example/Other"));
+	}
+
+	@Test
+	public void should_read_properties_in_any_order() throws IOException {
+		final DiffScope scope = read("[{\"methodInfos\":[],"
+				+ "\"type\":\"ADD\",\"classFile\":\"Foo\"}]");
+
+		assertTrue(scope.containsMethod("Foo", "any", "()V"));
+	}
+
+	@Test
+	public void should_skip_unknown_properties() throws IOException {
+		final DiffScope scope = read("[{\"moduleName\":\"core\","
+				+ "\"lines\":[1,-2,3.5e2,{\"a\":[true,false,null]}],"
+				+ "\"classFile\":\"Foo\",\"type\":\"MODIFY\","
+				+ "\"methodInfos\":[{\"methodName\":\"run\",\"lines\":{},"
+				+ "\"parameters\":\"int a\"}]}]");
+
+		assertTrue(scope.containsMethod("Foo", "run", "(I)V"));
+	}
+
+	@Test
+	public void should_accept_whitespace_and_null_values() throws IOException {
+		final DiffScope scope = read("\uFEFF [\n\t{ \"classFile\" : \"Foo\" ,"
+				+ " \"type\" : null , \"methodInfos\" : [ null , "
+				+ "{ \"methodName\" : \"run\" , \"parameters\" : null } ] } ,"
+				+ " null , { \"classFile\" : null } ]\r\n");
+
+		assertTrue(scope.containsMethod("Foo", "run", "()V"));
+		assertFalse(scope.containsMethod("Foo", "run", "(I)V"));
+	}
+
+	@Test
+	public void should_decode_escape_sequences() throws IOException {
+		final DiffScope scope = read(
+				"[{\"classFile\":\"com\\/example\\/F\\u006fo\","
+						+ "\"type\":\"\\u0041DD\"},{\"classFile\":\"\\\"\\\\\\b\\f\\n\\r\\t\","
+						+ "\"type\":\"ADD\"}]");
+
+		assertTrue(scope.containsMethod("com/example/Foo", "any", "()V"));
+		assertTrue(scope.containsClass("\"\\\b\f\n\r\t"));
+	}
+
+	@Test
+	public void should_accept_empty_content() throws IOException {
+		assertTrue(read("").isEmpty());
+		assertTrue(read(" null ").isEmpty());
+		assertTrue(read("[ ]").isEmpty());
+	}
+
+	@Test
+	public void should_keep_first_entry_for_duplicate_classes()
+			throws IOException {
+		final DiffScope scope = read(
+				"[{\"classFile\":\"Foo\",\"type\":\"MODIFY\"},"
+						+ "{\"classFile\":\"Foo\",\"type\":\"ADD\"}]");
+
+		assertTrue(scope.containsClass("Foo"));
+		assertFalse(scope.containsMethod("Foo", "any", "()V"));
+	}
+
+	@Test
+	public void should_read_content_in_small_chunks() throws IOException {
+		final StringBuilder json = new StringBuilder("[");
+		for (int i = 0; i < 2000; i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			json.append("{\"classFile\":\"com/example/Foo").append(i)
+					.append("\",\"type\":\"ADD\"}");
+		}
+		json.append(']');
+		final Reader reader = new StringReader(json.toString()) {
+			@Override
+			public int read(final char[] cbuf, final int off, final int len)
+					throws IOException {
+				return super.read(cbuf, off, Math.min(len, 7));
+			}
+		};
+
+		final DiffScope scope = DiffScope.read(reader);
+
+		assertTrue(scope.containsClass("com/example/Foo0"));
+		assertTrue(scope.containsClass("com/example/Foo1999"));
+		assertFalse(scope.containsClass("com/example/Foo2000"));
+	}
+
+	@Test
+	public void should_load_utf8_file() throws IOException {
+		final File file = folder.newFile("diff.json");
+		final OutputStream out = new FileOutputStream(file);
+		out.write(("[{\"classFile\":\"com/example/F\u00fc\u00df\","
+				+ "\"type\":\"ADD\"}]").getBytes("UTF-8"));
+		out.close();
+
+		final DiffScope scope = DiffScope.load(file);
+
+		assertTrue(scope.containsClass("com/example/F\u00fc\u00df"));
+	}
+
+	@Test
+	public void should_report_position_of_malformed_content() {
+		assertError("[{\"classFile\" \"Foo\"}]",
+				"Invalid code diff at character 14, expected ':'.");
+		assertError("[{\"classFile\":\"Foo\"}",
+				"Invalid code diff at character 20, expected ']'.");
+		assertError("[] []", "Invalid code diff at character 3, "
+				+ "expected end of content.");
+		assertError("[{\"classFile\":\"Foo",
+				"Invalid code diff at character 18, expected '\"'.");
+		assertError("[{\"classFile\":\"\\x\"}]",
+				"Invalid code diff at character 16, expected escape sequence.");
+		assertError("[{\"classFile\":\"\\u00g0\"}]",
+				"Invalid code diff at character 19, expected hex digit.");
+		assertError("[{\"classFile\":nul}]",
+				"Invalid code diff at character 17, expected null.");
+		assertError("[{\"lines\":x}]",
+				"Invalid code diff at character 10, expected value.");
+		assertError("{}", "Invalid code diff at character 0, expected '['.");
+	}
+
+	private void assertError(final String json, final String message) {
+		try {
+			read(json);
+			fail("IOException expected");
+		} catch (IOException e) {
+			assertEquals(message, e.getMessage());
+		}
+	}
+
+	private static DiffScope read(final String json) throws IOException {
+		return DiffScope.parse(json);
+	}
+
+}
@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.diff;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link DiffScope}.
+ */
+public class DiffScopeTest {
+
+	private List<ClassInfoDto> classInfos;
+
+	@Before
+	public void setup() {
+		classInfos = new ArrayList<ClassInfoDto>();
+	}
+
+	@Test
+	public void should_be_empty_without_entries() {
+		assertTrue(new DiffScope(null).isEmpty());
+		assertTrue(new DiffScope(classInfos).isEmpty());
+	}
+
+	@Test
+	public void parse_should_create_scope_from_json() throws IOException {
+		final DiffScope scope = DiffScope.parse(
+				"[{\"classFile\":\"com/example/Foo\",\"type\":\"MODIFY\","
+						+ "\"methodInfos\":[{\"methodName\":\"bar\","
+						+ "\"parameters\":\"int a&String b\"}]}]");
+
+		assertTrue(scope.containsClass("com/example/Foo"));
+		assertTrue(scope.containsMethod("com/example/Foo", "bar",
+				"(ILjava/lang/String;)V"));
+		assertFalse(scope.containsMethod("com/example/Foo", "bar", "(I)V"));
+	}
+
+	@Test
+	public void parse_should_create_empty_scope_without_json()
+			throws IOException {
+		assertTrue(DiffScope.parse(null).isEmpty());
+		assertTrue(DiffScope.parse("[]").isEmpty());
+	}
+
+	@Test
+	public void forClass_should_create_scope_without_methods() {
+		final DiffScope scope = DiffScope.forClass("com/example/Foo");
+
+		assertFalse(scope.isEmpty());
+		assertTrue(scope.containsClass("com/example/Foo"));
+		assertFalse(scope.containsClass("com/example/Bar"));
+		assertFalse(scope.containsMethod("com/example/Foo", "bar", "()V"));
+	}
+
+	@Test
+	public void containsClass_should_match_class_and_inner_classes() {
+		addClass("com/example/Foo", "MODIFY");
+		final DiffScope index = new DiffScope(classInfos);
+
+		assertFalse(index.isEmpty());
+		assertTrue(index.containsClass("com/example/Foo"));
+		assertTrue(index.containsClass("com/example/Foo$Inner"));
+		assertTrue(index.containsClass("com/example/Foo$1"));
+		assertFalse(index.containsClass("com/example/Bar"));
+		assertFalse(index.containsClass("com/example/FooBar"));
+		assertFalse(index.containsClass(null));
+	}
+
+	@Test
+	public void containsMethod_should_match_all_methods_of_added_classes() {
+		addClass("com/example/Foo", "ADD");
+		final DiffScope index = new DiffScope(classInfos);
+
+		assertTrue(index.containsMethod("com/example/Foo", "any", "()V"));
+		assertTrue(index.containsMethod("com/example/Foo$1", "run", "()V"));
+		assertFalse(index.containsMethod("com/example/Bar", "any", "()V"));
+	}
+
+	@Test
+	public void containsMethod_should_match_nothing_for_modified_classes_without_methods() {
+		addClass("com/example/Foo", "MODIFY");
+		final DiffScope index = new DiffScope(classInfos);
+
+		assertFalse(index.containsMethod("com/example/Foo", "any", "()V"));
+	}
+
+	@Test
+	public void containsMethod_should_match_method_name_and_parameters() {
+		final ClassInfoDto c = addClass("com/example/Foo", "MODIFY");
+		addMethod(c, "noargs", "");
+		addMethod(c, "run", "String name&int count");
+		addMethod(c, "run", "List<String> list");
+		final DiffScope index = new DiffScope(classInfos);
+
+		assertTrue(index.containsMethod("com/example/Foo", "noargs", "()V"));
+		assertFalse(index.containsMethod("com/example/Foo", "noargs", "(I)V"));
+		assertTrue(index.containsMethod("com/example/Foo", "run",
+				"(Ljava/lang/String;I)V"));
+		assertTrue(index.containsMethod("com/example/Foo", "run",
+				"(Ljava/util/List;)V"));
+		assertFalse(index.containsMethod("com/example/Foo", "run",
+				"(Ljava/util/Set;)V"));
+		assertFalse(index.containsMethod("com/example/Foo", "run",
+				"(Ljava/lang/Integer;I)V"));
+		assertFalse(index.containsMethod("com/example/Foo", "other", "()V"));
+		assertFalse(index.containsMethod("com/example/Foo", null, "()V"));
+		assertFalse(index.containsMethod(null, "run", "()V"));
+	}
+
+	@Test
+	public void containsMethod_should_match_simple_names_of_nested_and_array_types() {
+		final ClassInfoDto c = addClass("com/example/Foo", "MODIFY");
+		addMethod(c, "entry", "Map.Entry<String, Object> e");
+		addMethod(c, "array", "String[] args");
+		addMethod(c, "object", "Companion c");
+		addMethod(c, "matrix", "long[][] m");
+		final DiffScope index = new DiffScope(classInfos);
+
+		assertTrue(index.containsMethod("com/example/Foo", "entry",
+				"(Ljava/util/Map$Entry;)V"));
+		assertTrue(index.containsMethod("com/example/Foo", "array",
+				"([Ljava/lang/String;)V"));
+		assertTrue(index.containsMethod("com/example/Foo", "object",
+				"(Lcom/example/Companion$;)V"));
+		assertTrue(index.containsMethod("com/example/Foo", "matrix", "([[J)V"));
+		assertTrue(index.containsMethod("com/example/Foo", "matrix", "([J)V"));
+		assertFalse(
+				index.containsMethod("com/example/Foo", "matrix", "([[[J)V"));
+		assertFalse(
+				index.containsMethod("com/example/Foo", "matrix", "([[I)V"));
+		assertFalse(index.containsMethod("com/example/Foo", "array",
+				"([Ljava/lang/String;I)V"));
+	}
+
+	@Test
+	public void should_use_first_matching_entry() {
+		final ClassInfoDto inner = addClass("com/example/Foo$Inner", "MODIFY");
+		addMethod(inner, "run", "");
+		addClass("com/example/Foo", "ADD");
+		addClass("com/example/Foo$Inner", "ADD");
+		final DiffScope index = new DiffScope(classInfos);
+
+		assertTrue(index.containsMethod("com/example/Foo$Inner", "run", "()V"));
+		assertFalse(
+				index.containsMethod("com/example/Foo$Inner", "other", "()V"));
+		assertTrue(
+				index.containsMethod("com/example/Foo$Other", "other", "()V"));
+	}
+
+	private ClassInfoDto addClass(final String classFile, final String type) {
+		final ClassInfoDto c = new ClassInfoDto();
+		c.setClassFile(classFile);
+		c.setType(type);
+		c.setMethodInfos(new ArrayList<MethodInfoDto>());
+		classInfos.add(c);
+		return c;
+	}
+
+	private static void addMethod(final ClassInfoDto c, final String name,
+			final String parameters) {
+		final MethodInfoDto m = new MethodInfoDto();
+		m.setMethodName(name);
+		m.setParameters(parameters);
+		c.getMethodInfos().add(m);
+	}
+
+}
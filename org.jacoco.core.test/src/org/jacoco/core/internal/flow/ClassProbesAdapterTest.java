@@ -16,6 +16,13 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jacoco.core.internal.diff.ClassInfoDto;
+import org.jacoco.core.internal.diff.DiffScope;
+import org.jacoco.core.internal.diff.MethodInfoDto;
 import org.junit.Test;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.Label;
@@ -147,8 +154,47 @@ public class ClassProbesAdapterTest {
 		assertFalse(mv.frame);
 	}
 
+	@Test
+	public void should_only_visit_methods_in_diff_scope() {
+		final List<String> visited = new ArrayList<String>();
+		final MockClassVisitor cv = new MockClassVisitor() {
+			@Override
+			public MethodProbesVisitor visitMethod(int access,
+					final String name, String desc, String signature,
+					String[] exceptions) {
+				return new MockMethodVisitor() {
+					@Override
+					public void visitEnd() {
+						visited.add(name);
+					}
+				};
+			}
+		};
+		final MethodInfoDto method = new MethodInfoDto();
+		method.setMethodName("bar");
+		method.setParameters("");
+		final ClassInfoDto diff = new ClassInfoDto();
+		diff.setClassFile("Foo");
+		diff.setType("MODIFY");
+		diff.setMethodInfos(Arrays.asList(method));
+		final ClassProbesAdapter adapter = new ClassProbesAdapter(cv, false,
+				new DiffScope(Arrays.asList(diff)));
+		adapter.visit(Opcodes.V1_5, 0, "Foo", null, "java/lang/Object", null);
+		writeMethod(adapter, "foo");
+		writeMethod(adapter, "bar");
+		writeMethod(adapter, "baz");
+		adapter.visitEnd();
+
+		assertEquals(Arrays.asList("bar"), visited);
+		assertEquals(3, cv.count);
+	}
+
 	private void writeMethod(final ClassVisitor cv) {
-		MethodVisitor mv = cv.visitMethod(0, "foo", "()V", null, null);
+		writeMethod(cv, "foo");
+	}
+
+	private void writeMethod(final ClassVisitor cv, final String name) {
+		MethodVisitor mv = cv.visitMethod(0, name, "()V", null, null);
 		mv.visitCode();
 		mv.visitInsn(Opcodes.RETURN);
 		mv.visitMaxs(0, 1);
@@ -12,12 +12,20 @@
  *******************************************************************************/
 package org.jacoco.core.internal.instr;
 
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.util.Collections;
+
+import org.jacoco.core.internal.diff.ClassInfoDto;
+import org.jacoco.core.internal.diff.DiffScope;
+import org.jacoco.core.internal.diff.MethodInfoDto;
 import org.junit.Before;
 import org.junit.Test;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 
 /**
  * Unit tests for {@link ClassInstrumenter}.
@@ -61,6 +69,50 @@ public class ClassInstrumenterTest implements IProbeArrayStrategy {
 		assertNull(instrumenter.visitMethod(0, "foo", "()V", null, null));
 	}
 
+	@Test
+	public void testNoMethodVisitorWithMethodCoverage() {
+		instrumenter = new ClassInstrumenter(this,
+				new ClassVisitor(InstrSupport.ASM_API_VERSION) {
+					@Override
+					public MethodVisitor visitMethod(int access, String name,
+							String desc, String signature,
+							String[] exceptions) {
+						return null;
+					}
+				}, null, false, true);
+		assertNotNull(instrumenter.visitMethod(0, "foo", "()V", null, null));
+	}
+
+	@Test
+	public void should_only_instrument_methods_in_diff_scope() {
+		final MethodInfoDto method = new MethodInfoDto();
+		method.setMethodName("foo");
+		method.setParameters("");
+		final ClassInfoDto diff = new ClassInfoDto();
+		diff.setClassFile("Foo");
+		diff.setType("MODIFY");
+		diff.setMethodInfos(Collections.singletonList(method));
+		instrumenter = new ClassInstrumenter(this,
+				new ClassVisitor(InstrSupport.ASM_API_VERSION) {
+					@Override
+					public MethodVisitor visitMethod(int access, String name,
+							String desc, String signature,
+							String[] exceptions) {
+						return new MethodVisitor(InstrSupport.ASM_API_VERSION) {
+						};
+					}
+				}, new DiffScope(Collections.singletonList(diff)));
+		instrumenter.visit(Opcodes.V1_5, 0, "Foo", null, "java/lang/Object",
+				null);
+
+		assertTrue(instrumenter.visitMethod(0, "foo", "()V", null,
+				null) instanceof MethodInstrumenter);
+		assertTrue(instrumenter.visitMethod(0, "bar", "()V", null,
+				null) instanceof MethodPassThrough);
+		assertTrue(instrumenter.visitMethod(Opcodes.ACC_STATIC, "<clinit>",
+				"()V", null, null) instanceof MethodInstrumenter);
+	}
+
 	// === IProbeArrayStrategy ===
 
 	public int storeInstance(MethodVisitor mv, boolean clinit, int variable) {
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.instr;
+
+import static org.junit.Assert.assertEquals;
+
+import org.jacoco.core.instr.MethodRecorder;
+import org.jacoco.core.internal.flow.IFrame;
+import org.jacoco.core.internal.flow.LabelInfo;
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Unit tests for {@link MethodEntryInstrumenter}.
+ */
+public class MethodEntryInstrumenterTest {
+
+	private MethodEntryInstrumenter instrumenter;
+
+	private MethodRecorder expected, actual;
+
+	private MethodVisitor expectedVisitor;
+
+	private IProbeInserter probeInserter;
+
+	private IFrame frame;
+
+	@Before
+	public void setup() {
+		actual = new MethodRecorder();
+		expected = new MethodRecorder();
+		expectedVisitor = expected.getVisitor();
+		probeInserter = new IProbeInserter() {
+
+			public void insertProbe(int id) {
+				actual.getVisitor().visitLdcInsn("Probe " + id);
+			}
+		};
+		instrumenter = new MethodEntryInstrumenter(actual.getVisitor(),
+				probeInserter, 5);
+		frame = new IFrame() {
+			public void accept(MethodVisitor mv) {
+				mv.visitFrame(Opcodes.F_FULL, 0, null, 0, null);
+			}
+		};
+	}
+
+	@Test
+	public void should_insert_first_probe_at_method_entry() {
+		instrumenter.visitCode();
+		instrumenter.visitInsnWithProbe(Opcodes.RETURN, 5);
+
+		expectedVisitor.visitCode();
+		expectedVisitor.visitLdcInsn("Probe 5");
+		expectedVisitor.visitInsn(Opcodes.RETURN);
+
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void should_not_insert_probe_without_probe_inserter() {
+		instrumenter = new MethodEntryInstrumenter(actual.getVisitor(), null,
+				5);
+
+		instrumenter.visitCode();
+		instrumenter.visitInsnWithProbe(Opcodes.RETURN, 5);
+
+		expectedVisitor.visitCode();
+		expectedVisitor.visitInsn(Opcodes.RETURN);
+
+		assertEquals(expected, actual);
+		assertEquals(6, instrumenter.getNextProbeId());
+	}
+
+	@Test
+	public void should_emit_original_code_for_all_probes() {
+		final Label label = new Label();
+		instrumenter.visitProbe(5);
+		instrumenter.visitJumpInsnWithProbe(Opcodes.IFEQ, label, 6, frame);
+		instrumenter.visitInsnWithProbe(Opcodes.RETURN, 7);
+
+		expectedVisitor.visitJumpInsn(Opcodes.IFEQ, label);
+		expectedVisitor.visitInsn(Opcodes.RETURN);
+
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void getNextProbeId_should_return_first_id_without_probes() {
+		assertEquals(5, instrumenter.getNextProbeId());
+	}
+
+	@Test
+	public void getNextProbeId_should_track_probes() {
+		instrumenter.visitProbe(5);
+		instrumenter.visitJumpInsnWithProbe(Opcodes.IFEQ, new Label(), 6,
+				frame);
+		instrumenter.visitInsnWithProbe(Opcodes.RETURN, 7);
+
+		assertEquals(8, instrumenter.getNextProbeId());
+	}
+
+	@Test
+	public void getNextProbeId_should_track_table_switch_probes() {
+		final Label dflt = new Label();
+		final Label[] labels = new Label[] { new Label(), new Label() };
+		LabelInfo.setProbeId(dflt, 6);
+		LabelInfo.setProbeId(labels[1], 5);
+
+		instrumenter.visitTableSwitchInsnWithProbes(3, 4, dflt, labels, frame);
+
+		expectedVisitor.visitTableSwitchInsn(3, 4, dflt, labels);
+		assertEquals(expected, actual);
+		assertEquals(7, instrumenter.getNextProbeId());
+	}
+
+	@Test
+	public void getNextProbeId_should_track_lookup_switch_probes() {
+		final Label dflt = new Label();
+		final int[] keys = new int[] { 0, 1 };
+		final Label[] labels = new Label[] { new Label(), new Label() };
+		LabelInfo.setProbeId(labels[0], 5);
+		LabelInfo.setProbeId(labels[1], 6);
+
+		instrumenter.visitLookupSwitchInsnWithProbes(dflt, keys, labels, frame);
+
+		expectedVisitor.visitLookupSwitchInsn(dflt, keys, labels);
+		assertEquals(expected, actual);
+		assertEquals(7, instrumenter.getNextProbeId());
+	}
+
+}
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.instr;
+
+import static org.junit.Assert.assertEquals;
+
+import org.jacoco.core.instr.MethodRecorder;
+import org.jacoco.core.internal.flow.IFrame;
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Unit tests for {@link MethodPassThrough}.
+ */
+public class MethodPassThroughTest {
+
+	private MethodPassThrough passThrough;
+
+	private MethodRecorder expected, actual;
+
+	private MethodVisitor expectedVisitor;
+
+	private IFrame frame;
+
+	@Before
+	public void setup() {
+		actual = new MethodRecorder();
+		expected = new MethodRecorder();
+		expectedVisitor = expected.getVisitor();
+		passThrough = new MethodPassThrough(actual.getVisitor());
+		frame = new IFrame() {
+			public void accept(MethodVisitor mv) {
+				mv.visitFrame(Opcodes.F_FULL, 0, null, 0, null);
+			}
+		};
+	}
+
+	@Test
+	public void testVisitProbe() {
+		passThrough.visitProbe(33);
+
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testVisitInsnWithProbe() {
+		passThrough.visitInsnWithProbe(Opcodes.RETURN, 3);
+
+		expectedVisitor.visitInsn(Opcodes.RETURN);
+
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testVisitJumpInsnWithProbe() {
+		final Label label = new Label();
+		passThrough.visitJumpInsnWithProbe(Opcodes.IFEQ, label, 3, frame);
+
+		expectedVisitor.visitJumpInsn(Opcodes.IFEQ, label);
+
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testVisitTableSwitchInsnWithProbes() {
+		final Label dflt = new Label();
+		final Label[] labels = new Label[] { new Label(), new Label() };
+		passThrough.visitTableSwitchInsnWithProbes(3, 4, dflt, labels, frame);
+
+		expectedVisitor.visitTableSwitchInsn(3, 4, dflt, labels);
+
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testVisitLookupSwitchInsnWithProbes() {
+		final Label dflt = new Label();
+		final int[] keys = new int[] { 0, 1 };
+		final Label[] labels = new Label[] { new Label(), new Label() };
+		passThrough.visitLookupSwitchInsnWithProbes(dflt, keys, labels, frame);
+
+		expectedVisitor.visitLookupSwitchInsn(dflt, keys, labels);
+
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testVisitOtherInsn() {
+		passThrough.visitCode();
+		passThrough.visitVarInsn(Opcodes.ALOAD, 0);
+		passThrough.visitInsn(Opcodes.POP);
+		passThrough.visitMaxs(1, 1);
+
+		expectedVisitor.visitCode();
+		expectedVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+		expectedVisitor.visitInsn(Opcodes.POP);
+		expectedVisitor.visitMaxs(1, 1);
+
+		assertEquals(expected, actual);
+	}
+
+}
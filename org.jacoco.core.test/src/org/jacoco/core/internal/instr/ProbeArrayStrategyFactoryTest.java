@@ -122,6 +122,33 @@ public class ProbeArrayStrategyFactoryTest {
 				0);
 	}
 
+	@Test
+	public void testClassWithClinit5() {
+		cv.initInClinit = true;
+		final IProbeArrayStrategy strategy = test(Opcodes.V1_5, 0, true, true,
+				false);
+		assertEquals(ClassFinalFieldProbeArrayStrategy.class,
+				strategy.getClass());
+		assertDataField(InstrSupport.DATAFIELD_FINAL_ACC);
+		assertInitMethod(false);
+	}
+
+	@Test
+	public void testClassWithClinit8() {
+		cv.initInClinit = true;
+		final IProbeArrayStrategy strategy = test(Opcodes.V1_8, 0, true, true,
+				false);
+		assertEquals(ClassFinalFieldProbeArrayStrategy.class,
+				strategy.getClass());
+		assertDataField(InstrSupport.DATAFIELD_FINAL_ACC);
+		assertInitMethod(true);
+
+		assertEquals(1, strategy.storeInstance(
+				cv.visitMethod(0, null, null, null, null), false, 0));
+		assertEquals(2, strategy.storeInstance(
+				cv.visitMethod(0, "<clinit>", null, null, null), true, 0));
+	}
+
 	@Test
 	public void testInterface7() {
 		final IProbeArrayStrategy strategy = test(Opcodes.V1_7,
@@ -341,6 +368,8 @@ public class ProbeArrayStrategyFactoryTest {
 
 		private boolean isInterface;
 
+		private boolean initInClinit;
+
 		private int fieldAccess;
 		private String fieldName;
 		private final List<AddedMethod> methods = new ArrayList<AddedMethod>();
@@ -380,7 +409,7 @@ public class ProbeArrayStrategyFactoryTest {
 						assertEquals(InstrSupport.INITMETHOD_NAME,
 								methods.get(methods.size() - 1).name);
 					} else if (opcode == Opcodes.PUTSTATIC) {
-						if (isInterface) {
+						if (isInterface || initInClinit) {
 							assertEquals(InstrSupport.CLINIT_NAME,
 									methods.get(methods.size() - 1).name);
 						} else {
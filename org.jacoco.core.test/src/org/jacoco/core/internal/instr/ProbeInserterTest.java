@@ -23,6 +23,7 @@ import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.TypeReference;
+import org.objectweb.asm.commons.AnalyzerAdapter;
 
 /**
  * Unit tests for {@link ProbeInserter}.
@@ -106,6 +107,102 @@ public class ProbeInserterTest {
 		expectedVisitor.visitInsn(Opcodes.BASTORE);
 	}
 
+	@Test
+	public void testCheckedProbe() {
+		ProbeInserter pi = new ProbeInserter(Opcodes.ACC_STATIC, "m", "()V",
+				actualVisitor, arrayStrategy, true);
+		pi.insertProbe(3);
+
+		final Label done = new Label();
+		expectedVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+		expectedVisitor.visitInsn(Opcodes.ICONST_3);
+		expectedVisitor.visitInsn(Opcodes.BALOAD);
+		expectedVisitor.visitJumpInsn(Opcodes.IFNE, done);
+		expectedVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+		expectedVisitor.visitInsn(Opcodes.ICONST_3);
+		expectedVisitor.visitInsn(Opcodes.ICONST_1);
+		expectedVisitor.visitInsn(Opcodes.BASTORE);
+		expectedVisitor.visitLabel(done);
+	}
+
+	@Test
+	public void testCheckedProbeWithFrame() {
+		ProbeInserter pi = new ProbeInserter(Opcodes.ACC_STATIC, "m", "(J)V",
+				actualVisitor, arrayStrategy, true);
+		AnalyzerAdapter analyzer = new AnalyzerAdapter("Foo",
+				Opcodes.ACC_STATIC, "m", "(J)V", pi);
+		pi.setAnalyzer(analyzer);
+		analyzer.visitCode();
+		analyzer.visitLdcInsn("x");
+		pi.insertProbe(0);
+
+		final Label done = new Label();
+		expectedVisitor.visitLdcInsn("init");
+		expectedVisitor.visitLdcInsn("x");
+		expectedVisitor.visitVarInsn(Opcodes.ALOAD, 2);
+		expectedVisitor.visitInsn(Opcodes.ICONST_0);
+		expectedVisitor.visitInsn(Opcodes.BALOAD);
+		expectedVisitor.visitJumpInsn(Opcodes.IFNE, done);
+		expectedVisitor.visitVarInsn(Opcodes.ALOAD, 2);
+		expectedVisitor.visitInsn(Opcodes.ICONST_0);
+		expectedVisitor.visitInsn(Opcodes.ICONST_1);
+		expectedVisitor.visitInsn(Opcodes.BASTORE);
+		expectedVisitor.visitLabel(done);
+		expectedVisitor.visitFrame(Opcodes.F_NEW, 2,
+				new Object[] { Opcodes.LONG, "[Z" }, 1,
+				new Object[] { "java/lang/String" });
+		expectedVisitor.visitInsn(Opcodes.NOP);
+	}
+
+	@Test
+	public void testCheckedProbeInUnreachableCode() {
+		ProbeInserter pi = new ProbeInserter(Opcodes.ACC_STATIC, "m", "()V",
+				actualVisitor, arrayStrategy, true);
+		AnalyzerAdapter analyzer = new AnalyzerAdapter("Foo",
+				Opcodes.ACC_STATIC, "m", "()V", pi);
+		pi.setAnalyzer(analyzer);
+		analyzer.visitCode();
+		analyzer.visitInsn(Opcodes.RETURN);
+		pi.insertProbe(0);
+
+		expectedVisitor.visitLdcInsn("init");
+		expectedVisitor.visitInsn(Opcodes.RETURN);
+		expectedVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+		expectedVisitor.visitInsn(Opcodes.ICONST_0);
+		expectedVisitor.visitInsn(Opcodes.ICONST_1);
+		expectedVisitor.visitInsn(Opcodes.BASTORE);
+	}
+
+	@Test
+	public void testCountingProbe() {
+		ProbeInserter pi = new ProbeInserter(Opcodes.ACC_STATIC, "m", "()V",
+				actualVisitor, arrayStrategy, false, true);
+		pi.insertProbe(3);
+
+		expectedVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+		expectedVisitor.visitInsn(Opcodes.ICONST_3);
+		expectedVisitor.visitInsn(Opcodes.DUP2);
+		expectedVisitor.visitInsn(Opcodes.IALOAD);
+		expectedVisitor.visitInsn(Opcodes.ICONST_1);
+		expectedVisitor.visitInsn(Opcodes.IADD);
+		expectedVisitor.visitInsn(Opcodes.IASTORE);
+	}
+
+	@Test
+	public void testCountingProbeIgnoresCheckedProbes() {
+		ProbeInserter pi = new ProbeInserter(Opcodes.ACC_STATIC, "m", "()V",
+				actualVisitor, arrayStrategy, true, true);
+		pi.insertProbe(0);
+
+		expectedVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+		expectedVisitor.visitInsn(Opcodes.ICONST_0);
+		expectedVisitor.visitInsn(Opcodes.DUP2);
+		expectedVisitor.visitInsn(Opcodes.IALOAD);
+		expectedVisitor.visitInsn(Opcodes.ICONST_1);
+		expectedVisitor.visitInsn(Opcodes.IADD);
+		expectedVisitor.visitInsn(Opcodes.IASTORE);
+	}
+
 	@Test
 	public void testVisitCode() {
 		ProbeInserter pi = new ProbeInserter(0, "m", "()V", actualVisitor,
@@ -230,6 +327,28 @@ public class ProbeInserterTest {
 		expectedVisitor.visitMaxs(13, 9);
 	}
 
+	@Test
+	public void testVisitMaxsCountingProbes() {
+		ProbeInserter pi = new ProbeInserter(0, "m", "(II)V", actualVisitor,
+				arrayStrategy, false, true);
+		pi.visitCode();
+		pi.visitMaxs(10, 8);
+
+		expectedVisitor.visitLdcInsn("init");
+		expectedVisitor.visitMaxs(14, 9);
+	}
+
+	@Test
+	public void testVisitFrameCountingProbes() {
+		ProbeInserter pi = new ProbeInserter(Opcodes.ACC_STATIC, "m", "()V",
+				actualVisitor, arrayStrategy, false, true);
+
+		pi.visitFrame(Opcodes.F_NEW, 0, new Object[] {}, 0, new Object[0]);
+
+		expectedVisitor.visitFrame(Opcodes.F_NEW, 1, new Object[] { "[I" }, 0,
+				new Object[0]);
+	}
+
 	@Test
 	public void testVisitFrame() {
 		ProbeInserter pi = new ProbeInserter(0, "m", "(J)V", actualVisitor,
@@ -16,6 +16,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.util.Properties;
@@ -53,6 +54,15 @@ public class AgentOptionsTest {
 		assertEquals(AgentOptions.DEFAULT_PORT, options.getPort());
 		assertNull(options.getClassDumpDir());
 		assertFalse(options.getJmx());
+		assertNull(options.getDiffCodeFile());
+		assertEquals(0, options.getDumpInterval());
+		assertFalse(options.getAsyncWrite());
+		assertFalse(options.getSparseBlocks());
+		assertFalse(options.getExtendedBlocks());
+		assertFalse(options.getCheckProbes());
+		assertFalse(options.getCountProbes());
+		assertEquals(0, options.getRestoreInterval());
+		assertEquals(AgentOptions.Granularity.full, options.getGranularity());
 
 		assertEquals("", options.toString());
 	}
@@ -86,6 +96,14 @@ public class AgentOptionsTest {
 		properties.put("port", "1234");
 		properties.put("classdumpdir", "target/dump");
 		properties.put("jmx", "true");
+		properties.put("diffcodefile", "target/diff.json");
+		properties.put("dumpinterval", "60");
+		properties.put("asyncwrite", "true");
+		properties.put("sparseblocks", "true");
+		properties.put("checkprobes", "true");
+		properties.put("countprobes", "true");
+		properties.put("restoreinterval", "30");
+		properties.put("granularity", "method");
 
 		AgentOptions options = new AgentOptions(properties);
 
@@ -104,6 +122,14 @@ public class AgentOptionsTest {
 		assertEquals(1234, options.getPort());
 		assertEquals("target/dump", options.getClassDumpDir());
 		assertTrue(options.getJmx());
+		assertEquals("target/diff.json", options.getDiffCodeFile());
+		assertEquals(60, options.getDumpInterval());
+		assertTrue(options.getAsyncWrite());
+		assertTrue(options.getSparseBlocks());
+		assertTrue(options.getCheckProbes());
+		assertTrue(options.getCountProbes());
+		assertEquals(30, options.getRestoreInterval());
+		assertEquals(AgentOptions.Granularity.method, options.getGranularity());
 	}
 
 	@Test
@@ -314,6 +340,32 @@ public class AgentOptionsTest {
 		options.setOutput("foo");
 	}
 
+	@Test
+	public void testGetGranularity() {
+		AgentOptions options = new AgentOptions("granularity=method");
+		assertEquals(AgentOptions.Granularity.method, options.getGranularity());
+	}
+
+	@Test
+	public void testSetGranularity1() {
+		AgentOptions options = new AgentOptions();
+		options.setGranularity("method");
+		assertEquals(AgentOptions.Granularity.method, options.getGranularity());
+		assertEquals("granularity=method", options.toString());
+	}
+
+	@Test
+	public void testSetGranularity2() {
+		AgentOptions options = new AgentOptions();
+		options.setGranularity(AgentOptions.Granularity.method);
+		assertEquals(AgentOptions.Granularity.method, options.getGranularity());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidGranularity() {
+		new AgentOptions("granularity=line");
+	}
+
 	@Test
 	public void testGetPort() {
 		AgentOptions options = new AgentOptions("port=1234");
@@ -388,6 +440,139 @@ public class AgentOptionsTest {
 		assertEquals("classdumpdir=target/dump", options.toString());
 	}
 
+	@Test
+	public void testGetDiffCodeFile() {
+		AgentOptions options = new AgentOptions(
+				"diffcodefile=target/diff.json");
+		assertEquals("target/diff.json", options.getDiffCodeFile());
+	}
+
+	@Test
+	public void testSetDiffCodeFile() {
+		AgentOptions options = new AgentOptions();
+		options.setDiffCodeFile("target/diff.json");
+		assertEquals("target/diff.json", options.getDiffCodeFile());
+		assertEquals("diffcodefile=target/diff.json", options.toString());
+	}
+
+	@Test
+	public void testGetDumpInterval() {
+		AgentOptions options = new AgentOptions("dumpinterval=300");
+		assertEquals(300, options.getDumpInterval());
+	}
+
+	@Test
+	public void testSetDumpInterval() {
+		AgentOptions options = new AgentOptions();
+		options.setDumpInterval(300);
+		assertEquals(300, options.getDumpInterval());
+		assertEquals("dumpinterval=300", options.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParseNegativeDumpInterval() {
+		new AgentOptions("dumpinterval=-1");
+	}
+
+	@Test
+	public void testSetNegativeDumpInterval() {
+		AgentOptions options = new AgentOptions();
+		try {
+			options.setDumpInterval(-1);
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException e) {
+			assertEquals("dumpinterval must not be negative", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testGetAsyncWrite() {
+		AgentOptions options = new AgentOptions("asyncwrite=true");
+		assertTrue(options.getAsyncWrite());
+	}
+
+	@Test
+	public void testSetAsyncWrite() {
+		AgentOptions options = new AgentOptions();
+		options.setAsyncWrite(true);
+		assertTrue(options.getAsyncWrite());
+		assertEquals("asyncwrite=true", options.toString());
+	}
+
+	@Test
+	public void testGetSparseBlocks() {
+		AgentOptions options = new AgentOptions("sparseblocks=true");
+		assertTrue(options.getSparseBlocks());
+		assertTrue(options.getExtendedBlocks());
+	}
+
+	@Test
+	public void testSetSparseBlocks() {
+		AgentOptions options = new AgentOptions();
+		options.setSparseBlocks(true);
+		assertTrue(options.getSparseBlocks());
+		assertEquals("sparseblocks=true", options.toString());
+	}
+
+	@Test
+	public void testGetExtendedBlocksWithCountProbes() {
+		AgentOptions options = new AgentOptions("countprobes=true");
+		assertFalse(options.getSparseBlocks());
+		assertTrue(options.getExtendedBlocks());
+	}
+
+	@Test
+	public void testGetCheckProbes() {
+		AgentOptions options = new AgentOptions("checkprobes=true");
+		assertTrue(options.getCheckProbes());
+	}
+
+	@Test
+	public void testSetCheckProbes() {
+		AgentOptions options = new AgentOptions();
+		options.setCheckProbes(true);
+		assertTrue(options.getCheckProbes());
+		assertEquals("checkprobes=true", options.toString());
+	}
+
+	@Test
+	public void testGetCountProbes() {
+		AgentOptions options = new AgentOptions("countprobes=true");
+		assertTrue(options.getCountProbes());
+	}
+
+	@Test
+	public void testSetCountProbes() {
+		AgentOptions options = new AgentOptions();
+		options.setCountProbes(true);
+		assertTrue(options.getCountProbes());
+		assertEquals("countprobes=true", options.toString());
+	}
+
+	@Test
+	public void testGetRestoreInterval() {
+		AgentOptions options = new AgentOptions("restoreinterval=10");
+		assertEquals(10, options.getRestoreInterval());
+	}
+
+	@Test
+	public void testSetRestoreInterval() {
+		AgentOptions options = new AgentOptions();
+		options.setRestoreInterval(10);
+		assertEquals(10, options.getRestoreInterval());
+		assertEquals("restoreinterval=10", options.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParseNegativeRestoreInterval() {
+		new AgentOptions("restoreinterval=-1");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParseCountProbesWithRestoreInterval() {
+		new AgentOptions("countprobes=true,restoreinterval=10");
+	}
+
 	@Test
 	public void testGetJmx() {
 		AgentOptions options = new AgentOptions("jmx=true");
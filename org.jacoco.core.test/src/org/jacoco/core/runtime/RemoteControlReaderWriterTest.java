@@ -40,7 +40,7 @@ public class RemoteControlReaderWriterTest
 	@Override
 	public void setup() throws IOException {
 		super.setup();
-		writer = createWriter(buffer);
+		writer = createWriter(buffer, false);
 	}
 
 	@Test(expected = IOException.class)
@@ -75,16 +75,70 @@ public class RemoteControlReaderWriterTest
 		writer.visitDumpCommand(doDump, doReset);
 		final RemoteControlReader reader = createReader();
 		final StringBuilder calls = new StringBuilder();
-		reader.setRemoteCommandVisitor(new IRemoteCommandVisitor() {
+		reader.setRemoteCommandVisitor(new IRemoteDeltaCommandVisitor() {
 
 			public void visitDumpCommand(boolean dump, boolean reset) {
 				calls.append("cmd(" + dump + "," + reset + ")");
 			}
+
+			public void visitDeltaDumpCommand(long acknowledged,
+					boolean reset) {
+				calls.append("delta(" + acknowledged + "," + reset + ")");
+			}
 		});
 		assertFalse(reader.read());
 		assertEquals("cmd(" + doDump + "," + doReset + ")", calls.toString());
 	}
 
+	@Test(expected = IOException.class)
+	public void testNoRemoteCommandVisitorForDeltaDump() throws IOException {
+		writer.visitDeltaDumpCommand(0, false);
+		final RemoteControlReader reader = createReader();
+		reader.read();
+	}
+
+	@Test(expected = IOException.class)
+	public void testNoRemoteDeltaCommandVisitorForDeltaDump()
+			throws IOException {
+		writer.visitDeltaDumpCommand(0, false);
+		final RemoteControlReader reader = createReader();
+		reader.setRemoteCommandVisitor(new IRemoteCommandVisitor() {
+			public void visitDumpCommand(boolean dump, boolean reset) {
+			}
+		});
+		reader.read();
+	}
+
+	@Test
+	public void testVisitDeltaDump() throws IOException {
+		writer.visitDeltaDumpCommand(0x123456789L, true);
+		final RemoteControlReader reader = createReader();
+		final StringBuilder calls = new StringBuilder();
+		reader.setRemoteCommandVisitor(new IRemoteDeltaCommandVisitor() {
+
+			public void visitDumpCommand(boolean dump, boolean reset) {
+				calls.append("cmd(" + dump + "," + reset + ")");
+			}
+
+			public void visitDeltaDumpCommand(long acknowledged,
+					boolean reset) {
+				calls.append("delta(" + acknowledged + "," + reset + ")");
+			}
+		});
+		assertFalse(reader.read());
+		assertEquals("delta(4886718345,true)", calls.toString());
+	}
+
+	@Test
+	public void testSendDeltaDumpId() throws IOException {
+		writer.sendDeltaDumpId(42);
+		writer.sendCmdOk();
+		final RemoteControlReader reader = createReader();
+		assertEquals(0, reader.getDeltaDumpId());
+		assertTrue(reader.read());
+		assertEquals(42, reader.getDeltaDumpId());
+	}
+
 	@Test
 	public void testSendCmdOk() throws IOException {
 		writer.sendCmdOk();
@@ -99,9 +153,9 @@ public class RemoteControlReaderWriterTest
 	}
 
 	@Override
-	protected RemoteControlWriter createWriter(OutputStream out)
-			throws IOException {
-		return new RemoteControlWriter(out);
+	protected RemoteControlWriter createWriter(OutputStream out,
+			boolean extended) throws IOException {
+		return new RemoteControlWriter(out, extended);
 	}
 
 }
@@ -18,9 +18,20 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.IExecutionDataVisitor;
 import org.jacoco.core.test.TargetLoader;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.objectweb.asm.ClassWriter;
@@ -36,11 +47,18 @@ public class RuntimeDataTest {
 
 	private RuntimeData data;
 	private TestStorage storage;
+	private ExecutorService executor;
 
 	@Before
 	public void setup() {
 		data = new RuntimeData();
 		storage = new TestStorage();
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@After
+	public void teardown() {
+		executor.shutdownNow();
 	}
 
 	@Test
@@ -64,7 +82,7 @@ public class RuntimeDataTest {
 		assertFalse(data[0]);
 		assertFalse(data[1]);
 		assertFalse(data[2]);
-		assertSame(storage.getData(123).getProbes(), data);
+		assertEquals(3, storage.getData(123).getProbes().length);
 		assertEquals("Foo", storage.getData(123).getName());
 	}
 
@@ -100,6 +118,438 @@ public class RuntimeDataTest {
 		assertEquals("testsession", storage.getSessionInfo().getId());
 	}
 
+	@Test
+	public void collectDelta_should_collect_all_data_initially() {
+		data.setSessionId("testsession");
+		data.getExecutionData(Long.valueOf(1), "Foo", 2).getProbes()[0] = true;
+		data.getExecutionData(Long.valueOf(2), "Bar", 1).getProbes()[0] = true;
+
+		final long id = data.collectDelta(storage, storage, 0, false);
+
+		assertTrue(id != 0);
+		storage.assertSize(2);
+		assertEquals("testsession", storage.getSessionInfo().getId());
+	}
+
+	@Test
+	public void collectDelta_should_only_collect_classes_with_new_hits() {
+		final boolean[] foo = data.getExecutionData(Long.valueOf(1), "Foo", 2)
+				.getProbes();
+		final boolean[] bar = data.getExecutionData(Long.valueOf(2), "Bar", 1)
+				.getProbes();
+		foo[0] = true;
+		bar[0] = true;
+		long id = data.collectDelta(new TestStorage(), storage, 0, false);
+
+		id = data.collectDelta(storage, storage, id, false);
+		storage.assertSize(0);
+
+		foo[1] = true;
+		data.collectDelta(storage, storage, id, false);
+		storage.assertSize(1);
+		assertTrue(storage.getData(1).getProbes()[1]);
+		assertFalse(storage.getData(1).getProbes() == foo);
+	}
+
+	@Test
+	public void collectDelta_should_collect_again_when_not_acknowledged() {
+		data.getExecutionData(Long.valueOf(1), "Foo", 1).getProbes()[0] = true;
+		final long first = data.collectDelta(new TestStorage(), storage, 0,
+				false);
+		data.getExecutionData(Long.valueOf(2), "Bar", 1).getProbes()[0] = true;
+		data.collectDelta(new TestStorage(), storage, first, false);
+
+		// second dump was lost, first one is acknowledged again:
+		data.collectDelta(storage, storage, first, false);
+
+		storage.assertSize(1);
+		assertEquals("Bar", storage.getData(2).getName());
+	}
+
+	@Test
+	public void collectDelta_should_collect_all_data_for_unknown_id() {
+		data.getExecutionData(Long.valueOf(1), "Foo", 1).getProbes()[0] = true;
+		final long id = data.collectDelta(new TestStorage(), storage, 0, false);
+
+		data.collectDelta(storage, storage, id + 100, false);
+
+		storage.assertSize(1);
+	}
+
+	@Test
+	public void collectDelta_should_track_consumers_independently() {
+		data.getExecutionData(Long.valueOf(1), "Foo", 1).getProbes()[0] = true;
+		final long a = data.collectDelta(new TestStorage(), storage, 0, false);
+		final long b = data.collectDelta(new TestStorage(), storage, 0, false);
+		data.getExecutionData(Long.valueOf(2), "Bar", 1).getProbes()[0] = true;
+
+		final TestStorage storageA = new TestStorage();
+		data.collectDelta(storageA, storageA, a, false);
+		final TestStorage storageB = new TestStorage();
+		data.collectDelta(storageB, storageB, b, false);
+
+		storageA.assertSize(1);
+		assertEquals("Bar", storageA.getData(2).getName());
+		storageB.assertSize(1);
+		assertEquals("Bar", storageB.getData(2).getName());
+	}
+
+	@Test
+	public void collectDelta_should_collect_all_data_for_forgotten_id() {
+		data.getExecutionData(Long.valueOf(1), "Foo", 1).getProbes()[0] = true;
+		final long id = data.collectDelta(new TestStorage(), storage, 0, false);
+		for (int i = 0; i < 64; i++) {
+			data.collectDelta(new TestStorage(), storage, 0, false);
+		}
+
+		data.collectDelta(storage, storage, id, false);
+
+		storage.assertSize(1);
+	}
+
+	@Test
+	public void collectDelta_should_not_collect_probes_hit_again_after_reset() {
+		final boolean[] probes = data
+				.getExecutionData(Long.valueOf(1), "Foo", 1).getProbes();
+		probes[0] = true;
+		final long id = data.collectDelta(new TestStorage(), storage, 0, true);
+		assertFalse(probes[0]);
+
+		probes[0] = true;
+		data.collectDelta(storage, storage, id, false);
+
+		storage.assertSize(0);
+	}
+
+	@Test
+	public void collectDelta_should_collect_reset_counts_of_known_probes() {
+		final int[] counts = data
+				.getExecutionData(Long.valueOf(1), "Foo", 1, true).getCounts();
+		counts[0] = 3;
+		final long id = data.collectDelta(new TestStorage(), storage, 0, true);
+		assertEquals(0, counts[0]);
+
+		counts[0] = 2;
+		data.collectDelta(storage, storage, id, true);
+
+		storage.assertSize(1);
+		assertEquals(2, storage.getData(1).getCounts()[0]);
+	}
+
+	@Test
+	public void collectDelta_should_collect_count_increments() {
+		final int[] counts = data
+				.getExecutionData(Long.valueOf(1), "Foo", 2, true).getCounts();
+		counts[0] = 3;
+		counts[1] = 1;
+		long id = data.collectDelta(new TestStorage(), storage, 0, false);
+
+		counts[0] = 5;
+		id = data.collectDelta(storage, storage, id, false);
+		storage.assertSize(1);
+		assertEquals(2, storage.getData(1).getCounts()[0]);
+		assertEquals(0, storage.getData(1).getCounts()[1]);
+
+		storage = new TestStorage();
+		data.collectDelta(storage, storage, id, false);
+		storage.assertSize(0);
+	}
+
+	@Test
+	public void collectDelta_should_collect_count_increments_again_when_not_acknowledged() {
+		final int[] counts = data
+				.getExecutionData(Long.valueOf(1), "Foo", 1, true).getCounts();
+		counts[0] = 3;
+		final long first = data.collectDelta(new TestStorage(), storage, 0,
+				false);
+		counts[0] = 4;
+		data.collectDelta(new TestStorage(), storage, first, false);
+
+		// second dump was lost, first one is acknowledged again:
+		counts[0] = 6;
+		data.collectDelta(storage, storage, first, false);
+
+		assertEquals(3, storage.getData(1).getCounts()[0]);
+	}
+
+	@Test
+	public void collectDelta_should_collect_all_counts_after_reset() {
+		final int[] counts = data
+				.getExecutionData(Long.valueOf(1), "Foo", 1, true).getCounts();
+		counts[0] = 3;
+		final long id = data.collectDelta(new TestStorage(), storage, 0, false);
+		data.reset();
+
+		counts[0] = 2;
+		data.collectDelta(storage, storage, id, false);
+
+		assertEquals(2, storage.getData(1).getCounts()[0]);
+	}
+
+	@Test
+	public void getResetCount_should_count_resets() {
+		assertEquals(0, data.getResetCount());
+
+		data.reset();
+		data.collect(storage, storage, false);
+		data.collect(storage, storage, true);
+		data.collectDelta(storage, storage, 0, true);
+
+		assertEquals(3, data.getResetCount());
+	}
+
+	@Test
+	public void getProbes_should_return_counts_when_requested() {
+		Object[] args = new Object[] { Long.valueOf(123), "Foo",
+				Integer.valueOf(3), Boolean.TRUE };
+		data.equals(args);
+
+		assertEquals(3, ((int[]) args[0]).length);
+		assertSame(args[0],
+				data.getExecutionData(Long.valueOf(123), "Foo", 3, true)
+						.getCounts());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void getExecutionData_should_fail_for_different_count_mode() {
+		data.getExecutionData(Long.valueOf(123), "Foo", 1, true);
+		data.getExecutionData(Long.valueOf(123), "Foo", 1);
+	}
+
+	@Test
+	public void snapshot_should_copy_and_reset_counts() {
+		final int[] counts = data
+				.getExecutionData(Long.valueOf(123), "Foo", 3, true)
+				.getCounts();
+		counts[0] = 5;
+		counts[2] = -1;
+
+		final ExecutionDataSnapshot snapshot = data.snapshot(true);
+		snapshot.accept(storage, storage);
+
+		assertEquals(0, counts[0]);
+		assertEquals(0, counts[2]);
+		final int[] copy = storage.getData(123).getCounts();
+		assertEquals(5, copy[0]);
+		assertEquals(0, copy[1]);
+		assertEquals(Integer.MAX_VALUE, copy[2]);
+		storage.assertData(123, new boolean[] { true, false, true });
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testGetExecutionDataIncompatible() {
+		data.getExecutionData(Long.valueOf(123), "Foo", 1);
+		data.getExecutionData(Long.valueOf(123), "Bar", 1);
+	}
+
+	@Test
+	public void getExecutionData_should_return_same_entry_for_concurrent_calls()
+			throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Future<ExecutionData>> results = new ArrayList<Future<ExecutionData>>();
+		for (int i = 0; i < 4; i++) {
+			results.add(executor.submit(new Callable<ExecutionData>() {
+				public ExecutionData call() throws Exception {
+					start.await();
+					return data.getExecutionData(Long.valueOf(123), "Foo", 2);
+				}
+			}));
+		}
+		start.countDown();
+
+		final ExecutionData expected = data.getExecutionData(Long.valueOf(123),
+				"Foo", 2);
+		for (final Future<ExecutionData> result : results) {
+			assertSame(expected, result.get(10, TimeUnit.SECONDS));
+		}
+	}
+
+	@Test
+	public void getExecutionData_should_not_block_while_collecting()
+			throws Exception {
+		data.getExecutionData(Long.valueOf(123), "Foo", 1);
+		final CountDownLatch visiting = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Future<?> collect = executor.submit(new Runnable() {
+			public void run() {
+				data.collect(new IExecutionDataVisitor() {
+					public void visitClassExecution(final ExecutionData d) {
+						visiting.countDown();
+						try {
+							release.await();
+						} catch (InterruptedException e) {
+							throw new RuntimeException(e);
+						}
+					}
+				}, storage, false);
+			}
+		});
+		assertTrue(visiting.await(10, TimeUnit.SECONDS));
+
+		final Future<ExecutionData> init = executor
+				.submit(new Callable<ExecutionData>() {
+					public ExecutionData call() {
+						return data.getExecutionData(Long.valueOf(456), "Bar",
+								1);
+					}
+				});
+
+		assertEquals("Bar", init.get(10, TimeUnit.SECONDS).getName());
+		release.countDown();
+		collect.get(10, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void reset_should_not_block_while_collecting() throws Exception {
+		final boolean[] probes = data
+				.getExecutionData(Long.valueOf(123), "Foo", 1).getProbes();
+		probes[0] = true;
+		final CountDownLatch visiting = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<Boolean> visited = new ArrayList<Boolean>();
+		final Future<?> collect = executor.submit(new Runnable() {
+			public void run() {
+				data.collect(new IExecutionDataVisitor() {
+					public void visitClassExecution(final ExecutionData d) {
+						visiting.countDown();
+						try {
+							release.await();
+						} catch (InterruptedException e) {
+							throw new RuntimeException(e);
+						}
+						visited.add(Boolean.valueOf(d.getProbes()[0]));
+					}
+				}, storage, false);
+			}
+		});
+		assertTrue(visiting.await(10, TimeUnit.SECONDS));
+
+		executor.submit(new Runnable() {
+			public void run() {
+				data.reset();
+			}
+		}).get(10, TimeUnit.SECONDS);
+
+		assertFalse(probes[0]);
+		release.countDown();
+		collect.get(10, TimeUnit.SECONDS);
+		assertEquals(Arrays.asList(Boolean.TRUE), visited);
+	}
+
+	@Test
+	public void snapshot_should_copy_probes() {
+		data.setSessionId("testsession");
+		final boolean[] probes = data
+				.getExecutionData(Long.valueOf(123), "Foo", 2).getProbes();
+		probes[0] = true;
+
+		final ExecutionDataSnapshot snapshot = data.snapshot(false);
+		probes[1] = true;
+		snapshot.accept(storage, storage);
+
+		assertTrue(probes[0]);
+		assertEquals("testsession", snapshot.getSessionInfo().getId());
+		assertSame(snapshot.getSessionInfo(), storage.getSessionInfo());
+		storage.assertSize(1);
+		storage.assertData(123, new boolean[] { true, false });
+	}
+
+	@Test
+	public void snapshot_should_reset_probes_when_requested() {
+		final boolean[] probes = data
+				.getExecutionData(Long.valueOf(123), "Foo", 1).getProbes();
+		probes[0] = true;
+
+		final ExecutionDataSnapshot snapshot = data.snapshot(true);
+		snapshot.accept(storage, storage);
+
+		assertFalse(probes[0]);
+		storage.assertData(123, new boolean[] { true });
+	}
+
+	@Test
+	public void snapshot_should_not_lose_concurrently_executed_probes()
+			throws Exception {
+		final boolean[] probes = data
+				.getExecutionData(Long.valueOf(123), "Foo", 1000000)
+				.getProbes();
+		final Future<?> execution = execute(probes);
+
+		final boolean[] executed = new boolean[probes.length];
+		while (!execution.isDone()) {
+			merge(executed, data.snapshot(true));
+		}
+		execution.get();
+		merge(executed, data.snapshot(true));
+
+		for (int i = 0; i < executed.length; i++) {
+			assertTrue("probe " + i, executed[i]);
+		}
+	}
+
+	@Test
+	public void collectDelta_should_not_lose_concurrently_executed_probes()
+			throws Exception {
+		final boolean[] probes = data
+				.getExecutionData(Long.valueOf(123), "Foo", 1000000)
+				.getProbes();
+		final Future<?> execution = execute(probes);
+
+		final boolean[] executed = new boolean[probes.length];
+		final IExecutionDataVisitor visitor = new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData d) {
+				merge(executed, d.getProbes());
+			}
+		};
+		long id = 0;
+		while (!execution.isDone()) {
+			id = data.collectDelta(visitor, storage, id, true);
+		}
+		execution.get();
+		data.collectDelta(visitor, storage, id, true);
+
+		for (int i = 0; i < executed.length; i++) {
+			assertTrue("probe " + i, executed[i]);
+		}
+	}
+
+	/**
+	 * Executes every probe once in a background thread and returns when the
+	 * execution has started.
+	 */
+	private Future<?> execute(final boolean[] probes) throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final Future<?> execution = executor.submit(new Runnable() {
+			public void run() {
+				started.countDown();
+				for (int i = 0; i < probes.length; i++) {
+					probes[i] = true;
+					if (i % 100 == 0) {
+						Thread.yield();
+					}
+				}
+			}
+		});
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		return execution;
+	}
+
+	private static void merge(final boolean[] executed,
+			final ExecutionDataSnapshot snapshot) {
+		snapshot.accept(new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData d) {
+				merge(executed, d.getProbes());
+			}
+		}, new TestStorage());
+	}
+
+	private static void merge(final boolean[] executed,
+			final boolean[] probes) {
+		for (int i = 0; i < probes.length; i++) {
+			executed[i] |= probes[i];
+		}
+	}
+
 	@Test
 	public void testEquals() {
 		assertTrue(data.equals(data));
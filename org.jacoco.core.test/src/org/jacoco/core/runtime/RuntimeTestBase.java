@@ -58,8 +58,10 @@ public abstract class RuntimeTestBase {
 	public void testDataAccessor()
 			throws InstantiationException, IllegalAccessException {
 		ITarget t = generateAndInstantiateClass(1234);
+		final boolean[] probes = t.get();
+		probes[0] = true;
 		data.collect(storage, storage, false);
-		storage.assertData(1234, t.get());
+		storage.assertData(1234, probes);
 	}
 
 	@Test
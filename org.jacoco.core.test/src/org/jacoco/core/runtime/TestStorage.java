@@ -13,8 +13,9 @@
 package org.jacoco.core.runtime;
 
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -42,7 +43,7 @@ class TestStorage implements IExecutionDataVisitor, ISessionInfoVisitor {
 	}
 
 	public void assertData(long classId, boolean[] expected) {
-		assertSame(expected, getData(classId).getProbes());
+		assertTrue(Arrays.equals(expected, getData(classId).getProbes()));
 	}
 
 	// === ICoverageDataVisitor ===
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.test.perf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import org.jacoco.core.data.CompressedExecutionDataWriter;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.data.SessionInfoStore;
+
+/**
+ * Scenario to measure size and read time of exec files written with a
+ * {@link CompressedExecutionDataWriter}. The reference is the same execution
+ * data written with a plain {@link ExecutionDataWriter}. The data resembles a
+ * typical application with classes in a package hierarchy and only a small
+ * fraction of executed probes.
+ */
+public class CompressedExecFileScenario extends TimedScenario {
+
+	private final byte[] plain;
+
+	private final byte[] compressed;
+
+	protected CompressedExecFileScenario(final int classes) throws IOException {
+		super(String.format("reading compressed exec file with %s classes",
+				Integer.valueOf(classes)));
+		final ByteArrayOutputStream plainBuffer = new ByteArrayOutputStream();
+		final ByteArrayOutputStream compressedBuffer = new ByteArrayOutputStream();
+		final ExecutionDataWriter plainWriter = new ExecutionDataWriter(
+				plainBuffer);
+		final ExecutionDataWriter compressedWriter = new CompressedExecutionDataWriter(
+				compressedBuffer);
+		final SessionInfo info = new SessionInfo("session", 0, 1);
+		plainWriter.visitSessionInfo(info);
+		compressedWriter.visitSessionInfo(info);
+		final Random random = new Random(0);
+		for (int i = 0; i < classes; i++) {
+			final String name = String.format(
+					"org/example/module%s/pkg%s/Class%s",
+					Integer.valueOf(i / 1000), Integer.valueOf(i / 50 % 20),
+					Integer.valueOf(i));
+			final boolean[] probes = new boolean[8 + random.nextInt(200)];
+			for (int p = 0; p < probes.length; p++) {
+				probes[p] = random.nextInt(10) == 0;
+			}
+			probes[0] = true;
+			final ExecutionData data = new ExecutionData(random.nextLong(),
+					name, probes);
+			plainWriter.visitClassExecution(data);
+			compressedWriter.visitClassExecution(data);
+		}
+		compressedWriter.flush();
+		plain = plainBuffer.toByteArray();
+		compressed = compressedBuffer.toByteArray();
+	}
+
+	@Override
+	public void run(final IPerfOutput output) throws Exception {
+		output.writeByteResult("compressed exec file", compressed.length,
+				plain.length);
+		super.run(output);
+	}
+
+	@Override
+	protected Callable<Void> getInstrumentedCallable() throws Exception {
+		return read(compressed);
+	}
+
+	@Override
+	protected Callable<Void> getReferenceCallable() throws Exception {
+		return read(plain);
+	}
+
+	private static Callable<Void> read(final byte[] content) {
+		return new Callable<Void>() {
+			public Void call() throws Exception {
+				final ExecutionDataReader reader = new ExecutionDataReader(
+						new ByteArrayInputStream(content));
+				reader.setExecutionDataVisitor(new ExecutionDataStore());
+				reader.setSessionInfoVisitor(new SessionInfoStore());
+				reader.read();
+				return null;
+			}
+		};
+	}
+
+}
@@ -12,6 +12,8 @@
  *******************************************************************************/
 package org.jacoco.core.test.perf;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
 
 import org.jacoco.core.instr.Instrumenter;
@@ -22,16 +24,30 @@ import org.jacoco.core.test.TargetLoader;
 
 /**
  * This scenario runs a given scenario twice and reports the execution time:
- * Once on its original version, once in a instrumented version.
+ * Once on its original version, once in a instrumented version. Optionally the
+ * target is executed by several threads concurrently, which all write to the
+ * same probe array in the instrumented version.
  */
 public class ExecuteInstrumentedCodeScenario extends TimedScenario {
 
 	private final Class<? extends Callable<Void>> target;
 
+	private final int threads;
+
+	private final boolean checkProbes;
+
 	protected ExecuteInstrumentedCodeScenario(String description,
 			Class<? extends Callable<Void>> target) {
+		this(description, target, 1, false);
+	}
+
+	protected ExecuteInstrumentedCodeScenario(String description,
+			Class<? extends Callable<Void>> target, int threads,
+			boolean checkProbes) {
 		super(description);
 		this.target = target;
+		this.threads = threads;
+		this.checkProbes = checkProbes;
 	}
 
 	@Override
@@ -40,17 +56,52 @@ public class ExecuteInstrumentedCodeScenario extends TimedScenario {
 		IRuntime runtime = new LoggerRuntime();
 		runtime.startup(new RuntimeData());
 		final Instrumenter instr = new Instrumenter(runtime);
+		instr.setCheckProbes(checkProbes);
 		final byte[] original = TargetLoader.getClassDataAsBytes(target);
 		final byte[] instrumentedBuffer = instr.instrument(original, "");
 		final TargetLoader loader = new TargetLoader();
 
-		return (Callable<Void>) loader.add(target, instrumentedBuffer)
-				.newInstance();
+		return concurrent((Class<? extends Callable<Void>>) loader.add(target,
+				instrumentedBuffer));
 	}
 
 	@Override
 	protected Callable<Void> getReferenceCallable() throws Exception {
-		return target.newInstance();
+		return concurrent(target);
+	}
+
+	private Callable<Void> concurrent(
+			final Class<? extends Callable<Void>> type) throws Exception {
+		if (threads == 1) {
+			return type.newInstance();
+		}
+		final List<Callable<Void>> instances = new ArrayList<Callable<Void>>();
+		for (int i = 0; i < threads; i++) {
+			instances.add(type.newInstance());
+		}
+		return new Callable<Void>() {
+			public Void call() throws Exception {
+				final List<Thread> workers = new ArrayList<Thread>();
+				for (final Callable<Void> instance : instances) {
+					final Thread worker = new Thread() {
+						@Override
+						public void run() {
+							try {
+								instance.call();
+							} catch (Exception e) {
+								throw new RuntimeException(e);
+							}
+						}
+					};
+					worker.start();
+					workers.add(worker);
+				}
+				for (final Thread worker : workers) {
+					worker.join();
+				}
+				return null;
+			}
+		};
 	}
 
 }
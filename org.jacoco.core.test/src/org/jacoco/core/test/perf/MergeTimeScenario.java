@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.test.perf;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+
+/**
+ * Scenario to measure the time taken to merge execution data of several
+ * sessions into a {@link ExecutionDataStore}. As a reference the same data is
+ * merged into a {@link HashMap} with boxed keys.
+ */
+public class MergeTimeScenario extends TimedScenario {
+
+	private static final int PROBES = 64;
+
+	private final List<ExecutionData> data;
+
+	protected MergeTimeScenario(final int classes, final int sessions) {
+		super(String.format("merging %s sessions of %s classes",
+				Integer.valueOf(sessions), Integer.valueOf(classes)));
+		final Random random = new Random(0);
+		final long[] ids = new long[classes];
+		for (int i = 0; i < classes; i++) {
+			ids[i] = random.nextLong();
+		}
+		data = new ArrayList<ExecutionData>(classes * sessions);
+		for (int s = 0; s < sessions; s++) {
+			for (int i = 0; i < classes; i++) {
+				final boolean[] probes = new boolean[PROBES];
+				probes[random.nextInt(PROBES)] = true;
+				data.add(new ExecutionData(ids[i], "Class" + i, probes));
+			}
+		}
+	}
+
+	@Override
+	protected Callable<Void> getInstrumentedCallable() throws Exception {
+		return new Callable<Void>() {
+			public Void call() throws Exception {
+				final ExecutionDataStore store = new ExecutionDataStore();
+				for (final ExecutionData d : data) {
+					store.visitClassExecution(copy(d));
+				}
+				return null;
+			}
+		};
+	}
+
+	@Override
+	protected Callable<Void> getReferenceCallable() throws Exception {
+		return new Callable<Void>() {
+			public Void call() throws Exception {
+				final Map<Long, ExecutionData> store = new HashMap<Long, ExecutionData>();
+				final Set<String> names = new HashSet<String>();
+				for (final ExecutionData d : data) {
+					final ExecutionData c = copy(d);
+					final Long id = Long.valueOf(c.getId());
+					final ExecutionData entry = store.get(id);
+					if (entry == null) {
+						store.put(id, c);
+						names.add(c.getName());
+					} else {
+						entry.merge(c);
+					}
+				}
+				return null;
+			}
+		};
+	}
+
+	private static ExecutionData copy(final ExecutionData d) {
+		return new ExecutionData(d.getId(), d.getName(), d.getProbes().clone());
+	}
+
+}
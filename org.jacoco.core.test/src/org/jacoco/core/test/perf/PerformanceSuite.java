@@ -30,9 +30,15 @@ public class PerformanceSuite implements IPerfScenario {
 				.run(output);
 		new ExecuteInstrumentedCodeScenario("game of life", Target03.class)
 				.run(output);
+		new ExecuteInstrumentedCodeScenario("game of life, 8 threads",
+				Target03.class, 8, false).run(output);
+		new ExecuteInstrumentedCodeScenario("game of life, 8 threads, checked",
+				Target03.class, 8, true).run(output);
 		new InstrumentationSizeSzenario(Target03.class).run(output);
 		new InstrumentationTimeScenario(Target03.class, 1000).run(output);
 		new AnalysisTimeScenario(Target03.class, 1000).run(output);
+		new MergeTimeScenario(10000, 20).run(output);
+		new CompressedExecFileScenario(20000).run(output);
 	}
 
 	public static void main(String[] args) throws Exception {
@@ -28,7 +28,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import org.jacoco.core.data.SessionInfo;
-import org.jacoco.core.runtime.IRemoteCommandVisitor;
+import org.jacoco.core.runtime.IRemoteDeltaCommandVisitor;
 import org.jacoco.core.runtime.RemoteControlReader;
 import org.jacoco.core.runtime.RemoteControlWriter;
 import org.junit.After;
@@ -45,12 +45,14 @@ public class ExecDumpClientTest {
 
 	private boolean dumpRequested;
 	private boolean resetRequested;
+	private List<Long> acknowledgedIds;
 
 	private ServerSocket server;
 
 	@Before
 	public void setup() {
 		callbacks = new ArrayList<String>();
+		acknowledgedIds = new ArrayList<Long>();
 		client = new ExecDumpClient() {
 			@Override
 			protected void onConnecting(InetAddress address, int port) {
@@ -128,6 +130,22 @@ public class ExecDumpClientTest {
 		assertTrue(resetRequested);
 	}
 
+	@Test
+	public void testDeltaDump() throws IOException {
+		int port = createExecServer();
+		client.setDelta(true);
+		client.setReset(true);
+
+		ExecFileLoader loader = client.dump((String) null, port);
+		assertEquals(1, loader.getSessionInfoStore().getInfos().size());
+		assertTrue(resetRequested);
+		client.dump((String) null, port);
+		client.dump((String) null, port);
+
+		assertEquals(Arrays.asList(Long.valueOf(0), Long.valueOf(1),
+				Long.valueOf(2)), acknowledgedIds);
+	}
+
 	@Test
 	public void should_throw_IOException_when_server_closes_connection_without_response()
 			throws IOException {
@@ -153,7 +171,9 @@ public class ExecDumpClientTest {
 		new Thread(new Runnable() {
 			public void run() {
 				try {
-					handleConnection(server.accept());
+					while (true) {
+						handleConnection(server.accept());
+					}
 				} catch (IOException e) {
 					// ignore
 				}
@@ -167,7 +187,7 @@ public class ExecDumpClientTest {
 				socket.getOutputStream());
 		final RemoteControlReader reader = new RemoteControlReader(
 				socket.getInputStream());
-		reader.setRemoteCommandVisitor(new IRemoteCommandVisitor() {
+		reader.setRemoteCommandVisitor(new IRemoteDeltaCommandVisitor() {
 			public void visitDumpCommand(boolean dump, boolean reset)
 					throws IOException {
 				dumpRequested = dump;
@@ -178,8 +198,18 @@ public class ExecDumpClientTest {
 				}
 				writer.sendCmdOk();
 			}
+
+			public void visitDeltaDumpCommand(long acknowledged, boolean reset)
+					throws IOException {
+				acknowledgedIds.add(Long.valueOf(acknowledged));
+				resetRequested = reset;
+				writer.visitSessionInfo(new SessionInfo("TestId", 100, 200));
+				writer.sendDeltaDumpId(acknowledgedIds.size());
+				writer.sendCmdOk();
+			}
 		});
 		reader.read();
+		socket.close();
 	}
 
 	private int createNopServer() throws IOException {
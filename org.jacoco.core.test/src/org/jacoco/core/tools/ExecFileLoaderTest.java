@@ -12,8 +12,12 @@
  *******************************************************************************/
 package org.jacoco.core.tools;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -104,6 +108,86 @@ public class ExecFileLoaderTest {
 		assertFileContents(file, "a", "bb");
 	}
 
+	@Test
+	public void testLoadAndSavePacked() throws IOException {
+		loader = new ExecFileLoader(true);
+		final File file = new File(sourceFolder.getRoot(), "target.exec");
+
+		loader.load(createFile("a"));
+		loader.load(createFile("bb"));
+		loader.save(file, false);
+
+		assertNull(loader.getExecutionDataStore());
+		assertArrayEquals(new boolean[] { true },
+				loader.getPackedExecutionDataStore().get(1).getProbes());
+		assertFileContents(file, "a", "bb");
+	}
+
+	@Test
+	public void testSaveCounts() throws IOException {
+		final File file = new File(sourceFolder.getRoot(), "target.exec");
+
+		loader.load(createCountsFile("a", 2));
+		loader.load(createCountsFile("a", 3));
+		loader.save(file, false);
+
+		final ExecFileLoader target = new ExecFileLoader();
+		target.load(file);
+		assertArrayEquals(new int[] { 5 },
+				target.getExecutionDataStore().get(1).getCounts());
+	}
+
+	@Test
+	public void testSaveCountsPacked() throws IOException {
+		loader = new ExecFileLoader(true);
+		final File file = new File(sourceFolder.getRoot(), "target.exec");
+
+		loader.load(createCountsFile("a", 2));
+		loader.load(createCountsFile("a", 3));
+		loader.save(file, false);
+
+		final ExecFileLoader target = new ExecFileLoader();
+		target.load(file);
+		assertArrayEquals(new int[] { 5 },
+				target.getExecutionDataStore().get(1).getCounts());
+	}
+
+	@Test
+	public void testSaveWithoutSparseBlocks() throws IOException {
+		final boolean[] probes = new boolean[64];
+		probes[3] = true;
+		loader.getExecutionDataStore().put(new ExecutionData(1, "a", probes));
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		loader.save(out);
+
+		assertEquals(ExecutionDataWriter.BLOCK_EXECUTIONDATA,
+				out.toByteArray()[5]);
+	}
+
+	@Test
+	public void testSaveWithSparseBlocks() throws IOException {
+		final boolean[] probes = new boolean[64];
+		probes[3] = true;
+		loader.getExecutionDataStore().put(new ExecutionData(1, "a", probes));
+		loader.setSparseBlocks(true);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		loader.save(out);
+
+		assertEquals(ExecutionDataWriter.BLOCK_EXECUTIONDATA_SPARSE,
+				out.toByteArray()[5]);
+		final ExecFileLoader target = new ExecFileLoader();
+		target.load(new ByteArrayInputStream(out.toByteArray()));
+		assertArrayEquals(probes,
+				target.getExecutionDataStore().get(1).getProbes());
+	}
+
+	@Test
+	public void testNotPacked() {
+		assertNull(loader.getPackedExecutionDataStore());
+	}
+
 	@Test
 	public void testCreateSubfolders() throws IOException {
 		final File file = new File(sourceFolder.getRoot(), "a/b/c/target.exec");
@@ -126,6 +210,16 @@ public class ExecFileLoaderTest {
 		return file;
 	}
 
+	private File createCountsFile(String id, int count) throws IOException {
+		final File file = sourceFolder.newFile();
+		final FileOutputStream out = new FileOutputStream(file);
+		final ExecutionDataWriter writer = new ExecutionDataWriter(out, true);
+		writer.visitClassExecution(
+				new ExecutionData(id.length(), id, new int[] { count }));
+		out.close();
+		return file;
+	}
+
 	private void assertLoaderContents(String... expected) {
 		assertContents(loader.getExecutionDataStore(),
 				loader.getSessionInfoStore(), expected);
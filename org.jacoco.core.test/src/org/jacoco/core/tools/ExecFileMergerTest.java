@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link ExecFileMerger}.
+ */
+public class ExecFileMergerTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void should_create_same_output_as_sequential_merge()
+			throws IOException {
+		final Random random = new Random(5);
+		final List<File> files = new ArrayList<File>();
+		for (int f = 0; f < 25; f++) {
+			final File file = folder.newFile("file" + f + ".exec");
+			final OutputStream out = new FileOutputStream(file);
+			final ExecutionDataWriter writer = new ExecutionDataWriter(out);
+			writer.visitSessionInfo(
+					new SessionInfo("session" + f, f % 3, f % 7));
+			for (int c = 0; c < 300; c++) {
+				final int id = random.nextInt(1000);
+				final boolean[] probes = new boolean[id % 130 + 1];
+				probes[random.nextInt(probes.length)] = true;
+				writer.visitClassExecution(
+						new ExecutionData(id, "Class" + id, probes));
+			}
+			out.close();
+			files.add(file);
+		}
+
+		final ExecFileLoader sequential = new ExecFileLoader(true);
+		for (final File file : files) {
+			sequential.load(file);
+		}
+		final byte[] expected = save(sequential);
+
+		for (final int threads : new int[] { 1, 2, 3, 8, 32 }) {
+			final ExecFileLoader merged = new ExecFileMerger(threads)
+					.merge(inputs(files));
+			assertArrayEquals("threads " + threads, expected, save(merged));
+		}
+	}
+
+	@Test
+	public void should_report_statistics() throws IOException {
+		final File a = createFile("a");
+		final File b = createFile("bb");
+		final ExecFileMerger merger = new ExecFileMerger(2);
+
+		merger.merge(inputs(Collections.<File> emptyList()));
+		assertEquals(0, merger.getFileCount());
+		assertEquals(0, merger.getByteCount());
+
+		merger.merge(inputs(a, b));
+		assertEquals(2, merger.getFileCount());
+		assertEquals(a.length() + b.length(), merger.getByteCount());
+		assertTrue(merger.getTime() >= 0);
+		assertTrue(merger.getFilesPerSecond() > 0);
+		assertTrue(merger.getBytesPerSecond() > 0);
+	}
+
+	@Test
+	public void should_merge_empty_list_of_inputs() throws IOException {
+		final ExecFileLoader loader = new ExecFileMerger(4)
+				.merge(inputs(Collections.<File> emptyList()));
+
+		assertTrue(loader.getPackedExecutionDataStore().isEmpty());
+		assertTrue(loader.getSessionInfoStore().isEmpty());
+	}
+
+	@Test
+	public void should_report_input_which_can_not_be_read() throws IOException {
+		final List<ExecFileMerger.Input> inputs = inputs(createFile("a"));
+		final ExecFileMerger.Input broken = new ExecFileMerger.Input() {
+			public InputStream open() {
+				return new ByteArrayInputStream("invalid".getBytes());
+			}
+
+			@Override
+			public String toString() {
+				return "broken.exec";
+			}
+		};
+		inputs.add(broken);
+
+		try {
+			new ExecFileMerger(2).merge(inputs);
+			fail("IOException expected");
+		} catch (IOException e) {
+			assertEquals("Unable to read broken.exec", e.getMessage());
+			assertEquals("Invalid execution data file.",
+					e.getCause().getMessage());
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void should_fail_for_incompatible_execution_data()
+			throws IOException {
+		final File a = createFile("a");
+		final File b = folder.newFile("b.exec");
+		final OutputStream out = new FileOutputStream(b);
+		new ExecutionDataWriter(out).visitClassExecution(
+				new ExecutionData(1, "a", new boolean[] { true, true }));
+		out.close();
+
+		new ExecFileMerger(2).merge(inputs(a, b));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void should_not_accept_invalid_number_of_threads() {
+		new ExecFileMerger(0);
+	}
+
+	private File createFile(final String id) throws IOException {
+		final File file = folder.newFile(id + ".exec");
+		final OutputStream out = new FileOutputStream(file);
+		final ExecutionDataWriter writer = new ExecutionDataWriter(out);
+		writer.visitSessionInfo(new SessionInfo(id, 1, 2));
+		writer.visitClassExecution(
+				new ExecutionData(id.length(), id, new boolean[] { true }));
+		out.close();
+		return file;
+	}
+
+	private static List<ExecFileMerger.Input> inputs(final File... files) {
+		final List<File> list = new ArrayList<File>();
+		Collections.addAll(list, files);
+		return inputs(list);
+	}
+
+	private static List<ExecFileMerger.Input> inputs(final List<File> files) {
+		final List<ExecFileMerger.Input> inputs = new ArrayList<ExecFileMerger.Input>();
+		for (final File file : files) {
+			inputs.add(ExecFileMerger.fileInput(file));
+		}
+		return inputs;
+	}
+
+	private static byte[] save(final ExecFileLoader loader) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		loader.save(out);
+		return out.toByteArray();
+	}
+
+}
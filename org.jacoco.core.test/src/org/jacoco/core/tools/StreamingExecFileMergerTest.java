@@ -0,0 +1,275 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.data.SessionInfoStore;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link StreamingExecFileMerger}.
+ */
+public class StreamingExecFileMergerTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private File tempDirectory;
+
+	private List<ExecFileMerger.Input> inputs;
+
+	@Before
+	public void setup() throws IOException {
+		tempDirectory = folder.newFolder("temp");
+		inputs = new ArrayList<ExecFileMerger.Input>();
+	}
+
+	@Test
+	public void should_merge_in_memory_when_limit_is_not_exceeded()
+			throws IOException {
+		createInputs(5, 50);
+		final StreamingExecFileMerger merger = new StreamingExecFileMerger(
+				tempDirectory, Long.MAX_VALUE);
+
+		assertMerge(merger);
+		assertEquals(0, merger.getRunCount());
+	}
+
+	@Test
+	public void should_merge_spilled_runs() throws IOException {
+		createInputs(10, 200);
+		final StreamingExecFileMerger merger = new StreamingExecFileMerger(
+				tempDirectory, 4000);
+
+		assertMerge(merger);
+		assertTrue(merger.getRunCount() > 1);
+		assertEquals(0, tempDirectory.list().length);
+	}
+
+	@Test
+	public void should_merge_runs_in_multiple_passes() throws IOException {
+		createInputs(10, 200);
+		final StreamingExecFileMerger merger = new StreamingExecFileMerger(
+				tempDirectory, 1000, 3);
+
+		assertMerge(merger);
+		assertTrue(merger.getRunCount() > 10);
+		assertEquals(0, tempDirectory.list().length);
+	}
+
+	@Test
+	public void should_write_to_file() throws IOException {
+		createInputs(3, 10);
+		final File file = new File(folder.getRoot(), "a/b/merged.exec");
+
+		new StreamingExecFileMerger(tempDirectory, 1000).merge(inputs, file,
+				false);
+
+		final ExecFileLoader loader = new ExecFileLoader();
+		loader.load(file);
+		assertEquals(3, loader.getSessionInfoStore().getInfos().size());
+	}
+
+	@Test
+	public void should_report_input_which_can_not_be_read() throws IOException {
+		createInputs(3, 100);
+		inputs.add(new ExecFileMerger.Input() {
+			public InputStream open() {
+				return new ByteArrayInputStream("invalid".getBytes());
+			}
+
+			@Override
+			public String toString() {
+				return "broken.exec";
+			}
+		});
+
+		try {
+			new StreamingExecFileMerger(tempDirectory, 1000).merge(inputs,
+					new ByteArrayOutputStream());
+			fail("IOException expected");
+		} catch (IOException e) {
+			assertEquals("Unable to read broken.exec", e.getMessage());
+		}
+		assertEquals(0, tempDirectory.list().length);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void should_fail_for_incompatible_execution_data()
+			throws IOException {
+		addInput(new ExecutionData(1, "a", new boolean[] { true }));
+		addInput(new ExecutionData(1, "a", new boolean[] { true, true }));
+
+		new StreamingExecFileMerger(tempDirectory, 0).merge(inputs,
+				new ByteArrayOutputStream());
+	}
+
+	@Test
+	public void should_keep_execution_counts() throws IOException {
+		addInput(new ExecutionData(1, "a", new int[] { 1, 2 }));
+		addInput(new ExecutionData(1, "a", new int[] { 3, 0 }));
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		new StreamingExecFileMerger(tempDirectory, 0).merge(inputs, out);
+
+		final ExecFileLoader loader = new ExecFileLoader();
+		loader.load(new ByteArrayInputStream(out.toByteArray()));
+		assertArrayEquals(new int[] { 4, 2 },
+				loader.getExecutionDataStore().get(1).getCounts());
+	}
+
+	@Test
+	public void should_write_sparse_blocks_when_enabled() throws IOException {
+		final boolean[] probes = new boolean[64];
+		probes[3] = true;
+		addInput(new ExecutionData(1, "a", probes));
+		final StreamingExecFileMerger merger = new StreamingExecFileMerger(
+				tempDirectory, 0);
+		merger.setSparseBlocks(true);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		merger.merge(inputs, out);
+
+		assertEquals("[16, 19]", readBlockTypes(out.toByteArray()));
+	}
+
+	@Test
+	public void should_not_write_sparse_blocks_by_default() throws IOException {
+		final boolean[] probes = new boolean[64];
+		probes[3] = true;
+		addInput(new ExecutionData(1, "a", probes));
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		new StreamingExecFileMerger(tempDirectory, 0).merge(inputs, out);
+
+		assertEquals("[16, 17]", readBlockTypes(out.toByteArray()));
+	}
+
+	private static String readBlockTypes(final byte[] content)
+			throws IOException {
+		final List<Byte> types = new ArrayList<Byte>();
+		final ExecutionDataReader reader = new ExecutionDataReader(
+				new ByteArrayInputStream(content)) {
+			@Override
+			protected boolean readBlock(final byte blocktype)
+					throws IOException {
+				if (blocktype != ExecutionDataWriter.BLOCK_HEADER) {
+					types.add(Byte.valueOf(blocktype));
+				}
+				return super.readBlock(blocktype);
+			}
+		};
+		reader.setSessionInfoVisitor(new SessionInfoStore());
+		reader.setExecutionDataVisitor(new ExecutionDataStore());
+		reader.read();
+		return types.toString();
+	}
+
+	private void createInputs(final int count, final int classes)
+			throws IOException {
+		final Random random = new Random(3);
+		for (int i = 0; i < count; i++) {
+			final ExecutionData[] data = new ExecutionData[classes];
+			for (int c = 0; c < classes; c++) {
+				final long id = random.nextInt(500) - 250;
+				final boolean[] probes = new boolean[(int) (id & 0x7F) + 1];
+				probes[random.nextInt(probes.length)] = true;
+				data[c] = new ExecutionData(id, "Class" + id, probes);
+			}
+			addInput(data);
+		}
+	}
+
+	private void addInput(final ExecutionData... data) throws IOException {
+		final File file = folder.newFile();
+		final OutputStream out = new FileOutputStream(file);
+		final ExecutionDataWriter writer = new ExecutionDataWriter(out, true);
+		writer.visitSessionInfo(new SessionInfo(file.getName(), inputs.size(),
+				inputs.size() * 2));
+		for (final ExecutionData d : data) {
+			writer.visitClassExecution(d);
+		}
+		out.close();
+		inputs.add(ExecFileMerger.fileInput(file));
+	}
+
+	private void assertMerge(final StreamingExecFileMerger merger)
+			throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		merger.merge(inputs, out);
+
+		final ExecutionDataStore expected = new ExecutionDataStore();
+		final SessionInfoStore expectedSessions = new SessionInfoStore();
+		for (final ExecFileMerger.Input input : inputs) {
+			final InputStream in = input.open();
+			final ExecutionDataReader reader = new ExecutionDataReader(in);
+			reader.setExecutionDataVisitor(expected);
+			reader.setSessionInfoVisitor(expectedSessions);
+			reader.read();
+			in.close();
+		}
+
+		final List<ExecutionData> actual = new ArrayList<ExecutionData>();
+		final SessionInfoStore actualSessions = new SessionInfoStore();
+		final ExecutionDataReader reader = new ExecutionDataReader(
+				new ByteArrayInputStream(out.toByteArray()));
+		reader.setExecutionDataVisitor(new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData data) {
+				actual.add(data);
+			}
+		});
+		reader.setSessionInfoVisitor(actualSessions);
+		reader.read();
+
+		assertEquals(expected.getContents().size(), actual.size());
+		long previous = Long.MIN_VALUE;
+		for (final ExecutionData data : actual) {
+			assertTrue("ordered by id", data.getId() > previous);
+			previous = data.getId();
+			final ExecutionData e = expected.get(data.getId());
+			assertEquals(e.getName(), data.getName());
+			assertArrayEquals(e.getProbes(), data.getProbes());
+		}
+		assertEquals(expectedSessions.getInfos().size(),
+				actualSessions.getInfos().size());
+		for (int i = 0; i < expectedSessions.getInfos().size(); i++) {
+			assertEquals(expectedSessions.getInfos().get(i).getId(),
+					actualSessions.getInfos().get(i).getId());
+		}
+	}
+
+}
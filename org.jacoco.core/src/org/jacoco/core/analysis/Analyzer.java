@@ -16,13 +16,20 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.IExecutionDataLookup;
 import org.jacoco.core.internal.ContentTypeDetector;
 import org.jacoco.core.internal.InputStreams;
 import org.jacoco.core.internal.Pack200Streams;
@@ -30,7 +37,7 @@ import org.jacoco.core.internal.analysis.ClassAnalyzer;
 import org.jacoco.core.internal.analysis.ClassCoverageImpl;
 import org.jacoco.core.internal.analysis.StringPool;
 import org.jacoco.core.internal.data.CRC64;
-import org.jacoco.core.internal.diff.CodeDiffUtil;
+import org.jacoco.core.internal.diff.DiffScope;
 import org.jacoco.core.internal.flow.ClassProbesAdapter;
 import org.jacoco.core.internal.instr.InstrSupport;
 import org.objectweb.asm.ClassReader;
@@ -44,15 +51,32 @@ import org.objectweb.asm.Opcodes;
  * {@link Analyzer} requires a {@link ExecutionDataStore} instance that holds
  * the execution data for the classes to analyze. The {@link Analyzer} offers
  * several methods to analyze classes from a variety of sources.
+ *
+ * Optionally class files can be analyzed concurrently, see
+ * {@link #setExecutor(Executor)}.
  */
 public class Analyzer {
 
-	private final ExecutionDataStore executionData;
+	/**
+	 * Maximum number of class files submitted to the executor which have not
+	 * been reported yet. Limits the memory held by raw class file buffers.
+	 */
+	private static final int MAX_PENDING = 256;
+
+	private final IExecutionDataLookup executionData;
 
 	private final ICoverageVisitor coverageVisitor;
 
+	private final DiffScope diffScope;
+
 	private final StringPool stringPool;
 
+	private final ThreadLocal<StringPool> workerStringPools;
+
+	private final Queue<PendingClass> pending;
+
+	private Executor executor;
+
 	/**
 	 * Creates a new analyzer reporting to the given output.
 	 *
@@ -64,65 +88,219 @@ public class Analyzer {
 	 */
 	public Analyzer(final ExecutionDataStore executionData,
 			final ICoverageVisitor coverageVisitor) {
+		this(executionData, coverageVisitor, null);
+	}
+
+	/**
+	 * Creates a new analyzer for an incremental analysis. Only classes and
+	 * methods contained in the given diff scope are reported to the output. The
+	 * scope is used by this analyzer only, therefore analyzers with different
+	 * scopes can be used concurrently. Execution data is looked up for every
+	 * analyzed class, this allows to read it on demand, for example with a
+	 * {@link org.jacoco.core.data.MappedExecutionDataReader}.
+	 *
+	 * @param executionData
+	 *            execution data
+	 * @param coverageVisitor
+	 *            the output instance that will coverage data for every analyzed
+	 *            class
+	 * @param diffScope
+	 *            classes and methods to analyze, <code>null</code> or an empty
+	 *            scope to analyze all classes
+	 */
+	public Analyzer(final IExecutionDataLookup executionData,
+			final ICoverageVisitor coverageVisitor, final DiffScope diffScope) {
 		this.executionData = executionData;
 		this.coverageVisitor = coverageVisitor;
+		this.diffScope = diffScope == null || diffScope.isEmpty() ? null
+				: diffScope;
 		this.stringPool = new StringPool();
+		this.workerStringPools = new ThreadLocal<StringPool>() {
+			@Override
+			protected StringPool initialValue() {
+				return new StringPool();
+			}
+		};
+		this.pending = new ArrayDeque<PendingClass>();
+	}
+
+	/**
+	 * Sets an executor to analyze class files concurrently. Class files are
+	 * still read by the calling thread, but decoding and analysis is performed
+	 * by the given executor. Every worker thread uses its own string pool. The
+	 * results are reported to the {@link ICoverageVisitor} on the calling
+	 * thread in the same order as with sequential analysis, therefore the
+	 * visitor does not need to be thread safe and the resulting coverage data
+	 * is identical. Each of the <code>analyze*</code> methods returns only
+	 * after all class files found by it have been reported. By default no
+	 * executor is set and all classes are analyzed on the calling thread.
+	 *
+	 * @param executor
+	 *            executor to analyze class files with or <code>null</code> for
+	 *            sequential analysis
+	 */
+	public void setExecutor(final Executor executor) {
+		this.executor = executor;
 	}
 
 	/**
 	 * Creates an ASM class visitor for analysis.
 	 *
-	 * @param classid
-	 *            id of the class calculated with {@link CRC64}
-	 * @param className
-	 *            VM name of the class
+	 * @param coverage
+	 *            coverage node to write the analysis results to
+	 * @param probes
+	 *            execution data for the class or <code>null</code>
+	 * @param counts
+	 *            execution counts for the class or <code>null</code>
+	 * @param stringPool
+	 *            pool to reuse strings from
 	 * @return ASM visitor to write class definition to
 	 */
-	private ClassVisitor createAnalyzingVisitor(final long classid,
-			final String className) {
-		final ExecutionData data = executionData.get(classid);
+	private ClassVisitor createAnalyzingVisitor(
+			final ClassCoverageImpl coverage, final boolean[] probes,
+			final int[] counts, final StringPool stringPool) {
+		final ClassAnalyzer analyzer = new ClassAnalyzer(coverage, probes,
+				counts, stringPool);
+		return new ClassProbesAdapter(analyzer, false, diffScope);
+	}
+
+	/**
+	 * Analyzes the given class definition.
+	 *
+	 * @param source
+	 *            class definition
+	 * @param stringPool
+	 *            pool to reuse strings from
+	 * @return coverage data or <code>null</code> if the class is ignored
+	 */
+	private ClassCoverageImpl analyzeClass(final byte[] source,
+			final StringPool stringPool) {
+		final long classId = CRC64.classId(source);
+		final ClassReader reader = InstrSupport.classReaderFor(source);
+		if ((reader.getAccess() & Opcodes.ACC_MODULE) != 0) {
+			return null;
+		}
+		if ((reader.getAccess() & Opcodes.ACC_SYNTHETIC) != 0) {
+			return null;
+		}
+		// 增量覆盖时，没有匹配到增量代码就无需解析类
+		if (null != diffScope
+				&& !diffScope.containsClass(reader.getClassName())) {
+			return null;
+		}
+		final String className = reader.getClassName();
+		final ExecutionData data = executionData.get(classId);
 		final boolean[] probes;
+		final int[] counts;
 		final boolean noMatch;
 		if (data == null) {
 			probes = null;
+			counts = null;
 			noMatch = executionData.contains(className);
 		} else {
 			probes = data.getProbes();
+			counts = data.getCounts();
 			noMatch = false;
 		}
 		final ClassCoverageImpl coverage = new ClassCoverageImpl(className,
-				classid, noMatch);
-		final ClassAnalyzer analyzer = new ClassAnalyzer(coverage, probes,
-				stringPool) {
-			@Override
-			public void visitEnd() {
-				super.visitEnd();
-				coverageVisitor.visitCoverage(coverage);
-			}
-		};
-		return new ClassProbesAdapter(analyzer, false);
+				classId, noMatch);
+		reader.accept(
+				createAnalyzingVisitor(coverage, probes, counts, stringPool),
+				0);
+		return coverage;
 	}
 
 	private void analyzeClass(final byte[] source) {
-		final long classId = CRC64.classId(source);
-		final ClassReader reader = InstrSupport.classReaderFor(source);
-		if ((reader.getAccess() & Opcodes.ACC_MODULE) != 0) {
-			return;
+		final ClassCoverageImpl coverage = analyzeClass(source, stringPool);
+		if (coverage != null) {
+			coverageVisitor.visitCoverage(coverage);
 		}
-		if ((reader.getAccess() & Opcodes.ACC_SYNTHETIC) != 0) {
+	}
+
+	/**
+	 * Analyzes the given class definition directly or submits it to the
+	 * executor, if one is set.
+	 */
+	private void submitClass(final byte[] buffer, final String location)
+			throws IOException {
+		if (executor == null) {
+			try {
+				analyzeClass(buffer);
+			} catch (final RuntimeException cause) {
+				throw analyzerError(location, cause);
+			}
 			return;
 		}
-		// 字段不为空说明是增量覆盖
-		if (null != CoverageBuilder.classInfos
-				&& !CoverageBuilder.classInfos.isEmpty()) {
-			// 如果没有匹配到增量代码就无需解析类
-			if (!CodeDiffUtil.checkClassIn(reader.getClassName())) {
-				return;
+		if (pending.size() >= MAX_PENDING) {
+			report(pending.remove());
+		}
+		final PendingClass task = new PendingClass(buffer, location);
+		pending.add(task);
+		executor.execute(task);
+	}
+
+	/**
+	 * Waits for all submitted class definitions and reports them in submission
+	 * order.
+	 */
+	private void completePending() throws IOException {
+		while (!pending.isEmpty()) {
+			report(pending.remove());
+		}
+	}
+
+	/**
+	 * Discards all class definitions which have not been reported, e.g. after
+	 * an error.
+	 */
+	private void cancelPending() {
+		for (final PendingClass task : pending) {
+			task.cancel(false);
+		}
+		pending.clear();
+	}
+
+	private void report(final PendingClass task) throws IOException {
+		final ClassCoverageImpl coverage;
+		try {
+			coverage = task.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw analyzerError(task.location, e);
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw analyzerError(task.location, (RuntimeException) cause);
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
 			}
+			throw analyzerError(task.location, e);
+		}
+		if (coverage != null) {
+			try {
+				coverageVisitor.visitCoverage(coverage);
+			} catch (final RuntimeException cause) {
+				throw analyzerError(task.location, cause);
+			}
+		}
+	}
+
+	/**
+	 * A class definition which is analyzed by the executor.
+	 */
+	private class PendingClass extends FutureTask<ClassCoverageImpl> {
+
+		final String location;
+
+		PendingClass(final byte[] buffer, final String location) {
+			super(new Callable<ClassCoverageImpl>() {
+				public ClassCoverageImpl call() {
+					return analyzeClass(buffer, workerStringPools.get());
+				}
+			});
+			this.location = location;
 		}
-		final ClassVisitor visitor = createAnalyzingVisitor(classId,
-				reader.getClassName());
-		reader.accept(visitor, 0);
 
 	}
 
@@ -139,9 +317,10 @@ public class Analyzer {
 	public void analyzeClass(final byte[] buffer, final String location)
 			throws IOException {
 		try {
-			analyzeClass(buffer);
-		} catch (final RuntimeException cause) {
-			throw analyzerError(location, cause);
+			submitClass(buffer, location);
+			completePending();
+		} finally {
+			cancelPending();
 		}
 	}
 
@@ -158,13 +337,16 @@ public class Analyzer {
 	 */
 	public void analyzeClass(final InputStream input, final String location)
 			throws IOException {
-		final byte[] buffer;
+		analyzeClass(readClass(input, location), location);
+	}
+
+	private byte[] readClass(final InputStream input, final String location)
+			throws IOException {
 		try {
-			buffer = InputStreams.readFully(input);
+			return InputStreams.readFully(input);
 		} catch (final IOException e) {
 			throw analyzerError(location, e);
 		}
-		analyzeClass(buffer, location);
 	}
 
 	private IOException analyzerError(final String location,
@@ -192,6 +374,17 @@ public class Analyzer {
 	 */
 	public int analyzeAll(final InputStream input, final String location)
 			throws IOException {
+		try {
+			final int count = analyzeContent(input, location);
+			completePending();
+			return count;
+		} finally {
+			cancelPending();
+		}
+	}
+
+	private int analyzeContent(final InputStream input, final String location)
+			throws IOException {
 		final ContentTypeDetector detector;
 		try {
 			detector = new ContentTypeDetector(input);
@@ -200,7 +393,8 @@ public class Analyzer {
 		}
 		switch (detector.getType()) {
 		case ContentTypeDetector.CLASSFILE:
-			analyzeClass(detector.getInputStream(), location);
+			submitClass(readClass(detector.getInputStream(), location),
+					location);
 			return 1;
 		case ContentTypeDetector.ZIPFILE:
 			return analyzeZip(detector.getInputStream(), location);
@@ -225,15 +419,25 @@ public class Analyzer {
 	 *             if the file can't be read or a class can't be analyzed
 	 */
 	public int analyzeAll(final File file) throws IOException {
+		try {
+			final int count = analyzeFile(file);
+			completePending();
+			return count;
+		} finally {
+			cancelPending();
+		}
+	}
+
+	private int analyzeFile(final File file) throws IOException {
 		int count = 0;
 		if (file.isDirectory()) {
 			for (final File f : file.listFiles()) {
-				count += analyzeAll(f);
+				count += analyzeFile(f);
 			}
 		} else {
 			final InputStream in = new FileInputStream(file);
 			try {
-				count += analyzeAll(in, file.getPath());
+				count += analyzeContent(in, file.getPath());
 			} finally {
 				in.close();
 			}
@@ -257,13 +461,18 @@ public class Analyzer {
 	 */
 	public int analyzeAll(final String path, final File basedir)
 			throws IOException {
-		int count = 0;
-		final StringTokenizer st = new StringTokenizer(path,
-				File.pathSeparator);
-		while (st.hasMoreTokens()) {
-			count += analyzeAll(new File(basedir, st.nextToken()));
+		try {
+			int count = 0;
+			final StringTokenizer st = new StringTokenizer(path,
+					File.pathSeparator);
+			while (st.hasMoreTokens()) {
+				count += analyzeFile(new File(basedir, st.nextToken()));
+			}
+			completePending();
+			return count;
+		} finally {
+			cancelPending();
 		}
-		return count;
 	}
 
 	private int analyzeZip(final InputStream input, final String location)
@@ -272,7 +481,7 @@ public class Analyzer {
 		ZipEntry entry;
 		int count = 0;
 		while ((entry = nextEntry(zip, location)) != null) {
-			count += analyzeAll(zip, location + "@" + entry.getName());
+			count += analyzeContent(zip, location + "@" + entry.getName());
 		}
 		return count;
 	}
@@ -294,7 +503,7 @@ public class Analyzer {
 		} catch (final IOException e) {
 			throw analyzerError(location, e);
 		}
-		return analyzeAll(gzipInputStream, location);
+		return analyzeContent(gzipInputStream, location);
 	}
 
 	private int analyzePack200(final InputStream input, final String location)
@@ -305,7 +514,7 @@ public class Analyzer {
 		} catch (final IOException e) {
 			throw analyzerError(location, e);
 		}
-		return analyzeAll(unpackedInput, location);
+		return analyzeContent(unpackedInput, location);
 	}
 
 }
@@ -12,13 +12,14 @@
  *******************************************************************************/
 package org.jacoco.core.analysis;
 
-import com.alibaba.fastjson.JSON;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 import org.jacoco.core.internal.analysis.BundleCoverageImpl;
 import org.jacoco.core.internal.analysis.SourceFileCoverageImpl;
-import org.jacoco.core.internal.diff.ClassInfoDto;
-
-import java.io.File;
-import java.util.*;
 
 /**
  * Builder for hierarchical {@link ICoverageNode} structures from single
@@ -40,11 +41,6 @@ public class CoverageBuilder implements ICoverageVisitor {
 
 	private final Map<String, ISourceFileCoverage> sourcefiles;
 
-	/**
-	 * 新增代码类
-	 */
-	public static List<ClassInfoDto> classInfos;
-
 	/**
 	 * Create a new builder.
 	 */
@@ -53,14 +49,6 @@ public class CoverageBuilder implements ICoverageVisitor {
 		this.sourcefiles = new HashMap<String, ISourceFileCoverage>();
 	}
 
-	public CoverageBuilder(String classList) {
-		this.classes = new HashMap<String, IClassCoverage>();
-		this.sourcefiles = new HashMap<String, ISourceFileCoverage>();
-		if (null != classList) {
-			classInfos = JSON.parseArray(classList, ClassInfoDto.class);
-		}
-	}
-
 	/**
 	 * Returns all class nodes currently contained in this builder.
 	 *
@@ -45,4 +45,15 @@ public interface ILine {
 	 */
 	int getStatus();
 
+	/**
+	 * Returns how often this line has been executed. The number is only
+	 * available for execution data recorded with counting probes, otherwise it
+	 * is always <code>0</code>. Within a method a line counts as often as its
+	 * most frequently executed instruction; for lines shared by multiple
+	 * methods the counts of all methods are added.
+	 *
+	 * @return number of executions of this line
+	 */
+	long getExecutionCount();
+
 }
@@ -32,4 +32,13 @@ public interface IMethodCoverage extends ISourceNode {
 	 */
 	String getSignature();
 
+	/**
+	 * Returns how often this method has been invoked. The number is only
+	 * available for execution data recorded with counting probes, otherwise it
+	 * is always <code>0</code>.
+	 *
+	 * @return number of invocations of this method
+	 */
+	long getExecutionCount();
+
 }
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+import org.jacoco.core.internal.data.CompactDataOutput;
+
+/**
+ * Serialization of execution data into binary streams with block level
+ * compression. Session information and execution data blocks are collected in
+ * chunks which are written as single deflate compressed blocks. As class names
+ * of the same package and unexecuted probes repeat within a chunk the output is
+ * typically much smaller than the output of a plain
+ * {@link ExecutionDataWriter}. The output can be read with a
+ * {@link ExecutionDataReader} of version 0.8.7 or later, therefore the writer
+ * always uses extended blocks.
+ *
+ * The current chunk is only written with {@link #flush()}, therefore the writer
+ * must be flushed after the last data has been written.
+ */
+public class CompressedExecutionDataWriter extends ExecutionDataWriter {
+
+	/** Default size of the uncompressed content of a chunk in bytes. */
+	public static final int DEFAULT_CHUNK_SIZE = 0x10000;
+
+	private final int chunkSize;
+
+	private final ByteArrayOutputStream chunk;
+
+	private final CompactDataOutput chunkOut;
+
+	private final byte[] buffer = new byte[0x2000];
+
+	/**
+	 * Creates a new writer based on the given output stream with the default
+	 * chunk size.
+	 *
+	 * @param output
+	 *            binary stream to write execution data to
+	 * @throws IOException
+	 *             if the header can't be written
+	 */
+	public CompressedExecutionDataWriter(final OutputStream output)
+			throws IOException {
+		this(output, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Creates a new writer based on the given output stream.
+	 *
+	 * @param output
+	 *            binary stream to write execution data to
+	 * @param chunkSize
+	 *            minimum size of the uncompressed content of a compressed block
+	 *            in bytes, larger chunks compress better but require more
+	 *            memory
+	 * @throws IOException
+	 *             if the header can't be written
+	 */
+	public CompressedExecutionDataWriter(final OutputStream output,
+			final int chunkSize) throws IOException {
+		super(output, true);
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("Chunk size must be positive.");
+		}
+		this.chunkSize = chunkSize;
+		this.chunk = new ByteArrayOutputStream(chunkSize + 0x100);
+		this.chunkOut = new CompactDataOutput(chunk);
+	}
+
+	/**
+	 * Writes the current chunk and flushes the underlying stream.
+	 *
+	 * @throws IOException
+	 *             if the chunk can't be written or the underlying stream can't
+	 *             be flushed
+	 */
+	@Override
+	public void flush() throws IOException {
+		writeChunk();
+		super.flush();
+	}
+
+	@Override
+	public void visitSessionInfo(final SessionInfo info) {
+		try {
+			writeSessionInfo(chunkOut, info);
+			chunkWritten();
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void visitClassExecution(final ExecutionData data) {
+		if (data.hasHits()) {
+			try {
+				writeExecutionData(chunkOut, data, extended);
+				chunkWritten();
+			} catch (final IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	private void chunkWritten() throws IOException {
+		if (chunk.size() >= chunkSize) {
+			writeChunk();
+		}
+	}
+
+	private void writeChunk() throws IOException {
+		if (chunk.size() == 0) {
+			return;
+		}
+		final ByteArrayOutputStream compressed = new ByteArrayOutputStream(
+				chunk.size() / 4);
+		final Deflater deflater = new Deflater();
+		try {
+			deflater.setInput(chunk.toByteArray());
+			deflater.finish();
+			while (!deflater.finished()) {
+				final int len = deflater.deflate(buffer);
+				compressed.write(buffer, 0, len);
+			}
+		} finally {
+			deflater.end();
+		}
+		chunk.reset();
+		out.writeByte(BLOCK_COMPRESSED);
+		out.writeVarInt(compressed.size());
+		compressed.writeTo(out);
+	}
+
+}
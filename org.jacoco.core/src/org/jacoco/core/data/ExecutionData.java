@@ -19,7 +19,8 @@ import java.util.Arrays;
 /**
  * Execution data for a single Java class. While instances are immutable care
  * has to be taken about the probe data array of type <code>boolean[]</code>
- * which can be modified.
+ * which can be modified. Optionally the execution data also contains the number
+ * of executions of every probe.
  */
 public final class ExecutionData {
 
@@ -29,6 +30,8 @@ public final class ExecutionData {
 
 	private final boolean[] probes;
 
+	private int[] counts;
+
 	/**
 	 * Creates a new {@link ExecutionData} object with the given probe data.
 	 *
@@ -64,6 +67,26 @@ public final class ExecutionData {
 		this.probes = new boolean[probeCount];
 	}
 
+	/**
+	 * Creates a new {@link ExecutionData} object with the given execution
+	 * counts of the probes. A probe is considered as executed if its count is
+	 * not zero.
+	 *
+	 * @param id
+	 *            class identifier
+	 * @param name
+	 *            VM name
+	 * @param counts
+	 *            execution counts of the probes
+	 */
+	public ExecutionData(final long id, final String name, final int[] counts) {
+		this.id = id;
+		this.name = name;
+		this.probes = new boolean[counts.length];
+		this.counts = counts;
+		updateProbes();
+	}
+
 	/**
 	 * Return the unique identifier for this class. The identifier is the CRC64
 	 * checksum of the raw class file definition.
@@ -85,18 +108,44 @@ public final class ExecutionData {
 
 	/**
 	 * Returns the execution data probes. A value of <code>true</code> indicates
-	 * that the corresponding probe was executed.
+	 * that the corresponding probe was executed. If execution counts are
+	 * recorded every probe with a count is marked as executed before the array
+	 * is returned.
 	 *
 	 * @return probe data
 	 */
 	public boolean[] getProbes() {
+		if (counts != null) {
+			updateProbes();
+		}
 		return probes;
 	}
 
 	/**
-	 * Sets all probes to <code>false</code>.
+	 * Returns the number of executions of every probe. The counts are only
+	 * available if the execution data has been recorded with counting probes.
+	 *
+	 * @return execution counts of the probes or <code>null</code>
+	 */
+	public int[] getCounts() {
+		return counts;
+	}
+
+	private void updateProbes() {
+		for (int i = 0; i < probes.length; i++) {
+			if (counts[i] != 0) {
+				probes[i] = true;
+			}
+		}
+	}
+
+	/**
+	 * Sets all probes to <code>false</code> and all execution counts to zero.
 	 */
 	public void reset() {
+		if (counts != null) {
+			Arrays.fill(counts, 0);
+		}
 		Arrays.fill(probes, false);
 	}
 
@@ -106,7 +155,7 @@ public final class ExecutionData {
 	 * @return <code>true</code>, if at least one probe has been hit
 	 */
 	public boolean hasHits() {
-		for (final boolean p : probes) {
+		for (final boolean p : getProbes()) {
 			if (p) {
 				return true;
 			}
@@ -124,7 +173,8 @@ public final class ExecutionData {
 	 * A or B
 	 * </pre>
 	 *
-	 * The probe array of the other object is not modified.
+	 * The probe array of the other object is not modified. Execution counts of
+	 * the other object are added to the counts of this object.
 	 *
 	 * @param other
 	 *            execution data to merge
@@ -149,7 +199,9 @@ public final class ExecutionData {
 	 * A and not B
 	 * </pre>
 	 *
-	 * The probe array of the other object is not modified.
+	 * The probe array of the other object is not modified. Execution counts of
+	 * the other object are added for <code>flag==true</code>, for
+	 * <code>flag==false</code> the counts of the subtracted probes are cleared.
 	 *
 	 * @param other
 	 *            execution data to merge
@@ -160,13 +212,29 @@ public final class ExecutionData {
 		assertCompatibility(other.getId(), other.getName(),
 				other.getProbes().length);
 		final boolean[] otherData = other.getProbes();
+		final int[] otherCounts = other.getCounts();
+		if (flag && otherCounts != null && counts == null) {
+			counts = new int[probes.length];
+		}
 		for (int i = 0; i < probes.length; i++) {
 			if (otherData[i]) {
 				probes[i] = flag;
+				if (counts != null) {
+					counts[i] = flag ? add(counts[i], otherCounts, i) : 0;
+				}
 			}
 		}
 	}
 
+	private static int add(final int count, final int[] counts,
+			final int index) {
+		if (counts == null) {
+			return count;
+		}
+		// Saturate instead of overflow:
+		return (int) Math.min((long) count + counts[index], Integer.MAX_VALUE);
+	}
+
 	/**
 	 * Asserts that this execution data object is compatible with the given
 	 * parameters. The purpose of this check is to detect a very unlikely class
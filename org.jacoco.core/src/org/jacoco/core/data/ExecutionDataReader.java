@@ -14,8 +14,11 @@ package org.jacoco.core.data;
 
 import static java.lang.String.format;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.zip.InflaterInputStream;
 
 import org.jacoco.core.internal.data.CompactDataInput;
 
@@ -110,10 +113,19 @@ public class ExecutionDataReader {
 			readHeader();
 			return true;
 		case ExecutionDataWriter.BLOCK_SESSIONINFO:
-			readSessionInfo();
+			readSessionInfo(in);
 			return true;
 		case ExecutionDataWriter.BLOCK_EXECUTIONDATA:
-			readExecutionData();
+			readExecutionData(in, false);
+			return true;
+		case ExecutionDataWriter.BLOCK_EXECUTIONDATA_SPARSE:
+			readExecutionData(in, true);
+			return true;
+		case ExecutionDataWriter.BLOCK_EXECUTIONCOUNTS:
+			readExecutionCounts(in);
+			return true;
+		case ExecutionDataWriter.BLOCK_COMPRESSED:
+			readCompressed();
 			return true;
 		default:
 			throw new IOException(
@@ -131,7 +143,7 @@ public class ExecutionDataReader {
 		}
 	}
 
-	private void readSessionInfo() throws IOException {
+	private void readSessionInfo(final CompactDataInput in) throws IOException {
 		if (sessionInfoVisitor == null) {
 			throw new IOException("No session info visitor.");
 		}
@@ -141,15 +153,65 @@ public class ExecutionDataReader {
 		sessionInfoVisitor.visitSessionInfo(new SessionInfo(id, start, dump));
 	}
 
-	private void readExecutionData() throws IOException {
+	private void readExecutionData(final CompactDataInput in,
+			final boolean sparse) throws IOException {
 		if (executionDataVisitor == null) {
 			throw new IOException("No execution data visitor.");
 		}
 		final long id = in.readLong();
 		final String name = in.readUTF();
-		final boolean[] probes = in.readBooleanArray();
+		final boolean[] probes = sparse ? in.readSparseBooleanArray()
+				: in.readBooleanArray();
 		executionDataVisitor
 				.visitClassExecution(new ExecutionData(id, name, probes));
 	}
 
+	private void readExecutionCounts(final CompactDataInput in)
+			throws IOException {
+		if (executionDataVisitor == null) {
+			throw new IOException("No execution data visitor.");
+		}
+		final long id = in.readLong();
+		final String name = in.readUTF();
+		final int[] counts = in.readVarIntArray();
+		executionDataVisitor
+				.visitClassExecution(new ExecutionData(id, name, counts));
+	}
+
+	private void readCompressed() throws IOException {
+		final int length = in.readVarInt();
+		if (length < 0) {
+			throw new IOException("Invalid compressed block.");
+		}
+		final byte[] buffer = new byte[length];
+		in.readFully(buffer);
+		final CompactDataInput chunk = new CompactDataInput(
+				new BufferedInputStream(new InflaterInputStream(
+						new ByteArrayInputStream(buffer))));
+		try {
+			int type;
+			while ((type = chunk.read()) != -1) {
+				switch ((byte) type) {
+				case ExecutionDataWriter.BLOCK_SESSIONINFO:
+					readSessionInfo(chunk);
+					break;
+				case ExecutionDataWriter.BLOCK_EXECUTIONDATA:
+					readExecutionData(chunk, false);
+					break;
+				case ExecutionDataWriter.BLOCK_EXECUTIONDATA_SPARSE:
+					readExecutionData(chunk, true);
+					break;
+				case ExecutionDataWriter.BLOCK_EXECUTIONCOUNTS:
+					readExecutionCounts(chunk);
+					break;
+				default:
+					throw new IOException(format("Unknown block type %x.",
+							Byte.valueOf((byte) type)));
+				}
+			}
+		} finally {
+			chunk.close();
+		}
+	}
+
 }
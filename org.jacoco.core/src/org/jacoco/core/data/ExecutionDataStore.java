@@ -12,13 +12,12 @@
  *******************************************************************************/
 package org.jacoco.core.data;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
+import org.jacoco.core.internal.data.LongHashMap;
+
 /**
  * In-memory data store for execution data. The data can be added through its
  * {@link IExecutionDataVisitor} interface. If execution data is provided
@@ -27,9 +26,10 @@ import java.util.Set;
  * coverage date from multiple runs. A instance of this class is not thread
  * safe.
  */
-public final class ExecutionDataStore implements IExecutionDataVisitor {
+public final class ExecutionDataStore
+		implements IExecutionDataVisitor, IExecutionDataLookup {
 
-	private final Map<Long, ExecutionData> entries = new HashMap<Long, ExecutionData>();
+	private final LongHashMap<ExecutionData> entries = new LongHashMap<ExecutionData>();
 
 	private final Set<String> names = new HashSet<String>();
 
@@ -46,7 +46,7 @@ public final class ExecutionDataStore implements IExecutionDataVisitor {
 	 * @see ExecutionData#assertCompatibility(long, String, int)
 	 */
 	public void put(final ExecutionData data) throws IllegalStateException {
-		final Long id = Long.valueOf(data.getId());
+		final long id = data.getId();
 		final ExecutionData entry = entries.get(id);
 		if (entry == null) {
 			// 将所有类放入这个map中，并记录类名
@@ -72,8 +72,7 @@ public final class ExecutionDataStore implements IExecutionDataVisitor {
 	 */
 	public void subtract(final ExecutionData data)
 			throws IllegalStateException {
-		final Long id = Long.valueOf(data.getId());
-		final ExecutionData entry = entries.get(id);
+		final ExecutionData entry = entries.get(data.getId());
 		if (entry != null) {
 			entry.merge(data, false);
 		}
@@ -101,7 +100,7 @@ public final class ExecutionDataStore implements IExecutionDataVisitor {
 	 * @return execution data or <code>null</code>
 	 */
 	public ExecutionData get(final long id) {
-		return entries.get(Long.valueOf(id));
+		return entries.get(id);
 	}
 
 	/**
@@ -131,10 +130,10 @@ public final class ExecutionDataStore implements IExecutionDataVisitor {
 	 */
 	public ExecutionData get(final Long id, final String name,
 			final int probecount) {
-		ExecutionData entry = entries.get(id);
+		ExecutionData entry = entries.get(id.longValue());
 		if (entry == null) {
 			entry = new ExecutionData(id.longValue(), name, probecount);
-			entries.put(id, entry);
+			entries.put(id.longValue(), entry);
 			names.add(name);
 		} else {
 			entry.assertCompatibility(id.longValue(), name, probecount);
@@ -147,7 +146,7 @@ public final class ExecutionDataStore implements IExecutionDataVisitor {
 	 * execution data objects itself are not removed.
 	 */
 	public void reset() {
-		for (final ExecutionData executionData : this.entries.values()) {
+		for (final ExecutionData executionData : entries.values()) {
 			executionData.reset();
 		}
 	}
@@ -158,7 +157,21 @@ public final class ExecutionDataStore implements IExecutionDataVisitor {
 	 * @return current contents
 	 */
 	public Collection<ExecutionData> getContents() {
-		return new ArrayList<ExecutionData>(entries.values());
+		return entries.values();
+	}
+
+	/**
+	 * Checks whether the store contains execution counts for any class.
+	 *
+	 * @return <code>true</code> if execution counts are contained
+	 */
+	public boolean hasCounts() {
+		for (final ExecutionData data : getContents()) {
+			if (data.getCounts() != null) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
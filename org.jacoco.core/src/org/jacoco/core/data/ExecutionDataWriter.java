@@ -46,13 +46,39 @@ public class ExecutionDataWriter
 	/** Block identifier for execution data of a single class. */
 	public static final byte BLOCK_EXECUTIONDATA = 0x11;
 
+	/**
+	 * Block identifier for deflate compressed session information and execution
+	 * data blocks, see {@link CompressedExecutionDataWriter}.
+	 */
+	public static final byte BLOCK_COMPRESSED = 0x12;
+
+	/**
+	 * Block identifier for execution data of a single class where only the
+	 * indices of executed probes are stored. Writers with extended blocks use
+	 * this representation instead of {@link #BLOCK_EXECUTIONDATA} if it is
+	 * smaller.
+	 */
+	public static final byte BLOCK_EXECUTIONDATA_SPARSE = 0x13;
+
+	/**
+	 * Block identifier for execution data of a single class with the execution
+	 * count of every probe. Writers with extended blocks use this
+	 * representation instead of {@link #BLOCK_EXECUTIONDATA} for execution data
+	 * with counts, other writers only write which probes were executed.
+	 */
+	public static final byte BLOCK_EXECUTIONCOUNTS = 0x14;
+
 	/** Underlying data output */
 	protected final CompactDataOutput out;
 
+	/** Whether block types unknown to older versions may be written. */
+	protected final boolean extended;
+
 	/**
 	 * Creates a new writer based on the given output stream. Depending on the
 	 * nature of the underlying stream output should be buffered as most data is
-	 * written in single bytes.
+	 * written in single bytes. The output only contains block types which can
+	 * be read by all versions supporting {@link #FORMAT_VERSION}.
 	 *
 	 * @param output
 	 *            binary stream to write execution data to
@@ -60,7 +86,28 @@ public class ExecutionDataWriter
 	 *             if the header can't be written
 	 */
 	public ExecutionDataWriter(final OutputStream output) throws IOException {
+		this(output, false);
+	}
+
+	/**
+	 * Creates a new writer based on the given output stream. Depending on the
+	 * nature of the underlying stream output should be buffered as most data is
+	 * written in single bytes.
+	 *
+	 * @param output
+	 *            binary stream to write execution data to
+	 * @param extended
+	 *            if <code>true</code> the writer may use block types like
+	 *            {@link #BLOCK_EXECUTIONDATA_SPARSE} and
+	 *            {@link #BLOCK_EXECUTIONCOUNTS} which can't be read by JaCoCo
+	 *            versions before 0.8.7
+	 * @throws IOException
+	 *             if the header can't be written
+	 */
+	public ExecutionDataWriter(final OutputStream output,
+			final boolean extended) throws IOException {
 		this.out = new CompactDataOutput(output);
+		this.extended = extended;
 		writeHeader();
 	}
 
@@ -88,10 +135,7 @@ public class ExecutionDataWriter
 
 	public void visitSessionInfo(final SessionInfo info) {
 		try {
-			out.writeByte(BLOCK_SESSIONINFO);
-			out.writeUTF(info.getId());
-			out.writeLong(info.getStartTimeStamp());
-			out.writeLong(info.getDumpTimeStamp());
+			writeSessionInfo(out, info);
 		} catch (final IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -100,16 +144,47 @@ public class ExecutionDataWriter
 	public void visitClassExecution(final ExecutionData data) {
 		if (data.hasHits()) {
 			try {
-				out.writeByte(BLOCK_EXECUTIONDATA);
-				out.writeLong(data.getId());
-				out.writeUTF(data.getName());
-				out.writeBooleanArray(data.getProbes());
+				writeExecutionData(out, data, extended);
 			} catch (final IOException e) {
 				throw new RuntimeException(e);
 			}
 		}
 	}
 
+	static void writeSessionInfo(final CompactDataOutput out,
+			final SessionInfo info) throws IOException {
+		out.writeByte(BLOCK_SESSIONINFO);
+		out.writeUTF(info.getId());
+		out.writeLong(info.getStartTimeStamp());
+		out.writeLong(info.getDumpTimeStamp());
+	}
+
+	static void writeExecutionData(final CompactDataOutput out,
+			final ExecutionData data, final boolean extended)
+			throws IOException {
+		final int[] counts = data.getCounts();
+		if (extended && counts != null) {
+			out.writeByte(BLOCK_EXECUTIONCOUNTS);
+			out.writeLong(data.getId());
+			out.writeUTF(data.getName());
+			out.writeVarIntArray(counts);
+			return;
+		}
+		final boolean[] probes = data.getProbes();
+		final int packedSize = (probes.length + 7) / 8;
+		final boolean sparse = extended && CompactDataOutput
+				.getSparseBooleanArraySize(probes, packedSize) < packedSize;
+		out.writeByte(
+				sparse ? BLOCK_EXECUTIONDATA_SPARSE : BLOCK_EXECUTIONDATA);
+		out.writeLong(data.getId());
+		out.writeUTF(data.getName());
+		if (sparse) {
+			out.writeSparseBooleanArray(probes);
+		} else {
+			out.writeBooleanArray(probes);
+		}
+	}
+
 	/**
 	 * Returns the first bytes of a file that represents a valid execution data
 	 * file. In any case every execution data file starts with the three bytes
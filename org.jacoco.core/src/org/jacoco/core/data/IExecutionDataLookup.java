@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+/**
+ * Read access to execution data of classes by their class id, as required for
+ * coverage analysis.
+ */
+public interface IExecutionDataLookup {
+
+	/**
+	 * Returns the {@link ExecutionData} entry with the given id if it exists.
+	 *
+	 * @param id
+	 *            class id
+	 * @return execution data or <code>null</code>
+	 */
+	ExecutionData get(long id);
+
+	/**
+	 * Checks whether execution data for classes with the given name exists.
+	 *
+	 * @param name
+	 *            VM name
+	 * @return <code>true</code> if at least one class with the name exists
+	 */
+	boolean contains(String name);
+
+}
@@ -0,0 +1,418 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import static java.lang.String.format;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.jacoco.core.internal.data.CompactDataInput;
+import org.jacoco.core.internal.data.CountingInputStream;
+
+/**
+ * Random access to the execution data of a single exec file. The exec file and
+ * an index created with {@link #writeIndex(File, File)} are mapped into memory
+ * and execution data is only decoded for the classes which are actually looked
+ * up. As the index records the file offset of every execution data block by
+ * class id and by class name the exec file is not read when the reader is
+ * opened. Multiple entries for the same class, e.g. from appended sessions, are
+ * merged on lookup. Instances of this class are thread safe, so a reader can be
+ * used as lookup for an {@link org.jacoco.core.analysis.Analyzer} which
+ * analyzes classes concurrently.
+ */
+public final class MappedExecutionDataReader
+		implements IExecutionDataLookup, Closeable {
+
+	/** Magic number in header for index file identification. */
+	private static final char INDEX_MAGIC_NUMBER = 0xC0C1;
+
+	private static final int SEGMENT_SIZE = 1 << 30;
+
+	private static final int HEADER_SIZE = 2 + 2 + 8 + 4;
+
+	/** Record of the id table: class id and offset */
+	private static final int ID_RECORD_SIZE = 8 + 8;
+
+	/** Record of the name table: hash code of the class name and offset */
+	private static final int NAME_RECORD_SIZE = 4 + 8;
+
+	private final RandomAccessFile file;
+
+	private final long length;
+
+	private final int segmentShift;
+
+	/** segments mapped on first access, guarded by this */
+	private final MappedByteBuffer[] segments;
+
+	private final ByteBuffer index;
+
+	private final int count;
+
+	private final int nameTable;
+
+	/**
+	 * Opens the given exec file with its index.
+	 *
+	 * @param execFile
+	 *            exec file to read execution data from
+	 * @param indexFile
+	 *            index for the exec file created with
+	 *            {@link #writeIndex(File, File)}
+	 * @throws IOException
+	 *             if the files can't be opened or the index does not belong to
+	 *             the exec file
+	 */
+	public MappedExecutionDataReader(final File execFile, final File indexFile)
+			throws IOException {
+		this(execFile, indexFile, SEGMENT_SIZE);
+	}
+
+	MappedExecutionDataReader(final File execFile, final File indexFile,
+			final int segmentSize) throws IOException {
+		index = map(indexFile);
+		if (index.limit() < HEADER_SIZE
+				|| index.getChar(0) != INDEX_MAGIC_NUMBER) {
+			throw new IOException(
+					format("Invalid execution data index %s.", indexFile));
+		}
+		if (index.getChar(2) != ExecutionDataWriter.FORMAT_VERSION) {
+			throw new IncompatibleExecDataVersionException(index.getChar(2));
+		}
+		count = index.getInt(12);
+		nameTable = HEADER_SIZE + count * ID_RECORD_SIZE;
+		if (index.limit() != nameTable + count * NAME_RECORD_SIZE) {
+			throw new IOException(
+					format("Invalid execution data index %s.", indexFile));
+		}
+		file = new RandomAccessFile(execFile, "r");
+		length = file.length();
+		if (index.getLong(4) != length) {
+			file.close();
+			throw new IOException(
+					format("Execution data index %s does not match %s.",
+							indexFile, execFile));
+		}
+		segmentShift = Integer.numberOfTrailingZeros(segmentSize);
+		segments = new MappedByteBuffer[(int) ((length + segmentSize
+				- 1) >>> segmentShift)];
+	}
+
+	private static ByteBuffer map(final File file) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			final long size = raf.length();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException(
+						format("Invalid execution data index %s.", file));
+			}
+			return raf.getChannel().map(MapMode.READ_ONLY, 0, size);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Returns the execution data for the given class id. The data is decoded
+	 * from the exec file with every call.
+	 *
+	 * @param id
+	 *            class id
+	 * @return execution data or <code>null</code> if the file does not contain
+	 *         data for this class
+	 * @throws IllegalStateException
+	 *             if the exec file can't be read or contains incompatible
+	 *             entries for the class id
+	 */
+	public ExecutionData get(final long id) throws IllegalStateException {
+		ExecutionData result = null;
+		for (int i = lowerBound(id); i < count && idAt(i) == id; i++) {
+			final ExecutionData data = readExecutionData(
+					index.getLong(HEADER_SIZE + i * ID_RECORD_SIZE + 8));
+			if (result == null) {
+				result = data;
+			} else {
+				result.merge(data);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Checks whether the exec file contains execution data for classes with the
+	 * given name.
+	 *
+	 * @param name
+	 *            VM name
+	 * @return <code>true</code> if at least one class with the name is
+	 *         contained
+	 * @throws IllegalStateException
+	 *             if the exec file can't be read
+	 */
+	public boolean contains(final String name) throws IllegalStateException {
+		final int hash = name.hashCode();
+		for (int i = lowerBound(hash); i < count && hashAt(i) == hash; i++) {
+			final long offset = index
+					.getLong(nameTable + i * NAME_RECORD_SIZE + 4);
+			if (name.equals(readExecutionData(offset).getName())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private long idAt(final int i) {
+		return index.getLong(HEADER_SIZE + i * ID_RECORD_SIZE);
+	}
+
+	private int hashAt(final int i) {
+		return index.getInt(nameTable + i * NAME_RECORD_SIZE);
+	}
+
+	private int lowerBound(final long id) {
+		int low = 0;
+		int high = count;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (idAt(mid) < id) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private int lowerBound(final int hash) {
+		int low = 0;
+		int high = count;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (hashAt(mid) < hash) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private ExecutionData readExecutionData(final long offset) {
+		// The offset points behind the block type:
+		final CompactDataInput in = new CompactDataInput(
+				new SegmentInputStream(offset - 1));
+		try {
+			final byte type = in.readByte();
+			final long id = in.readLong();
+			final String name = in.readUTF();
+			if (type == ExecutionDataWriter.BLOCK_EXECUTIONCOUNTS) {
+				return new ExecutionData(id, name, in.readVarIntArray());
+			}
+			final boolean sparse = type == ExecutionDataWriter.BLOCK_EXECUTIONDATA_SPARSE;
+			final boolean[] probes = sparse ? in.readSparseBooleanArray()
+					: in.readBooleanArray();
+			return new ExecutionData(id, name, probes);
+		} catch (final IOException e) {
+			throw new IllegalStateException(
+					format("Can't read execution data at offset %s.",
+							Long.valueOf(offset)),
+					e);
+		}
+	}
+
+	private synchronized ByteBuffer segment(final int i) throws IOException {
+		MappedByteBuffer segment = segments[i];
+		if (segment == null) {
+			final long start = (long) i << segmentShift;
+			final long size = Math.min(1L << segmentShift, length - start);
+			segment = file.getChannel().map(MapMode.READ_ONLY, start, size);
+			segments[i] = segment;
+		}
+		return segment;
+	}
+
+	/**
+	 * Closes the exec file. The reader must not be used afterwards.
+	 *
+	 * @throws IOException
+	 *             if the file can't be closed
+	 */
+	public void close() throws IOException {
+		file.close();
+	}
+
+	/**
+	 * Reads the given exec file and writes an index for it, which is required
+	 * to open the exec file with a {@link MappedExecutionDataReader}. The index
+	 * must be written again whenever the exec file is modified. Exec files
+	 * written with a {@link CompressedExecutionDataWriter} can't be indexed.
+	 *
+	 * @param execFile
+	 *            exec file to index
+	 * @param indexFile
+	 *            file to write the index to
+	 * @throws IOException
+	 *             if the exec file can't be read or the index can't be written
+	 */
+	public static void writeIndex(final File execFile, final File indexFile)
+			throws IOException {
+		final InputStream stream = new FileInputStream(execFile);
+		final Indexer indexer;
+		try {
+			indexer = new Indexer(
+					new CountingInputStream(new BufferedInputStream(stream)));
+			indexer.read();
+		} finally {
+			stream.close();
+		}
+		final List<IndexEntry> entries = indexer.entries;
+
+		final DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(indexFile)));
+		try {
+			out.writeChar(INDEX_MAGIC_NUMBER);
+			out.writeChar(ExecutionDataWriter.FORMAT_VERSION);
+			out.writeLong(indexer.counter.getCount());
+			out.writeInt(entries.size());
+			Collections.sort(entries, new Comparator<IndexEntry>() {
+				public int compare(final IndexEntry e1, final IndexEntry e2) {
+					return e1.id < e2.id ? -1 : (e1.id == e2.id ? 0 : 1);
+				}
+			});
+			for (final IndexEntry e : entries) {
+				out.writeLong(e.id);
+				out.writeLong(e.offset);
+			}
+			Collections.sort(entries, new Comparator<IndexEntry>() {
+				public int compare(final IndexEntry e1, final IndexEntry e2) {
+					return e1.hash < e2.hash ? -1
+							: (e1.hash == e2.hash ? 0 : 1);
+				}
+			});
+			for (final IndexEntry e : entries) {
+				out.writeInt(e.hash);
+				out.writeLong(e.offset);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private static final class IndexEntry {
+
+		final long id;
+
+		final int hash;
+
+		final long offset;
+
+		IndexEntry(final long id, final int hash, final long offset) {
+			this.id = id;
+			this.hash = hash;
+			this.offset = offset;
+		}
+
+	}
+
+	/**
+	 * Reader which records the offset of every execution data block.
+	 */
+	private static final class Indexer extends ExecutionDataReader
+			implements IExecutionDataVisitor, ISessionInfoVisitor {
+
+		final CountingInputStream counter;
+
+		final List<IndexEntry> entries = new ArrayList<IndexEntry>();
+
+		private long offset;
+
+		Indexer(final CountingInputStream counter) {
+			super(counter);
+			this.counter = counter;
+			setExecutionDataVisitor(this);
+			setSessionInfoVisitor(this);
+		}
+
+		@Override
+		protected boolean readBlock(final byte blocktype) throws IOException {
+			if (blocktype == ExecutionDataWriter.BLOCK_COMPRESSED) {
+				throw new IOException(
+						"Compressed execution data can't be indexed.");
+			}
+			offset = counter.getCount();
+			return super.readBlock(blocktype);
+		}
+
+		public void visitClassExecution(final ExecutionData data) {
+			entries.add(new IndexEntry(data.getId(), data.getName().hashCode(),
+					offset));
+		}
+
+		public void visitSessionInfo(final SessionInfo info) {
+			// sessions are not indexed
+		}
+
+	}
+
+	/**
+	 * Stream over the mapped segments of the exec file starting at a given
+	 * offset. Only absolute reads are used on the shared segments.
+	 */
+	private final class SegmentInputStream extends InputStream {
+
+		private long position;
+
+		private ByteBuffer current;
+
+		private int currentIndex = -1;
+
+		SegmentInputStream(final long position) {
+			this.position = position;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (position >= length) {
+				return -1;
+			}
+			final int i = (int) (position >>> segmentShift);
+			if (i != currentIndex) {
+				current = segment(i);
+				currentIndex = i;
+			}
+			final int mask = (1 << segmentShift) - 1;
+			final int b = current.get((int) position & mask);
+			position++;
+			return b & 0xFF;
+		}
+
+	}
+
+}
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import org.jacoco.core.internal.data.LongHashMap;
+import org.jacoco.core.internal.data.PackedExecutionData;
+
+/**
+ * In-memory data store for execution data which keeps the probes of every class
+ * packed into <code>long</code> words, i.e. 64 probes per word. This needs
+ * about one eighth of the memory of {@link ExecutionDataStore} and merges
+ * execution data a word at a time. It is intended for tools which combine large
+ * amounts of execution data without analyzing it. If execution data is provided
+ * multiple times for the same class the data is merged, i.e. a probe is marked
+ * as executed if it is reported as executed at least once. A instance of this
+ * class is not thread safe.
+ */
+public final class PackedExecutionDataStore implements IExecutionDataVisitor {
+
+	private final LongHashMap<PackedExecutionData> entries = new LongHashMap<PackedExecutionData>();
+
+	/**
+	 * Adds the given {@link ExecutionData} object into the store. If there is
+	 * already execution data with this same class id, the probes are merged.
+	 * The given {@link ExecutionData} object is not referenced by the store.
+	 *
+	 * @param data
+	 *            execution data to add or merge
+	 * @throws IllegalStateException
+	 *             if the given {@link ExecutionData} object is not compatible
+	 *             to a corresponding one, that is already contained
+	 * @see ExecutionData#assertCompatibility(long, String, int)
+	 */
+	public void put(final ExecutionData data) throws IllegalStateException {
+		final PackedExecutionData entry = entries.get(data.getId());
+		if (entry == null) {
+			entries.put(data.getId(), new PackedExecutionData(data));
+		} else {
+			entry.merge(data);
+		}
+	}
+
+	/**
+	 * Subtracts the probes in the given {@link ExecutionData} object from the
+	 * store. I.e. for all set probes in the given data object the corresponding
+	 * probes in this store will be unset. If there is no execution data with id
+	 * of the given data object this operation will have no effect.
+	 *
+	 * @param data
+	 *            execution data to subtract
+	 * @throws IllegalStateException
+	 *             if the given {@link ExecutionData} object is not compatible
+	 *             to a corresponding one, that is already contained
+	 * @see ExecutionData#assertCompatibility(long, String, int)
+	 */
+	public void subtract(final ExecutionData data)
+			throws IllegalStateException {
+		final PackedExecutionData entry = entries.get(data.getId());
+		if (entry != null) {
+			entry.subtract(data);
+		}
+	}
+
+	/**
+	 * Returns a copy of the execution data for the given class id with unpacked
+	 * probes.
+	 *
+	 * @param id
+	 *            class id
+	 * @return execution data or <code>null</code>
+	 */
+	public ExecutionData get(final long id) {
+		final PackedExecutionData entry = entries.get(id);
+		return entry == null ? null : entry.unpack();
+	}
+
+	/**
+	 * Checks whether the store contains any execution data.
+	 *
+	 * @return <code>true</code> if no execution data has been added
+	 */
+	public boolean isEmpty() {
+		return entries.size() == 0;
+	}
+
+	/**
+	 * Checks whether the store contains execution counts for any class.
+	 *
+	 * @return <code>true</code> if execution counts are contained
+	 */
+	public boolean hasCounts() {
+		for (final PackedExecutionData entry : entries.values()) {
+			if (entry.hasCounts()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Writes the content of the store to the given visitor interface. For every
+	 * class a new {@link ExecutionData} object with unpacked probes is created.
+	 *
+	 * @param visitor
+	 *            interface to write content to
+	 */
+	public void accept(final IExecutionDataVisitor visitor) {
+		for (final PackedExecutionData entry : entries.values()) {
+			visitor.visitClassExecution(entry.unpack());
+		}
+	}
+
+	// === IExecutionDataVisitor ===
+
+	public void visitClassExecution(final ExecutionData data) {
+		put(data);
+	}
+
+}
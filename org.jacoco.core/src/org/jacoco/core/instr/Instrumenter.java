@@ -27,6 +27,7 @@ import org.jacoco.core.internal.ContentTypeDetector;
 import org.jacoco.core.internal.InputStreams;
 import org.jacoco.core.internal.Pack200Streams;
 import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.internal.diff.DiffScope;
 import org.jacoco.core.internal.flow.ClassProbesAdapter;
 import org.jacoco.core.internal.instr.ClassInstrumenter;
 import org.jacoco.core.internal.instr.IProbeArrayStrategy;
@@ -47,6 +48,14 @@ public class Instrumenter {
 
 	private final SignatureRemover signatureRemover;
 
+	private DiffScope diffScope;
+
+	private boolean checkProbes;
+
+	private boolean methodCoverageOnly;
+
+	private boolean countProbes;
+
 	/**
 	 * Creates a new instance based on the given runtime.
 	 *
@@ -71,9 +80,84 @@ public class Instrumenter {
 		signatureRemover.setActive(flag);
 	}
 
+	/**
+	 * Limits instrumentation to the classes and methods of the given code diff.
+	 * Classes which are not contained in the diff are returned unchanged.
+	 * Within other classes only methods contained in the diff receive probes,
+	 * the code of all other methods is not modified. These methods still get
+	 * slots in the probe array of the class, therefore the execution data
+	 * remains compatible with analysis of the original class files with or
+	 * without a diff. Default is <code>null</code>, i.e. all classes and
+	 * methods are instrumented.
+	 *
+	 * @param diffScope
+	 *            classes and methods to instrument, <code>null</code> or an
+	 *            empty scope for all
+	 */
+	public void setDiffScope(final DiffScope diffScope) {
+		this.diffScope = diffScope == null || diffScope.isEmpty() ? null
+				: diffScope;
+	}
+
+	/**
+	 * Determines whether probes should check the probe array before they write
+	 * to it. Such probes only write if the probe has not been executed before.
+	 * This avoids that hot code executed concurrently by many threads writes to
+	 * the same cache lines over and over again, for the price of an additional
+	 * read and branch per probe. Default is <code>false</code>.
+	 *
+	 * @param flag
+	 *            <code>true</code> if probes should check the probe array first
+	 */
+	public void setCheckProbes(final boolean flag) {
+		this.checkProbes = flag;
+	}
+
+	/**
+	 * Determines whether every method should only get a single probe at its
+	 * entry instead of probes at all branches and exits. This considerably
+	 * reduces the size and the runtime overhead of instrumented classes. The
+	 * layout of the probe arrays does not change, therefore the execution data
+	 * can be analyzed as usual. But only the method counters of such an
+	 * analysis are meaningful: the entry probe sets the first probe of the
+	 * method in code order, which is often the probe of a jump or of a later
+	 * exit. The line, instruction and branch counters derived from it are
+	 * therefore arbitrary. Default is <code>false</code>.
+	 *
+	 * @param flag
+	 *            <code>true</code> if methods should only get an entry probe
+	 */
+	public void setMethodCoverageOnly(final boolean flag) {
+		this.methodCoverageOnly = flag;
+	}
+
+	/**
+	 * Determines whether probes should count their executions instead of only
+	 * recording that they have been executed. Counting probes use an
+	 * <code>int[]</code> probe array which is incremented without
+	 * synchronization, so concurrent executions of the same probe may get lost.
+	 * Counting takes precedence over {@link #setCheckProbes(boolean)}. Default
+	 * is <code>false</code>.
+	 *
+	 * @param flag
+	 *            <code>true</code> if probes should count executions
+	 */
+	public void setCountProbes(final boolean flag) {
+		this.countProbes = flag;
+	}
+
 	private byte[] instrument(final byte[] source) {
-		final long classId = CRC64.classId(source);
 		final ClassReader reader = InstrSupport.classReaderFor(source);
+		if (diffScope != null
+				&& !diffScope.containsClass(reader.getClassName())) {
+			return source;
+		}
+		return instrument(source, reader, diffScope);
+	}
+
+	private byte[] instrument(final byte[] source, final ClassReader reader,
+			final DiffScope scope) {
+		final long classId = CRC64.classId(source);
 		final ClassWriter writer = new ClassWriter(reader, 0) {
 			@Override
 			protected String getCommonSuperClass(final String type1,
@@ -82,10 +166,11 @@ public class Instrumenter {
 			}
 		};
 		final IProbeArrayStrategy strategy = ProbeArrayStrategyFactory
-				.createFor(classId, reader, accessorGenerator);
+				.createFor(classId, reader, accessorGenerator, countProbes);
 		final int version = InstrSupport.getMajorVersion(reader);
 		final ClassVisitor visitor = new ClassProbesAdapter(
-				new ClassInstrumenter(strategy, writer),
+				new ClassInstrumenter(strategy, writer, scope, checkProbes,
+						methodCoverageOnly, countProbes),
 				InstrSupport.needsFrames(version));
 		reader.accept(visitor, ClassReader.EXPAND_FRAMES);
 		return writer.toByteArray();
@@ -111,6 +196,33 @@ public class Instrumenter {
 		}
 	}
 
+	/**
+	 * Creates a version of the given class in which only the static initializer
+	 * is instrumented, all other methods keep their original code. The class
+	 * has the same fields and methods as its instrumented version, therefore it
+	 * can replace the instrumented class through retransformation once all
+	 * probes of the class have been executed. The class then does not record
+	 * executions anymore.
+	 *
+	 * @param buffer
+	 *            original definition of the class
+	 * @param name
+	 *            a name used for exception messages
+	 * @return definition with original method code
+	 * @throws IOException
+	 *             if the class can't be instrumented
+	 */
+	public byte[] restore(final byte[] buffer, final String name)
+			throws IOException {
+		try {
+			final ClassReader reader = InstrSupport.classReaderFor(buffer);
+			return instrument(buffer, reader,
+					DiffScope.forClass(reader.getClassName()));
+		} catch (final RuntimeException e) {
+			throw instrumentError(name, e);
+		}
+	}
+
 	/**
 	 * Creates a instrumented version of the given class if possible. The
 	 * provided {@link InputStream} is not closed by this method.
@@ -35,6 +35,7 @@ public class ClassAnalyzer extends ClassProbesVisitor
 
 	private final ClassCoverageImpl coverage;
 	private final boolean[] probes;
+	private final int[] counts;
 	private final StringPool stringPool;
 
 	private final Set<String> classAnnotations = new HashSet<String>();
@@ -57,8 +58,28 @@ public class ClassAnalyzer extends ClassProbesVisitor
 	 */
 	public ClassAnalyzer(final ClassCoverageImpl coverage,
 			final boolean[] probes, final StringPool stringPool) {
+		this(coverage, probes, null, stringPool);
+	}
+
+	/**
+	 * Creates a new analyzer that builds coverage data for a class including
+	 * execution counts.
+	 *
+	 * @param coverage
+	 *            coverage node for the analyzed class data
+	 * @param probes
+	 *            execution data for this class or <code>null</code>
+	 * @param counts
+	 *            execution counts for this class or <code>null</code>
+	 * @param stringPool
+	 *            shared pool to minimize the number of {@link String} instances
+	 */
+	public ClassAnalyzer(final ClassCoverageImpl coverage,
+			final boolean[] probes, final int[] counts,
+			final StringPool stringPool) {
 		this.coverage = coverage;
 		this.probes = probes;
+		this.counts = counts;
 		this.stringPool = stringPool;
 		this.filter = Filters.all();
 	}
@@ -97,7 +118,8 @@ public class ClassAnalyzer extends ClassProbesVisitor
 
 		InstrSupport.assertNotInstrumented(name, coverage.getName());
 
-		final InstructionsBuilder builder = new InstructionsBuilder(probes);
+		final InstructionsBuilder builder = new InstructionsBuilder(probes,
+				counts);
 
 		return new MethodAnalyzer(builder) {
 
@@ -121,6 +143,7 @@ public class ClassAnalyzer extends ClassProbesVisitor
 		final MethodCoverageImpl mc = new MethodCoverageImpl(name, desc,
 				signature);
 		mcc.calculate(mc);
+		mc.setExecutionCount(icc.getEntryExecutions());
 
 		if (mc.containsCode()) {
 			// Only consider methods that actually contain code
@@ -31,7 +31,9 @@ import org.jacoco.core.analysis.ICounter;
  * other with the <code>addBranch()</code> methods. The executions status is
  * either directly derived from a probe which has been inserted in the execution
  * flow ({@link #addBranch(boolean, int)}) or indirectly propagated along the
- * CFG edges ({@link #addBranch(Instruction, int)}).
+ * CFG edges ({@link #addBranch(Instruction, int)}). For counting probes the
+ * number of executions is added with {@link #addExecutions(long)} and
+ * propagated the same way.
  *
  * <h2>Step 2: Querying the Coverage Status</h2>
  *
@@ -42,6 +44,7 @@ import org.jacoco.core.analysis.ICounter;
  * <li>{@link #getLine()}</li>
  * <li>{@link #getInstructionCounter()}</li>
  * <li>{@link #getBranchCounter()}</li>
+ * <li>{@link #getExecutions()}</li>
  * </ul>
  *
  * For the purpose of filtering instructions can be combined to new
@@ -65,6 +68,8 @@ public class Instruction {
 
 	private int predecessorBranch;
 
+	private long executions;
+
 	/**
 	 * New instruction at the given line.
 	 *
@@ -98,6 +103,9 @@ public class Instruction {
 		if (!target.coveredBranches.isEmpty()) {
 			propagateExecutedBranch(this, branch);
 		}
+		if (target.executions != 0) {
+			propagateExecutions(this, target.executions);
+		}
 	}
 
 	/**
@@ -120,6 +128,29 @@ public class Instruction {
 		}
 	}
 
+	/**
+	 * Adds the number of executions of an outgoing branch which is directly
+	 * derived from a counting probe. The executions are propagated also to the
+	 * predecessors of this instruction.
+	 *
+	 * @param executions
+	 *            number of executions of the corresponding probe
+	 */
+	public void addExecutions(final long executions) {
+		if (executions != 0) {
+			propagateExecutions(this, executions);
+		}
+	}
+
+	private static void propagateExecutions(Instruction insn,
+			final long executions) {
+		// No recursion here, as there can be very long chains of instructions
+		while (insn != null) {
+			insn.executions += executions;
+			insn = insn.predecessor;
+		}
+	}
+
 	private static void propagateExecutedBranch(Instruction insn, int branch) {
 		// No recursion here, as there can be very long chains of instructions
 		while (insn != null) {
@@ -155,6 +186,7 @@ public class Instruction {
 		result.branches = this.branches;
 		result.coveredBranches.or(this.coveredBranches);
 		result.coveredBranches.or(other.coveredBranches);
+		result.executions = this.executions + other.executions;
 		return result;
 	}
 
@@ -171,6 +203,7 @@ public class Instruction {
 			final Collection<Instruction> newBranches) {
 		final Instruction result = new Instruction(this.line);
 		result.branches = newBranches.size();
+		result.executions = this.executions;
 		int idx = 0;
 		for (final Instruction b : newBranches) {
 			if (!b.coveredBranches.isEmpty()) {
@@ -191,6 +224,17 @@ public class Instruction {
 				: CounterImpl.COUNTER_0_1;
 	}
 
+	/**
+	 * Returns how often this instruction has been executed. This is only known
+	 * for execution data recorded with counting probes, otherwise it is always
+	 * <code>0</code>.
+	 *
+	 * @return number of executions
+	 */
+	public long getExecutions() {
+		return executions;
+	}
+
 	/**
 	 * Returns the branch coverage counter of this instruction. Only
 	 * instructions with at least 2 outgoing edges report branches.
@@ -33,12 +33,21 @@ class InstructionsBuilder {
 	/** Probe array of the class the analyzed method belongs to. */
 	private final boolean[] probes;
 
+	/** Execution counts of the probes or <code>null</code>. */
+	private final int[] counts;
+
 	/** The line which belong to subsequently added instructions. */
 	private int currentLine;
 
 	/** The last instruction which has been added. */
 	private Instruction currentInsn;
 
+	/** The first instruction which has been added. */
+	private Instruction firstInsn;
+
+	/** Executions of jumps back to the first instruction. */
+	private long firstInsnJumps;
+
 	/**
 	 * All instructions of a method mapped from the ASM node to the
 	 * corresponding {@link Instruction} instance.
@@ -67,7 +76,23 @@ class InstructionsBuilder {
 	 *            coverage status of every instruction.
 	 */
 	InstructionsBuilder(final boolean[] probes) {
+		this(probes, null);
+	}
+
+	/**
+	 * Creates a new builder instance which can be used to analyze a single
+	 * method.
+	 *
+	 * @param probes
+	 *            probe array of the corresponding class used to determine the
+	 *            coverage status of every instruction.
+	 * @param counts
+	 *            execution counts of the probes used to determine how often
+	 *            every instruction has been executed or <code>null</code>
+	 */
+	InstructionsBuilder(final boolean[] probes, final int[] counts) {
 		this.probes = probes;
+		this.counts = counts;
 		this.currentLine = ISourceNode.UNKNOWN_LINE;
 		this.currentInsn = null;
 		this.instructions = new HashMap<AbstractInsnNode, Instruction>();
@@ -112,6 +137,9 @@ class InstructionsBuilder {
 		if (currentInsn != null) {
 			currentInsn.addBranch(insn, 0);
 		}
+		if (firstInsn == null) {
+			firstInsn = insn;
+		}
 		currentInsn = insn;
 		instructions.put(node, insn);
 	}
@@ -148,6 +176,40 @@ class InstructionsBuilder {
 	void addProbe(final int probeId, final int branch) {
 		final boolean executed = probes != null && probes[probeId];
 		currentInsn.addBranch(executed, branch);
+		if (counts != null) {
+			currentInsn.addExecutions(counts[probeId]);
+		}
+	}
+
+	/**
+	 * Adds a new probe for a jump of the last instruction to the given target.
+	 *
+	 * @param target
+	 *            jump target
+	 * @param probeId
+	 *            index in the probe array
+	 * @param branch
+	 *            unique branch number for the last instruction
+	 */
+	void addJumpProbe(final Label target, final int probeId, final int branch) {
+		addProbe(probeId, branch);
+		// Backward jumps to a loop at the very beginning of the method:
+		if (counts != null && LabelInfo.getInstruction(target) == firstInsn) {
+			firstInsnJumps += counts[probeId];
+		}
+	}
+
+	/**
+	 * Returns how often the method has been entered, i.e. how often its first
+	 * instruction has been executed without jumps back to it. This is only
+	 * known for counting probes. Must be called after
+	 * {@link #getInstructions()}.
+	 *
+	 * @return number of entries of the method
+	 */
+	long getEntryExecutions() {
+		return firstInsn == null ? 0
+				: Math.max(0, firstInsn.getExecutions() - firstInsnJumps);
 	}
 
 	/**
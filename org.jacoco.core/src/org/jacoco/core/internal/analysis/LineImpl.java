@@ -77,6 +77,12 @@ public abstract class LineImpl implements ILine {
 			this.branches = this.branches.increment(branches);
 			return this;
 		}
+
+		@Override
+		public LineImpl incrementExecutionCount(final long executions) {
+			this.executions += executions;
+			return this;
+		}
 	}
 
 	/**
@@ -94,6 +100,16 @@ public abstract class LineImpl implements ILine {
 			return getInstance(this.instructions.increment(instructions),
 					this.branches.increment(branches));
 		}
+
+		@Override
+		public LineImpl incrementExecutionCount(final long executions) {
+			if (executions == 0) {
+				return this;
+			}
+			final LineImpl line = new Var(instructions, branches);
+			line.executions = executions;
+			return line;
+		}
 	}
 
 	/** instruction counter */
@@ -102,6 +118,9 @@ public abstract class LineImpl implements ILine {
 	/** branch counter */
 	protected CounterImpl branches;
 
+	/** number of executions */
+	protected long executions;
+
 	private LineImpl(final CounterImpl instructions,
 			final CounterImpl branches) {
 		this.instructions = instructions;
@@ -120,6 +139,15 @@ public abstract class LineImpl implements ILine {
 	public abstract LineImpl increment(final ICounter instructions,
 			final ICounter branches);
 
+	/**
+	 * Adds the given number of executions to this line.
+	 *
+	 * @param executions
+	 *            executions to add
+	 * @return instance with new execution count
+	 */
+	public abstract LineImpl incrementExecutionCount(final long executions);
+
 	// === ILine implementation ===
 
 	public int getStatus() {
@@ -134,6 +162,10 @@ public abstract class LineImpl implements ILine {
 		return branches;
 	}
 
+	public long getExecutionCount() {
+		return executions;
+	}
+
 	@Override
 	public int hashCode() {
 		return 23 * instructions.hashCode() ^ branches.hashCode();
@@ -144,7 +176,8 @@ public abstract class LineImpl implements ILine {
 		if (obj instanceof ILine) {
 			final ILine that = (ILine) obj;
 			return this.instructions.equals(that.getInstructionCounter())
-					&& this.branches.equals(that.getBranchCounter());
+					&& this.branches.equals(that.getBranchCounter())
+					&& this.executions == that.getExecutionCount();
 		}
 		return false;
 	}
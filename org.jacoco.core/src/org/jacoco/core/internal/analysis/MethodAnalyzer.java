@@ -160,7 +160,7 @@ public class MethodAnalyzer extends MethodProbesVisitor {
 	public void visitJumpInsnWithProbe(final int opcode, final Label label,
 			final int probeId, final IFrame frame) {
 		builder.addInstruction(currentNode);
-		builder.addProbe(probeId, 1);
+		builder.addJumpProbe(label, probeId, 1);
 	}
 
 	@Override
@@ -200,7 +200,7 @@ public class MethodAnalyzer extends MethodProbesVisitor {
 			if (id == LabelInfo.NO_PROBE) {
 				builder.addJump(label, branch);
 			} else {
-				builder.addProbe(id, branch);
+				builder.addJumpProbe(label, id, branch);
 			}
 			LabelInfo.setDone(label);
 		}
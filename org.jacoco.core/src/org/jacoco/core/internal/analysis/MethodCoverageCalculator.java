@@ -70,18 +70,43 @@ class MethodCoverageCalculator implements IFilterOutput {
 		applyReplacements();
 		ensureCapacity(coverage);
 
+		Map<Integer, Long> lineExecutions = null;
 		for (final Entry<AbstractInsnNode, Instruction> entry : instructions
 				.entrySet()) {
 			if (!ignored.contains(entry.getKey())) {
 				final Instruction instruction = entry.getValue();
 				coverage.increment(instruction.getInstructionCounter(),
 						instruction.getBranchCounter(), instruction.getLine());
+				if (instruction.getExecutions() != 0) {
+					if (lineExecutions == null) {
+						lineExecutions = new HashMap<Integer, Long>();
+					}
+					maxExecutions(lineExecutions, instruction);
+				}
+			}
+		}
+		if (lineExecutions != null) {
+			// A line has been executed as often as its most frequently
+			// executed instruction:
+			for (final Entry<Integer, Long> entry : lineExecutions.entrySet()) {
+				coverage.incrementExecutionCount(entry.getValue().longValue(),
+						entry.getKey().intValue());
 			}
 		}
 
 		coverage.incrementMethodCounter();
 	}
 
+	private static void maxExecutions(final Map<Integer, Long> lineExecutions,
+			final Instruction instruction) {
+		final Integer line = Integer.valueOf(instruction.getLine());
+		final Long executions = lineExecutions.get(line);
+		if (executions == null
+				|| executions.longValue() < instruction.getExecutions()) {
+			lineExecutions.put(line, Long.valueOf(instruction.getExecutions()));
+		}
+	}
+
 	private void applyMerges() {
 		// Merge to the representative:
 		for (final Entry<AbstractInsnNode, AbstractInsnNode> entry : merged
@@ -25,6 +25,8 @@ public class MethodCoverageImpl extends SourceNodeImpl
 
 	private final String signature;
 
+	private long executionCount;
+
 	/**
 	 * Creates a method coverage data object with the given parameters.
 	 *
@@ -66,6 +68,16 @@ public class MethodCoverageImpl extends SourceNodeImpl
 		this.complexityCounter = this.complexityCounter.increment(base);
 	}
 
+	/**
+	 * Sets how often this method has been invoked.
+	 *
+	 * @param executionCount
+	 *            number of invocations
+	 */
+	public void setExecutionCount(final long executionCount) {
+		this.executionCount = executionCount;
+	}
+
 	// === IMethodCoverage implementation ===
 
 	public String getDesc() {
@@ -76,4 +88,8 @@ public class MethodCoverageImpl extends SourceNodeImpl
 		return signature;
 	}
 
+	public long getExecutionCount() {
+		return executionCount;
+	}
+
 }
@@ -96,6 +96,7 @@ public class SourceNodeImpl extends CoverageNodeImpl implements ISourceNode {
 				final ILine line = child.getLine(i);
 				incrementLine(line.getInstructionCounter(),
 						line.getBranchCounter(), i);
+				incrementExecutionCount(line.getExecutionCount(), i);
 			}
 		}
 	}
@@ -121,6 +122,23 @@ public class SourceNodeImpl extends CoverageNodeImpl implements ISourceNode {
 		branchCounter = branchCounter.increment(branches);
 	}
 
+	/**
+	 * Adds the given number of executions to the given line.
+	 *
+	 * @param executions
+	 *            executions to add
+	 * @param line
+	 *            line number or {@link ISourceNode#UNKNOWN_LINE}
+	 */
+	public void incrementExecutionCount(final long executions, final int line) {
+		if (executions == 0 || line == UNKNOWN_LINE) {
+			return;
+		}
+		ensureCapacity(line, line);
+		lines[line - offset] = getLine(line)
+				.incrementExecutionCount(executions);
+	}
+
 	private void incrementLine(final ICounter instructions,
 			final ICounter branches, final int line) {
 		ensureCapacity(line, line);
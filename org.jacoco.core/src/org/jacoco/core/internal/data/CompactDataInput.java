@@ -69,4 +69,43 @@ public class CompactDataInput extends DataInputStream {
 		return value;
 	}
 
+	/**
+	 * Reads an array of integer values in variable length representation.
+	 *
+	 * @return integer array
+	 * @throws IOException
+	 *             if thrown by the underlying stream
+	 * @see CompactDataOutput#writeVarIntArray(int[])
+	 */
+	public int[] readVarIntArray() throws IOException {
+		final int[] value = new int[readVarInt()];
+		for (int i = 0; i < value.length; i++) {
+			value[i] = readVarInt();
+		}
+		return value;
+	}
+
+	/**
+	 * Reads a boolean array in sparse representation.
+	 *
+	 * @return boolean array
+	 * @throws IOException
+	 *             if thrown by the underlying stream or the content is not a
+	 *             valid sparse array
+	 * @see CompactDataOutput#writeSparseBooleanArray(boolean[])
+	 */
+	public boolean[] readSparseBooleanArray() throws IOException {
+		final boolean[] value = new boolean[readVarInt()];
+		final int count = readVarInt();
+		int index = -1;
+		for (int i = 0; i < count; i++) {
+			index += readVarInt() + 1;
+			if (index < 0 || index >= value.length) {
+				throw new IOException("Invalid sparse boolean array.");
+			}
+			value[index] = true;
+		}
+		return value;
+	}
+
 }
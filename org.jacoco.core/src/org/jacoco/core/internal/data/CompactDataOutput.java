@@ -81,4 +81,94 @@ public class CompactDataOutput extends DataOutputStream {
 		}
 	}
 
+	/**
+	 * Writes an array of non-negative integer values in variable length
+	 * representation, see {@link #writeVarInt(int)}.
+	 *
+	 * @param value
+	 *            integer array
+	 * @throws IOException
+	 *             if thrown by the underlying stream
+	 */
+	public void writeVarIntArray(final int[] value) throws IOException {
+		writeVarInt(value.length);
+		for (final int i : value) {
+			writeVarInt(i);
+		}
+	}
+
+	/**
+	 * Writes a boolean array in sparse representation. Only the indices of the
+	 * <code>true</code> values are stored as gaps to the previous index. This
+	 * representation is smaller than {@link #writeBooleanArray(boolean[])} if
+	 * only few values are <code>true</code>, see
+	 * {@link #getSparseBooleanArraySize(boolean[], int)}.
+	 *
+	 * @param value
+	 *            boolean array
+	 * @throws IOException
+	 *             if thrown by the underlying stream
+	 */
+	public void writeSparseBooleanArray(final boolean[] value)
+			throws IOException {
+		writeVarInt(value.length);
+		int count = 0;
+		for (final boolean b : value) {
+			if (b) {
+				count++;
+			}
+		}
+		writeVarInt(count);
+		int last = -1;
+		for (int i = 0; i < value.length; i++) {
+			if (value[i]) {
+				writeVarInt(i - last - 1);
+				last = i;
+			}
+		}
+	}
+
+	/**
+	 * Calculates the number of bytes written by
+	 * {@link #writeSparseBooleanArray(boolean[])} for the given array,
+	 * excluding the length which is written by both representations.
+	 * Calculation stops as soon as the given limit is exceeded.
+	 *
+	 * @param value
+	 *            boolean array
+	 * @param limit
+	 *            maximum size of interest
+	 * @return size in bytes or a value greater than the limit
+	 */
+	public static int getSparseBooleanArraySize(final boolean[] value,
+			final int limit) {
+		int count = 0;
+		int size = 0;
+		int last = -1;
+		for (int i = 0; i < value.length && size <= limit; i++) {
+			if (value[i]) {
+				size += getVarIntSize(i - last - 1);
+				count++;
+				last = i;
+			}
+		}
+		return size + getVarIntSize(count);
+	}
+
+	/**
+	 * Returns the number of bytes written by {@link #writeVarInt(int)} for the
+	 * given value.
+	 *
+	 * @param value
+	 *            value to write
+	 * @return size in bytes
+	 */
+	public static int getVarIntSize(final int value) {
+		int size = 1;
+		for (int v = value >>> 7; v != 0; v >>>= 7) {
+			size++;
+		}
+		return size;
+	}
+
 }
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hash map with primitive <code>long</code> keys. Entries are stored with open
+ * addressing and linear probing in two parallel arrays, therefore keys are
+ * never boxed and no entry objects are allocated. <code>null</code> values are
+ * not supported. Instances are not thread safe.
+ *
+ * @param <V>
+ *            type of the values
+ */
+public final class LongHashMap<V> {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private long[] keys;
+
+	private Object[] values;
+
+	private int size;
+
+	/** Number of bits used from the hash code, i.e. log2 of the capacity */
+	private int bits;
+
+	/**
+	 * Creates a new empty map.
+	 */
+	public LongHashMap() {
+		allocate(INITIAL_CAPACITY);
+	}
+
+	private void allocate(final int capacity) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+		bits = Integer.numberOfTrailingZeros(capacity);
+	}
+
+	/**
+	 * Returns the value for the given key.
+	 *
+	 * @param key
+	 *            key to look up
+	 * @return value or <code>null</code> if there is no entry for the key
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(final long key) {
+		final long[] k = keys;
+		final Object[] v = values;
+		final int mask = k.length - 1;
+		for (int i = index(key);; i = (i + 1) & mask) {
+			final Object value = v[i];
+			if (value == null || k[i] == key) {
+				return (V) value;
+			}
+		}
+	}
+
+	/**
+	 * Sets the value for the given key.
+	 *
+	 * @param key
+	 *            key of the entry
+	 * @param value
+	 *            new value, must not be <code>null</code>
+	 * @return previous value or <code>null</code> if there was no entry for the
+	 *         key
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(final long key, final V value) {
+		final int mask = keys.length - 1;
+		int i = index(key);
+		while (values[i] != null) {
+			if (keys[i] == key) {
+				final V previous = (V) values[i];
+				values[i] = value;
+				return previous;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		// Keep the load factor at or below 0.5 for short probe sequences:
+		if (++size > keys.length >> 1) {
+			resize();
+		}
+		return null;
+	}
+
+	private void resize() {
+		final long[] oldKeys = keys;
+		final Object[] oldValues = values;
+		allocate(oldKeys.length << 1);
+		final int mask = keys.length - 1;
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldValues[j] != null) {
+				int i = index(oldKeys[j]);
+				while (values[i] != null) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = oldKeys[j];
+				values[i] = oldValues[j];
+			}
+		}
+	}
+
+	/**
+	 * Fibonacci hashing, uses the upper bits of the product which depend on all
+	 * bits of the key.
+	 */
+	private int index(final long key) {
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - bits));
+	}
+
+	/**
+	 * Returns the number of entries in this map.
+	 *
+	 * @return number of entries
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns a new list with all values of this map in no particular order.
+	 *
+	 * @return list of all values
+	 */
+	@SuppressWarnings("unchecked")
+	public List<V> values() {
+		final List<V> list = new ArrayList<V>(size);
+		for (final Object value : values) {
+			if (value != null) {
+				list.add((V) value);
+			}
+		}
+		return list;
+	}
+
+}
@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.data;
+
+import static java.lang.String.format;
+
+import org.jacoco.core.data.ExecutionData;
+
+/**
+ * Execution data for a single class with the probes packed into
+ * <code>long</code> words, i.e. 64 probes per word. Execution counts of the
+ * probes are kept unpacked if available.
+ */
+public class PackedExecutionData {
+
+	private final long id;
+
+	private final String name;
+
+	private final int probeCount;
+
+	private final long[] words;
+
+	private int[] counts;
+
+	/**
+	 * Creates packed execution data with the content of the given execution
+	 * data. The given object is not referenced.
+	 *
+	 * @param data
+	 *            execution data to pack
+	 */
+	public PackedExecutionData(final ExecutionData data) {
+		this.id = data.getId();
+		this.name = data.getName();
+		this.probeCount = data.getProbes().length;
+		this.words = pack(data.getProbes());
+		final int[] counts = data.getCounts();
+		this.counts = counts == null ? null : counts.clone();
+	}
+
+	/**
+	 * @return class identifier
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * @return VM name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Marks all probes executed in the given data as executed.
+	 *
+	 * @param data
+	 *            execution data to merge
+	 * @throws IllegalStateException
+	 *             if the given data is not compatible
+	 */
+	public void merge(final ExecutionData data) throws IllegalStateException {
+		assertCompatibility(data.getName(), data.getProbes().length);
+		or(pack(data.getProbes()));
+		add(data.getCounts());
+	}
+
+	/**
+	 * Marks all probes executed in the given data as executed.
+	 *
+	 * @param data
+	 *            execution data to merge
+	 * @throws IllegalStateException
+	 *             if the given data is not compatible
+	 */
+	public void merge(final PackedExecutionData data)
+			throws IllegalStateException {
+		assertCompatibility(data.name, data.probeCount);
+		or(data.words);
+		add(data.counts);
+	}
+
+	private void or(final long[] other) {
+		for (int i = 0; i < words.length; i++) {
+			words[i] |= other[i];
+		}
+	}
+
+	/**
+	 * Checks whether execution counts have been recorded for this class.
+	 *
+	 * @return <code>true</code> if execution counts are available
+	 */
+	public boolean hasCounts() {
+		return counts != null;
+	}
+
+	private void add(final int[] other) {
+		if (other == null) {
+			return;
+		}
+		if (counts == null) {
+			counts = new int[probeCount];
+		}
+		for (int i = 0; i < probeCount; i++) {
+			// Saturate instead of overflow:
+			counts[i] = (int) Math.min((long) counts[i] + other[i],
+					Integer.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * Marks all probes executed in the given data as not executed.
+	 *
+	 * @param data
+	 *            execution data to subtract
+	 * @throws IllegalStateException
+	 *             if the given data is not compatible
+	 */
+	public void subtract(final ExecutionData data)
+			throws IllegalStateException {
+		assertCompatibility(data.getName(), data.getProbes().length);
+		final boolean[] probes = data.getProbes();
+		final long[] other = pack(probes);
+		for (int i = 0; i < words.length; i++) {
+			words[i] &= ~other[i];
+		}
+		if (counts != null) {
+			for (int i = 0; i < probeCount; i++) {
+				if (probes[i]) {
+					counts[i] = 0;
+				}
+			}
+		}
+	}
+
+	private void assertCompatibility(final String otherName,
+			final int otherProbeCount) throws IllegalStateException {
+		if (!name.equals(otherName)) {
+			throw new IllegalStateException(
+					format("Different class names %s and %s for id %016x.",
+							name, otherName, Long.valueOf(id)));
+		}
+		if (probeCount != otherProbeCount) {
+			throw new IllegalStateException(format(
+					"Incompatible execution data for class %s with id %016x.",
+					otherName, Long.valueOf(id)));
+		}
+	}
+
+	/**
+	 * Creates execution data with the unpacked probes and a copy of the
+	 * execution counts.
+	 *
+	 * @return new execution data
+	 */
+	public ExecutionData unpack() {
+		final boolean[] probes = new boolean[probeCount];
+		for (int i = 0; i < probeCount; i++) {
+			probes[i] = (words[i >>> 6] & (1L << i)) != 0;
+		}
+		final ExecutionData data = new ExecutionData(id, name, probes);
+		if (counts != null) {
+			data.merge(new ExecutionData(id, name, counts.clone()));
+		}
+		return data;
+	}
+
+	private static long[] pack(final boolean[] probes) {
+		final long[] words = new long[(probes.length + 63) >>> 6];
+		for (int i = 0; i < probes.length; i++) {
+			if (probes[i]) {
+				words[i >>> 6] |= 1L << i;
+			}
+		}
+		return words;
+	}
+
+}
@@ -0,0 +1,376 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.diff;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The classes and methods of a code diff which limit an incremental analysis. A
+ * scope is immutable and is passed to every component of a single analysis run,
+ * therefore several incremental analyses with different diffs can run
+ * concurrently in the same process. Lookups are answered from hash tables which
+ * are built once when the scope is created.
+ *
+ * A class matches a diff entry if its VM name or the name of its top level
+ * class (for inner and anonymous classes) equals the <code>classFile</code> of
+ * the entry. If both names match different entries the entry which appears
+ * first in the diff is used. All methods of added classes match, for modified
+ * classes the method name and the simple names of the parameter types must
+ * match.
+ */
+public final class DiffScope {
+
+	private static final String OPERATE_ADD = "ADD";
+
+	private final Map<String, ClassEntry> classes;
+
+	/** Number of diff entries added so far, used to order the entries. */
+	private int entries;
+
+	/**
+	 * Creates a scope from the JSON representation of a code diff, which is an
+	 * array of {@link ClassInfoDto} objects.
+	 *
+	 * @param json
+	 *            JSON representation of the diff, may be <code>null</code>
+	 * @return scope for the given diff
+	 * @throws IOException
+	 *             if the given JSON is malformed
+	 */
+	public static DiffScope parse(final String json) throws IOException {
+		if (json == null) {
+			return new DiffScope();
+		}
+		return read(new StringReader(json));
+	}
+
+	/**
+	 * Creates a scope from a UTF-8 encoded JSON file containing a code diff.
+	 *
+	 * @param file
+	 *            JSON file with the diff
+	 * @return scope for the given diff
+	 * @throws IOException
+	 *             if the file can't be read or is malformed
+	 */
+	public static DiffScope load(final File file) throws IOException {
+		final Reader reader = new InputStreamReader(new FileInputStream(file),
+				"UTF-8");
+		try {
+			return read(reader);
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Creates a scope from the JSON representation of a code diff. The JSON
+	 * content is parsed in a single pass directly into the lookup tables of the
+	 * scope, the given reader does not need to be buffered.
+	 *
+	 * @param reader
+	 *            reader providing the JSON representation of the diff
+	 * @return scope for the given diff
+	 * @throws IOException
+	 *             if the content can't be read or is malformed
+	 */
+	public static DiffScope read(final Reader reader) throws IOException {
+		final DiffScope scope = new DiffScope();
+		new DiffScopeReader(reader).read(scope);
+		return scope;
+	}
+
+	/**
+	 * Creates a scope which contains the given class but none of its methods.
+	 *
+	 * @param className
+	 *            VM name of the class
+	 * @return scope for the given class
+	 */
+	public static DiffScope forClass(final String className) {
+		final DiffScope scope = new DiffScope();
+		scope.addClass(className, null, Collections.<MethodEntry> emptyList());
+		return scope;
+	}
+
+	/**
+	 * Creates a scope for the given diff entries.
+	 *
+	 * @param classInfos
+	 *            diff entries, may be <code>null</code>
+	 */
+	public DiffScope(final List<ClassInfoDto> classInfos) {
+		this();
+		if (classInfos == null) {
+			return;
+		}
+		for (final ClassInfoDto classInfo : classInfos) {
+			final List<MethodEntry> methods = new ArrayList<MethodEntry>();
+			if (classInfo.getMethodInfos() != null) {
+				for (final MethodInfoDto m : classInfo.getMethodInfos()) {
+					if (m.getMethodName() != null) {
+						methods.add(new MethodEntry(m.getMethodName(),
+								m.getParameters()));
+					}
+				}
+			}
+			addClass(classInfo.getClassFile(), classInfo.getType(), methods);
+		}
+	}
+
+	DiffScope() {
+		classes = new HashMap<String, ClassEntry>();
+	}
+
+	/**
+	 * Adds the next entry of the diff. Only the first entry for a class file is
+	 * considered.
+	 */
+	void addClass(final String classFile, final String type,
+			final List<MethodEntry> methods) {
+		if (classFile != null && !classes.containsKey(classFile)) {
+			classes.put(classFile,
+					new ClassEntry(entries, OPERATE_ADD.equals(type), methods));
+		}
+		entries++;
+	}
+
+	/**
+	 * Checks whether this scope contains no classes at all. An empty scope does
+	 * not limit the analysis.
+	 *
+	 * @return <code>true</code> if the scope is empty
+	 */
+	public boolean isEmpty() {
+		return classes.isEmpty();
+	}
+
+	/**
+	 * Checks whether the given class is part of the diff.
+	 *
+	 * @param className
+	 *            VM name of the class
+	 * @return <code>true</code> if the class is contained in the diff
+	 */
+	public boolean containsClass(final String className) {
+		return className != null && lookup(className) != null;
+	}
+
+	/**
+	 * Checks whether the given method is part of the diff.
+	 *
+	 * @param className
+	 *            VM name of the class declaring the method
+	 * @param methodName
+	 *            name of the method
+	 * @param desc
+	 *            descriptor of the method
+	 * @return <code>true</code> if the method is contained in the diff
+	 */
+	public boolean containsMethod(final String className,
+			final String methodName, final String desc) {
+		if (className == null || methodName == null) {
+			return false;
+		}
+		final ClassEntry entry = lookup(className);
+		if (entry == null) {
+			return false;
+		}
+		if (entry.added) {
+			return true;
+		}
+		final List<MethodEntry> candidates = entry.methods.get(methodName);
+		if (candidates == null) {
+			return false;
+		}
+		for (final MethodEntry candidate : candidates) {
+			if (candidate.matches(desc)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private ClassEntry lookup(final String className) {
+		ClassEntry entry = classes.get(className);
+		final int pos = className.indexOf('$');
+		if (pos != -1) {
+			final ClassEntry outer = classes.get(className.substring(0, pos));
+			if (outer != null
+					&& (entry == null || outer.position < entry.position)) {
+				entry = outer;
+			}
+		}
+		return entry;
+	}
+
+	private static class ClassEntry {
+
+		final int position;
+
+		final boolean added;
+
+		final Map<String, List<MethodEntry>> methods;
+
+		ClassEntry(final int position, final boolean added,
+				final List<MethodEntry> methodEntries) {
+			this.position = position;
+			this.added = added;
+			this.methods = new HashMap<String, List<MethodEntry>>();
+			for (final MethodEntry method : methodEntries) {
+				List<MethodEntry> list = methods.get(method.name);
+				if (list == null) {
+					list = new ArrayList<MethodEntry>(1);
+					methods.put(method.name, list);
+				}
+				list.add(method);
+			}
+		}
+	}
+
+	/**
+	 * A method of a modified class. The parameter declarations are split when
+	 * the diff is loaded, the descriptors of the analyzed methods are then
+	 * matched in place without creating intermediate objects.
+	 */
+	static class MethodEntry {
+
+		private static final String[] PRIMITIVES = new String['Z' + 1];
+
+		static {
+			PRIMITIVES['Z'] = "boolean";
+			PRIMITIVES['C'] = "char";
+			PRIMITIVES['B'] = "byte";
+			PRIMITIVES['S'] = "short";
+			PRIMITIVES['I'] = "int";
+			PRIMITIVES['F'] = "float";
+			PRIMITIVES['J'] = "long";
+			PRIMITIVES['D'] = "double";
+		}
+
+		final String name;
+
+		/** Whether the method has no parameters at all. */
+		private final boolean noParameters;
+
+		/** Source declarations of the parameters, e.g. "String s". */
+		private final String[] parameters;
+
+		MethodEntry(final String name, final String parameters) {
+			final String p = parameters == null ? "" : parameters;
+			this.name = name;
+			this.noParameters = p.length() == 0;
+			this.parameters = p.split("&");
+		}
+
+		/**
+		 * Checks whether the argument types of the given method descriptor
+		 * match the parameter declarations. Every declaration has to contain
+		 * the simple name of the corresponding argument type, i.e. the name
+		 * without package and outer class names.
+		 */
+		boolean matches(final String desc) {
+			if (noParameters) {
+				return desc.charAt(1) == ')';
+			}
+			int pos = 1;
+			int i = 0;
+			while (desc.charAt(pos) != ')') {
+				if (i == parameters.length) {
+					return false;
+				}
+				int dims = 0;
+				while (desc.charAt(pos) == '[') {
+					dims++;
+					pos++;
+				}
+				final boolean found;
+				if (desc.charAt(pos) == 'L') {
+					final int end = desc.indexOf(';', pos);
+					found = containsSimpleName(parameters[i], desc, pos + 1,
+							end, dims);
+					pos = end + 1;
+				} else {
+					final String primitive = PRIMITIVES[desc.charAt(pos)];
+					found = contains(parameters[i], primitive, 0,
+							primitive.length(), dims);
+					pos++;
+				}
+				if (!found) {
+					return false;
+				}
+				i++;
+			}
+			return i == parameters.length;
+		}
+
+		private static boolean containsSimpleName(final String parameter,
+				final String desc, final int start, final int end,
+				final int dims) {
+			int nameStart = desc.lastIndexOf('/', end) + 1;
+			if (nameStart < start) {
+				nameStart = start;
+			}
+			// trailing '$' characters are ignored, e.g. for Scala objects
+			int nameEnd = end;
+			while (nameEnd > nameStart && desc.charAt(nameEnd - 1) == '$') {
+				nameEnd--;
+			}
+			final int inner = desc.lastIndexOf('$', nameEnd - 1);
+			if (inner >= nameStart) {
+				nameStart = inner + 1;
+			}
+			return contains(parameter, desc, nameStart, nameEnd, dims);
+		}
+
+		/**
+		 * Checks whether the parameter contains the given region of the source
+		 * string followed by <code>dims</code> times "[]".
+		 */
+		private static boolean contains(final String parameter,
+				final String source, final int start, final int end,
+				final int dims) {
+			final int len = end - start;
+			final int last = parameter.length() - len - 2 * dims;
+			for (int offset = 0; offset <= last; offset++) {
+				if (parameter.regionMatches(offset, source, start, len)
+						&& isArraySuffix(parameter, offset + len, dims)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private static boolean isArraySuffix(final String parameter,
+				final int offset, final int dims) {
+			for (int i = 0; i < dims; i++) {
+				if (parameter.charAt(offset + 2 * i) != '['
+						|| parameter.charAt(offset + 2 * i + 1) != ']') {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+}
@@ -0,0 +1,330 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.diff;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming parser for the JSON representation of a code diff. The content is
+ * read through an internal buffer in a single pass and every diff entry is
+ * added to the {@link DiffScope} as soon as it has been parsed, so the JSON
+ * document is never held in memory as a whole. Properties which are not
+ * required for the scope are skipped.
+ */
+final class DiffScopeReader {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final Reader reader;
+
+	private final char[] buffer = new char[BUFFER_SIZE];
+
+	private final StringBuilder text = new StringBuilder();
+
+	private int position;
+
+	private int limit;
+
+	/** Number of characters consumed before the current buffer content. */
+	private long offset;
+
+	DiffScopeReader(final Reader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * Reads the diff and adds all entries to the given scope. Empty content and
+	 * <code>null</code> are accepted as an empty diff.
+	 */
+	void read(final DiffScope scope) throws IOException {
+		final int c = peek();
+		if (c == -1) {
+			return;
+		}
+		if (c == 'n') {
+			literal("null");
+		} else {
+			expect('[');
+			if (!consume(']')) {
+				do {
+					readClass(scope);
+				} while (consume(','));
+				expect(']');
+			}
+		}
+		if (peek() != -1) {
+			throw error("end of content");
+		}
+	}
+
+	private void readClass(final DiffScope scope) throws IOException {
+		String classFile = null;
+		String type = null;
+		final List<DiffScope.MethodEntry> methods = new ArrayList<DiffScope.MethodEntry>();
+		if (peek() == 'n') {
+			literal("null");
+		} else {
+			expect('{');
+			if (!consume('}')) {
+				do {
+					final String key = readString();
+					expect(':');
+					if ("classFile".equals(key)) {
+						classFile = readNullableString();
+					} else if ("type".equals(key)) {
+						type = readNullableString();
+					} else if ("methodInfos".equals(key)) {
+						readMethods(methods);
+					} else {
+						skipValue();
+					}
+				} while (consume(','));
+				expect('}');
+			}
+		}
+		scope.addClass(classFile, type, methods);
+	}
+
+	private void readMethods(final List<DiffScope.MethodEntry> methods)
+			throws IOException {
+		if (peek() == 'n') {
+			literal("null");
+			return;
+		}
+		expect('[');
+		if (consume(']')) {
+			return;
+		}
+		do {
+			readMethod(methods);
+		} while (consume(','));
+		expect(']');
+	}
+
+	private void readMethod(final List<DiffScope.MethodEntry> methods)
+			throws IOException {
+		if (peek() == 'n') {
+			literal("null");
+			return;
+		}
+		String name = null;
+		String parameters = null;
+		expect('{');
+		if (!consume('}')) {
+			do {
+				final String key = readString();
+				expect(':');
+				if ("methodName".equals(key)) {
+					name = readNullableString();
+				} else if ("parameters".equals(key)) {
+					parameters = readNullableString();
+				} else {
+					skipValue();
+				}
+			} while (consume(','));
+			expect('}');
+		}
+		if (name != null) {
+			methods.add(new DiffScope.MethodEntry(name, parameters));
+		}
+	}
+
+	private void skipValue() throws IOException {
+		switch (peek()) {
+		case '"':
+			readString();
+			return;
+		case '{':
+			expect('{');
+			if (!consume('}')) {
+				do {
+					readString();
+					expect(':');
+					skipValue();
+				} while (consume(','));
+				expect('}');
+			}
+			return;
+		case '[':
+			expect('[');
+			if (!consume(']')) {
+				do {
+					skipValue();
+				} while (consume(','));
+				expect(']');
+			}
+			return;
+		case 't':
+			literal("true");
+			return;
+		case 'f':
+			literal("false");
+			return;
+		case 'n':
+			literal("null");
+			return;
+		default:
+			skipNumber();
+		}
+	}
+
+	private void skipNumber() throws IOException {
+		int count = 0;
+		for (int c = current(); isNumberChar(c); c = current()) {
+			position++;
+			count++;
+		}
+		if (count == 0) {
+			throw error("value");
+		}
+	}
+
+	private static boolean isNumberChar(final int c) {
+		return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.'
+				|| c == 'e' || c == 'E';
+	}
+
+	private String readNullableString() throws IOException {
+		if (peek() == 'n') {
+			literal("null");
+			return null;
+		}
+		return readString();
+	}
+
+	private String readString() throws IOException {
+		expect('"');
+		text.setLength(0);
+		while (true) {
+			final int c = current();
+			if (c == -1) {
+				throw error("'\"'");
+			}
+			position++;
+			if (c == '"') {
+				return text.toString();
+			}
+			if (c == '\\') {
+				text.append(readEscape());
+			} else {
+				text.append((char) c);
+			}
+		}
+	}
+
+	private char readEscape() throws IOException {
+		final int c = current();
+		position++;
+		switch (c) {
+		case '"':
+		case '\\':
+		case '/':
+			return (char) c;
+		case 'b':
+			return '\b';
+		case 'f':
+			return '\f';
+		case 'n':
+			return '\n';
+		case 'r':
+			return '\r';
+		case 't':
+			return '\t';
+		case 'u':
+			int value = 0;
+			for (int i = 0; i < 4; i++) {
+				final int digit = Character.digit(current(), 16);
+				if (digit == -1) {
+					throw error("hex digit");
+				}
+				position++;
+				value = value << 4 | digit;
+			}
+			return (char) value;
+		default:
+			position--;
+			throw error("escape sequence");
+		}
+	}
+
+	private void literal(final String literal) throws IOException {
+		peek();
+		for (int i = 0; i < literal.length(); i++) {
+			if (current() != literal.charAt(i)) {
+				throw error(literal);
+			}
+			position++;
+		}
+	}
+
+	private void expect(final char c) throws IOException {
+		if (!consume(c)) {
+			throw error("'" + c + "'");
+		}
+	}
+
+	/**
+	 * Skips whitespace and consumes the next character if it is the given one.
+	 */
+	private boolean consume(final char c) throws IOException {
+		if (peek() == c) {
+			position++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Skips whitespace and returns the next character without consuming it.
+	 */
+	private int peek() throws IOException {
+		int c = current();
+		while (c == ' ' || c == '\t' || c == '\n' || c == '\r'
+				|| c == '\uFEFF') {
+			position++;
+			c = current();
+		}
+		return c;
+	}
+
+	/**
+	 * Returns the current character without consuming it or -1 at the end of
+	 * the content.
+	 */
+	private int current() throws IOException {
+		if (position == limit) {
+			offset += limit;
+			position = 0;
+			limit = 0;
+			int read;
+			do {
+				read = reader.read(buffer);
+			} while (read == 0);
+			if (read == -1) {
+				return -1;
+			}
+			limit = read;
+		}
+		return buffer[position];
+	}
+
+	private IOException error(final String expected) {
+		return new IOException(
+				String.format("Invalid code diff at character %s, expected %s.",
+						Long.valueOf(offset + position), expected));
+	}
+
+}
@@ -12,8 +12,7 @@
  *******************************************************************************/
 package org.jacoco.core.internal.flow;
 
-import org.jacoco.core.analysis.CoverageBuilder;
-import org.jacoco.core.internal.diff.CodeDiffUtil;
+import org.jacoco.core.internal.diff.DiffScope;
 import org.jacoco.core.internal.instr.InstrSupport;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.MethodVisitor;
@@ -34,6 +33,8 @@ public class ClassProbesAdapter extends ClassVisitor
 
 	private final boolean trackFrames;
 
+	private final DiffScope diffScope;
+
 	private int counter = 0;
 
 	private String name;
@@ -48,9 +49,29 @@ public class ClassProbesAdapter extends ClassVisitor
 	 */
 	public ClassProbesAdapter(final ClassProbesVisitor cv,
 			final boolean trackFrames) {
+		this(cv, trackFrames, null);
+	}
+
+	/**
+	 * Creates a new adapter that delegates to the given visitor. Only methods
+	 * contained in the given diff scope are passed to the visitor, probe ids
+	 * are assigned for all methods nevertheless.
+	 *
+	 * @param cv
+	 *            instance to delegate to
+	 * @param trackFrames
+	 *            if <code>true</code> stackmap frames are tracked and provided
+	 * @param diffScope
+	 *            methods to pass to the visitor, <code>null</code> or an empty
+	 *            scope for all methods
+	 */
+	public ClassProbesAdapter(final ClassProbesVisitor cv,
+			final boolean trackFrames, final DiffScope diffScope) {
 		super(InstrSupport.ASM_API_VERSION, cv);
 		this.cv = cv;
 		this.trackFrames = trackFrames;
+		this.diffScope = diffScope == null || diffScope.isEmpty() ? null
+				: diffScope;
 	}
 
 	@Override
@@ -68,18 +89,9 @@ public class ClassProbesAdapter extends ClassVisitor
 		final MethodProbesVisitor methodProbes;
 		final MethodProbesVisitor mv = cv.visitMethod(access, name, desc,
 				signature, exceptions);
-		if (null != mv) {
-			// 增量代码，有点绕，由于参数定义成final,无法第二次指定,代码无法简化
-			if (null != CoverageBuilder.classInfos
-					&& !CoverageBuilder.classInfos.isEmpty()) {
-				if (CodeDiffUtil.checkMethodIn(this.name, name, desc)) {
-					methodProbes = mv;
-				} else {
-					methodProbes = EMPTY_METHOD_PROBES_VISITOR;
-				}
-			} else {
-				methodProbes = mv;
-			}
+		if (null != mv && (null == diffScope
+				|| diffScope.containsMethod(this.name, name, desc))) {
+			methodProbes = mv;
 		} else {
 			methodProbes = EMPTY_METHOD_PROBES_VISITOR;
 		}
@@ -23,7 +23,7 @@ import org.objectweb.asm.commons.AnalyzerAdapter;
 /**
  * IFrame implementation which creates snapshots from an {@link AnalyzerAdapter}
  */
-class FrameSnapshot implements IFrame {
+public class FrameSnapshot implements IFrame {
 
 	private static final FrameSnapshot NOP = new FrameSnapshot(null, null);
 
@@ -45,7 +45,8 @@ class FrameSnapshot implements IFrame {
 	 * @return IFrame instance. In case the analyzer is <code>null</code> or
 	 *         does not contain stackmap information a "NOP" IFrame is returned.
 	 */
-	static IFrame create(final AnalyzerAdapter analyzer, final int popCount) {
+	public static IFrame create(final AnalyzerAdapter analyzer,
+			final int popCount) {
 		if (analyzer == null || analyzer.locals == null) {
 			return NOP;
 		}
@@ -21,16 +21,10 @@ import org.objectweb.asm.Opcodes;
 /**
  * The strategy for regular classes adds a static field to hold the probe array
  * and a static initialization method requesting the probe array from the
- * runtime.
+ * runtime. With counting probes the probe array is an <code>int[]</code>.
  */
 class ClassFieldProbeArrayStrategy implements IProbeArrayStrategy {
 
-	/**
-	 * Frame stack with a single boolean array.
-	 */
-	private static final Object[] FRAME_STACK_ARRZ = new Object[] {
-			InstrSupport.DATAFIELD_DESC };
-
 	/**
 	 * Empty frame locals.
 	 */
@@ -40,21 +34,35 @@ class ClassFieldProbeArrayStrategy implements IProbeArrayStrategy {
 	private final long classId;
 	private final boolean withFrames;
 	private final IExecutionDataAccessorGenerator accessorGenerator;
+	private final boolean counts;
+	private final String dataFieldDesc;
+	private final String initMethodDesc;
 
 	ClassFieldProbeArrayStrategy(final String className, final long classId,
 			final boolean withFrames,
 			final IExecutionDataAccessorGenerator accessorGenerator) {
+		this(className, classId, withFrames, accessorGenerator, false);
+	}
+
+	ClassFieldProbeArrayStrategy(final String className, final long classId,
+			final boolean withFrames,
+			final IExecutionDataAccessorGenerator accessorGenerator,
+			final boolean counts) {
 		this.className = className;
 		this.classId = classId;
 		this.withFrames = withFrames;
 		this.accessorGenerator = accessorGenerator;
+		this.counts = counts;
+		this.dataFieldDesc = counts ? InstrSupport.COUNTSFIELD_DESC
+				: InstrSupport.DATAFIELD_DESC;
+		this.initMethodDesc = counts ? InstrSupport.COUNTS_INITMETHOD_DESC
+				: InstrSupport.INITMETHOD_DESC;
 	}
 
 	public int storeInstance(final MethodVisitor mv, final boolean clinit,
 			final int variable) {
 		mv.visitMethodInsn(Opcodes.INVOKESTATIC, className,
-				InstrSupport.INITMETHOD_NAME, InstrSupport.INITMETHOD_DESC,
-				false);
+				InstrSupport.INITMETHOD_NAME, initMethodDesc, false);
 		mv.visitVarInsn(Opcodes.ASTORE, variable);
 		return 1;
 	}
@@ -66,18 +74,17 @@ class ClassFieldProbeArrayStrategy implements IProbeArrayStrategy {
 
 	private void createDataField(final ClassVisitor cv) {
 		cv.visitField(InstrSupport.DATAFIELD_ACC, InstrSupport.DATAFIELD_NAME,
-				InstrSupport.DATAFIELD_DESC, null, null);
+				dataFieldDesc, null, null);
 	}
 
 	private void createInitMethod(final ClassVisitor cv, final int probeCount) {
 		final MethodVisitor mv = cv.visitMethod(InstrSupport.INITMETHOD_ACC,
-				InstrSupport.INITMETHOD_NAME, InstrSupport.INITMETHOD_DESC,
-				null, null);
+				InstrSupport.INITMETHOD_NAME, initMethodDesc, null, null);
 		mv.visitCode();
 
 		// Load the value of the static data field:
 		mv.visitFieldInsn(Opcodes.GETSTATIC, className,
-				InstrSupport.DATAFIELD_NAME, InstrSupport.DATAFIELD_DESC);
+				InstrSupport.DATAFIELD_NAME, dataFieldDesc);
 		mv.visitInsn(Opcodes.DUP);
 
 		// Stack[1]: [Z
@@ -97,7 +104,7 @@ class ClassFieldProbeArrayStrategy implements IProbeArrayStrategy {
 		// Return the class' probe array:
 		if (withFrames) {
 			mv.visitFrame(Opcodes.F_NEW, 0, FRAME_LOCALS_EMPTY, 1,
-					FRAME_STACK_ARRZ);
+					new Object[] { dataFieldDesc });
 		}
 		mv.visitLabel(alreadyInitialized);
 		mv.visitInsn(Opcodes.ARETURN);
@@ -117,8 +124,11 @@ class ClassFieldProbeArrayStrategy implements IProbeArrayStrategy {
 	 */
 	private int genInitializeDataField(final MethodVisitor mv,
 			final int probeCount) {
-		final int size = accessorGenerator.generateDataAccessor(classId,
-				className, probeCount, mv);
+		final int size = counts
+				? accessorGenerator.generateCountsAccessor(classId, className,
+						probeCount, mv)
+				: accessorGenerator.generateDataAccessor(classId, className,
+						probeCount, mv);
 
 		// Stack[0]: [Z
 
@@ -128,7 +138,7 @@ class ClassFieldProbeArrayStrategy implements IProbeArrayStrategy {
 		// Stack[0]: [Z
 
 		mv.visitFieldInsn(Opcodes.PUTSTATIC, className,
-				InstrSupport.DATAFIELD_NAME, InstrSupport.DATAFIELD_DESC);
+				InstrSupport.DATAFIELD_NAME, dataFieldDesc);
 
 		// Stack[0]: [Z
 
@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.instr;
+
+import org.jacoco.core.runtime.IExecutionDataAccessorGenerator;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * This strategy for classes with a static initializer adds a static final field
+ * to hold the probe array which is assigned at the beginning of the static
+ * initializer. All other methods retrieve the probe array through a static
+ * method which returns the field value. Once this method has been inlined the
+ * JIT compiler can treat the probe array as a constant. With counting probes
+ * the probe array is an <code>int[]</code>.
+ *
+ * Methods of the class may be executed before its static initializer has
+ * started, e.g. when the initializer of a super class calls back into this
+ * class. In this case the static method requests the probe array from the
+ * runtime without storing it, as a final field can only be assigned within the
+ * static initializer.
+ */
+class ClassFinalFieldProbeArrayStrategy implements IProbeArrayStrategy {
+
+	/**
+	 * Empty frame locals.
+	 */
+	private static final Object[] FRAME_LOCALS_EMPTY = new Object[0];
+
+	private final String className;
+	private final long classId;
+	private final boolean withFrames;
+	private final IExecutionDataAccessorGenerator accessorGenerator;
+	private final boolean counts;
+	private final String dataFieldDesc;
+	private final String initMethodDesc;
+
+	ClassFinalFieldProbeArrayStrategy(final String className,
+			final long classId, final boolean withFrames,
+			final IExecutionDataAccessorGenerator accessorGenerator,
+			final boolean counts) {
+		this.className = className;
+		this.classId = classId;
+		this.withFrames = withFrames;
+		this.accessorGenerator = accessorGenerator;
+		this.counts = counts;
+		this.dataFieldDesc = counts ? InstrSupport.COUNTSFIELD_DESC
+				: InstrSupport.DATAFIELD_DESC;
+		this.initMethodDesc = counts ? InstrSupport.COUNTS_INITMETHOD_DESC
+				: InstrSupport.INITMETHOD_DESC;
+	}
+
+	public int storeInstance(final MethodVisitor mv, final boolean clinit,
+			final int variable) {
+		mv.visitMethodInsn(Opcodes.INVOKESTATIC, className,
+				InstrSupport.INITMETHOD_NAME, initMethodDesc, false);
+		if (clinit) {
+
+			// Stack[0]: [Z
+
+			mv.visitInsn(Opcodes.DUP);
+
+			// Stack[1]: [Z
+			// Stack[0]: [Z
+
+			mv.visitFieldInsn(Opcodes.PUTSTATIC, className,
+					InstrSupport.DATAFIELD_NAME, dataFieldDesc);
+
+			// Stack[0]: [Z
+
+			mv.visitVarInsn(Opcodes.ASTORE, variable);
+			return 2;
+		}
+		mv.visitVarInsn(Opcodes.ASTORE, variable);
+		return 1;
+	}
+
+	public void addMembers(final ClassVisitor cv, final int probeCount) {
+		createDataField(cv);
+		createInitMethod(cv, probeCount);
+	}
+
+	private void createDataField(final ClassVisitor cv) {
+		cv.visitField(InstrSupport.DATAFIELD_FINAL_ACC,
+				InstrSupport.DATAFIELD_NAME, dataFieldDesc, null, null);
+	}
+
+	private void createInitMethod(final ClassVisitor cv, final int probeCount) {
+		final MethodVisitor mv = cv.visitMethod(InstrSupport.INITMETHOD_ACC,
+				InstrSupport.INITMETHOD_NAME, initMethodDesc, null, null);
+		mv.visitCode();
+
+		// Load the value of the static data field:
+		mv.visitFieldInsn(Opcodes.GETSTATIC, className,
+				InstrSupport.DATAFIELD_NAME, dataFieldDesc);
+		mv.visitInsn(Opcodes.DUP);
+
+		// Stack[1]: [Z
+		// Stack[0]: [Z
+
+		// Skip the runtime when the static initializer has run already:
+		final Label alreadyInitialized = new Label();
+		mv.visitJumpInsn(Opcodes.IFNONNULL, alreadyInitialized);
+
+		// Stack[0]: [Z
+
+		mv.visitInsn(Opcodes.POP);
+		final int size = counts
+				? accessorGenerator.generateCountsAccessor(classId, className,
+						probeCount, mv)
+				: accessorGenerator.generateDataAccessor(classId, className,
+						probeCount, mv);
+
+		// Stack[0]: [Z
+
+		// Return the class' probe array:
+		if (withFrames) {
+			mv.visitFrame(Opcodes.F_NEW, 0, FRAME_LOCALS_EMPTY, 1,
+					new Object[] { dataFieldDesc });
+		}
+		mv.visitLabel(alreadyInitialized);
+		mv.visitInsn(Opcodes.ARETURN);
+
+		mv.visitMaxs(Math.max(size, 2), 0); // Maximum local stack size is 2
+		mv.visitEnd();
+	}
+
+}
@@ -12,11 +12,13 @@
  *******************************************************************************/
 package org.jacoco.core.internal.instr;
 
+import org.jacoco.core.internal.diff.DiffScope;
 import org.jacoco.core.internal.flow.ClassProbesVisitor;
 import org.jacoco.core.internal.flow.MethodProbesVisitor;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.commons.AnalyzerAdapter;
 
 /**
  * Adapter that instruments a class for coverage tracing.
@@ -25,8 +27,20 @@ public class ClassInstrumenter extends ClassProbesVisitor {
 
 	private final IProbeArrayStrategy probeArrayStrategy;
 
+	private final DiffScope diffScope;
+
+	private final boolean checkProbes;
+
+	private final boolean methodCoverageOnly;
+
+	private final boolean countProbes;
+
+	private MethodEntryInstrumenter lastMethod;
+
 	private String className;
 
+	private boolean frames;
+
 	/**
 	 * Emits a instrumented version of this class to the given class visitor.
 	 *
@@ -38,8 +52,117 @@ public class ClassInstrumenter extends ClassProbesVisitor {
 	 */
 	public ClassInstrumenter(final IProbeArrayStrategy probeArrayStrategy,
 			final ClassVisitor cv) {
+		this(probeArrayStrategy, cv, null);
+	}
+
+	/**
+	 * Emits a instrumented version of this class to the given class visitor.
+	 * Only methods contained in the given diff scope receive probes, the code
+	 * of all other methods is emitted unchanged. The static initializer is
+	 * always instrumented as it might initialize the probe array.
+	 *
+	 * @param probeArrayStrategy
+	 *            this strategy will be used to access the probe array
+	 * @param cv
+	 *            next delegate in the visitor chain will receive the
+	 *            instrumented class
+	 * @param diffScope
+	 *            methods to instrument, <code>null</code> or an empty scope for
+	 *            all methods
+	 */
+	public ClassInstrumenter(final IProbeArrayStrategy probeArrayStrategy,
+			final ClassVisitor cv, final DiffScope diffScope) {
+		this(probeArrayStrategy, cv, diffScope, false);
+	}
+
+	/**
+	 * Emits a instrumented version of this class to the given class visitor.
+	 * Only methods contained in the given diff scope receive probes, the code
+	 * of all other methods is emitted unchanged. The static initializer is
+	 * always instrumented as it might initialize the probe array.
+	 *
+	 * @param probeArrayStrategy
+	 *            this strategy will be used to access the probe array
+	 * @param cv
+	 *            next delegate in the visitor chain will receive the
+	 *            instrumented class
+	 * @param diffScope
+	 *            methods to instrument, <code>null</code> or an empty scope for
+	 *            all methods
+	 * @param checkProbes
+	 *            if <code>true</code> probes only write to the probe array if
+	 *            the slot is not set yet
+	 */
+	public ClassInstrumenter(final IProbeArrayStrategy probeArrayStrategy,
+			final ClassVisitor cv, final DiffScope diffScope,
+			final boolean checkProbes) {
+		this(probeArrayStrategy, cv, diffScope, checkProbes, false);
+	}
+
+	/**
+	 * Emits a instrumented version of this class to the given class visitor.
+	 * Only methods contained in the given diff scope receive probes, the code
+	 * of all other methods is emitted unchanged. The static initializer is
+	 * always instrumented as it might initialize the probe array.
+	 *
+	 * @param probeArrayStrategy
+	 *            this strategy will be used to access the probe array
+	 * @param cv
+	 *            next delegate in the visitor chain will receive the
+	 *            instrumented class
+	 * @param diffScope
+	 *            methods to instrument, <code>null</code> or an empty scope for
+	 *            all methods
+	 * @param checkProbes
+	 *            if <code>true</code> probes only write to the probe array if
+	 *            the slot is not set yet
+	 * @param methodCoverageOnly
+	 *            if <code>true</code> every instrumented method only gets a
+	 *            single probe at its entry
+	 */
+	public ClassInstrumenter(final IProbeArrayStrategy probeArrayStrategy,
+			final ClassVisitor cv, final DiffScope diffScope,
+			final boolean checkProbes, final boolean methodCoverageOnly) {
+		this(probeArrayStrategy, cv, diffScope, checkProbes, methodCoverageOnly,
+				false);
+	}
+
+	/**
+	 * Emits a instrumented version of this class to the given class visitor.
+	 * Only methods contained in the given diff scope receive probes, the code
+	 * of all other methods is emitted unchanged. The static initializer is
+	 * always instrumented as it might initialize the probe array.
+	 *
+	 * @param probeArrayStrategy
+	 *            this strategy will be used to access the probe array, for
+	 *            counting probes it has to provide an <code>int[]</code>
+	 * @param cv
+	 *            next delegate in the visitor chain will receive the
+	 *            instrumented class
+	 * @param diffScope
+	 *            methods to instrument, <code>null</code> or an empty scope for
+	 *            all methods
+	 * @param checkProbes
+	 *            if <code>true</code> probes only write to the probe array if
+	 *            the slot is not set yet
+	 * @param methodCoverageOnly
+	 *            if <code>true</code> every instrumented method only gets a
+	 *            single probe at its entry
+	 * @param countProbes
+	 *            if <code>true</code> probes increment a slot of an int array
+	 *            instead of setting a flag
+	 */
+	public ClassInstrumenter(final IProbeArrayStrategy probeArrayStrategy,
+			final ClassVisitor cv, final DiffScope diffScope,
+			final boolean checkProbes, final boolean methodCoverageOnly,
+			final boolean countProbes) {
 		super(cv);
+		this.checkProbes = checkProbes && !countProbes;
+		this.methodCoverageOnly = methodCoverageOnly;
+		this.countProbes = countProbes;
 		this.probeArrayStrategy = probeArrayStrategy;
+		this.diffScope = diffScope == null || diffScope.isEmpty() ? null
+				: diffScope;
 	}
 
 	@Override
@@ -47,6 +170,7 @@ public class ClassInstrumenter extends ClassProbesVisitor {
 			final String signature, final String superName,
 			final String[] interfaces) {
 		this.className = name;
+		this.frames = InstrSupport.needsFrames(version);
 		super.visit(version, access, name, signature, superName, interfaces);
 	}
 
@@ -68,13 +192,39 @@ public class ClassInstrumenter extends ClassProbesVisitor {
 				exceptions);
 
 		if (mv == null) {
-			return null;
+			// Probe ids of dropped methods still need to be counted:
+			return methodCoverageOnly ? nextMethodEntry(null, null) : null;
+		}
+		if (diffScope != null && !InstrSupport.CLINIT_NAME.equals(name)
+				&& !diffScope.containsMethod(className, name, desc)) {
+			return methodCoverageOnly ? nextMethodEntry(mv, null)
+					: new MethodPassThrough(mv);
 		}
 		final MethodVisitor frameEliminator = new DuplicateFrameEliminator(mv);
 		final ProbeInserter probeVariableInserter = new ProbeInserter(access,
-				name, desc, frameEliminator, probeArrayStrategy);
-		return new MethodInstrumenter(probeVariableInserter,
-				probeVariableInserter);
+				name, desc, frameEliminator, probeArrayStrategy, checkProbes,
+				countProbes);
+		MethodVisitor methodVisitor = probeVariableInserter;
+		if (checkProbes && frames) {
+			// Checked probes need the current frame for their branch target:
+			final AnalyzerAdapter analyzer = new AnalyzerAdapter(className,
+					access, name, desc, probeVariableInserter);
+			probeVariableInserter.setAnalyzer(analyzer);
+			methodVisitor = analyzer;
+		}
+		if (methodCoverageOnly) {
+			return nextMethodEntry(methodVisitor, probeVariableInserter);
+		}
+		return new MethodInstrumenter(methodVisitor, probeVariableInserter);
+	}
+
+	private MethodEntryInstrumenter nextMethodEntry(final MethodVisitor mv,
+			final IProbeInserter probeInserter) {
+		// The previous method has been completely emitted at this point:
+		final int probeId = lastMethod == null ? 0
+				: lastMethod.getNextProbeId();
+		lastMethod = new MethodEntryInstrumenter(mv, probeInserter, probeId);
+		return lastMethod;
 	}
 
 	@Override
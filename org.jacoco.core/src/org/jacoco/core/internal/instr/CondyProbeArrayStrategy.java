@@ -22,7 +22,7 @@ import org.objectweb.asm.Opcodes;
 /**
  * This strategy for Java 11+ class files uses {@link ConstantDynamic} to hold
  * the probe array and adds bootstrap method requesting the probe array from the
- * runtime.
+ * runtime. With counting probes the probe array is an <code>int[]</code>.
  */
 public class CondyProbeArrayStrategy implements IProbeArrayStrategy {
 
@@ -31,6 +31,11 @@ public class CondyProbeArrayStrategy implements IProbeArrayStrategy {
 	 */
 	public static final String B_DESC = "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)[Z";
 
+	/**
+	 * Descriptor of the bootstrap method for counting probes.
+	 */
+	public static final String B_COUNTS_DESC = "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)[I";
+
 	private final String className;
 
 	private final boolean isInterface;
@@ -39,33 +44,48 @@ public class CondyProbeArrayStrategy implements IProbeArrayStrategy {
 
 	private final IExecutionDataAccessorGenerator accessorGenerator;
 
+	private final boolean counts;
+
 	CondyProbeArrayStrategy(final String className, final boolean isInterface,
 			final long classId,
 			final IExecutionDataAccessorGenerator accessorGenerator) {
+		this(className, isInterface, classId, accessorGenerator, false);
+	}
+
+	CondyProbeArrayStrategy(final String className, final boolean isInterface,
+			final long classId,
+			final IExecutionDataAccessorGenerator accessorGenerator,
+			final boolean counts) {
 		this.className = className;
 		this.isInterface = isInterface;
 		this.classId = classId;
 		this.accessorGenerator = accessorGenerator;
+		this.counts = counts;
 	}
 
 	public int storeInstance(final MethodVisitor mv, final boolean clinit,
 			final int variable) {
 		final Handle bootstrapMethod = new Handle(Opcodes.H_INVOKESTATIC,
-				className, InstrSupport.INITMETHOD_NAME, B_DESC, isInterface);
+				className, InstrSupport.INITMETHOD_NAME,
+				counts ? B_COUNTS_DESC : B_DESC, isInterface);
 		// As a workaround for https://bugs.openjdk.java.net/browse/JDK-8216970
 		// constant should have type Object
 		mv.visitLdcInsn(new ConstantDynamic(InstrSupport.DATAFIELD_NAME,
 				"Ljava/lang/Object;", bootstrapMethod));
-		mv.visitTypeInsn(Opcodes.CHECKCAST, "[Z");
+		mv.visitTypeInsn(Opcodes.CHECKCAST, counts ? "[I" : "[Z");
 		mv.visitVarInsn(Opcodes.ASTORE, variable);
 		return 1;
 	}
 
 	public void addMembers(final ClassVisitor cv, final int probeCount) {
 		final MethodVisitor mv = cv.visitMethod(InstrSupport.INITMETHOD_ACC,
-				InstrSupport.INITMETHOD_NAME, B_DESC, null, null);
-		final int maxStack = accessorGenerator.generateDataAccessor(classId,
-				className, probeCount, mv);
+				InstrSupport.INITMETHOD_NAME, counts ? B_COUNTS_DESC : B_DESC,
+				null, null);
+		final int maxStack = counts
+				? accessorGenerator.generateCountsAccessor(classId, className,
+						probeCount, mv)
+				: accessorGenerator.generateDataAccessor(classId, className,
+						probeCount, mv);
 		mv.visitInsn(Opcodes.ARETURN);
 		mv.visitMaxs(maxStack, 3);
 		mv.visitEnd();
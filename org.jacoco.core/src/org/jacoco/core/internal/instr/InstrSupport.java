@@ -55,6 +55,17 @@ public final class InstrSupport {
 	public static final int DATAFIELD_ACC = Opcodes.ACC_SYNTHETIC
 			| Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_TRANSIENT;
 
+	/**
+	 * Access modifiers of the field that stores coverage information of a class
+	 * which assigns the field in its static initializer. As the field is final
+	 * the JIT compiler can treat the probe array as a constant. Like
+	 * {@link #DATAFIELD_ACC} the field is private and transient so the default
+	 * <code>serialVersionUID</code> of the class does not change.
+	 */
+	public static final int DATAFIELD_FINAL_ACC = Opcodes.ACC_SYNTHETIC
+			| Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL
+			| Opcodes.ACC_TRANSIENT;
+
 	/**
 	 * Access modifiers of the field that stores coverage information of a Java
 	 * 8 interface.
@@ -80,6 +91,12 @@ public final class InstrSupport {
 	 */
 	public static final String DATAFIELD_DESC = "[Z";
 
+	/**
+	 * Data type of the field that stores the execution counts for a class
+	 * instrumented with counting probes (<code>int[]</code>).
+	 */
+	public static final String COUNTSFIELD_DESC = "[I";
+
 	// === Init Method ===
 
 	/**
@@ -92,6 +109,12 @@ public final class InstrSupport {
 	 */
 	public static final String INITMETHOD_DESC = "()[Z";
 
+	/**
+	 * Descriptor of the initialization method for classes instrumented with
+	 * counting probes.
+	 */
+	public static final String COUNTS_INITMETHOD_DESC = "()[I";
+
 	/**
 	 * Access modifiers of the initialization method.
 	 */
@@ -21,16 +21,11 @@ import org.objectweb.asm.Opcodes;
 /**
  * This strategy for Java 8 interfaces adds a static method requesting the probe
  * array from the runtime, a static field to hold the probe array and adds code
- * for its initialization into interface initialization method.
+ * for its initialization into interface initialization method. With counting
+ * probes the probe array is an <code>int[]</code>.
  */
 class InterfaceFieldProbeArrayStrategy implements IProbeArrayStrategy {
 
-	/**
-	 * Frame stack with a single boolean array.
-	 */
-	private static final Object[] FRAME_STACK_ARRZ = new Object[] {
-			InstrSupport.DATAFIELD_DESC };
-
 	/**
 	 * Empty frame locals.
 	 */
@@ -40,23 +35,37 @@ class InterfaceFieldProbeArrayStrategy implements IProbeArrayStrategy {
 	private final long classId;
 	private final int probeCount;
 	private final IExecutionDataAccessorGenerator accessorGenerator;
+	private final boolean counts;
+	private final String dataFieldDesc;
+	private final String initMethodDesc;
 
 	private boolean seenClinit = false;
 
 	InterfaceFieldProbeArrayStrategy(final String className, final long classId,
 			final int probeCount,
 			final IExecutionDataAccessorGenerator accessorGenerator) {
+		this(className, classId, probeCount, accessorGenerator, false);
+	}
+
+	InterfaceFieldProbeArrayStrategy(final String className, final long classId,
+			final int probeCount,
+			final IExecutionDataAccessorGenerator accessorGenerator,
+			final boolean counts) {
 		this.className = className;
 		this.classId = classId;
 		this.probeCount = probeCount;
 		this.accessorGenerator = accessorGenerator;
+		this.counts = counts;
+		this.dataFieldDesc = counts ? InstrSupport.COUNTSFIELD_DESC
+				: InstrSupport.DATAFIELD_DESC;
+		this.initMethodDesc = counts ? InstrSupport.COUNTS_INITMETHOD_DESC
+				: InstrSupport.INITMETHOD_DESC;
 	}
 
 	public int storeInstance(final MethodVisitor mv, final boolean clinit,
 			final int variable) {
 		if (clinit) {
-			final int maxStack = accessorGenerator.generateDataAccessor(classId,
-					className, probeCount, mv);
+			final int maxStack = generateAccessor(mv);
 
 			// Stack[0]: [Z
 
@@ -66,7 +75,7 @@ class InterfaceFieldProbeArrayStrategy implements IProbeArrayStrategy {
 			// Stack[0]: [Z
 
 			mv.visitFieldInsn(Opcodes.PUTSTATIC, className,
-					InstrSupport.DATAFIELD_NAME, InstrSupport.DATAFIELD_DESC);
+					InstrSupport.DATAFIELD_NAME, dataFieldDesc);
 
 			// Stack[0]: [Z
 
@@ -76,8 +85,7 @@ class InterfaceFieldProbeArrayStrategy implements IProbeArrayStrategy {
 			return Math.max(maxStack, 2);
 		} else {
 			mv.visitMethodInsn(Opcodes.INVOKESTATIC, className,
-					InstrSupport.INITMETHOD_NAME, InstrSupport.INITMETHOD_DESC,
-					true);
+					InstrSupport.INITMETHOD_NAME, initMethodDesc, true);
 			mv.visitVarInsn(Opcodes.ASTORE, variable);
 			return 1;
 		}
@@ -93,19 +101,17 @@ class InterfaceFieldProbeArrayStrategy implements IProbeArrayStrategy {
 
 	private void createDataField(final ClassVisitor cv) {
 		cv.visitField(InstrSupport.DATAFIELD_INTF_ACC,
-				InstrSupport.DATAFIELD_NAME, InstrSupport.DATAFIELD_DESC, null,
-				null);
+				InstrSupport.DATAFIELD_NAME, dataFieldDesc, null, null);
 	}
 
 	private void createInitMethod(final ClassVisitor cv, final int probeCount) {
 		final MethodVisitor mv = cv.visitMethod(InstrSupport.INITMETHOD_ACC,
-				InstrSupport.INITMETHOD_NAME, InstrSupport.INITMETHOD_DESC,
-				null, null);
+				InstrSupport.INITMETHOD_NAME, initMethodDesc, null, null);
 		mv.visitCode();
 
 		// Load the value of the static data field:
 		mv.visitFieldInsn(Opcodes.GETSTATIC, className,
-				InstrSupport.DATAFIELD_NAME, InstrSupport.DATAFIELD_DESC);
+				InstrSupport.DATAFIELD_NAME, dataFieldDesc);
 		mv.visitInsn(Opcodes.DUP);
 
 		// Stack[1]: [Z
@@ -118,14 +124,13 @@ class InterfaceFieldProbeArrayStrategy implements IProbeArrayStrategy {
 		// Stack[0]: [Z
 
 		mv.visitInsn(Opcodes.POP);
-		final int size = accessorGenerator.generateDataAccessor(classId,
-				className, probeCount, mv);
+		final int size = generateAccessor(mv);
 
 		// Stack[0]: [Z
 
 		// Return the class' probe array:
 		mv.visitFrame(Opcodes.F_NEW, 0, FRAME_LOCALS_EMPTY, 1,
-				FRAME_STACK_ARRZ);
+				new Object[] { dataFieldDesc });
 		mv.visitLabel(alreadyInitialized);
 		mv.visitInsn(Opcodes.ARETURN);
 
@@ -139,13 +144,12 @@ class InterfaceFieldProbeArrayStrategy implements IProbeArrayStrategy {
 				InstrSupport.CLINIT_NAME, InstrSupport.CLINIT_DESC, null, null);
 		mv.visitCode();
 
-		final int maxStack = accessorGenerator.generateDataAccessor(classId,
-				className, probeCount, mv);
+		final int maxStack = generateAccessor(mv);
 
 		// Stack[0]: [Z
 
 		mv.visitFieldInsn(Opcodes.PUTSTATIC, className,
-				InstrSupport.DATAFIELD_NAME, InstrSupport.DATAFIELD_DESC);
+				InstrSupport.DATAFIELD_NAME, dataFieldDesc);
 
 		mv.visitInsn(Opcodes.RETURN);
 
@@ -153,4 +157,13 @@ class InterfaceFieldProbeArrayStrategy implements IProbeArrayStrategy {
 		mv.visitEnd();
 	}
 
+	private int generateAccessor(final MethodVisitor mv) {
+		if (counts) {
+			return accessorGenerator.generateCountsAccessor(classId, className,
+					probeCount, mv);
+		}
+		return accessorGenerator.generateDataAccessor(classId, className,
+				probeCount, mv);
+	}
+
 }
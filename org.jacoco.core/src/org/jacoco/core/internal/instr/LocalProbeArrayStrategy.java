@@ -29,20 +29,32 @@ class LocalProbeArrayStrategy implements IProbeArrayStrategy {
 	private final long classId;
 	private final int probeCount;
 	private final IExecutionDataAccessorGenerator accessorGenerator;
+	private final boolean counts;
 
 	LocalProbeArrayStrategy(final String className, final long classId,
 			final int probeCount,
 			final IExecutionDataAccessorGenerator accessorGenerator) {
+		this(className, classId, probeCount, accessorGenerator, false);
+	}
+
+	LocalProbeArrayStrategy(final String className, final long classId,
+			final int probeCount,
+			final IExecutionDataAccessorGenerator accessorGenerator,
+			final boolean counts) {
 		this.className = className;
 		this.classId = classId;
 		this.probeCount = probeCount;
 		this.accessorGenerator = accessorGenerator;
+		this.counts = counts;
 	}
 
 	public int storeInstance(final MethodVisitor mv, final boolean clinit,
 			final int variable) {
-		final int maxStack = accessorGenerator.generateDataAccessor(classId,
-				className, probeCount, mv);
+		final int maxStack = counts
+				? accessorGenerator.generateCountsAccessor(classId, className,
+						probeCount, mv)
+				: accessorGenerator.generateDataAccessor(classId, className,
+						probeCount, mv);
 		mv.visitVarInsn(Opcodes.ASTORE, variable);
 		return maxStack;
 	}
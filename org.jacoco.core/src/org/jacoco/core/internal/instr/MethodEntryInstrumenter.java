@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.instr;
+
+import org.jacoco.core.internal.flow.IFrame;
+import org.jacoco.core.internal.flow.LabelInfo;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+
+/**
+ * This method adapter inserts a single probe at the beginning of the method and
+ * emits the original code otherwise. The inserted probe is the first probe of
+ * the method. All other probe ids are still consumed, therefore the probe array
+ * layout of the class is the same as if the method was fully instrumented.
+ * Probe ids are assigned in sequence over all methods of a class, the adapter
+ * therefore tracks the first probe id of the next method.
+ */
+class MethodEntryInstrumenter extends MethodPassThrough {
+
+	private final IProbeInserter probeInserter;
+
+	private final int probeId;
+
+	private int nextProbeId;
+
+	/**
+	 * Create a new instrumenter for the given method visitor.
+	 *
+	 * @param mv
+	 *            next method visitor in the chain, may be <code>null</code>
+	 * @param probeInserter
+	 *            call-back to insert the probe or <code>null</code> if the
+	 *            method should not be instrumented
+	 * @param probeId
+	 *            first probe id of this method
+	 */
+	MethodEntryInstrumenter(final MethodVisitor mv,
+			final IProbeInserter probeInserter, final int probeId) {
+		super(mv);
+		this.probeInserter = probeInserter;
+		this.probeId = probeId;
+		this.nextProbeId = probeId;
+	}
+
+	/**
+	 * Returns the first probe id of the method following this method.
+	 *
+	 * @return first probe id of the next method
+	 */
+	int getNextProbeId() {
+		return nextProbeId;
+	}
+
+	private void consume(final int id) {
+		if (id >= nextProbeId) {
+			nextProbeId = id + 1;
+		}
+	}
+
+	private void consume(final Label dflt, final Label[] labels) {
+		consume(LabelInfo.getProbeId(dflt));
+		for (final Label l : labels) {
+			consume(LabelInfo.getProbeId(l));
+		}
+	}
+
+	@Override
+	public void visitCode() {
+		super.visitCode();
+		if (probeInserter != null) {
+			probeInserter.insertProbe(probeId);
+		}
+	}
+
+	// === IMethodProbesVisitor ===
+
+	@Override
+	public void visitProbe(final int probeId) {
+		consume(probeId);
+	}
+
+	@Override
+	public void visitInsnWithProbe(final int opcode, final int probeId) {
+		consume(probeId);
+		super.visitInsnWithProbe(opcode, probeId);
+	}
+
+	@Override
+	public void visitJumpInsnWithProbe(final int opcode, final Label label,
+			final int probeId, final IFrame frame) {
+		consume(probeId);
+		super.visitJumpInsnWithProbe(opcode, label, probeId, frame);
+	}
+
+	@Override
+	public void visitTableSwitchInsnWithProbes(final int min, final int max,
+			final Label dflt, final Label[] labels, final IFrame frame) {
+		consume(dflt, labels);
+		super.visitTableSwitchInsnWithProbes(min, max, dflt, labels, frame);
+	}
+
+	@Override
+	public void visitLookupSwitchInsnWithProbes(final Label dflt,
+			final int[] keys, final Label[] labels, final IFrame frame) {
+		consume(dflt, labels);
+		super.visitLookupSwitchInsnWithProbes(dflt, keys, labels, frame);
+	}
+
+}
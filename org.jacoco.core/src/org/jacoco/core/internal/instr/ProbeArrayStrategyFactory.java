@@ -15,6 +15,8 @@ package org.jacoco.core.internal.instr;
 import org.jacoco.core.internal.flow.ClassProbesAdapter;
 import org.jacoco.core.runtime.IExecutionDataAccessorGenerator;
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 
 /**
@@ -42,6 +44,29 @@ public final class ProbeArrayStrategyFactory {
 	public static IProbeArrayStrategy createFor(final long classId,
 			final ClassReader reader,
 			final IExecutionDataAccessorGenerator accessorGenerator) {
+		return createFor(classId, reader, accessorGenerator, false);
+	}
+
+	/**
+	 * Creates a suitable strategy instance for the class described by the given
+	 * reader. Created instance must be used only to process a class or
+	 * interface for which it has been created and must be used only once.
+	 *
+	 * @param classId
+	 *            class identifier
+	 * @param reader
+	 *            reader to get information about the class
+	 * @param accessorGenerator
+	 *            accessor to the coverage runtime
+	 * @param counts
+	 *            if <code>true</code> the strategy provides an
+	 *            <code>int[]</code> for counting probes
+	 * @return strategy instance
+	 */
+	public static IProbeArrayStrategy createFor(final long classId,
+			final ClassReader reader,
+			final IExecutionDataAccessorGenerator accessorGenerator,
+			final boolean counts) {
 
 		final String className = reader.getClassName();
 		final int version = InstrSupport.getMajorVersion(reader);
@@ -53,22 +78,28 @@ public final class ProbeArrayStrategyFactory {
 			}
 			if (version >= Opcodes.V11 && counter.hasMethods()) {
 				return new CondyProbeArrayStrategy(className, true, classId,
-						accessorGenerator);
+						accessorGenerator, counts);
 			}
 			if (version >= Opcodes.V1_8 && counter.hasMethods()) {
 				return new InterfaceFieldProbeArrayStrategy(className, classId,
-						counter.getCount(), accessorGenerator);
+						counter.getCount(), accessorGenerator, counts);
 			} else {
 				return new LocalProbeArrayStrategy(className, classId,
-						counter.getCount(), accessorGenerator);
+						counter.getCount(), accessorGenerator, counts);
 			}
 		} else {
 			if (version >= Opcodes.V11) {
 				return new CondyProbeArrayStrategy(className, false, classId,
-						accessorGenerator);
+						accessorGenerator, counts);
+			}
+			if (hasClassInitializer(reader)) {
+				return new ClassFinalFieldProbeArrayStrategy(className, classId,
+						InstrSupport.needsFrames(version), accessorGenerator,
+						counts);
 			}
 			return new ClassFieldProbeArrayStrategy(className, classId,
-					InstrSupport.needsFrames(version), accessorGenerator);
+					InstrSupport.needsFrames(version), accessorGenerator,
+					counts);
 		}
 	}
 
@@ -77,10 +108,42 @@ public final class ProbeArrayStrategyFactory {
 				& (Opcodes.ACC_INTERFACE | Opcodes.ACC_MODULE)) != 0;
 	}
 
+	/**
+	 * Only classes which already declare a static initializer get a final probe
+	 * array field, as adding a static initializer would change the default
+	 * <code>serialVersionUID</code> of the class.
+	 */
+	private static boolean hasClassInitializer(final ClassReader reader) {
+		final ClassInitializerFinder finder = new ClassInitializerFinder();
+		reader.accept(finder, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG
+				| ClassReader.SKIP_FRAMES);
+		return finder.found;
+	}
+
 	private static ProbeCounter getProbeCounter(final ClassReader reader) {
 		final ProbeCounter counter = new ProbeCounter();
 		reader.accept(new ClassProbesAdapter(counter, false), 0);
 		return counter;
 	}
 
+	private static class ClassInitializerFinder extends ClassVisitor {
+
+		private boolean found = false;
+
+		ClassInitializerFinder() {
+			super(InstrSupport.ASM_API_VERSION);
+		}
+
+		@Override
+		public MethodVisitor visitMethod(final int access, final String name,
+				final String desc, final String signature,
+				final String[] exceptions) {
+			if (InstrSupport.CLINIT_NAME.equals(name)) {
+				found = true;
+			}
+			return null;
+		}
+
+	}
+
 }
@@ -12,18 +12,29 @@
  *******************************************************************************/
 package org.jacoco.core.internal.instr;
 
+import org.jacoco.core.internal.flow.FrameSnapshot;
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.TypePath;
+import org.objectweb.asm.commons.AnalyzerAdapter;
 
 /**
  * Internal utility to add probes into the control flow of a method. The code
  * for a probe simply sets a certain slot of a boolean array to true. In
  * addition the probe array has to be retrieved at the beginning of the method
  * and stored in a local variable.
+ *
+ * Optionally probes first check whether the slot has already been set and only
+ * write to the array otherwise. Hot code executed concurrently by many threads
+ * then only reads the probe array and does not invalidate the cache lines of
+ * the array on other cores over and over again.
+ *
+ * Counting probes instead increment a certain slot of an int array. The
+ * increment is not synchronized, so concurrent executions of the same probe may
+ * get lost.
  */
 class ProbeInserter extends MethodVisitor implements IProbeInserter {
 
@@ -38,6 +49,15 @@ class ProbeInserter extends MethodVisitor implements IProbeInserter {
 	/** Position of the inserted variable. */
 	private final int variable;
 
+	/** Whether probes only write to the array if the slot is not set yet. */
+	private final boolean checkProbes;
+
+	/** Whether probes increment a slot of an int array. */
+	private final boolean countProbes;
+
+	/** Provides the frames after checked probes if required. */
+	private AnalyzerAdapter analyzer;
+
 	/** Maximum stack usage of the code to access the probe array. */
 	private int accessorStackSize;
 
@@ -58,8 +78,61 @@ class ProbeInserter extends MethodVisitor implements IProbeInserter {
 	 */
 	ProbeInserter(final int access, final String name, final String desc,
 			final MethodVisitor mv, final IProbeArrayStrategy arrayStrategy) {
+		this(access, name, desc, mv, arrayStrategy, false);
+	}
+
+	/**
+	 * Creates a new {@link ProbeInserter}.
+	 *
+	 * @param access
+	 *            access flags of the adapted method
+	 * @param name
+	 *            the method's name
+	 * @param desc
+	 *            the method's descriptor
+	 * @param mv
+	 *            the method visitor to which this adapter delegates calls
+	 * @param arrayStrategy
+	 *            callback to create the code that retrieves the reference to
+	 *            the probe array
+	 * @param checkProbes
+	 *            if <code>true</code> probes only write to the array if the
+	 *            slot is not set yet
+	 */
+	ProbeInserter(final int access, final String name, final String desc,
+			final MethodVisitor mv, final IProbeArrayStrategy arrayStrategy,
+			final boolean checkProbes) {
+		this(access, name, desc, mv, arrayStrategy, checkProbes, false);
+	}
+
+	/**
+	 * Creates a new {@link ProbeInserter}.
+	 *
+	 * @param access
+	 *            access flags of the adapted method
+	 * @param name
+	 *            the method's name
+	 * @param desc
+	 *            the method's descriptor
+	 * @param mv
+	 *            the method visitor to which this adapter delegates calls
+	 * @param arrayStrategy
+	 *            callback to create the code that retrieves the reference to
+	 *            the probe array
+	 * @param checkProbes
+	 *            if <code>true</code> probes only write to the array if the
+	 *            slot is not set yet
+	 * @param countProbes
+	 *            if <code>true</code> probes increment a slot of an int array,
+	 *            which takes precedence over <code>checkProbes</code>
+	 */
+	ProbeInserter(final int access, final String name, final String desc,
+			final MethodVisitor mv, final IProbeArrayStrategy arrayStrategy,
+			final boolean checkProbes, final boolean countProbes) {
 		super(InstrSupport.ASM_API_VERSION, mv);
 		this.clinit = InstrSupport.CLINIT_NAME.equals(name);
+		this.checkProbes = checkProbes && !countProbes;
+		this.countProbes = countProbes;
 		this.arrayStrategy = arrayStrategy;
 		int pos = (Opcodes.ACC_STATIC & access) == 0 ? 1 : 0;
 		for (final Type t : Type.getArgumentTypes(desc)) {
@@ -68,7 +141,51 @@ class ProbeInserter extends MethodVisitor implements IProbeInserter {
 		variable = pos;
 	}
 
+	/**
+	 * Sets the analyzer which tracks the frames of the method. The analyzer
+	 * must receive all events before this inserter. It is required for checked
+	 * probes in class files which need stackmap frames, as every checked probe
+	 * introduces a branch target.
+	 *
+	 * @param analyzer
+	 *            analyzer providing the current frame
+	 */
+	void setAnalyzer(final AnalyzerAdapter analyzer) {
+		this.analyzer = analyzer;
+	}
+
 	public void insertProbe(final int id) {
+		if (countProbes) {
+			insertIncrement(id);
+		} else if (checkProbes
+				&& (analyzer == null || analyzer.locals != null)) {
+			insertCheckedProbe(id);
+		} else {
+			insertStore(id);
+		}
+	}
+
+	private void insertCheckedProbe(final int id) {
+
+		// Only if the corresponding position in the boolean[] array is not
+		// set yet we set it to true.
+
+		final Label done = new Label();
+		mv.visitVarInsn(Opcodes.ALOAD, variable);
+		InstrSupport.push(mv, id);
+		mv.visitInsn(Opcodes.BALOAD);
+		mv.visitJumpInsn(Opcodes.IFNE, done);
+		insertStore(id);
+		mv.visitLabel(done);
+		if (analyzer != null) {
+			// The probe does not change the frame. A NOP separates this frame
+			// from a frame of the original code at the same offset:
+			FrameSnapshot.create(analyzer, 0).accept(this);
+			mv.visitInsn(Opcodes.NOP);
+		}
+	}
+
+	private void insertStore(final int id) {
 
 		// For a probe we set the corresponding position in the boolean[] array
 		// to true.
@@ -91,6 +208,30 @@ class ProbeInserter extends MethodVisitor implements IProbeInserter {
 		mv.visitInsn(Opcodes.BASTORE);
 	}
 
+	private void insertIncrement(final int id) {
+
+		// For a counting probe we increment the corresponding position in the
+		// int[] array.
+
+		mv.visitVarInsn(Opcodes.ALOAD, variable);
+		InstrSupport.push(mv, id);
+
+		// Stack[1]: I
+		// Stack[0]: [I
+
+		mv.visitInsn(Opcodes.DUP2);
+		mv.visitInsn(Opcodes.IALOAD);
+		mv.visitInsn(Opcodes.ICONST_1);
+
+		// Stack[3]: I
+		// Stack[2]: I
+		// Stack[1]: I
+		// Stack[0]: [I
+
+		mv.visitInsn(Opcodes.IADD);
+		mv.visitInsn(Opcodes.IASTORE);
+	}
+
 	@Override
 	public void visitCode() {
 		accessorStackSize = arrayStrategy.storeInstance(mv, clinit, variable);
@@ -128,11 +269,14 @@ class ProbeInserter extends MethodVisitor implements IProbeInserter {
 
 	@Override
 	public void visitMaxs(final int maxStack, final int maxLocals) {
-		// Max stack size of the probe code is 3 which can add to the
-		// original stack size depending on the probe locations. The accessor
-		// stack size is an absolute maximum, as the accessor code is inserted
-		// at the very beginning of each method when the stack size is empty.
-		final int increasedStack = Math.max(maxStack + 3, accessorStackSize);
+		// Max stack size of the probe code is 3 (4 for counting probes) which
+		// can add to the original stack size depending on the probe locations.
+		// The accessor stack size is an absolute maximum, as the accessor code
+		// is inserted at the very beginning of each method when the stack size
+		// is empty.
+		final int probeStack = countProbes ? 4 : 3;
+		final int increasedStack = Math.max(maxStack + probeStack,
+				accessorStackSize);
 		mv.visitMaxs(increasedStack, maxLocals + 1);
 	}
 
@@ -159,7 +303,8 @@ class ProbeInserter extends MethodVisitor implements IProbeInserter {
 		int pos = 0; // Current variable position
 		while (idx < nLocal || pos <= variable) {
 			if (pos == variable) {
-				newLocal[newIdx++] = InstrSupport.DATAFIELD_DESC;
+				newLocal[newIdx++] = countProbes ? InstrSupport.COUNTSFIELD_DESC
+						: InstrSupport.DATAFIELD_DESC;
 				pos++;
 			} else {
 				if (idx < nLocal) {
@@ -189,10 +189,102 @@ public final class AgentOptions {
 	 */
 	public static final String JMX = "jmx";
 
+	/**
+	 * Specifies a JSON file with a code diff. If set only classes and methods
+	 * contained in the diff are instrumented. The location is specified as a
+	 * relative path to the working directory. Default is <code>null</code> (all
+	 * classes are instrumented).
+	 */
+	public static final String DIFFCODEFILE = "diffcodefile";
+
+	/**
+	 * Specifies the interval in seconds in which the agent periodically dumps
+	 * coverage data to its output while the VM is running. To avoid that many
+	 * agents write at the same time the actual intervals are randomly varied by
+	 * up to 10%. Default is <code>0</code> (no periodic dumps).
+	 */
+	public static final String DUMPINTERVAL = "dumpinterval";
+
+	/**
+	 * Specifies whether the agent writes dumps in <code>file</code> output mode
+	 * from a background thread. Dumps then return before the data is written
+	 * and write failures are only reported with the next dump. Default is
+	 * <code>false</code>.
+	 */
+	public static final String ASYNCWRITE = "asyncwrite";
+
+	/**
+	 * Specifies whether the agent may write execution data of classes with few
+	 * executed probes as sparse blocks, which only contain the indices of the
+	 * executed probes. Such execution data can't be read by JaCoCo versions
+	 * before 0.8.7. With {@link #COUNTPROBES} such blocks are always allowed.
+	 * Default is <code>false</code>.
+	 */
+	public static final String SPARSEBLOCKS = "sparseblocks";
+
+	/**
+	 * Specifies whether probes check the probe array before they write to it.
+	 * This reduces memory contention when hot code is executed by many threads
+	 * concurrently. Default is <code>false</code>.
+	 */
+	public static final String CHECKPROBES = "checkprobes";
+
+	/**
+	 * Specifies whether probes count how often they have been executed. The
+	 * counters are incremented without synchronization, so concurrent
+	 * executions of the same probe may get lost. Counting takes precedence over
+	 * {@link #CHECKPROBES}. Can't be combined with {@link #RESTOREINTERVAL} as
+	 * restored classes stop counting. Default is <code>false</code>.
+	 */
+	public static final String COUNTPROBES = "countprobes";
+
+	/**
+	 * Specifies the interval in seconds in which the agent retransforms classes
+	 * whose probes have all been executed back to their original code. Such
+	 * classes do not record executions anymore until the coverage data is
+	 * reset. Then they are instrumented again with the next interval,
+	 * executions in between are not recorded. Can't be combined with
+	 * {@link #COUNTPROBES}. Requires Java 6 or later. Default is <code>0</code>
+	 * (classes are never restored).
+	 */
+	public static final String RESTOREINTERVAL = "restoreinterval";
+
+	/**
+	 * Specifies the granularity of the instrumentation. Default is
+	 * {@link Granularity#full}.
+	 *
+	 * @see Granularity#full
+	 * @see Granularity#method
+	 */
+	public static final String GRANULARITY = "granularity";
+
+	/**
+	 * Possible values for {@link AgentOptions#GRANULARITY}.
+	 */
+	public static enum Granularity {
+
+		/**
+		 * Value for the {@link AgentOptions#GRANULARITY} parameter: Probes are
+		 * inserted at every branch and exit of a method, which allows
+		 * instruction, line, branch and method coverage analysis.
+		 */
+		full,
+
+		/**
+		 * Value for the {@link AgentOptions#GRANULARITY} parameter: Every
+		 * method gets a single probe at its entry. Only method coverage is
+		 * meaningful for such execution data.
+		 */
+		method
+
+	}
+
 	private static final Collection<String> VALID_OPTIONS = Arrays.asList(
 			DESTFILE, APPEND, INCLUDES, EXCLUDES, EXCLCLASSLOADER,
 			INCLBOOTSTRAPCLASSES, INCLNOLOCATIONCLASSES, SESSIONID, DUMPONEXIT,
-			OUTPUT, ADDRESS, PORT, CLASSDUMPDIR, JMX);
+			OUTPUT, ADDRESS, PORT, CLASSDUMPDIR, JMX, DIFFCODEFILE,
+			DUMPINTERVAL, ASYNCWRITE, SPARSEBLOCKS, CHECKPROBES, COUNTPROBES,
+			RESTOREINTERVAL, GRANULARITY);
 
 	private final Map<String, String> options;
 
@@ -250,7 +342,15 @@ public final class AgentOptions {
 
 	private void validateAll() {
 		validatePort(getPort());
+		validateInterval(DUMPINTERVAL, getDumpInterval());
+		validateInterval(RESTOREINTERVAL, getRestoreInterval());
+		if (getCountProbes() && getRestoreInterval() > 0) {
+			throw new IllegalArgumentException(
+					format("Agent option \"%s\" can't be combined with \"%s\".",
+							COUNTPROBES, RESTOREINTERVAL));
+		}
 		getOutput();
+		getGranularity();
 	}
 
 	private void validatePort(final int port) {
@@ -259,6 +359,12 @@ public final class AgentOptions {
 		}
 	}
 
+	private void validateInterval(final String key, final int interval) {
+		if (interval < 0) {
+			throw new IllegalArgumentException(key + " must not be negative");
+		}
+	}
+
 	/**
 	 * Returns the output file location.
 	 *
@@ -557,6 +663,190 @@ public final class AgentOptions {
 		setOption(JMX, jmx);
 	}
 
+	/**
+	 * Returns the location of the code diff which limits instrumentation.
+	 *
+	 * @return location of the diff file or <code>null</code> (all classes are
+	 *         instrumented)
+	 */
+	public String getDiffCodeFile() {
+		return getOption(DIFFCODEFILE, null);
+	}
+
+	/**
+	 * Sets the location of the code diff which limits instrumentation.
+	 *
+	 * @param location
+	 *            location of the diff file or <code>null</code> (all classes
+	 *            are instrumented)
+	 */
+	public void setDiffCodeFile(final String location) {
+		setOption(DIFFCODEFILE, location);
+	}
+
+	/**
+	 * Returns the interval in seconds in which coverage data is periodically
+	 * dumped.
+	 *
+	 * @return dump interval in seconds or <code>0</code> (no periodic dumps)
+	 */
+	public int getDumpInterval() {
+		return getOption(DUMPINTERVAL, 0);
+	}
+
+	/**
+	 * Sets the interval in seconds in which coverage data is periodically
+	 * dumped.
+	 *
+	 * @param interval
+	 *            dump interval in seconds or <code>0</code> (no periodic dumps)
+	 */
+	public void setDumpInterval(final int interval) {
+		validateInterval(DUMPINTERVAL, interval);
+		setOption(DUMPINTERVAL, interval);
+	}
+
+	/**
+	 * Returns whether dumps to a file are written from a background thread.
+	 *
+	 * @return <code>true</code> if dumps are written asynchronously
+	 */
+	public boolean getAsyncWrite() {
+		return getOption(ASYNCWRITE, false);
+	}
+
+	/**
+	 * Sets whether dumps to a file are written from a background thread.
+	 *
+	 * @param asyncWrite
+	 *            <code>true</code> if dumps should be written asynchronously
+	 */
+	public void setAsyncWrite(final boolean asyncWrite) {
+		setOption(ASYNCWRITE, asyncWrite);
+	}
+
+	/**
+	 * Returns whether execution data may be written as sparse blocks.
+	 *
+	 * @return <code>true</code> if sparse blocks may be written
+	 */
+	public boolean getSparseBlocks() {
+		return getOption(SPARSEBLOCKS, false);
+	}
+
+	/**
+	 * Sets whether execution data may be written as sparse blocks.
+	 *
+	 * @param sparseBlocks
+	 *            <code>true</code> if sparse blocks may be written
+	 */
+	public void setSparseBlocks(final boolean sparseBlocks) {
+		setOption(SPARSEBLOCKS, sparseBlocks);
+	}
+
+	/**
+	 * Returns whether execution data may be written with block types which
+	 * can't be read by JaCoCo versions before 0.8.7. This is the case for
+	 * {@link #SPARSEBLOCKS} and {@link #COUNTPROBES}.
+	 *
+	 * @return <code>true</code> if extended blocks may be written
+	 */
+	public boolean getExtendedBlocks() {
+		return getSparseBlocks() || getCountProbes();
+	}
+
+	/**
+	 * Returns whether probes check the probe array before they write to it.
+	 *
+	 * @return <code>true</code> if probes check the probe array first
+	 */
+	public boolean getCheckProbes() {
+		return getOption(CHECKPROBES, false);
+	}
+
+	/**
+	 * Sets whether probes check the probe array before they write to it.
+	 *
+	 * @param checkProbes
+	 *            <code>true</code> if probes should check the probe array first
+	 */
+	public void setCheckProbes(final boolean checkProbes) {
+		setOption(CHECKPROBES, checkProbes);
+	}
+
+	/**
+	 * Returns whether probes count how often they have been executed.
+	 *
+	 * @return <code>true</code> if probes count executions
+	 */
+	public boolean getCountProbes() {
+		return getOption(COUNTPROBES, false);
+	}
+
+	/**
+	 * Sets whether probes count how often they have been executed.
+	 *
+	 * @param countProbes
+	 *            <code>true</code> if probes should count executions
+	 */
+	public void setCountProbes(final boolean countProbes) {
+		setOption(COUNTPROBES, countProbes);
+	}
+
+	/**
+	 * Returns the interval in seconds in which fully covered classes are
+	 * restored to their original code.
+	 *
+	 * @return restore interval in seconds or <code>0</code> (classes are never
+	 *         restored)
+	 */
+	public int getRestoreInterval() {
+		return getOption(RESTOREINTERVAL, 0);
+	}
+
+	/**
+	 * Sets the interval in seconds in which fully covered classes are restored
+	 * to their original code.
+	 *
+	 * @param interval
+	 *            restore interval in seconds or <code>0</code> (classes are
+	 *            never restored)
+	 */
+	public void setRestoreInterval(final int interval) {
+		validateInterval(RESTOREINTERVAL, interval);
+		setOption(RESTOREINTERVAL, interval);
+	}
+
+	/**
+	 * Returns the granularity of the instrumentation.
+	 *
+	 * @return current granularity
+	 */
+	public Granularity getGranularity() {
+		final String value = options.get(GRANULARITY);
+		return value == null ? Granularity.full : Granularity.valueOf(value);
+	}
+
+	/**
+	 * Sets the granularity of the instrumentation.
+	 *
+	 * @param granularity
+	 *            granularity
+	 */
+	public void setGranularity(final String granularity) {
+		setGranularity(Granularity.valueOf(granularity));
+	}
+
+	/**
+	 * Sets the granularity of the instrumentation.
+	 *
+	 * @param granularity
+	 *            granularity
+	 */
+	public void setGranularity(final Granularity granularity) {
+		setOption(GRANULARITY, granularity.name());
+	}
+
 	private void setOption(final String key, final int value) {
 		setOption(key, Integer.toString(value));
 	}
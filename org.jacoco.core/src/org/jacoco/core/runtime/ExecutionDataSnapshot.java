@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.runtime;
+
+import java.util.List;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.SessionInfo;
+
+/**
+ * Copy of the execution data of a {@link RuntimeData} instance at a certain
+ * point in time. The snapshot is not affected by probes executed or resets
+ * performed after it has been taken and can be written without blocking the
+ * runtime.
+ *
+ * @see RuntimeData#snapshot(boolean)
+ */
+public final class ExecutionDataSnapshot {
+
+	private final SessionInfo sessionInfo;
+
+	private final List<ExecutionData> executionData;
+
+	ExecutionDataSnapshot(final SessionInfo sessionInfo,
+			final List<ExecutionData> executionData) {
+		this.sessionInfo = sessionInfo;
+		this.executionData = executionData;
+	}
+
+	/**
+	 * Returns the session information of this snapshot.
+	 *
+	 * @return session information
+	 */
+	public SessionInfo getSessionInfo() {
+		return sessionInfo;
+	}
+
+	/**
+	 * Writes the session information and all execution data of this snapshot to
+	 * the given visitors.
+	 *
+	 * @param executionDataVisitor
+	 *            handler to write coverage data to
+	 * @param sessionInfoVisitor
+	 *            handler to write session information to
+	 */
+	public void accept(final IExecutionDataVisitor executionDataVisitor,
+			final ISessionInfoVisitor sessionInfoVisitor) {
+		sessionInfoVisitor.visitSessionInfo(sessionInfo);
+		for (final ExecutionData data : executionData) {
+			executionDataVisitor.visitClassExecution(data);
+		}
+	}
+
+}
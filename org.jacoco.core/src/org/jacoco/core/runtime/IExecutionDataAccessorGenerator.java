@@ -16,10 +16,10 @@ import org.objectweb.asm.MethodVisitor;
 
 /**
  * The instrumented classes need a piece of code that obtains a
- * <code>boolean[]</code> instance from the runtime. The mechanism is runtime
- * specific and therefore abstracted by this interface. Implementations are
- * provided by {@link IRuntime} implementations and are used by the
- * instrumentation process.
+ * <code>boolean[]</code> instance (or an <code>int[]</code> instance for
+ * counting probes) from the runtime. The mechanism is runtime specific and
+ * therefore abstracted by this interface. Implementations are provided by
+ * {@link IRuntime} implementations and are used by the instrumentation process.
  */
 public interface IExecutionDataAccessorGenerator {
 
@@ -49,4 +49,26 @@ public interface IExecutionDataAccessorGenerator {
 	int generateDataAccessor(long classid, String classname, int probecount,
 			MethodVisitor mv);
 
+	/**
+	 * This method generates the byte code required to obtain the execution
+	 * counts for the class with the given id. It is used instead of
+	 * {@link #generateDataAccessor(long, String, int, MethodVisitor)} for
+	 * classes instrumented with counting probes and has the same requirements,
+	 * except that the generated code must push an <code>int[]</code> instance
+	 * to the operand stack.
+	 *
+	 * @param classid
+	 *            identifier of the class
+	 * @param classname
+	 *            VM class name
+	 * @param probecount
+	 *            probe count for this class
+	 * @param mv
+	 *            code output
+	 * @return additional stack size required by the implementation, including
+	 *         the instance pushed to the stack
+	 */
+	int generateCountsAccessor(long classid, String classname, int probecount,
+			MethodVisitor mv);
+
 }
@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.runtime;
+
+import java.io.IOException;
+
+/**
+ * Extension of {@link IRemoteCommandVisitor} for coverage runtimes which
+ * support delta dumps. A {@link RemoteControlReader} only forwards delta dump
+ * commands to visitors implementing this interface.
+ */
+public interface IRemoteDeltaCommandVisitor extends IRemoteCommandVisitor {
+
+	/**
+	 * Requests a delta dump which only contains execution data of classes with
+	 * probes executed since the given acknowledged delta dump. The receiver is
+	 * expected to merge the data of all delta dumps. The id of the new delta
+	 * dump is sent back with the response.
+	 *
+	 * @param acknowledged
+	 *            id of the last delta dump received successfully or
+	 *            <code>0</code> to request all execution data
+	 * @param reset
+	 *            <code>true</code> if the reset should be executed
+	 * @throws IOException
+	 *             in case of problems with the remote connection
+	 */
+	void visitDeltaDumpCommand(long acknowledged, boolean reset)
+			throws IOException;
+
+}
@@ -73,11 +73,23 @@ public class ModifiedSystemClassRuntime extends AbstractRuntime {
 
 	public int generateDataAccessor(final long classid, final String classname,
 			final int probecount, final MethodVisitor mv) {
+		return generateAccessor(classid, classname, probecount, false, mv);
+	}
+
+	public int generateCountsAccessor(final long classid,
+			final String classname, final int probecount,
+			final MethodVisitor mv) {
+		return generateAccessor(classid, classname, probecount, true, mv);
+	}
 
+	private int generateAccessor(final long classid, final String classname,
+			final int probecount, final boolean counts,
+			final MethodVisitor mv) {
 		mv.visitFieldInsn(Opcodes.GETSTATIC, systemClassName, accessFieldName,
 				ACCESS_FIELD_TYPE);
 
-		RuntimeData.generateAccessCall(classid, classname, probecount, mv);
+		RuntimeData.generateAccessCall(classid, classname, probecount, counts,
+				mv);
 
 		return 6;
 	}
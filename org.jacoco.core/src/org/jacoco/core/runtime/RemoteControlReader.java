@@ -24,6 +24,8 @@ public class RemoteControlReader extends ExecutionDataReader {
 
 	private IRemoteCommandVisitor remoteCommandVisitor;
 
+	private long deltaDumpId;
+
 	/**
 	 * Create a new read based on the given input stream.
 	 *
@@ -42,6 +44,12 @@ public class RemoteControlReader extends ExecutionDataReader {
 		case RemoteControlWriter.BLOCK_CMDDUMP:
 			readDumpCommand();
 			return true;
+		case RemoteControlWriter.BLOCK_CMDDELTADUMP:
+			readDeltaDumpCommand();
+			return true;
+		case RemoteControlWriter.BLOCK_DELTADUMPID:
+			deltaDumpId = in.readLong();
+			return true;
 		case RemoteControlWriter.BLOCK_CMDOK:
 			return false;
 		default:
@@ -50,7 +58,8 @@ public class RemoteControlReader extends ExecutionDataReader {
 	}
 
 	/**
-	 * Sets an listener for agent commands.
+	 * Sets an listener for agent commands. Delta dump commands are only
+	 * supported if the listener implements {@link IRemoteDeltaCommandVisitor}.
 	 *
 	 * @param visitor
 	 *            visitor to retrieve agent commands
@@ -59,6 +68,16 @@ public class RemoteControlReader extends ExecutionDataReader {
 		this.remoteCommandVisitor = visitor;
 	}
 
+	/**
+	 * Returns the id of the last delta dump received with this reader.
+	 *
+	 * @return id of the last delta dump or <code>0</code> if no delta dump has
+	 *         been received
+	 */
+	public long getDeltaDumpId() {
+		return deltaDumpId;
+	}
+
 	private void readDumpCommand() throws IOException {
 		if (remoteCommandVisitor == null) {
 			throw new IOException("No remote command visitor.");
@@ -68,4 +87,17 @@ public class RemoteControlReader extends ExecutionDataReader {
 		remoteCommandVisitor.visitDumpCommand(dump, reset);
 	}
 
+	private void readDeltaDumpCommand() throws IOException {
+		if (remoteCommandVisitor == null) {
+			throw new IOException("No remote command visitor.");
+		}
+		if (!(remoteCommandVisitor instanceof IRemoteDeltaCommandVisitor)) {
+			throw new IOException("Delta dumps are not supported.");
+		}
+		final long acknowledged = in.readLong();
+		final boolean reset = in.readBoolean();
+		((IRemoteDeltaCommandVisitor) remoteCommandVisitor)
+				.visitDeltaDumpCommand(acknowledged, reset);
+	}
+
 }
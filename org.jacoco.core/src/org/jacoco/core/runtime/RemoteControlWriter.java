@@ -21,14 +21,20 @@ import org.jacoco.core.data.ExecutionDataWriter;
  * {@link ExecutionDataWriter} with commands added for runtime remote control.
  */
 public class RemoteControlWriter extends ExecutionDataWriter
-		implements IRemoteCommandVisitor {
+		implements IRemoteDeltaCommandVisitor {
 
 	/** Block identifier to confirm successful command execution. */
 	public static final byte BLOCK_CMDOK = 0x20;
 
+	/** Block identifier for the id of a delta dump. */
+	public static final byte BLOCK_DELTADUMPID = 0x21;
+
 	/** Block identifier for dump command */
 	public static final byte BLOCK_CMDDUMP = 0x40;
 
+	/** Block identifier for delta dump command */
+	public static final byte BLOCK_CMDDELTADUMP = 0x41;
+
 	/**
 	 * Creates a new writer based on the given output stream.
 	 *
@@ -41,6 +47,22 @@ public class RemoteControlWriter extends ExecutionDataWriter
 		super(output);
 	}
 
+	/**
+	 * Creates a new writer based on the given output stream.
+	 *
+	 * @param output
+	 *            stream to write commands to
+	 * @param extended
+	 *            if <code>true</code> execution data may be written with block
+	 *            types which can't be read by JaCoCo versions before 0.8.7
+	 * @throws IOException
+	 *             if the header can't be written
+	 */
+	public RemoteControlWriter(final OutputStream output,
+			final boolean extended) throws IOException {
+		super(output, extended);
+	}
+
 	/**
 	 * Sends a confirmation that a commands has been successfully executed and
 	 * the response is completed.
@@ -59,4 +81,25 @@ public class RemoteControlWriter extends ExecutionDataWriter
 		out.writeBoolean(reset);
 	}
 
+	/**
+	 * Sends the id of a delta dump which has to be acknowledged with the next
+	 * delta dump command.
+	 *
+	 * @param id
+	 *            id of the delta dump
+	 * @throws IOException
+	 *             in case of problems with the remote connection
+	 */
+	public void sendDeltaDumpId(final long id) throws IOException {
+		out.writeByte(RemoteControlWriter.BLOCK_DELTADUMPID);
+		out.writeLong(id);
+	}
+
+	public void visitDeltaDumpCommand(final long acknowledged,
+			final boolean reset) throws IOException {
+		out.writeByte(RemoteControlWriter.BLOCK_CMDDELTADUMP);
+		out.writeLong(acknowledged);
+		out.writeBoolean(reset);
+	}
+
 }
@@ -12,33 +12,65 @@
  *******************************************************************************/
 package org.jacoco.core.runtime;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.jacoco.core.data.ExecutionData;
-import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.IExecutionDataVisitor;
 import org.jacoco.core.data.ISessionInfoVisitor;
 import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.internal.data.LongHashMap;
 import org.jacoco.core.internal.instr.InstrSupport;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 
 /**
  * Container for runtime execution and meta data. All access to the runtime data
- * is thread safe.
+ * is thread safe. Execution data is registered without locking, therefore
+ * initialization of classes never blocks on a running {@link #collect} or
+ * {@link #reset()} and vice versa. Dumps copy the probe arrays in a short
+ * critical section and call the visitors outside of it, so a slow visitor does
+ * not block other dumps or resets.
  */
 public class RuntimeData {
 
-	/** store for execution data */
-	protected final ExecutionDataStore store;
+	/** maximum number of delta dumps which can be acknowledged */
+	private static final int MAX_DELTA_DUMPS = 64;
+
+	/** registry for execution data, keyed by class id */
+	private final ConcurrentMap<Long, ExecutionData> entries;
+
+	/** serializes collect and reset operations */
+	private final Object lock;
+
+	/** delta dumps which can be acknowledged, keyed by id, guarded by lock */
+	private final Map<Long, DeltaDump> deltaDumps;
+
+	private long lastDeltaDumpId;
 
-	private long startTimeStamp;
+	/** number of resets, invalidates counts of previous delta dumps */
+	private volatile long resetCount;
 
-	private String sessionId;
+	private volatile long startTimeStamp;
+
+	private volatile String sessionId;
 
 	/**
 	 * Creates a new runtime.
 	 */
 	public RuntimeData() {
-		store = new ExecutionDataStore();
+		entries = new ConcurrentHashMap<Long, ExecutionData>();
+		lock = new Object();
+		deltaDumps = new LinkedHashMap<Long, DeltaDump>();
+		// Random start to not accept ids issued by a previous runtime:
+		lastDeltaDumpId = new Random().nextLong() & Long.MAX_VALUE;
+		resetCount = 0;
 		sessionId = "<none>";
 		startTimeStamp = System.currentTimeMillis();
 	}
@@ -69,8 +101,10 @@ public class RuntimeData {
 
 	/**
 	 * Collects the current execution data and writes it to the given
-	 * {@link IExecutionDataVisitor} object.
+	 * {@link IExecutionDataVisitor} object. The data is written from a
+	 * snapshot, i.e. the visitors are called without holding a lock.
 	 *
+	 * @see #snapshot(boolean)
 	 * @param executionDataVisitor
 	 *            handler to write coverage data to
 	 * @param sessionInfoVisitor
@@ -81,23 +115,263 @@ public class RuntimeData {
 	 */
 	public final void collect(final IExecutionDataVisitor executionDataVisitor,
 			final ISessionInfoVisitor sessionInfoVisitor, final boolean reset) {
-		synchronized (store) {
+		snapshot(reset).accept(executionDataVisitor, sessionInfoVisitor);
+	}
+
+	/**
+	 * Takes a snapshot of the current execution data. All probe arrays are
+	 * copied and, if requested, cleared in one short critical section. Writing
+	 * the snapshot afterwards does not block other dumps or resets. With reset
+	 * no probe executed concurrently is lost: it is either contained in this
+	 * snapshot or in the next one.
+	 *
+	 * @param reset
+	 *            if <code>true</code> the current coverage information is also
+	 *            cleared
+	 * @return snapshot of the current execution data
+	 */
+	public final ExecutionDataSnapshot snapshot(final boolean reset) {
+		synchronized (lock) {
 			final SessionInfo info = new SessionInfo(sessionId, startTimeStamp,
 					System.currentTimeMillis());
-			sessionInfoVisitor.visitSessionInfo(info);
-			store.accept(executionDataVisitor);
+			final List<ExecutionData> copies = new ArrayList<ExecutionData>(
+					entries.size());
+			for (final ExecutionData data : entries.values()) {
+				copies.add(copy(data, reset));
+			}
+			if (reset) {
+				resetCount++;
+				startTimeStamp = System.currentTimeMillis();
+			}
+			return new ExecutionDataSnapshot(info, copies);
+		}
+	}
+
+	/**
+	 * Collects the execution data of all classes with probes executed since the
+	 * given acknowledged delta dump and writes it to the given
+	 * {@link IExecutionDataVisitor} object. Probes executed again after a reset
+	 * are not considered as new. The consumer of delta dumps is expected to
+	 * merge the data of all delta dumps and acknowledges every delta dump it
+	 * received with the next request. Delta dumps are tracked by their id, so
+	 * several consumers can request delta dumps independently. A delta dump can
+	 * be acknowledged until the consumer acknowledges a subsequent one, but
+	 * only the last 64 delta dumps are kept. If the given id is unknown all
+	 * execution data is collected. Execution counts are collected as increments
+	 * since the acknowledged delta dump, so the sum of all delta dumps is the
+	 * total count.
+	 *
+	 * @param executionDataVisitor
+	 *            handler to write coverage data to
+	 * @param sessionInfoVisitor
+	 *            handler to write session information to
+	 * @param acknowledged
+	 *            id of the last delta dump received by the consumer or
+	 *            <code>0</code> to collect all execution data
+	 * @param reset
+	 *            if <code>true</code> the current coverage information is also
+	 *            cleared
+	 * @return id of this delta dump
+	 */
+	public final long collectDelta(
+			final IExecutionDataVisitor executionDataVisitor,
+			final ISessionInfoVisitor sessionInfoVisitor,
+			final long acknowledged, final boolean reset) {
+		final ExecutionDataSnapshot delta;
+		final long id;
+		synchronized (lock) {
+			DeltaDump acknowledgedDump = null;
+			if (acknowledged != 0) {
+				acknowledgedDump = deltaDumps.get(Long.valueOf(acknowledged));
+			}
+			final LongHashMap<boolean[]> deltaBase;
+			LongHashMap<int[]> deltaBaseCounts = new LongHashMap<int[]>();
+			if (acknowledgedDump == null) {
+				deltaBase = new LongHashMap<boolean[]>();
+			} else {
+				// The consumer won't acknowledge the previous dump again:
+				deltaDumps.remove(Long.valueOf(acknowledgedDump.previous));
+				deltaBase = acknowledgedDump.probes;
+				if (acknowledgedDump.resetCount == resetCount) {
+					deltaBaseCounts = acknowledgedDump.counts;
+				}
+			}
+			final SessionInfo info = new SessionInfo(sessionId, startTimeStamp,
+					System.currentTimeMillis());
+			final List<ExecutionData> copies = new ArrayList<ExecutionData>();
+			final LongHashMap<boolean[]> snapshot = new LongHashMap<boolean[]>();
+			final LongHashMap<int[]> snapshotCounts = new LongHashMap<int[]>();
+			for (final ExecutionData data : entries.values()) {
+				final long classId = data.getId();
+				final boolean[] base = deltaBase.get(classId);
+				if (data.getCounts() != null) {
+					final int[] counts = copy(data, reset).getCounts();
+					final int[] increments = subtract(counts,
+							deltaBaseCounts.get(classId));
+					if (increments != null) {
+						final ExecutionData copy = new ExecutionData(classId,
+								data.getName(), increments);
+						snapshot.put(classId, merge(copy.getProbes(), base));
+						copies.add(copy);
+					} else if (base != null) {
+						snapshot.put(classId, base);
+					}
+					// After a reset the consumer has received no counts:
+					if (!reset) {
+						snapshotCounts.put(classId, counts);
+					}
+					continue;
+				}
+				final ExecutionData current = reset ? copy(data, true) : data;
+				if (hasNewHits(current.getProbes(), base)) {
+					final ExecutionData copy = current == data
+							? copy(data, false)
+							: current;
+					snapshot.put(classId, merge(copy.getProbes(), base));
+					copies.add(copy);
+				} else if (base != null) {
+					snapshot.put(classId, base);
+				}
+			}
 			if (reset) {
-				reset();
+				resetCount++;
+				startTimeStamp = System.currentTimeMillis();
+			}
+			lastDeltaDumpId++;
+			if (lastDeltaDumpId == 0) {
+				lastDeltaDumpId++;
+			}
+			id = lastDeltaDumpId;
+			addDeltaDump(id, new DeltaDump(snapshot, snapshotCounts, resetCount,
+					acknowledgedDump == null ? 0 : acknowledged));
+			delta = new ExecutionDataSnapshot(info, copies);
+		}
+		delta.accept(executionDataVisitor, sessionInfoVisitor);
+		return id;
+	}
+
+	private static ExecutionData copy(final ExecutionData data,
+			final boolean reset) {
+		final int[] counts = data.getCounts();
+		if (counts != null) {
+			return new ExecutionData(data.getId(), data.getName(),
+					copyCounts(counts, reset));
+		}
+		return new ExecutionData(data.getId(), data.getName(),
+				copyProbes(data.getProbes(), reset));
+	}
+
+	/**
+	 * Copies the given execution counts. Counts which have overflowed are
+	 * reported as {@link Integer#MAX_VALUE}. With reset every count is cleared
+	 * right after it has been read, executions which happen in between are
+	 * lost.
+	 */
+	private static int[] copyCounts(final int[] counts, final boolean reset) {
+		final int[] copy = new int[counts.length];
+		for (int i = 0; i < counts.length; i++) {
+			final int count = counts[i];
+			if (count != 0) {
+				copy[i] = count < 0 ? Integer.MAX_VALUE : count;
+				if (reset) {
+					counts[i] = 0;
+				}
 			}
 		}
+		return copy;
+	}
+
+	/**
+	 * Copies the given probes. With reset every executed probe is cleared
+	 * individually right after it has been read. Unlike clearing the whole
+	 * array after copying it this never loses a probe executed concurrently: it
+	 * is either contained in the copy or remains set for the next dump.
+	 */
+	private static boolean[] copyProbes(final boolean[] probes,
+			final boolean reset) {
+		if (!reset) {
+			return probes.clone();
+		}
+		final boolean[] copy = new boolean[probes.length];
+		for (int i = 0; i < probes.length; i++) {
+			if (probes[i]) {
+				copy[i] = true;
+				probes[i] = false;
+			}
+		}
+		return copy;
+	}
+
+	private static boolean hasNewHits(final boolean[] probes,
+			final boolean[] base) {
+		for (int i = 0; i < probes.length; i++) {
+			if (probes[i] && (base == null || !base[i])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Subtracts the counts already received by the consumer of delta dumps.
+	 * Returns <code>null</code> if there is no new execution.
+	 */
+	private static int[] subtract(final int[] counts, final int[] base) {
+		int[] increments = null;
+		for (int i = 0; i < counts.length; i++) {
+			final int increment = base == null ? counts[i]
+					: counts[i] - base[i];
+			if (increment > 0) {
+				if (increments == null) {
+					increments = new int[counts.length];
+				}
+				increments[i] = increment;
+			}
+		}
+		return increments;
+	}
+
+	private static boolean[] merge(final boolean[] probes,
+			final boolean[] base) {
+		final boolean[] merged = probes.clone();
+		if (base != null) {
+			for (int i = 0; i < merged.length; i++) {
+				merged[i] |= base[i];
+			}
+		}
+		return merged;
+	}
+
+	private void addDeltaDump(final long id, final DeltaDump dump) {
+		deltaDumps.put(Long.valueOf(id), dump);
+		if (deltaDumps.size() > MAX_DELTA_DUMPS) {
+			// Forget the oldest delta dump, e.g. of a consumer which is gone:
+			final Iterator<Long> oldest = deltaDumps.keySet().iterator();
+			oldest.next();
+			oldest.remove();
+		}
+	}
+
+	/**
+	 * Returns how often the coverage information has been reset, either with
+	 * {@link #reset()} or with a dump. This allows to detect resets since a
+	 * previous call.
+	 *
+	 * @return number of resets
+	 */
+	public long getResetCount() {
+		return resetCount;
 	}
 
 	/**
 	 * Resets all coverage information.
 	 */
 	public final void reset() {
-		synchronized (store) {
-			store.reset();
+		synchronized (lock) {
+			for (final ExecutionData data : entries.values()) {
+				data.reset();
+			}
+			resetCount++;
 			startTimeStamp = System.currentTimeMillis();
 		}
 	}
@@ -105,7 +379,8 @@ public class RuntimeData {
 	/**
 	 * Returns the coverage data for the class with the given identifier. If
 	 * there is no data available under the given id a new entry is created.
-	 * This is a synchronized access to the underlying store.
+	 * Existing entries are looked up without locking, concurrent calls for the
+	 * same new id return the same entry.
 	 *
 	 * @param id
 	 *            class identifier
@@ -117,9 +392,50 @@ public class RuntimeData {
 	 */
 	public ExecutionData getExecutionData(final Long id, final String name,
 			final int probecount) {
-		synchronized (store) {
-			return store.get(id, name, probecount);
+		return getExecutionData(id, name, probecount, false);
+	}
+
+	/**
+	 * Returns the coverage data for the class with the given identifier. If
+	 * there is no data available under the given id a new entry is created,
+	 * optionally with execution counts. Existing entries are looked up without
+	 * locking, concurrent calls for the same new id return the same entry.
+	 *
+	 * @param id
+	 *            class identifier
+	 * @param name
+	 *            VM name of the class
+	 * @param probecount
+	 *            probe data length
+	 * @param counts
+	 *            if <code>true</code> the execution data records execution
+	 *            counts
+	 * @return execution data
+	 * @throws IllegalStateException
+	 *             if the existing entry is not compatible with the given
+	 *             parameters
+	 */
+	public ExecutionData getExecutionData(final Long id, final String name,
+			final int probecount, final boolean counts)
+			throws IllegalStateException {
+		ExecutionData entry = entries.get(id);
+		if (entry == null) {
+			final ExecutionData created = counts
+					? new ExecutionData(id.longValue(), name,
+							new int[probecount])
+					: new ExecutionData(id.longValue(), name, probecount);
+			entry = entries.putIfAbsent(id, created);
+			if (entry == null) {
+				return created;
+			}
+		}
+		entry.assertCompatibility(id.longValue(), name, probecount);
+		if (counts != (entry.getCounts() != null)) {
+			throw new IllegalStateException(String.format(
+					"Class %s with id %016x is instrumented with and without counting probes.",
+					name, id));
 		}
+		return entry;
 	}
 
 	/**
@@ -131,22 +447,29 @@ public class RuntimeData {
 	 * <li>args[0]: class id ({@link Long})
 	 * <li>args[1]: vm class name ({@link String})
 	 * <li>args[2]: probe count ({@link Integer})
+	 * <li>args[3]: optional, {@link Boolean#TRUE} to request execution counts
 	 * </ul>
 	 *
 	 * Return value:
 	 *
 	 * <ul>
-	 * <li>args[0]: probe array (<code>boolean[]</code>)
+	 * <li>args[0]: probe array (<code>boolean[]</code>) or execution counts
+	 * (<code>int[]</code>)
 	 * </ul>
 	 *
 	 * @param args
-	 *            parameter array of length 3
+	 *            parameter array of length 3 or 4
 	 */
 	public void getProbes(final Object[] args) {
 		final Long classid = (Long) args[0];
 		final String name = (String) args[1];
 		final int probecount = ((Integer) args[2]).intValue();
-		args[0] = getExecutionData(classid, name, probecount).getProbes();
+		if (args.length > 3 && Boolean.TRUE.equals(args[3])) {
+			args[0] = getExecutionData(classid, name, probecount, true)
+					.getCounts();
+		} else {
+			args[0] = getExecutionData(classid, name, probecount).getProbes();
+		}
 	}
 
 	/**
@@ -182,7 +505,30 @@ public class RuntimeData {
 	public static void generateArgumentArray(final long classid,
 			final String classname, final int probecount,
 			final MethodVisitor mv) {
-		mv.visitInsn(Opcodes.ICONST_3);
+		generateArgumentArray(classid, classname, probecount, false, mv);
+	}
+
+	/**
+	 * Generates code that creates the argument array for the
+	 * {@link #getProbes(Object[])} method, optionally requesting execution
+	 * counts. The array instance is left on the operand stack. The generated
+	 * code requires a stack size of 5.
+	 *
+	 * @param classid
+	 *            class identifier
+	 * @param classname
+	 *            VM class name
+	 * @param probecount
+	 *            probe count for this class
+	 * @param counts
+	 *            if <code>true</code> execution counts are requested
+	 * @param mv
+	 *            visitor to emit generated code
+	 */
+	public static void generateArgumentArray(final long classid,
+			final String classname, final int probecount, final boolean counts,
+			final MethodVisitor mv) {
+		mv.visitInsn(counts ? Opcodes.ICONST_4 : Opcodes.ICONST_3);
 		mv.visitTypeInsn(Opcodes.ANEWARRAY, "java/lang/Object");
 
 		// Class Id:
@@ -206,6 +552,14 @@ public class RuntimeData {
 		mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Integer", "valueOf",
 				"(I)Ljava/lang/Integer;", false);
 		mv.visitInsn(Opcodes.AASTORE);
+
+		if (counts) {
+			mv.visitInsn(Opcodes.DUP);
+			mv.visitInsn(Opcodes.ICONST_3);
+			mv.visitFieldInsn(Opcodes.GETSTATIC, "java/lang/Boolean", "TRUE",
+					"Ljava/lang/Boolean;");
+			mv.visitInsn(Opcodes.AASTORE);
+		}
 	}
 
 	/**
@@ -227,9 +581,33 @@ public class RuntimeData {
 	public static void generateAccessCall(final long classid,
 			final String classname, final int probecount,
 			final MethodVisitor mv) {
+		generateAccessCall(classid, classname, probecount, false, mv);
+	}
+
+	/**
+	 * Generates the code that calls a {@link RuntimeData} instance through the
+	 * JRE API method {@link Object#equals(Object)}. The code pops a
+	 * {@link Object} instance from the stack and pushes the probe array of type
+	 * <code>boolean[]</code> or the execution counts of type <code>int[]</code>
+	 * on the operand stack. The generated code requires a stack size of 6.
+	 *
+	 * @param classid
+	 *            class identifier
+	 * @param classname
+	 *            VM class name
+	 * @param probecount
+	 *            probe count for this class
+	 * @param counts
+	 *            if <code>true</code> execution counts are requested
+	 * @param mv
+	 *            visitor to emit generated code
+	 */
+	public static void generateAccessCall(final long classid,
+			final String classname, final int probecount, final boolean counts,
+			final MethodVisitor mv) {
 		// stack[0]: Ljava/lang/Object;
 
-		generateArgumentArray(classid, classname, probecount, mv);
+		generateArgumentArray(classid, classname, probecount, counts, mv);
 
 		// stack[1]: [Ljava/lang/Object;
 		// stack[0]: Ljava/lang/Object;
@@ -249,9 +627,39 @@ public class RuntimeData {
 		mv.visitInsn(Opcodes.ICONST_0);
 		mv.visitInsn(Opcodes.AALOAD);
 
-		// stack[0]: [Z
+		// stack[0]: [Z or [I
+
+		mv.visitTypeInsn(Opcodes.CHECKCAST,
+				counts ? InstrSupport.COUNTSFIELD_DESC
+						: InstrSupport.DATAFIELD_DESC);
+	}
+
+	/**
+	 * Data received by a consumer with a delta dump.
+	 */
+	private static final class DeltaDump {
+
+		/** all probes received by the consumer with this and previous dumps */
+		final LongHashMap<boolean[]> probes;
+
+		/** all counts received since the last reset */
+		final LongHashMap<int[]> counts;
+
+		/** number of resets when this dump was collected */
+		final long resetCount;
+
+		/** id of the delta dump acknowledged for this one or 0 */
+		final long previous;
+
+		DeltaDump(final LongHashMap<boolean[]> probes,
+				final LongHashMap<int[]> counts, final long resetCount,
+				final long previous) {
+			this.probes = probes;
+			this.counts = counts;
+			this.resetCount = resetCount;
+			this.previous = previous;
+		}
 
-		mv.visitTypeInsn(Opcodes.CHECKCAST, InstrSupport.DATAFIELD_DESC);
 	}
 
 }
@@ -41,6 +41,18 @@ public class SystemPropertiesRuntime extends AbstractRuntime {
 
 	public int generateDataAccessor(final long classid, final String classname,
 			final int probecount, final MethodVisitor mv) {
+		return generateAccessor(classid, classname, probecount, false, mv);
+	}
+
+	public int generateCountsAccessor(final long classid,
+			final String classname, final int probecount,
+			final MethodVisitor mv) {
+		return generateAccessor(classid, classname, probecount, true, mv);
+	}
+
+	private int generateAccessor(final long classid, final String classname,
+			final int probecount, final boolean counts,
+			final MethodVisitor mv) {
 		mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/System",
 				"getProperties", "()Ljava/util/Properties;", false);
 
@@ -56,9 +68,10 @@ public class SystemPropertiesRuntime extends AbstractRuntime {
 
 		// Stack[0]: Ljava/lang/Object;
 
-		RuntimeData.generateAccessCall(classid, classname, probecount, mv);
+		RuntimeData.generateAccessCall(classid, classname, probecount, counts,
+				mv);
 
-		// Stack[0]: [Z
+		// Stack[0]: [Z or [I
 
 		return 6; // Maximum local stack size is 3
 	}
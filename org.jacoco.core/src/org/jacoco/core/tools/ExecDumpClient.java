@@ -15,7 +15,10 @@ package org.jacoco.core.tools;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.jacoco.core.runtime.RemoteControlReader;
 import org.jacoco.core.runtime.RemoteControlWriter;
@@ -27,17 +30,21 @@ public class ExecDumpClient {
 
 	private boolean dump;
 	private boolean reset;
+	private boolean delta;
 	private int retryCount;
 	private long retryDelay;
+	private final Map<InetSocketAddress, Long> deltaDumpIds;
 
 	/**
 	 * New instance with the defaults <code>dump==true</code>,
-	 * <code>reset==false</code>, <code>retryCount==0</code> and
-	 * <code>retryDelay=1000</code>.
+	 * <code>reset==false</code>, <code>delta==false</code>,
+	 * <code>retryCount==0</code> and <code>retryDelay=1000</code>.
 	 */
 	public ExecDumpClient() {
 		this.dump = true;
 		this.reset = false;
+		this.delta = false;
+		this.deltaDumpIds = new HashMap<InetSocketAddress, Long>();
 		this.retryCount = 0;
 		this.setRetryDelay(1000);
 	}
@@ -62,6 +69,20 @@ public class ExecDumpClient {
 		this.reset = reset;
 	}
 
+	/**
+	 * Specifies whether delta dumps should be requested. A delta dump only
+	 * contains execution data of classes with probes executed since the last
+	 * delta dump this client has received from the same end-point, therefore
+	 * the data of all dumps has to be merged by the caller. The dump flag is
+	 * ignored for delta dumps.
+	 *
+	 * @param delta
+	 *            <code>true</code> if delta dumps should be requested
+	 */
+	public void setDelta(final boolean delta) {
+		this.delta = delta;
+	}
+
 	/**
 	 * Sets the number of retry attempts to connect to the target socket. This
 	 * allows to wait for a certain time until the target agent has initialized.
@@ -123,12 +144,26 @@ public class ExecDumpClient {
 			remoteReader
 					.setExecutionDataVisitor(loader.getExecutionDataStore());
 
-			remoteWriter.visitDumpCommand(dump, reset);
+			final InetSocketAddress endpoint = new InetSocketAddress(address,
+					port);
+			if (delta) {
+				final Long acknowledged = deltaDumpIds.get(endpoint);
+				remoteWriter.visitDeltaDumpCommand(
+						acknowledged == null ? 0 : acknowledged.longValue(),
+						reset);
+			} else {
+				remoteWriter.visitDumpCommand(dump, reset);
+			}
 
 			if (!remoteReader.read()) {
 				throw new IOException("Socket closed unexpectedly.");
 			}
 
+			if (delta) {
+				deltaDumpIds.put(endpoint,
+						Long.valueOf(remoteReader.getDeltaDumpId()));
+			}
+
 		} finally {
 			socket.close();
 		}
@@ -24,24 +24,61 @@ import java.io.OutputStream;
 import org.jacoco.core.data.ExecutionDataReader;
 import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.PackedExecutionDataStore;
 import org.jacoco.core.data.SessionInfoStore;
 
 /**
  * Convenience utility for loading *.exec files into a
- * {@link ExecutionDataStore} and a {@link SessionInfoStore}.
+ * {@link ExecutionDataStore} and a {@link SessionInfoStore}. Tools which only
+ * merge execution data can use a {@link PackedExecutionDataStore} instead to
+ * reduce memory consumption.
  */
 public class ExecFileLoader {
 
 	private final SessionInfoStore sessionInfos;
 	private final ExecutionDataStore executionData;
+	private final PackedExecutionDataStore packedExecutionData;
+
+	private boolean sparseBlocks;
 
 	/**
 	 * New instance to combine session infos and execution data from multiple
 	 * files.
 	 */
 	public ExecFileLoader() {
+		this(false);
+	}
+
+	/**
+	 * New instance to combine session infos and execution data from multiple
+	 * files.
+	 *
+	 * @param packed
+	 *            if <code>true</code> execution data is stored in a
+	 *            {@link PackedExecutionDataStore}, otherwise in a
+	 *            {@link ExecutionDataStore}
+	 */
+	public ExecFileLoader(final boolean packed) {
 		sessionInfos = new SessionInfoStore();
-		executionData = new ExecutionDataStore();
+		if (packed) {
+			executionData = null;
+			packedExecutionData = new PackedExecutionDataStore();
+		} else {
+			executionData = new ExecutionDataStore();
+			packedExecutionData = null;
+		}
+	}
+
+	/**
+	 * Sets whether execution data of classes with few executed probes may be
+	 * saved as sparse blocks, which can't be read by JaCoCo versions before
+	 * 0.8.7. Default is <code>false</code>.
+	 *
+	 * @param sparseBlocks
+	 *            <code>true</code> if sparse blocks may be saved
+	 */
+	public void setSparseBlocks(final boolean sparseBlocks) {
+		this.sparseBlocks = sparseBlocks;
 	}
 
 	/**
@@ -55,7 +92,11 @@ public class ExecFileLoader {
 	public void load(final InputStream stream) throws IOException {
 		final ExecutionDataReader reader = new ExecutionDataReader(
 				new BufferedInputStream(stream));
-		reader.setExecutionDataVisitor(executionData);
+		if (executionData == null) {
+			reader.setExecutionDataVisitor(packedExecutionData);
+		} else {
+			reader.setExecutionDataVisitor(executionData);
+		}
 		reader.setSessionInfoVisitor(sessionInfos);
 		// 核心，解析并合并需要合并的exec文件流
 		reader.read();
@@ -79,7 +120,9 @@ public class ExecFileLoader {
 	}
 
 	/**
-	 * Saves the current content into the given output stream.
+	 * Saves the current content into the given output stream. A format which
+	 * can't be read by JaCoCo versions before 0.8.7 is only used if the content
+	 * contains execution counts or sparse blocks are enabled.
 	 *
 	 * @param stream
 	 *            stream to save content to
@@ -87,9 +130,17 @@ public class ExecFileLoader {
 	 *             in case of problems while writing to the stream
 	 */
 	public void save(final OutputStream stream) throws IOException {
-		final ExecutionDataWriter dataWriter = new ExecutionDataWriter(stream);
-		sessionInfos.accept(dataWriter);
-		executionData.accept(dataWriter);
+		if (executionData == null) {
+			final ExecutionDataWriter dataWriter = new ExecutionDataWriter(
+					stream, sparseBlocks || packedExecutionData.hasCounts());
+			sessionInfos.accept(dataWriter);
+			packedExecutionData.accept(dataWriter);
+		} else {
+			final ExecutionDataWriter dataWriter = new ExecutionDataWriter(
+					stream, sparseBlocks || executionData.hasCounts());
+			sessionInfos.accept(dataWriter);
+			executionData.accept(dataWriter);
+		}
 	}
 
 	/**
@@ -106,6 +157,21 @@ public class ExecFileLoader {
 	 *             in case of problems while writing to the stream
 	 */
 	public void save(final File file, final boolean append) throws IOException {
+		final OutputStream bufferedStream = openOutput(file, append);
+		try {
+			save(bufferedStream);
+		} finally {
+			bufferedStream.close();
+		}
+	}
+
+	/**
+	 * Opens a buffered stream to the given file. Parent directories are created
+	 * as needed and a file system lock is acquired to avoid concurrent write
+	 * access.
+	 */
+	static OutputStream openOutput(final File file, final boolean append)
+			throws IOException {
 		final File folder = file.getParentFile();
 		if (folder != null) {
 			folder.mkdirs();
@@ -113,13 +179,7 @@ public class ExecFileLoader {
 		final FileOutputStream fileStream = new FileOutputStream(file, append);
 		// Avoid concurrent writes from other processes:
 		fileStream.getChannel().lock();
-		final OutputStream bufferedStream = new BufferedOutputStream(
-				fileStream);
-		try {
-			save(bufferedStream);
-		} finally {
-			bufferedStream.close();
-		}
+		return new BufferedOutputStream(fileStream);
 	}
 
 	/**
@@ -134,10 +194,21 @@ public class ExecFileLoader {
 	/**
 	 * Returns the execution data store with data for all loaded classes.
 	 *
-	 * @return execution data store
+	 * @return execution data store or <code>null</code> if this loader has been
+	 *         created for packed execution data
 	 */
 	public ExecutionDataStore getExecutionDataStore() {
 		return executionData;
 	}
 
+	/**
+	 * Returns the packed execution data store with data for all loaded classes.
+	 *
+	 * @return packed execution data store or <code>null</code> if this loader
+	 *         has not been created for packed execution data
+	 */
+	public PackedExecutionDataStore getPackedExecutionDataStore() {
+		return packedExecutionData;
+	}
+
 }
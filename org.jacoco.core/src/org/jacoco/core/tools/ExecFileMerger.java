@@ -0,0 +1,424 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import static java.lang.String.format;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.internal.data.CountingInputStream;
+import org.jacoco.core.internal.data.LongHashMap;
+import org.jacoco.core.internal.data.PackedExecutionData;
+
+/**
+ * Merges execution data from multiple inputs concurrently. The inputs are read
+ * by a number of worker threads, each into its own store which is split into
+ * shards by class id. Afterwards the stores are combined pairwise in a
+ * reduction tree, all shards of all pairs of a level are merged concurrently.
+ * The result is identical to loading all inputs in the given order into an
+ * {@link ExecFileLoader} with packed execution data. Note that every worker
+ * holds execution data for all classes it has seen.
+ */
+public class ExecFileMerger {
+
+	/**
+	 * Source of execution data to merge.
+	 */
+	public interface Input {
+
+		/**
+		 * Opens a new stream to read execution data from. The stream is closed
+		 * by the merger.
+		 *
+		 * @return stream with execution data
+		 * @throws IOException
+		 *             if the stream can't be opened
+		 */
+		InputStream open() throws IOException;
+
+	}
+
+	private static final int SHARDS_PER_THREAD = 4;
+
+	private final int threads;
+
+	private int fileCount;
+
+	private long byteCount;
+
+	private long time;
+
+	/**
+	 * Creates a new merger.
+	 *
+	 * @param threads
+	 *            maximum number of threads to read and merge inputs with
+	 */
+	public ExecFileMerger(final int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException(format(
+					"Invalid number of threads %s.", Integer.valueOf(threads)));
+		}
+		this.threads = threads;
+	}
+
+	/**
+	 * Creates an input for the given file.
+	 *
+	 * @param file
+	 *            exec file
+	 * @return input reading the file
+	 */
+	public static Input fileInput(final File file) {
+		return new Input() {
+			public InputStream open() throws IOException {
+				return new FileInputStream(file);
+			}
+
+			@Override
+			public String toString() {
+				return file.getAbsolutePath();
+			}
+		};
+	}
+
+	/**
+	 * Merges the given inputs. If an input can't be read an {@link IOException}
+	 * with the string representation of the input in its message is thrown.
+	 *
+	 * @param inputs
+	 *            inputs to merge
+	 * @return loader with the merged session infos and packed execution data
+	 * @throws IOException
+	 *             if an input can't be read
+	 * @throws IllegalStateException
+	 *             if the inputs contain incompatible execution data
+	 */
+	public ExecFileLoader merge(final List<? extends Input> inputs)
+			throws IOException {
+		final long start = System.nanoTime();
+		final int workerCount = Math.max(1, Math.min(threads, inputs.size()));
+		final int shardCount = Integer
+				.highestOneBit(workerCount * SHARDS_PER_THREAD - 1) << 1;
+		final AtomicInteger next = new AtomicInteger();
+		final List<List<SessionInfo>> sessions = new ArrayList<List<SessionInfo>>();
+		for (int i = 0; i < inputs.size(); i++) {
+			sessions.add(new ArrayList<SessionInfo>());
+		}
+		final Worker[] workers = new Worker[workerCount];
+		for (int i = 0; i < workerCount; i++) {
+			workers[i] = new Worker(inputs, sessions, next, shardCount);
+		}
+
+		final ExecutorService executor = workerCount > 1
+				? Executors.newFixedThreadPool(workerCount)
+				: null;
+		try {
+			invokeAll(executor, Arrays.<Callable<Void>> asList(workers));
+			for (int step = 1; step < workerCount; step <<= 1) {
+				final List<Callable<Void>> reductions = new ArrayList<Callable<Void>>();
+				for (int i = 0; i + step < workerCount; i += step << 1) {
+					for (int s = 0; s < shardCount; s++) {
+						reductions.add(new Reduction(workers[i].shards[s],
+								workers[i + step].shards[s]));
+					}
+				}
+				invokeAll(executor, reductions);
+			}
+		} finally {
+			if (executor != null) {
+				executor.shutdown();
+			}
+		}
+
+		final ExecFileLoader loader = createLoader(sessions, workers[0].shards);
+		fileCount = inputs.size();
+		byteCount = 0;
+		for (final Worker worker : workers) {
+			byteCount += worker.bytes;
+		}
+		time = System.nanoTime() - start;
+		return loader;
+	}
+
+	private static ExecFileLoader createLoader(
+			final List<List<SessionInfo>> sessions,
+			final LongHashMap<RankedData>[] shards) {
+		final ExecFileLoader loader = new ExecFileLoader(true);
+		for (final List<SessionInfo> list : sessions) {
+			for (final SessionInfo info : list) {
+				loader.getSessionInfoStore().visitSessionInfo(info);
+			}
+		}
+		// Add classes in the order of their first occurrence, like a
+		// sequential merge does:
+		final List<RankedData> entries = new ArrayList<RankedData>();
+		for (final LongHashMap<RankedData> shard : shards) {
+			entries.addAll(shard.values());
+		}
+		final RankedData[] sorted = entries
+				.toArray(new RankedData[entries.size()]);
+		Arrays.sort(sorted, new Comparator<RankedData>() {
+			public int compare(final RankedData d1, final RankedData d2) {
+				return d1.rank < d2.rank ? -1 : (d1.rank == d2.rank ? 0 : 1);
+			}
+		});
+		for (final RankedData data : sorted) {
+			loader.getPackedExecutionDataStore().put(data.unpack());
+		}
+		return loader;
+	}
+
+	private static void invokeAll(final ExecutorService executor,
+			final List<Callable<Void>> tasks) throws IOException {
+		if (executor == null) {
+			for (final Callable<Void> task : tasks) {
+				call(task);
+			}
+			return;
+		}
+		final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (final Callable<Void> task : tasks) {
+			futures.add(executor.submit(task));
+		}
+		try {
+			for (final Future<Void> future : futures) {
+				future.get();
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Merge has been interrupted.");
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		} finally {
+			for (final Future<Void> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	private static void call(final Callable<Void> task) throws IOException {
+		try {
+			task.call();
+		} catch (final IOException e) {
+			throw e;
+		} catch (final RuntimeException e) {
+			throw e;
+		} catch (final Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Returns the number of inputs of the last merge.
+	 *
+	 * @return number of inputs
+	 */
+	public int getFileCount() {
+		return fileCount;
+	}
+
+	/**
+	 * Returns the number of bytes read by the last merge.
+	 *
+	 * @return number of bytes
+	 */
+	public long getByteCount() {
+		return byteCount;
+	}
+
+	/**
+	 * Returns the duration of the last merge.
+	 *
+	 * @return duration in nanoseconds
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * Returns the throughput of the last merge in inputs.
+	 *
+	 * @return inputs per second
+	 */
+	public double getFilesPerSecond() {
+		return fileCount * 1e9 / Math.max(time, 1);
+	}
+
+	/**
+	 * Returns the throughput of the last merge in bytes.
+	 *
+	 * @return bytes per second
+	 */
+	public double getBytesPerSecond() {
+		return byteCount * 1e9 / Math.max(time, 1);
+	}
+
+	/**
+	 * Packed execution data with the position of its first occurrence.
+	 */
+	private static final class RankedData extends PackedExecutionData {
+
+		long rank;
+
+		RankedData(final ExecutionData data, final long rank) {
+			super(data);
+			this.rank = rank;
+		}
+
+	}
+
+	/**
+	 * Reads inputs until all inputs have been taken by some worker.
+	 */
+	private static final class Worker implements Callable<Void> {
+
+		private final List<? extends Input> inputs;
+
+		private final List<List<SessionInfo>> sessions;
+
+		private final AtomicInteger next;
+
+		final LongHashMap<RankedData>[] shards;
+
+		long bytes;
+
+		@SuppressWarnings("unchecked")
+		Worker(final List<? extends Input> inputs,
+				final List<List<SessionInfo>> sessions,
+				final AtomicInteger next, final int shardCount) {
+			this.inputs = inputs;
+			this.sessions = sessions;
+			this.next = next;
+			this.shards = new LongHashMap[shardCount];
+			for (int i = 0; i < shardCount; i++) {
+				shards[i] = new LongHashMap<RankedData>();
+			}
+		}
+
+		public Void call() throws IOException {
+			int index;
+			while ((index = next.getAndIncrement()) < inputs.size()) {
+				final Input input = inputs.get(index);
+				try {
+					read(index, input);
+				} catch (final IOException e) {
+					final IOException wrapped = new IOException(
+							format("Unable to read %s", input));
+					wrapped.initCause(e);
+					throw wrapped;
+				}
+			}
+			return null;
+		}
+
+		private void read(final int index, final Input input)
+				throws IOException {
+			final List<SessionInfo> infos = sessions.get(index);
+			final CountingInputStream stream = new CountingInputStream(
+					input.open());
+			try {
+				final ExecutionDataReader reader = new ExecutionDataReader(
+						new BufferedInputStream(stream));
+				reader.setSessionInfoVisitor(new ISessionInfoVisitor() {
+					public void visitSessionInfo(final SessionInfo info) {
+						infos.add(info);
+					}
+				});
+				reader.setExecutionDataVisitor(new IExecutionDataVisitor() {
+					private long rank = (long) index << 32;
+
+					public void visitClassExecution(final ExecutionData data) {
+						final long id = data.getId();
+						final LongHashMap<RankedData> shard = shards[(int) (id
+								^ (id >>> 32)) & (shards.length - 1)];
+						final RankedData entry = shard.get(id);
+						if (entry == null) {
+							shard.put(id, new RankedData(data, rank));
+						} else {
+							// inputs are read in ascending order, the entry
+							// already has the lower rank
+							entry.merge(data);
+						}
+						rank++;
+					}
+				});
+				reader.read();
+			} finally {
+				stream.close();
+				bytes += stream.getCount();
+			}
+		}
+
+	}
+
+	/**
+	 * Merges a shard of one worker into the same shard of another worker.
+	 */
+	private static final class Reduction implements Callable<Void> {
+
+		private final LongHashMap<RankedData> target;
+
+		private final LongHashMap<RankedData> source;
+
+		Reduction(final LongHashMap<RankedData> target,
+				final LongHashMap<RankedData> source) {
+			this.target = target;
+			this.source = source;
+		}
+
+		public Void call() {
+			for (final RankedData data : source.values()) {
+				final RankedData entry = target.get(data.getId());
+				if (entry == null) {
+					target.put(data.getId(), data);
+				} else {
+					entry.merge(data);
+					entry.rank = Math.min(entry.rank, data.rank);
+				}
+			}
+			return null;
+		}
+
+	}
+
+}
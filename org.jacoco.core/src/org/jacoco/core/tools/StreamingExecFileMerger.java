@@ -0,0 +1,479 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.SessionInfoStore;
+import org.jacoco.core.internal.data.LongHashMap;
+import org.jacoco.core.internal.data.PackedExecutionData;
+
+/**
+ * Merges execution data from multiple inputs with bounded memory. Inputs are
+ * read one after the other into a buffer with packed probes. Whenever the
+ * estimated size of the buffer exceeds the memory limit its content is sorted
+ * by class id and written to a temporary run file. Finally all runs are merged
+ * by class id and written to the output, therefore the execution data in the
+ * output is ordered by class id. Only session infos are always kept in memory.
+ */
+public class StreamingExecFileMerger {
+
+	/** Maximum number of runs merged at once */
+	private static final int MAX_FAN_IN = 64;
+
+	/** Estimated memory per buffered class in addition to its probes */
+	private static final int ENTRY_OVERHEAD = 96;
+
+	private final File tempDirectory;
+
+	private final long memoryLimit;
+
+	private final int fanIn;
+
+	private boolean sparseBlocks;
+
+	private int runCount;
+
+	/**
+	 * Creates a new merger.
+	 *
+	 * @param tempDirectory
+	 *            directory for temporary run files or <code>null</code> for the
+	 *            default temporary directory
+	 * @param memoryLimit
+	 *            approximate number of bytes to buffer execution data with
+	 *            before it is written to a run file
+	 */
+	public StreamingExecFileMerger(final File tempDirectory,
+			final long memoryLimit) {
+		this(tempDirectory, memoryLimit, MAX_FAN_IN);
+	}
+
+	StreamingExecFileMerger(final File tempDirectory, final long memoryLimit,
+			final int fanIn) {
+		this.tempDirectory = tempDirectory;
+		this.memoryLimit = memoryLimit;
+		this.fanIn = fanIn;
+	}
+
+	/**
+	 * Sets whether execution data of classes with few executed probes may be
+	 * written as sparse blocks, which can't be read by JaCoCo versions before
+	 * 0.8.7. Default is <code>false</code>.
+	 *
+	 * @param sparseBlocks
+	 *            <code>true</code> if sparse blocks may be written
+	 */
+	public void setSparseBlocks(final boolean sparseBlocks) {
+		this.sparseBlocks = sparseBlocks;
+	}
+
+	/**
+	 * Merges the given inputs into the given file. Parent directories are
+	 * created as needed. Also a files system lock is acquired to avoid
+	 * concurrent write access.
+	 *
+	 * @param inputs
+	 *            inputs to merge
+	 * @param file
+	 *            file to write the merged execution data to
+	 * @param append
+	 *            <code>true</code> if the content should be appended, otherwise
+	 *            the file is overwritten.
+	 * @throws IOException
+	 *             if an input can't be read or the output can't be written
+	 * @throws IllegalStateException
+	 *             if the inputs contain incompatible execution data
+	 */
+	public void merge(final List<? extends ExecFileMerger.Input> inputs,
+			final File file, final boolean append) throws IOException {
+		final OutputStream output = ExecFileLoader.openOutput(file, append);
+		try {
+			merge(inputs, output);
+		} finally {
+			output.close();
+		}
+	}
+
+	/**
+	 * Merges the given inputs into the given stream.
+	 *
+	 * @param inputs
+	 *            inputs to merge
+	 * @param output
+	 *            stream to write the merged execution data to
+	 * @throws IOException
+	 *             if an input can't be read or the output can't be written
+	 * @throws IllegalStateException
+	 *             if the inputs contain incompatible execution data
+	 */
+	public void merge(final List<? extends ExecFileMerger.Input> inputs,
+			final OutputStream output) throws IOException {
+		runCount = 0;
+		final SessionInfoStore sessions = new SessionInfoStore();
+		final Buffer buffer = new Buffer();
+		final List<File> runs = new ArrayList<File>();
+		try {
+			for (final ExecFileMerger.Input input : inputs) {
+				read(input, sessions, buffer, runs);
+			}
+			while (runs.size() > fanIn) {
+				final List<File> group = new ArrayList<File>(
+						runs.subList(0, fanIn));
+				runs.subList(0, fanIn).clear();
+				try {
+					runs.add(mergeRuns(group));
+				} finally {
+					delete(group);
+				}
+			}
+			// Keep execution counts only if the inputs contain counts:
+			final ExecutionDataWriter writer = new ExecutionDataWriter(output,
+					sparseBlocks || buffer.counts);
+			sessions.accept(writer);
+			final List<Run> sources = new ArrayList<Run>();
+			for (final File run : runs) {
+				sources.add(new FileRun(run));
+			}
+			sources.add(new MemoryRun(buffer.sorted()));
+			merge(sources, writer);
+		} finally {
+			delete(runs);
+		}
+	}
+
+	/**
+	 * Returns the number of run files written by the last merge.
+	 *
+	 * @return number of run files
+	 */
+	public int getRunCount() {
+		return runCount;
+	}
+
+	private void read(final ExecFileMerger.Input input,
+			final SessionInfoStore sessions, final Buffer buffer,
+			final List<File> runs) throws IOException {
+		final InputStream stream = input.open();
+		try {
+			final ExecutionDataReader reader = new ExecutionDataReader(
+					new BufferedInputStream(stream));
+			reader.setSessionInfoVisitor(sessions);
+			reader.setExecutionDataVisitor(new IExecutionDataVisitor() {
+				public void visitClassExecution(final ExecutionData data) {
+					buffer.put(data);
+					if (buffer.size > memoryLimit) {
+						runs.add(spill(buffer));
+					}
+				}
+			});
+			reader.read();
+		} catch (final IOException e) {
+			final IOException wrapped = new IOException(
+					String.format("Unable to read %s", input));
+			wrapped.initCause(e);
+			throw wrapped;
+		} catch (final SpillException e) {
+			throw e.getCause();
+		} finally {
+			stream.close();
+		}
+	}
+
+	private File spill(final Buffer buffer) {
+		try {
+			final File run = createRun();
+			boolean complete = false;
+			try {
+				final OutputStream out = new BufferedOutputStream(
+						new FileOutputStream(run));
+				try {
+					final ExecutionDataWriter writer = new ExecutionDataWriter(
+							out, true);
+					for (final PackedExecutionData data : buffer.sorted()) {
+						writer.visitClassExecution(data.unpack());
+					}
+				} finally {
+					out.close();
+				}
+				complete = true;
+			} finally {
+				if (!complete) {
+					// The run is not known to the caller yet:
+					run.delete();
+				}
+			}
+			buffer.clear();
+			return run;
+		} catch (final IOException e) {
+			throw new SpillException(e);
+		}
+	}
+
+	private File mergeRuns(final List<File> group) throws IOException {
+		final File run = createRun();
+		boolean complete = false;
+		try {
+			final OutputStream out = new BufferedOutputStream(
+					new FileOutputStream(run));
+			try {
+				final List<Run> sources = new ArrayList<Run>();
+				for (final File file : group) {
+					sources.add(new FileRun(file));
+				}
+				merge(sources, new ExecutionDataWriter(out, true));
+			} finally {
+				out.close();
+			}
+			complete = true;
+		} finally {
+			if (!complete) {
+				// The run is not known to the caller yet:
+				run.delete();
+			}
+		}
+		return run;
+	}
+
+	private File createRun() throws IOException {
+		runCount++;
+		return File.createTempFile("jacoco", ".run", tempDirectory);
+	}
+
+	private static void delete(final List<File> files) {
+		for (final File file : files) {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Merges runs sorted by class id into the given visitor. The runs are
+	 * closed afterwards.
+	 */
+	private static void merge(final List<Run> sources,
+			final IExecutionDataVisitor output) throws IOException {
+		final PriorityQueue<Run> queue = new PriorityQueue<Run>(
+				sources.size() + 1, new Comparator<Run>() {
+					public int compare(final Run r1, final Run r2) {
+						return StreamingExecFileMerger.compare(
+								r1.current.getId(), r2.current.getId());
+					}
+				});
+		try {
+			for (final Run run : sources) {
+				run.advance();
+				if (run.current != null) {
+					queue.add(run);
+				}
+			}
+			while (!queue.isEmpty()) {
+				final ExecutionData data = next(queue);
+				while (!queue.isEmpty()
+						&& queue.peek().current.getId() == data.getId()) {
+					data.merge(next(queue));
+				}
+				output.visitClassExecution(data);
+			}
+		} finally {
+			for (final Run run : sources) {
+				run.close();
+			}
+		}
+	}
+
+	private static ExecutionData next(final PriorityQueue<Run> queue)
+			throws IOException {
+		final Run run = queue.poll();
+		final ExecutionData data = run.current;
+		run.advance();
+		if (run.current != null) {
+			queue.add(run);
+		}
+		return data;
+	}
+
+	private static int compare(final long id1, final long id2) {
+		return id1 < id2 ? -1 : (id1 == id2 ? 0 : 1);
+	}
+
+	/**
+	 * In-memory buffer with an estimate of its size.
+	 */
+	private static final class Buffer {
+
+		private LongHashMap<PackedExecutionData> entries = new LongHashMap<PackedExecutionData>();
+
+		long size;
+
+		/** Whether any data put into the buffer had counts. */
+		boolean counts;
+
+		void put(final ExecutionData data) {
+			counts |= data.getCounts() != null;
+			final PackedExecutionData entry = entries.get(data.getId());
+			if (entry == null) {
+				entries.put(data.getId(), new PackedExecutionData(data));
+				final int probeCount = data.getProbes().length;
+				size += ENTRY_OVERHEAD + data.getName().length() * 2
+						+ ((probeCount + 63) >>> 6) * 8
+						+ (data.getCounts() == null ? 0 : probeCount * 4);
+			} else {
+				entry.merge(data);
+			}
+		}
+
+		PackedExecutionData[] sorted() {
+			final List<PackedExecutionData> values = entries.values();
+			final PackedExecutionData[] sorted = values
+					.toArray(new PackedExecutionData[values.size()]);
+			Arrays.sort(sorted, new Comparator<PackedExecutionData>() {
+				public int compare(final PackedExecutionData d1,
+						final PackedExecutionData d2) {
+					return StreamingExecFileMerger.compare(d1.getId(),
+							d2.getId());
+				}
+			});
+			return sorted;
+		}
+
+		void clear() {
+			entries = new LongHashMap<PackedExecutionData>();
+			size = 0;
+		}
+
+	}
+
+	/**
+	 * Execution data sorted by class id.
+	 */
+	private abstract static class Run {
+
+		/** Current execution data or <code>null</code> at the end */
+		ExecutionData current;
+
+		abstract void advance() throws IOException;
+
+		void close() throws IOException {
+		}
+
+	}
+
+	private static final class MemoryRun extends Run {
+
+		private final PackedExecutionData[] data;
+
+		private int next;
+
+		MemoryRun(final PackedExecutionData[] data) {
+			this.data = data;
+		}
+
+		@Override
+		void advance() {
+			if (next < data.length) {
+				current = data[next].unpack();
+				// Release the packed data as soon as possible:
+				data[next++] = null;
+			} else {
+				current = null;
+			}
+		}
+
+	}
+
+	private static final class FileRun extends Run
+			implements IExecutionDataVisitor {
+
+		private final File file;
+
+		private InputStream in;
+
+		private ExecutionDataReader reader;
+
+		FileRun(final File file) {
+			this.file = file;
+		}
+
+		private void open() throws IOException {
+			in = new BufferedInputStream(new FileInputStream(file));
+			reader = new ExecutionDataReader(in) {
+				@Override
+				protected boolean readBlock(final byte blocktype)
+						throws IOException {
+					// Stop after every class to read the run incrementally:
+					return super.readBlock(blocktype)
+							&& blocktype != ExecutionDataWriter.BLOCK_EXECUTIONDATA
+							&& blocktype != ExecutionDataWriter.BLOCK_EXECUTIONDATA_SPARSE
+							&& blocktype != ExecutionDataWriter.BLOCK_EXECUTIONCOUNTS;
+				}
+			};
+			reader.setExecutionDataVisitor(this);
+		}
+
+		@Override
+		void advance() throws IOException {
+			if (reader == null) {
+				open();
+			}
+			current = null;
+			reader.read();
+		}
+
+		@Override
+		void close() throws IOException {
+			if (in != null) {
+				in.close();
+			}
+		}
+
+		public void visitClassExecution(final ExecutionData data) {
+			current = data;
+		}
+
+	}
+
+	/**
+	 * Transports an {@link IOException} out of a visitor.
+	 */
+	private static final class SpillException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		SpillException(final IOException cause) {
+			super(cause);
+		}
+
+		@Override
+		public IOException getCause() {
+			return (IOException) super.getCause();
+		}
+
+	}
+
+}
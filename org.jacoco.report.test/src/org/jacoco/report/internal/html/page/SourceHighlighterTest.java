@@ -142,6 +142,28 @@ public class SourceHighlighterTest {
 				htmlSupport.findStr(doc, "//pre/span/@title"));
 	}
 
+	@Test
+	public void testHighlightExecutions() throws Exception {
+		source.increment(CounterImpl.COUNTER_0_1, CounterImpl.COUNTER_0_0, 1);
+		source.incrementExecutionCount(42, 1);
+		sourceHighlighter.highlight(parent.pre(null), source.getLine(1), 1);
+		final Document doc = parseDoc();
+		assertEquals("fc", htmlSupport.findStr(doc, "//pre/span/@class"));
+		assertEquals("Executed 42 times.",
+				htmlSupport.findStr(doc, "//pre/span/@title"));
+	}
+
+	@Test
+	public void testHighlightBranchesWithExecutions() throws Exception {
+		source.increment(CounterImpl.COUNTER_0_1, CounterImpl.getInstance(2, 3),
+				1);
+		source.incrementExecutionCount(7, 1);
+		sourceHighlighter.highlight(parent.pre(null), source.getLine(1), 1);
+		final Document doc = parseDoc();
+		assertEquals("2 of 5 branches missed. Executed 7 times.",
+				htmlSupport.findStr(doc, "//pre/span/@title"));
+	}
+
 	private Document parseDoc() throws Exception {
 		html.close();
 		return htmlSupport.parse(buffer);
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.report.internal.html.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.jacoco.core.analysis.CoverageNodeImpl;
+import org.jacoco.core.analysis.ICoverageNode;
+import org.jacoco.core.analysis.ICoverageNode.ElementType;
+import org.jacoco.core.internal.analysis.MethodCoverageImpl;
+import org.jacoco.report.MemoryMultiReportOutput;
+import org.jacoco.report.internal.ReportOutputFolder;
+import org.jacoco.report.internal.html.HTMLElement;
+import org.jacoco.report.internal.html.HTMLSupport;
+import org.jacoco.report.internal.html.resources.Resources;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+/**
+ * Unit tests for {@link ExecutionCountColumn}.
+ */
+public class ExecutionCountColumnTest {
+
+	private MemoryMultiReportOutput output;
+
+	private ReportOutputFolder root;
+
+	private Resources resources;
+
+	private HTMLElement html;
+
+	private HTMLElement td;
+
+	private HTMLSupport support;
+
+	private IColumnRenderer column;
+
+	@Before
+	public void setup() throws Exception {
+		output = new MemoryMultiReportOutput();
+		root = new ReportOutputFolder(output);
+		resources = new Resources(root);
+		html = new HTMLElement(root.createFile("Test.html"), "UTF-8");
+		html.head().title();
+		td = html.body().table("somestyle").tr().td();
+		support = new HTMLSupport();
+		column = new ExecutionCountColumn(Locale.ENGLISH);
+	}
+
+	@After
+	public void teardown() throws IOException {
+		output.close();
+		output.assertAllClosed();
+	}
+
+	@Test
+	public void init_should_return_true_when_methods_have_been_counted()
+			throws Exception {
+		final ITableItem i1 = createMethodItem(0);
+		final ITableItem i2 = createMethodItem(3);
+		assertTrue(column.init(Arrays.asList(i1, i2), null));
+		html.close();
+	}
+
+	@Test
+	public void init_should_return_false_without_counts() throws Exception {
+		final ITableItem i1 = createMethodItem(0);
+		final ITableItem i2 = createItem(
+				new CoverageNodeImpl(ElementType.CLASS, "Foo"));
+		assertFalse(column.init(Arrays.asList(i1, i2), null));
+		html.close();
+	}
+
+	@Test
+	public void footer_should_be_empty() throws Exception {
+		column.footer(td, new CoverageNodeImpl(ElementType.GROUP, "Foo"),
+				resources, root);
+		final Document doc = parseDoc();
+		assertEquals("", support.findStr(doc, "/html/body/table/tr/td/text()"));
+	}
+
+	@Test
+	public void item_should_render_execution_count() throws Exception {
+		column.item(td, createMethodItem(12345), resources, root);
+		final Document doc = parseDoc();
+		assertEquals("12,345",
+				support.findStr(doc, "/html/body/table/tr/td/text()"));
+	}
+
+	@Test
+	public void comparator_should_sort_by_descending_count() throws Exception {
+		final ITableItem i1 = createMethodItem(7);
+		final ITableItem i2 = createMethodItem(3);
+		assertTrue(column.getComparator().compare(i1, i2) < 0);
+		assertTrue(column.getComparator().compare(i2, i1) > 0);
+		assertEquals(0, column.getComparator().compare(i1, i1));
+		html.close();
+	}
+
+	private ITableItem createMethodItem(final long executionCount) {
+		final MethodCoverageImpl node = new MethodCoverageImpl("m", "()V",
+				null);
+		node.setExecutionCount(executionCount);
+		return createItem(node);
+	}
+
+	private ITableItem createItem(final ICoverageNode node) {
+		return new ITableItem() {
+			public String getLinkLabel() {
+				return node.getName();
+			}
+
+			public String getLink(ReportOutputFolder base) {
+				return null;
+			}
+
+			public String getLinkStyle() {
+				return Resources.getElementStyle(node.getElementType());
+			}
+
+			public ICoverageNode getNode() {
+				return node;
+			}
+		};
+	}
+
+	private Document parseDoc() throws Exception {
+		html.close();
+		return support.parse(output.getFile("Test.html"));
+	}
+}
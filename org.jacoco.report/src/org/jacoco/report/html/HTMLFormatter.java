@@ -42,6 +42,7 @@ import org.jacoco.report.internal.html.resources.Resources;
 import org.jacoco.report.internal.html.resources.Styles;
 import org.jacoco.report.internal.html.table.BarColumn;
 import org.jacoco.report.internal.html.table.CounterColumn;
+import org.jacoco.report.internal.html.table.ExecutionCountColumn;
 import org.jacoco.report.internal.html.table.LabelColumn;
 import org.jacoco.report.internal.html.table.PercentageColumn;
 import org.jacoco.report.internal.html.table.Table;
@@ -157,6 +158,9 @@ public class HTMLFormatter implements IHTMLReportContext {
 		t.add("%", Styles.CTR2,
 				new PercentageColumn(CounterEntity.CLASS, locale), false);
 
+		t.add("执行次数(Executions)", Styles.CTR2, new ExecutionCountColumn(locale),
+				false);
+
 		// t.add("Element", null, new LabelColumn(), false);
 		// t.add("Missed Instructions", Styles.BAR,
 		// new BarColumn(CounterEntity.INSTRUCTION, locale), true);
@@ -107,26 +107,40 @@ final class SourceHighlighter {
 		switch (branches.getStatus()) {
 		case ICounter.NOT_COVERED:
 			return span(pre, lineId, style, Styles.BRANCH_NOT_COVERED,
-					"All %2$d branches missed.", branches);
+					"All %2$d branches missed.", line);
 		case ICounter.FULLY_COVERED:
 			return span(pre, lineId, style, Styles.BRANCH_FULLY_COVERED,
-					"All %2$d branches covered.", branches);
+					"All %2$d branches covered.", line);
 		case ICounter.PARTLY_COVERED:
 			return span(pre, lineId, style, Styles.BRANCH_PARTLY_COVERED,
-					"%1$d of %2$d branches missed.", branches);
+					"%1$d of %2$d branches missed.", line);
 		default:
-			return pre.span(style, lineId);
+			final HTMLElement span = pre.span(style, lineId);
+			if (line.getExecutionCount() > 0) {
+				span.attr("title", executions(line));
+			}
+			return span;
 		}
 	}
 
 	private HTMLElement span(final HTMLElement parent, final String id,
 			final String style1, final String style2, final String title,
-			final ICounter branches) throws IOException {
+			final ILine line) throws IOException {
 		final HTMLElement span = parent.span(style1 + " " + style2, id);
+		final ICounter branches = line.getBranchCounter();
 		final Integer missed = Integer.valueOf(branches.getMissedCount());
 		final Integer total = Integer.valueOf(branches.getTotalCount());
-		span.attr("title", String.format(locale, title, missed, total));
+		String text = String.format(locale, title, missed, total);
+		if (line.getExecutionCount() > 0) {
+			text += " " + executions(line);
+		}
+		span.attr("title", text);
 		return span;
 	}
 
+	private String executions(final ILine line) {
+		return String.format(locale, "Executed %d times.",
+				Long.valueOf(line.getExecutionCount()));
+	}
+
 }
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.report.internal.html.table;
+
+import java.io.IOException;
+import java.text.NumberFormat;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import org.jacoco.core.analysis.ICoverageNode;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.report.internal.ReportOutputFolder;
+import org.jacoco.report.internal.html.HTMLElement;
+import org.jacoco.report.internal.html.resources.Resources;
+
+/**
+ * Column that prints how often the methods of a class have been invoked. The
+ * column is only emitted if at least one item is a method with a known
+ * execution count, i.e. for execution data recorded with counting probes. The
+ * implementation is stateless, instances might be used in parallel.
+ */
+public class ExecutionCountColumn implements IColumnRenderer {
+
+	private static final Comparator<ITableItem> COMPARATOR = new Comparator<ITableItem>() {
+		public int compare(final ITableItem i1, final ITableItem i2) {
+			final long c1 = getExecutionCount(i1.getNode());
+			final long c2 = getExecutionCount(i2.getNode());
+			return c1 > c2 ? -1 : (c1 == c2 ? 0 : 1);
+		}
+	};
+
+	private final NumberFormat integerFormat;
+
+	/**
+	 * Creates a new column for method execution counts.
+	 *
+	 * @param locale
+	 *            locale for rendering numbers
+	 */
+	public ExecutionCountColumn(final Locale locale) {
+		this.integerFormat = NumberFormat.getIntegerInstance(locale);
+	}
+
+	public boolean init(final List<? extends ITableItem> items,
+			final ICoverageNode total) {
+		for (final ITableItem i : items) {
+			if (getExecutionCount(i.getNode()) > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public void footer(final HTMLElement td, final ICoverageNode total,
+			final Resources resources, final ReportOutputFolder base)
+			throws IOException {
+		// Invocations of different methods do not add up
+	}
+
+	public void item(final HTMLElement td, final ITableItem item,
+			final Resources resources, final ReportOutputFolder base)
+			throws IOException {
+		final ICoverageNode node = item.getNode();
+		if (node instanceof IMethodCoverage) {
+			td.text(integerFormat.format(getExecutionCount(node)));
+		}
+	}
+
+	public Comparator<ITableItem> getComparator() {
+		return COMPARATOR;
+	}
+
+	private static long getExecutionCount(final ICoverageNode node) {
+		if (node instanceof IMethodCoverage) {
+			return ((IMethodCoverage) node).getExecutionCount();
+		}
+		return 0;
+	}
+
+}